@@ -28,6 +28,24 @@ public enum CloneStrategy {
      * with the same values but with not identifiers.
      * References will not have full object inside them.
      */
-    REUSE;
+    REUSE,
 
+    /**
+     * Literal clone that shares frozen (immutable) parts of the original.
+     * Shared parts of container values are copied only when they are accessed in the clone,
+     * so cloning a large immutable object (e.g. from a cache) is cheap if the caller
+     * reads or modifies only a small part of it.
+     *
+     * For mutable originals this is the same as {@link #LITERAL}.
+     * Reading such a clone replaces the shared parts by their copies. This is done under a lock,
+     * so the clone can be read concurrently from multiple threads, just like a literal clone.
+     */
+    COPY_ON_WRITE;
+
+    /**
+     * Returns true if all properties of the clone are the same as those of the original.
+     */
+    public boolean isLiteral() {
+        return this == LITERAL || this == COPY_ON_WRITE;
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.prism.path;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+
+/**
+ * Wrapper for {@link ItemPath} that can be used as a key in hash-based collections: its equals() method
+ * has the semantics of {@link ItemPath#equivalent(ItemPath)}, and its hash code is computed accordingly.
+ *
+ * The hash code is computed (once) from the local parts of names, and from the non-null container IDs.
+ * Namespaces are not considered, because an unqualified name is equivalent to a qualified one with the same local part.
+ * Artificial null IDs are not considered either, as "a/b" is equivalent to "a/null/b".
+ *
+ * Note that the equivalence of unqualified names is not transitive ("a:x" ~ "x" ~ "b:x", but not "a:x" ~ "b:x"),
+ * so paths cannot be brought to a canonical form without the schema. Keys that differ only in namespaces
+ * therefore share the hash code, and are told apart by equivalent() only.
+ */
+@Experimental
+public final class ItemPathKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @NotNull private final ItemPath path;
+    private final int hash;
+
+    private ItemPathKey(@NotNull ItemPath path) {
+        this.path = path;
+        this.hash = hashCode(path);
+    }
+
+    @NotNull
+    public static ItemPathKey of(@NotNull ItemPath path) {
+        return new ItemPathKey(path);
+    }
+
+    @NotNull
+    public ItemPath getPath() {
+        return path;
+    }
+
+    /**
+     * Hash code that is the same for all equivalent paths.
+     */
+    public static int hashCode(@NotNull ItemPath path) {
+        int result = 1;
+        for (Object segment : path.getSegments()) {
+            if (!ItemPath.isNullId(segment)) {
+                result = 31 * result + segmentHashCode(segment);
+            }
+        }
+        return result;
+    }
+
+    /** Must be consistent with {@link ItemPathComparatorUtil#segmentsEquivalent(Object, Object)}. */
+    private static int segmentHashCode(Object segment) {
+        if (ItemPath.isName(segment)) {
+            return ItemPath.toName(segment).getLocalPart().hashCode();
+        } else if (ItemPath.isVariable(segment)) {
+            return 31 * ItemPath.toVariableName(segment).getLocalPart().hashCode() + 1;
+        } else if (ItemPath.isSpecial(segment)) {
+            return 31 * ItemPathSegmentUtil.getSpecialSymbol(segment).getLocalPart().hashCode() + 2;
+        } else if (ItemPath.isId(segment)) {
+            return Objects.hashCode(ItemPath.toId(segment));
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ItemPathKey)) {
+            return false;
+        }
+        ItemPathKey other = (ItemPathKey) o;
+        return hash == other.hash && path.equivalent(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
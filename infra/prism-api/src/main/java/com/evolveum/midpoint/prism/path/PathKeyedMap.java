@@ -22,8 +22,8 @@ import java.util.*;
  * unreliable. UniformItemPath was conceived as way to improve that, but even it does not solve
  * this issue completely.
  *
- * An alternative design to this class would be to use some wrapper class for ItemPath that would
- * provide equals() method with the same semantics as equivalent(). But what about hashCode then?
+ * So the keys are looked up using {@link ItemPathKey} that provides equals() with the same semantics
+ * as equivalent(), along with a compatible hash code. The original paths are kept for keySet() and entrySet().
  *
  * This map does _not_ support null keys. Also, collections returned by keySet(), values(), entrySet()
  * are not modifiable.
@@ -33,6 +33,9 @@ public class PathKeyedMap<T> implements Map<ItemPath, T>, Serializable {
 
     private final Map<ItemPath, T> internalMap = new HashMap<>();
 
+    /** Keys of internalMap, indexed by their equivalence-aware key. */
+    private final Map<ItemPathKey, ItemPath> keys = new HashMap<>();
+
     @Override
     public int size() {
         return internalMap.size();
@@ -45,8 +48,7 @@ public class PathKeyedMap<T> implements Map<ItemPath, T>, Serializable {
 
     @Override
     public boolean containsKey(Object key) {
-        return key instanceof ItemPath &&
-                ItemPathCollectionsUtil.containsEquivalent(internalMap.keySet(), (ItemPath) key);
+        return findExistingKey(key) != null;
     }
 
     @Override
@@ -56,40 +58,33 @@ public class PathKeyedMap<T> implements Map<ItemPath, T>, Serializable {
 
     @Override
     public T get(Object key) {
-        if (key instanceof ItemPath) {
-            for (Map.Entry<ItemPath, T> entry : internalMap.entrySet()) {
-                if (entry.getKey().equivalent((ItemPath) key)) {
-                    return entry.getValue();
-                }
-            }
-        }
-        return null;
+        ItemPath existingKey = findExistingKey(key);
+        return existingKey != null ? internalMap.get(existingKey) : null;
     }
 
     @Nullable
     @Override
     public T put(ItemPath key, T value) {
         Objects.requireNonNull(key);
-        for (ItemPath existingKey : internalMap.keySet()) {
-            if (existingKey.equivalent(key)) {
-                return internalMap.put(existingKey, value);
-            }
-        }
-        return internalMap.put(key, value);
+        ItemPath existingKey = keys.putIfAbsent(ItemPathKey.of(key), key);
+        return internalMap.put(existingKey != null ? existingKey : key, value);
     }
 
     @Override
     public T remove(Object key) {
         if (key instanceof ItemPath) {
-            for (ItemPath existingKey : internalMap.keySet()) {
-                if (existingKey.equivalent((ItemPath) key)) {
-                    return internalMap.remove(existingKey);
-                }
+            ItemPath existingKey = keys.remove(ItemPathKey.of((ItemPath) key));
+            if (existingKey != null) {
+                return internalMap.remove(existingKey);
             }
         }
         return null;
     }
 
+    private ItemPath findExistingKey(Object key) {
+        return key instanceof ItemPath ? keys.get(ItemPathKey.of((ItemPath) key)) : null;
+    }
+
     @Override
     public void putAll(@NotNull Map<? extends ItemPath, ? extends T> m) {
         for (Entry<? extends ItemPath, ? extends T> entry : m.entrySet()) {
@@ -100,6 +95,7 @@ public class PathKeyedMap<T> implements Map<ItemPath, T>, Serializable {
     @Override
     public void clear() {
         internalMap.clear();
+        keys.clear();
     }
 
     @NotNull
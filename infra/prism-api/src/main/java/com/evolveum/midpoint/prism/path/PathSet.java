@@ -14,12 +14,13 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 
 /**
- *
+ * Set of item paths that uses {@link ItemPath#equivalent(ItemPath)} instead of equals() to compare its elements.
+ * Elements are looked up using {@link ItemPathKey}. The iteration order is the order of insertion.
  */
 @Experimental
 public class PathSet implements Set<ItemPath> {
 
-    private final List<ItemPath> content = new ArrayList<>();
+    private final Map<ItemPathKey, ItemPath> content = new LinkedHashMap<>();
 
     @Override
     public int size() {
@@ -33,47 +34,41 @@ public class PathSet implements Set<ItemPath> {
 
     @Override
     public boolean contains(Object o) {
-        return o instanceof ItemPath && ItemPathCollectionsUtil.containsEquivalent(content, (ItemPath) o);
+        return o instanceof ItemPath && content.containsKey(ItemPathKey.of((ItemPath) o));
     }
 
     @NotNull
     @Override
     public Iterator<ItemPath> iterator() {
-        return content.iterator();
+        return content.values().iterator();
     }
 
     @NotNull
     @Override
     public Object[] toArray() {
-        return content.toArray();
+        return content.values().toArray();
     }
 
     @NotNull
     @Override
     public <T> T[] toArray(@NotNull T[] a) {
-        return content.toArray(a);
+        return content.values().toArray(a);
     }
 
     @Override
     public boolean add(@NotNull ItemPath itemPath) {
-        //noinspection SimplifiableIfStatement
-        if (contains(itemPath)) {
-            return false;
-        } else {
-            return content.add(itemPath);
-        }
+        return content.putIfAbsent(ItemPathKey.of(itemPath), itemPath) == null;
     }
 
     @Override
     public boolean remove(Object o) {
-        return content.removeIf(path -> o instanceof ItemPath && path.equivalent((ItemPath) o));
+        return o instanceof ItemPath && content.remove(ItemPathKey.of((ItemPath) o)) != null;
     }
 
     @Override
     public boolean containsAll(@NotNull Collection<?> c) {
         for (Object o : c) {
-            //noinspection SuspiciousMethodCalls
-            if (!content.contains(o)) {
+            if (!contains(o)) {
                 return false;
             }
         }
@@ -82,8 +77,13 @@ public class PathSet implements Set<ItemPath> {
 
     @Override
     public boolean addAll(@NotNull Collection<? extends ItemPath> c) {
-        c.forEach(this::add);
-        return true; // fixme
+        boolean changed = false;
+        for (ItemPath path : c) {
+            if (add(path)) {
+                changed = true;
+            }
+        }
+        return changed;
     }
 
     @Override
@@ -93,8 +93,13 @@ public class PathSet implements Set<ItemPath> {
 
     @Override
     public boolean removeAll(@NotNull Collection<?> c) {
-        c.forEach(this::remove);
-        return true; // fixme
+        boolean changed = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                changed = true;
+            }
+        }
+        return changed;
     }
 
     @Override
@@ -16,10 +16,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -28,6 +30,7 @@ import javax.xml.namespace.QName;
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.ItemDefinitionTransformer.TransformableItem;
 import com.evolveum.midpoint.prism.ItemDefinitionTransformer.TransformableValue;
+import com.evolveum.midpoint.prism.impl.util.ModCountingArrayList;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.util.annotation.Experimental;
 
@@ -68,9 +71,12 @@ public abstract class ItemImpl<V extends PrismValue, D extends ItemDefinition> e
     protected ItemName elementName;
     protected PrismContainerValue<?> parent;
     protected D definition;
-    @NotNull protected final List<V> values = new ArrayList<>();
+    @NotNull protected final List<V> values = new ModCountingArrayList<>();
     private transient Map<String,Object> userData = new HashMap<>();
 
+    /** Index of values for large items, built on demand. See {@link ItemValueIndex}. */
+    private transient ItemValueIndex<V> valueIndex;
+
     protected boolean immutable;
     protected boolean incomplete;
 
@@ -402,21 +408,21 @@ public abstract class ItemImpl<V extends PrismValue, D extends ItemDefinition> e
 
         if (checkEquivalents) {
             boolean exactEquivalentFound = false;
-            boolean somethingRemoved = false;
-            Iterator<V> iterator = values.iterator();
-            while (iterator.hasNext()) {
-                V currentValue = iterator.next();
+            List<V> equivalentsToRemove = new ArrayList<>();
+            for (V currentValue : getCandidateValues(newValue, equivalenceStrategy)) {
                 if (equivalenceStrategy.equals(currentValue, newValue)) {
                     if (!exactEquivalentFound &&
                             (DEFAULT_FOR_EQUALS.equals(equivalenceStrategy) || DEFAULT_FOR_EQUALS.equals(currentValue, newValue))) {
                         exactEquivalentFound = true;
                     } else {
-                        iterator.remove();
-                        currentValue.setParent(null);
-                        somethingRemoved = true;
+                        equivalentsToRemove.add(currentValue);
                     }
                 }
             }
+            boolean somethingRemoved = !equivalentsToRemove.isEmpty();
+            if (somethingRemoved) {
+                removeValues(equivalentsToRemove);
+            }
 
             if (exactEquivalentFound && !somethingRemoved) {
                 newValue.setParent(originalParent);
@@ -435,7 +441,12 @@ public abstract class ItemImpl<V extends PrismValue, D extends ItemDefinition> e
     }
 
     protected boolean addInternalExecution(@NotNull V newValue) {
-        return values.add(newValue);
+        boolean indexCurrent = isValueIndexCurrent();
+        boolean added = values.add(newValue);
+        if (indexCurrent && !valueIndex.valueAdded(newValue, getValueList())) {
+            valueIndex = null;
+        }
+        return added;
     }
 
     /**
@@ -516,17 +527,102 @@ public abstract class ItemImpl<V extends PrismValue, D extends ItemDefinition> e
     @Override
     public boolean remove(V value, @NotNull EquivalenceStrategy strategy) {
         checkMutable();
-        boolean changed = false;
-        Iterator<V> iterator = values.iterator();
-        while (iterator.hasNext()) {
-            V val = iterator.next();
+        List<V> valuesToRemove = new ArrayList<>();
+        for (V val : getCandidateValues(value, strategy)) {
             if (val.representsSameValue(value, false) || val.equals(value, strategy)) {
-                iterator.remove();
-                val.setParent(null);
-                changed = true;
+                valuesToRemove.add(val);
             }
         }
-        return changed;
+        if (valuesToRemove.isEmpty()) {
+            return false;
+        }
+        removeValues(valuesToRemove);
+        return true;
+    }
+
+    /**
+     * Removes given values (compared by identity), keeping the value index up to date.
+     */
+    private void removeValues(@NotNull List<V> valuesToRemove) {
+        boolean indexCurrent = isValueIndexCurrent();
+        if (valuesToRemove.size() == 1) {
+            V valueToRemove = valuesToRemove.get(0);
+            values.removeIf(v -> v == valueToRemove);
+        } else {
+            Set<V> valuesToRemoveSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            valuesToRemoveSet.addAll(valuesToRemove);
+            values.removeIf(valuesToRemoveSet::contains);
+        }
+        for (V removedValue : valuesToRemove) {
+            removedValue.setParent(null);
+        }
+        if (indexCurrent) {
+            valueIndex.valuesRemoved(valuesToRemove, getValueList());
+        }
+    }
+
+    @Override
+    public V findValue(@NotNull V value, @NotNull EquivalenceStrategy strategy) {
+        return MiscUtil.find(getCandidateValues(value, strategy), value, strategy.prismValueComparator());
+    }
+
+    /**
+     * Returns values that can be equivalent to the given one under given strategy, in their original order.
+     * For large items this is a (small) subset of values found using the value index; otherwise it is all the values.
+     */
+    @NotNull
+    private List<V> getCandidateValues(@NotNull V value, @NotNull EquivalenceStrategy strategy) {
+        ItemValueIndex<V> index = getValueIndex(strategy);
+        List<V> candidates = index != null ? index.getCandidates(value) : null;
+        return candidates != null ? candidates : values;
+    }
+
+    /**
+     * Returns the value index usable for given strategy, building it if needed (and possible).
+     *
+     * Only parameterized strategies are supported, as the index keys are not guaranteed to be compatible with others.
+     * Immutable items are not indexed, because they may be shared among threads.
+     */
+    @Nullable
+    private ItemValueIndex<V> getValueIndex(@NotNull EquivalenceStrategy strategy) {
+        if (!(strategy instanceof ParameterizedEquivalenceStrategy) || isImmutable()) {
+            return null;
+        }
+        if (valueIndex != null && valueIndex.isCurrent(getValueList())) {
+            return valueIndex;
+        }
+        if (values.size() >= ItemValueIndex.THRESHOLD) {
+            valueIndex = ItemValueIndex.build(getValueList(), this::getValueIndexKey);
+        } else {
+            valueIndex = null;
+        }
+        return valueIndex;
+    }
+
+    private boolean isValueIndexCurrent() {
+        return valueIndex != null && valueIndex.isCurrent(getValueList());
+    }
+
+    private ModCountingArrayList<V> getValueList() {
+        return (ModCountingArrayList<V>) values;
+    }
+
+    /**
+     * Drops the value index, e.g. because a value has changed in a way that could change its key.
+     */
+    void invalidateValueIndex() {
+        valueIndex = null;
+    }
+
+    /**
+     * Returns the key under which the value is indexed (see {@link ItemValueIndex}), or null if the value
+     * cannot be indexed. Values that are equal under any parameterized equivalence strategy must have equal keys.
+     *
+     * Items that do not override this method are never indexed.
+     */
+    @Nullable
+    protected Object getValueIndexKey(@NotNull V value) {
+        return null;
     }
 
     public V remove(int index) {
@@ -557,6 +653,7 @@ public abstract class ItemImpl<V extends PrismValue, D extends ItemDefinition> e
             value.setParent(null);
         }
         values.clear();
+        valueIndex = null;
     }
 
     @Override
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.prism.impl;
+
+import java.util.*;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.prism.impl.util.ModCountingArrayList;
+
+/**
+ * Secondary hash index of values of a (large) multi-valued item. It avoids comparing each added, removed or looked-up
+ * value with all the values of the item, which is quadratic e.g. when building a group with 100K members.
+ *
+ * Values are indexed by a key provided by the item (see {@link ItemImpl#getValueIndexKey(PrismValue)}).
+ * The key must be the same for any two values that are equal under any of the parameterized equivalence strategies,
+ * e.g. the real value of a property or the OID of a reference. It need not be unique: values with the same key
+ * are compared one by one, using the strategy in question.
+ *
+ * The index covers all values of the item, or it does not exist at all. It is kept in sync by the item
+ * for changes made via its methods. Any other change of the value list (e.g. via {@link ItemImpl#getValues()})
+ * is detected by comparing the modification count of the list, and the index is then built anew when needed.
+ *
+ * Not thread-safe, like the item itself.
+ */
+class ItemValueIndex<V extends PrismValue> {
+
+    /** Items with fewer values are not indexed: a linear scan is good enough for them. */
+    static final int THRESHOLD = 50;
+
+    @NotNull private final Function<V, Object> keyFunction;
+    @NotNull private final Map<Object, List<V>> buckets = new HashMap<>();
+
+    /** Modification count of the value list that this index corresponds to. */
+    private int expectedModCount;
+
+    private ItemValueIndex(@NotNull Function<V, Object> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Builds the index for given values. Returns null if some of the values cannot be indexed.
+     */
+    @Nullable
+    static <V extends PrismValue> ItemValueIndex<V> build(@NotNull ModCountingArrayList<V> values,
+            @NotNull Function<V, Object> keyFunction) {
+        ItemValueIndex<V> index = new ItemValueIndex<>(keyFunction);
+        for (V value : values) {
+            if (!index.put(value)) {
+                return null;
+            }
+        }
+        index.expectedModCount = values.getModCount();
+        return index;
+    }
+
+    boolean isCurrent(@NotNull ModCountingArrayList<V> values) {
+        return expectedModCount == values.getModCount();
+    }
+
+    /**
+     * Returns values that can be equivalent to the given one, in the order in which they are in the item.
+     * Returns null if the value has no key; all the values have to be checked then.
+     */
+    @Nullable
+    List<V> getCandidates(@NotNull V value) {
+        Object key = keyFunction.apply(value);
+        if (key != null) {
+            return buckets.getOrDefault(key, Collections.emptyList());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Updates the index after the value was appended to the list.
+     *
+     * @return false if the value cannot be indexed, so the index is no longer usable
+     */
+    boolean valueAdded(@NotNull V value, @NotNull ModCountingArrayList<V> values) {
+        if (put(value)) {
+            expectedModCount = values.getModCount();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Updates the index after the values were removed from the list.
+     */
+    void valuesRemoved(@NotNull Collection<V> removedValues, @NotNull ModCountingArrayList<V> values) {
+        for (V removedValue : removedValues) {
+            Object key = keyFunction.apply(removedValue);
+            List<V> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.removeIf(v -> v == removedValue);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+        expectedModCount = values.getModCount();
+    }
+
+    private boolean put(V value) {
+        Object key = keyFunction.apply(value);
+        if (key != null) {
+            buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
+            return true;
+        } else {
+            return false;
+        }
+    }
+}
@@ -62,6 +62,18 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     protected final LinkedHashMap<QName, Item<?, ?>> items = new LinkedHashMap<>();
     protected final Set<String> unqualifiedItemNames = new HashSet<>();
 
+    /**
+     * Items (present in {@link #items}) that are shared with the frozen original this value was cloned from,
+     * see {@link CloneStrategy#COPY_ON_WRITE}. They are replaced by their copies on first access,
+     * so they never leave this object. Compared by identity. Null if there are no such items.
+     *
+     * Reading a value replaces shared items, so (unlike with other mutable objects) concurrent reads would modify
+     * {@link #items} concurrently. Therefore, while this field is not null, the items are accessed and replaced
+     * only under the lock of {@link #items}. Once it is null, no more replacements will occur, and the items
+     * can be read without locking. The field is volatile to publish the replaced items safely.
+     */
+    private volatile Set<Item<?, ?>> sharedItems;
+
     private Long id;
 
     private C containerable = null;
@@ -134,9 +146,9 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @NotNull
     public Collection<Item<?, ?>> getItems() {
         if (isImmutable()) {
-            return Collections.unmodifiableCollection(items.values());
+            return Collections.unmodifiableCollection(items().values());
         } else {
-            return items.values();
+            return items().values();
         }
     }
 
@@ -144,7 +156,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @SuppressWarnings("unchecked")
     public <I extends Item<?, ?>> List<I> getItems(Class<I> type) {
         List<I> rv = new ArrayList<>();
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (type.isAssignableFrom(item.getClass())) {
                 rv.add(((I) item));
             }
@@ -171,7 +183,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @NotNull
     public Set<PrismProperty<?>> getProperties() {
         Set<PrismProperty<?>> properties = new HashSet<>();
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (item instanceof PrismProperty) {
                 properties.add((PrismProperty<?>) item);
             }
@@ -458,7 +470,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @Override
     public void removeAll() {
         checkMutable();
-        Iterator<Item<?, ?>> iterator = items.values().iterator();
+        Iterator<Item<?, ?>> iterator = items().values().iterator();
         while (iterator.hasNext()) {
             Item<?, ?> item = iterator.next();
             item.setParent(null);
@@ -503,12 +515,13 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     public void clear() {
         checkMutable();
         items.clear();
+        sharedItems = null;
         unqualifiedItemNames.clear();
     }
 
     @Override
     public boolean contains(Item item) {
-        return items.values().contains(item);
+        return items().values().contains(item);
     }
 
     @Override
@@ -597,7 +610,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     // todo optimize this some day
     @Override
     public PrismReference findReferenceByCompositeObjectElementName(QName elementName) {
-        for (Item item : items.values()) {
+        for (Item item : items().values()) {
             if (item instanceof PrismReference) {
                 PrismReference ref = (PrismReference) item;
                 PrismReferenceDefinition refDef = ref.getDefinition();
@@ -737,14 +750,14 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
             return findItemByQNameFullScan(subName);
         } else {
             //noinspection unchecked
-            return (Item<IV, ID>) items.get(subName);
+            return (Item<IV, ID>) getUnsharedItem(subName);
         }
     }
 
     private <IV extends PrismValue, ID extends ItemDefinition> Item<IV, ID> findItemByQNameFullScan(QName subName) throws SchemaException {
 //        LOGGER.warn("Full scan while finding {} in {}", subName, this);
         Item<IV, ID> matching = null;
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (QNameUtil.match(subName, item.getElementName())) {
                 if (matching != null) {
                     String containerName = getParent() != null ? DebugUtil.formatElementName(getParent().getElementName()) : "";
@@ -899,7 +912,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
         }
         QName subName = itemPath.firstToName();
         ItemPath rest = itemPath.rest();
-        Iterator<Item<?, ?>> itemsIterator = items.values().iterator();
+        Iterator<Item<?, ?>> itemsIterator = items().values().iterator();
         while (itemsIterator.hasNext()) {
             Item<?, ?> item = itemsIterator.next();
             ItemName itemName = item.getElementName();
@@ -927,7 +940,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     }
 
     private void removeUnqualifiedItemName(ItemName itemName) {
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (itemName.equals(item.getElementName())) {
                 return;
             }
@@ -962,7 +975,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @Override
     public void accept(Visitor visitor) {
         super.accept(visitor);
-        for (Item<?, ?> item : new ArrayList<>(items.values())) {     // to allow modifying item list via the acceptor
+        for (Item<?, ?> item : new ArrayList<>(items().values())) {     // to allow modifying item list via the acceptor
             item.accept(visitor);
         }
     }
@@ -983,7 +996,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
             }
             QName subName = ItemPath.toName(first);
             ItemPath rest = path.rest();
-            for (Item<?, ?> item : items.values()) {            // todo unqualified names!
+            for (Item<?, ?> item : items().values()) {            // todo unqualified names!
                 if (subName.equals(item.getElementName())) {
                     item.accept(visitor, rest, recursive);
                 }
@@ -1230,7 +1243,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
 
     private void applyDefinitionToItems(boolean force) throws SchemaException {
         // We change items during this operation, so we need to create a copy of them.
-        ArrayList<Item<?, ?>> existingItems = new ArrayList<>(items.values());
+        ArrayList<Item<?, ?>> existingItems = new ArrayList<>(items().values());
 
         for (Item item : existingItems) {
             if (item.getDefinition() == null || force) {
@@ -1303,7 +1316,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
             this.prismContext = prismContext;
         }
         super.revive(prismContext);
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             item.revive(prismContext);
         }
     }
@@ -1326,7 +1339,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     @Override
     public void normalize() {
         checkMutable();
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             item.normalize();
         }
     }
@@ -1337,7 +1350,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
         if (getDefinition() == null) {
             throw new IllegalStateException("Definition-less container value " + this + " (" + myPath + " in " + rootItem + ")");
         }
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (scope.isThorough()) {
                 if (item == null) {
                     throw new IllegalStateException("Null item in container value " + this + " (" + myPath + " in " + rootItem + ")");
@@ -1387,16 +1400,77 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
 
     protected void copyValues(CloneStrategy strategy, PrismContainerValueImpl<C> clone) {
         super.copyValues(strategy, clone);
-        if (strategy == CloneStrategy.LITERAL) {
+        if (strategy.isLiteral()) {
             clone.id = this.id;
         }
-        for (Item<?, ?> item : this.items.values()) {
-            Item<?, ?> clonedItem = item.cloneComplex(strategy);
-            clonedItem.setParent(clone);
-            clone.simpleAdd(clonedItem);
+        if (strategy == CloneStrategy.COPY_ON_WRITE && isImmutable()) {
+            for (Item<?, ?> item : this.items.values()) {
+                clone.simpleAdd(item);
+            }
+            if (!clone.items.isEmpty()) {
+                Set<Item<?, ?>> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+                shared.addAll(clone.items.values());
+                clone.sharedItems = shared;
+            }
+        } else {
+            for (Item<?, ?> item : items().values()) {
+                Item<?, ?> clonedItem = item.cloneComplex(strategy);
+                clonedItem.setParent(clone);
+                clone.simpleAdd(clonedItem);
+            }
+        }
+    }
+
+    /**
+     * Returns the items, with all the items shared with the frozen original replaced by their copies.
+     * Use this instead of {@link #items} unless only names or the number of items is needed.
+     */
+    private LinkedHashMap<QName, Item<?, ?>> items() {
+        if (sharedItems != null) {
+            synchronized (items) {
+                Set<Item<?, ?>> shared = sharedItems;
+                if (shared != null) {
+                    for (Map.Entry<QName, Item<?, ?>> entry : items.entrySet()) {
+                        if (shared.contains(entry.getValue())) {
+                            entry.setValue(copySharedItem(entry.getValue()));
+                        }
+                    }
+                    sharedItems = null;
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns the item with given name, replacing it by its copy if it is shared with the frozen original.
+     */
+    private Item<?, ?> getUnsharedItem(QName name) {
+        if (sharedItems == null) {
+            return items.get(name);
+        }
+        synchronized (items) {
+            Item<?, ?> item = items.get(name);
+            Set<Item<?, ?>> shared = sharedItems;
+            if (item == null || shared == null || !shared.contains(item)) {
+                return item;
+            }
+            Item<?, ?> copy = copySharedItem(item);
+            items.put(item.getElementName(), copy); // replaces the value, so the order of items is kept
+            shared.remove(item);
+            if (shared.isEmpty()) {
+                sharedItems = null;
+            }
+            return copy;
         }
     }
 
+    private Item<?, ?> copySharedItem(Item<?, ?> item) {
+        Item<?, ?> copy = item.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+        copy.setParent(this);
+        return copy;
+    }
+
     void deepCloneDefinition(boolean ultraDeep, PrismContainerDefinition<C> clonedContainerDef, Consumer<ItemDefinition> postCloneAction) {
         // special treatment of CTD (we must not simply overwrite it with clonedPCD.CTD!)
         PrismContainerable<?> parent = getParent();
@@ -1407,7 +1481,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
                 replaceComplexTypeDefinition(complexTypeDefinition.deepClone(ultraDeep ? null : new HashMap<>(), new HashMap<>(), postCloneAction));        // OK?
             }
         }
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             deepCloneDefinitionItem(item, ultraDeep, clonedContainerDef, postCloneAction);
         }
     }
@@ -1478,7 +1552,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
         // We also need to make sure that container valus that contain only metadata will produce zero hashcode
         // so it will not ruin hashcodes of parent containers
         int itemsHash = 0;
-        itemsHash = MiscUtil.unorderedCollectionHashcode(items.values(), item -> !item.isOperational());
+        itemsHash = MiscUtil.unorderedCollectionHashcode(items().values(), item -> !item.isOperational());
         if (itemsHash != 0) {
             result = prime * result + itemsHash;
         }
@@ -1618,7 +1692,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
         }
 
         // And now let's freeze it; from the bottom up.
-        for (Item item : items.values()) {
+        for (Item item : items().values()) {
             item.freeze();
         }
         super.performFreeze();
@@ -1750,7 +1824,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
     // Removes all unused definitions, in order to conserve heap. Assumes that the definition is not shared. Use with care!
     void trimItemsDefinitionsTrees(Collection<? extends ItemPath> alwaysKeep) {
         // to play safe, we won't touch PCV-specific complexTypeDefinition
-        for (Item<?, ?> item : items.values()) {
+        for (Item<?, ?> item : items().values()) {
             if (item instanceof PrismContainer) {
                 Collection<ItemPath> alwaysKeepInSub = ItemPathCollectionsUtil.remainder(CollectionUtils.emptyIfNull(alwaysKeep),
                         item.getElementName(), false);
@@ -1835,7 +1909,7 @@ public class PrismContainerValueImpl<C extends Containerable> extends PrismValue
             replaceComplexTypeDefinition(newDefinition);
         }
 
-        for(Item<?,?> item : items.values()) {
+        for(Item<?,?> item : items().values()) {
             if (item instanceof TransformableItem) {
                 ((TransformableItem) item).transformDefinition(complexTypeDefinition, transformation);
             }
@@ -66,18 +66,14 @@ public class PrismPropertyDefinitionImpl<T> extends ItemDefinitionImpl<PrismProp
 
     public PrismPropertyDefinitionImpl(QName elementName, QName typeName, PrismContext prismContext) {
         super(elementName, typeName, prismContext);
-        this.structuredType = Lazy.from(() ->
-            Optional.ofNullable(getPrismContext().getSchemaRegistry().findComplexTypeDefinitionByType(getTypeName()))
-        );
+        this.structuredType = createStructuredType();
     }
 
     public PrismPropertyDefinitionImpl(QName elementName, QName typeName, PrismContext prismContext, Collection<? extends DisplayableValue<T>> allowedValues, T defaultValue) {
         super(elementName, typeName, prismContext);
         this.allowedValues = allowedValues;
         this.defaultValue = defaultValue;
-        this.structuredType = Lazy.from(() ->
-            Optional.ofNullable(getPrismContext().getSchemaRegistry().findComplexTypeDefinitionByType(getTypeName()))
-        );
+        this.structuredType = createStructuredType();
     }
 
     /**
@@ -242,6 +238,16 @@ public class PrismPropertyDefinitionImpl<T> extends ItemDefinitionImpl<PrismProp
 
     @Override
     public Optional<ComplexTypeDefinition> structuredType() {
+        if (structuredType == null) {
+            // e.g. after deserialization, as the field is transient
+            structuredType = createStructuredType();
+        }
         return structuredType.get();
     }
+
+    private Lazy<Optional<ComplexTypeDefinition>> createStructuredType() {
+        return Lazy.from(() ->
+            Optional.ofNullable(getPrismContext().getSchemaRegistry().findComplexTypeDefinitionByType(getTypeName()))
+        );
+    }
 }
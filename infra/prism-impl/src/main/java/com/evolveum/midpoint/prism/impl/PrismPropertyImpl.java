@@ -14,6 +14,7 @@ import com.evolveum.midpoint.prism.equivalence.ParameterizedEquivalenceStrategy;
 import com.evolveum.midpoint.prism.equivalence.EquivalenceStrategy;
 import com.evolveum.midpoint.prism.impl.delta.PropertyDeltaImpl;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.util.PrismPrettyPrinter;
 import com.evolveum.midpoint.prism.impl.xnode.PrimitiveXNodeImpl;
 import com.evolveum.midpoint.util.*;
@@ -267,13 +268,28 @@ public class PrismPropertyImpl<T> extends ItemImpl<PrismPropertyValue<T>, PrismP
     }
 
     public boolean hasRealValue(PrismPropertyValue<T> value) {
-        for (PrismPropertyValue<T> propVal : getValues()) {
-            if (propVal.equals(value, EquivalenceStrategy.REAL_VALUE)) {
-                return true;
-            }
-        }
+        return contains(value, EquivalenceStrategy.REAL_VALUE);
+    }
 
-        return false;
+    /**
+     * Values are indexed by their real value, but only for types whose equals/hashCode are consistent
+     * with the comparison in {@link PrismPropertyValueImpl#equals(PrismValue, ParameterizedEquivalenceStrategy)}.
+     * Polystrings are indexed by their original form, as the normalized one can be recomputed later.
+     */
+    @Override
+    protected Object getValueIndexKey(@NotNull PrismPropertyValue<T> value) {
+        if (value.isRaw()) {
+            return null;
+        }
+        T realValue = value.getValue();
+        if (realValue instanceof String || realValue instanceof Number || realValue instanceof Boolean
+                || realValue instanceof Enum || realValue instanceof QName) {
+            return realValue;
+        } else if (realValue instanceof PolyString) {
+            return ((PolyString) realValue).getOrig();
+        } else {
+            return null;
+        }
     }
 
     public Class<T> getValueClass() {
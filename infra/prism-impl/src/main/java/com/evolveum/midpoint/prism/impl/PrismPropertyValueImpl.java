@@ -99,6 +99,7 @@ public class PrismPropertyValueImpl<T> extends PrismValueImpl
         this.value = value;
         this.rawElement = null;
         checkValue();
+        invalidateParentValueIndex();
     }
 
     @Override
@@ -153,6 +154,7 @@ public class PrismPropertyValueImpl<T> extends PrismValueImpl
     @Override
     public void setRawElement(XNode rawElement) {
         this.rawElement = (XNodeImpl) rawElement;
+        invalidateParentValueIndex();
     }
 
     @Override
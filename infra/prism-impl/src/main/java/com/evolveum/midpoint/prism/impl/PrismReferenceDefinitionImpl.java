@@ -50,9 +50,7 @@ public class PrismReferenceDefinitionImpl extends ItemDefinitionImpl<PrismRefere
 
     public PrismReferenceDefinitionImpl(QName elementName, QName typeName, PrismContext prismContext) {
         super(elementName, typeName, prismContext);
-        structuredType = Lazy.from(() ->
-            Optional.ofNullable(getPrismContext().getSchemaRegistry().findComplexTypeDefinitionByType(getTypeName()))
-        );
+        structuredType = createStructuredType();
     }
 
     /**
@@ -204,6 +202,16 @@ public class PrismReferenceDefinitionImpl extends ItemDefinitionImpl<PrismRefere
 
     @Override
     public Optional<ComplexTypeDefinition> structuredType() {
+        if (structuredType == null) {
+            // e.g. after deserialization, as the field is transient
+            structuredType = createStructuredType();
+        }
         return structuredType.get();
     }
+
+    private Lazy<Optional<ComplexTypeDefinition>> createStructuredType() {
+        return Lazy.from(() ->
+            Optional.ofNullable(getPrismContext().getSchemaRegistry().findComplexTypeDefinitionByType(getTypeName()))
+        );
+    }
 }
@@ -170,6 +170,15 @@ public class PrismReferenceImpl extends ItemImpl<PrismReferenceValue, PrismRefer
         return null;
     }
 
+    /**
+     * References are indexed by OID, as references with different OIDs are never equal. The relation is not part
+     * of the key, because its equality depends on the strategy and on the default relation.
+     */
+    @Override
+    protected Object getValueIndexKey(@NotNull PrismReferenceValue value) {
+        return value.getOid();
+    }
+
     @Override
     public Object find(ItemPath path) {
         if (path == null || path.isEmpty()) {
@@ -94,6 +94,7 @@ public class PrismReferenceValueImpl extends PrismValueImpl implements PrismRefe
     public void setOid(String oid) {
         checkMutable();
         this.oid = oid;
+        invalidateParentValueIndex();
     }
 
     /**
@@ -655,8 +656,8 @@ public class PrismReferenceValueImpl extends PrismValueImpl implements PrismRefe
     protected void copyValues(CloneStrategy strategy, PrismReferenceValueImpl clone) {
         super.copyValues(strategy, clone);
         clone.targetType = this.targetType;
-        if (this.object != null && strategy == CloneStrategy.LITERAL) {
-            clone.object = this.object.clone();
+        if (this.object != null && strategy.isLiteral()) {
+            clone.object = this.object.cloneComplex(strategy);
         }
         clone.description = this.description;
         clone.filter = this.filter;
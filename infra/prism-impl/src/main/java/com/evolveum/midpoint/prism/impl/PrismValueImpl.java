@@ -124,6 +124,15 @@ public abstract class PrismValueImpl extends AbstractFreezable implements PrismV
         this.parent = parent;
     }
 
+    /**
+     * To be called when the data used as the key in the value index of the parent item (if any) change.
+     */
+    void invalidateParentValueIndex() {
+        if (parent instanceof ItemImpl) {
+            ((ItemImpl<?, ?>) parent).invalidateValueIndex();
+        }
+    }
+
     @NotNull
     @Override
     public ItemPath getPath() {
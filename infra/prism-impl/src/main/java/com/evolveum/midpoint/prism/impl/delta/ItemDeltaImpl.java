@@ -16,6 +16,7 @@ import static com.evolveum.midpoint.prism.path.ItemPath.checkNoSpecialSymbols;
 import static com.evolveum.midpoint.util.MiscUtil.emptyIfNull;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import javax.xml.namespace.QName;
@@ -62,6 +63,17 @@ public abstract class ItemDeltaImpl<V extends PrismValue, D extends ItemDefiniti
      */
     private ItemPath fullPath;
 
+    /**
+     * Changes of paths of item deltas that are (or were) indexed in {@link ModificationsIndex}, made by any thread.
+     * The indices are rebuilt when this count changes.
+     */
+    private static final AtomicInteger INDEXED_PATH_CHANGES = new AtomicInteger();
+
+    /**
+     * Whether this delta was put into a {@link ModificationsIndex}, so changes of its path must be reported.
+     */
+    private transient boolean pathIndexed;
+
     /**
      * Definition of the item.
      */
@@ -127,6 +139,7 @@ public abstract class ItemDeltaImpl<V extends PrismValue, D extends ItemDefiniti
         checkMutable();
         this.elementName = ItemName.fromQName(elementName);
         this.fullPath = null;
+        pathChanged();
     }
 
     public ItemPath getParentPath() {
@@ -137,6 +150,21 @@ public abstract class ItemDeltaImpl<V extends PrismValue, D extends ItemDefiniti
         checkMutable();
         this.parentPath = parentPath;
         this.fullPath = null;
+        pathChanged();
+    }
+
+    private void pathChanged() {
+        if (pathIndexed) {
+            INDEXED_PATH_CHANGES.incrementAndGet();
+        }
+    }
+
+    void setPathIndexed() {
+        pathIndexed = true;
+    }
+
+    static int getIndexedPathChangeCount() {
+        return INDEXED_PATH_CHANGES.get();
     }
 
     @NotNull
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.prism.impl.delta;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.delta.ContainerDelta;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.impl.util.ModCountingArrayList;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.path.ItemPathKey;
+
+/**
+ * Index of modifications of a (large) object delta by their path. It replaces linear search in
+ * {@link com.evolveum.midpoint.prism.delta.ItemDeltaCollectionsUtil#findItemDelta(Collection, ItemPath, Class, boolean)},
+ * which makes adding N modifications to a delta quadratic.
+ *
+ * Modifications are grouped by {@link ItemPathKey#hashCode(ItemPath)}, and compared using equivalent() within the group.
+ * The result is the same as the one of the linear search, i.e. the first matching modification in the list.
+ *
+ * The index is rebuilt when the list of modifications changes other than by appending via the object delta,
+ * or when the path of any indexed item delta changes.
+ */
+class ModificationsIndex {
+
+    /** Deltas with fewer modifications are not indexed. */
+    static final int THRESHOLD = 20;
+
+    /** Modifications with given path hash, in the order in which they are in the list. */
+    @NotNull private final Map<Integer, List<Entry>> byPathHash = new HashMap<>();
+
+    /** All container modifications, in the order in which they are in the list. Needed for non-strict search. */
+    @NotNull private final List<Entry> containerModifications = new ArrayList<>();
+
+    private int expectedModCount;
+    private int expectedPathChangeCount;
+
+    private ModificationsIndex() {
+    }
+
+    /**
+     * Builds the index. Returns null if the modifications cannot be indexed.
+     */
+    @Nullable
+    static ModificationsIndex build(@NotNull ModCountingArrayList<? extends ItemDelta<?, ?>> modifications) {
+        ModificationsIndex index = new ModificationsIndex();
+        index.expectedPathChangeCount = ItemDeltaImpl.getIndexedPathChangeCount();
+        int position = 0;
+        for (ItemDelta<?, ?> modification : modifications) {
+            if (!index.put(modification, position++)) {
+                return null;
+            }
+        }
+        index.expectedModCount = modifications.getModCount();
+        return index;
+    }
+
+    boolean isCurrent(@NotNull ModCountingArrayList<? extends ItemDelta<?, ?>> modifications) {
+        return expectedModCount == modifications.getModCount()
+                && expectedPathChangeCount == ItemDeltaImpl.getIndexedPathChangeCount();
+    }
+
+    /**
+     * Updates the index after the modification was appended to the list.
+     *
+     * @return false if the modification cannot be indexed, so the index is no longer usable
+     */
+    boolean modificationAdded(@NotNull ItemDelta<?, ?> modification,
+            @NotNull ModCountingArrayList<? extends ItemDelta<?, ?>> modifications) {
+        if (put(modification, modifications.size() - 1)) {
+            expectedModCount = modifications.getModCount();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * The same as {@link com.evolveum.midpoint.prism.delta.ItemDeltaCollectionsUtil#findItemDelta(Collection, ItemPath, Class, boolean)}.
+     */
+    @SuppressWarnings("unchecked")
+    <DD extends ItemDelta> DD find(@NotNull ItemPath path, @NotNull Class<DD> deltaType, boolean strict) {
+        Entry found = null;
+        for (Entry entry : byPathHash.getOrDefault(ItemPathKey.hashCode(path), Collections.emptyList())) {
+            if (deltaType.isAssignableFrom(entry.modification.getClass()) && entry.modification.getPath().equivalent(path)) {
+                found = entry;
+                break;
+            }
+        }
+        if (!strict) {
+            for (Entry entry : containerModifications) {
+                if (found != null && entry.position > found.position) {
+                    break;
+                }
+                if (entry.modification.getPath().isSubPath(path)) {
+                    return (DD) ((ContainerDelta<?>) entry.modification).getSubDelta(path.remainder(entry.modification.getPath()));
+                }
+            }
+        }
+        return found != null ? (DD) found.modification : null;
+    }
+
+    private boolean put(ItemDelta<?, ?> modification, int position) {
+        if (!(modification instanceof ItemDeltaImpl)) {
+            return false;
+        }
+        ((ItemDeltaImpl<?, ?>) modification).setPathIndexed();
+        Entry entry = new Entry(modification, position);
+        byPathHash.computeIfAbsent(ItemPathKey.hashCode(modification.getPath()), k -> new ArrayList<>(1))
+                .add(entry);
+        if (modification instanceof ContainerDelta) {
+            containerModifications.add(entry);
+        }
+        return true;
+    }
+
+    private static class Entry {
+        @NotNull private final ItemDelta<?, ?> modification;
+        private final int position;
+
+        private Entry(@NotNull ItemDelta<?, ?> modification, int position) {
+            this.modification = modification;
+            this.position = position;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.delta.*;
 import com.evolveum.midpoint.prism.equivalence.EquivalenceStrategy;
 import com.evolveum.midpoint.prism.equivalence.ParameterizedEquivalenceStrategy;
+import com.evolveum.midpoint.prism.impl.util.ModCountingArrayList;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.path.ItemPathCollectionsUtil;
@@ -59,6 +60,11 @@ public class ObjectDeltaImpl<O extends Objectable> extends AbstractFreezable imp
      */
     @NotNull private final Collection<? extends ItemDelta<?, ?>> modifications;
 
+    /**
+     * Index of modifications by path, built on demand for large deltas. See {@link ModificationsIndex}.
+     */
+    private transient ModificationsIndex modificationsIndex;
+
     /**
      * Class of the object that we describe.
      */
@@ -199,7 +205,11 @@ public class ObjectDeltaImpl<O extends Objectable> extends AbstractFreezable imp
             existingModification.merge(itemDelta);
             return existingModification;
         } else {
+            boolean indexCurrent = modificationsIndex != null && modificationsIndex.isCurrent(getModificationList());
             ((Collection) modifications).add(itemDelta);
+            if (indexCurrent && !modificationsIndex.modificationAdded(itemDelta, getModificationList())) {
+                modificationsIndex = null;
+            }
             return itemDelta;
         }
     }
@@ -391,7 +401,12 @@ public class ObjectDeltaImpl<O extends Objectable> extends AbstractFreezable imp
 
     private <D extends ItemDelta> D findModification(ItemPath propertyPath, Class<D> deltaType, boolean strict) {
         if (isModify()) {
-            return ItemDeltaCollectionsUtil.findItemDelta(modifications, propertyPath, deltaType, strict);
+            ModificationsIndex index = getModificationsIndex();
+            if (index != null) {
+                return index.find(propertyPath, deltaType, strict);
+            } else {
+                return ItemDeltaCollectionsUtil.findItemDelta(modifications, propertyPath, deltaType, strict);
+            }
         } else if (isAdd()) {
             Item<PrismValue, ItemDefinition> item = getObjectToAdd().findItem(propertyPath);
             if (item == null) {
@@ -650,7 +665,26 @@ public class ObjectDeltaImpl<O extends Objectable> extends AbstractFreezable imp
 
     private Collection<? extends ItemDelta<?, ?>> createEmptyModifications() {
         // Lists are easier to debug
-        return new ArrayList<>();
+        return new ModCountingArrayList<>();
+    }
+
+    /**
+     * Returns the index of modifications, building it if needed (and possible). Immutable deltas are not indexed,
+     * because they may be shared among threads.
+     */
+    private ModificationsIndex getModificationsIndex() {
+        if (isImmutable()) {
+            return null;
+        } else if (modifications.size() < ModificationsIndex.THRESHOLD) {
+            modificationsIndex = null;
+        } else if (modificationsIndex == null || !modificationsIndex.isCurrent(getModificationList())) {
+            modificationsIndex = ModificationsIndex.build(getModificationList());
+        }
+        return modificationsIndex;
+    }
+
+    private ModCountingArrayList<? extends ItemDelta<?, ?>> getModificationList() {
+        return (ModCountingArrayList<? extends ItemDelta<?, ?>>) modifications;
     }
 
     public <X> PropertyDelta<X> createPropertyModification(ItemPath path) {
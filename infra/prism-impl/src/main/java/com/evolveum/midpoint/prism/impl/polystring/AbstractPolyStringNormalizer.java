@@ -7,9 +7,11 @@
 package com.evolveum.midpoint.prism.impl.polystring;
 
 import java.text.Normalizer;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 import com.evolveum.midpoint.prism.polystring.PolyStringNormalizer;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
 
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringNormalizerConfigurationType;
@@ -21,9 +23,26 @@ public abstract class AbstractPolyStringNormalizer implements PolyStringNormaliz
 
     private PolyStringNormalizerConfigurationType configuration;
 
+    /** Configuration flags for the ASCII fast path, compiled from the configuration. */
+    private boolean trimEnabled = true;
+    private boolean trimWhitespaceEnabled = true;
+    private boolean lowercaseEnabled = true;
+
+    /**
+     * Which ASCII characters are kept by {@link #normalizeCore(String)}. Null if not known yet,
+     * or if the fast path is not supported (then it is an empty array).
+     */
+    private volatile boolean[] asciiCoreFilter;
+
+    /** Whether lower-casing of ASCII characters in the last seen default locale is the plain one. */
+    private static volatile LowerCaseCheck lastLowerCaseCheck;
+
     @Override
     public void configure(PolyStringNormalizerConfigurationType configuration) {
         this.configuration = configuration;
+        trimEnabled = configuration == null || !Boolean.FALSE.equals(configuration.isTrim());
+        trimWhitespaceEnabled = configuration == null || !Boolean.FALSE.equals(configuration.isTrimWhitespace());
+        lowercaseEnabled = configuration == null || !Boolean.FALSE.equals(configuration.isLowercase());
     }
 
     protected PolyStringNormalizerConfigurationType getConfiguration() {
@@ -78,6 +97,23 @@ public abstract class AbstractPolyStringNormalizer implements PolyStringNormaliz
      */
     @Override
     public String normalize(String orig) {
+        if (orig == null) {
+            return null;
+        }
+        String fast = normalizeAscii(orig);
+        if (fast != null) {
+            return fast;
+        } else {
+            return normalizeStepByStep(orig);
+        }
+    }
+
+    /**
+     * The reference implementation: preprocessing, core normalization and postprocessing, each creating a new string.
+     * The result of {@link #normalize(String)} must be always the same.
+     */
+    @VisibleForTesting
+    public String normalizeStepByStep(String orig) {
         if (orig == null) {
             return null;
         }
@@ -90,6 +126,127 @@ public abstract class AbstractPolyStringNormalizer implements PolyStringNormaliz
 
     protected abstract String normalizeCore(String s);
 
+    /**
+     * Returns true if {@link #normalizeCore(String)} only removes some characters, each one independently
+     * of the others, while the preprocessing and postprocessing are the default ones. Such normalizers
+     * can normalize pure ASCII strings in a single pass, without creating intermediate strings.
+     */
+    protected boolean isCoreCharacterFilter() {
+        return false;
+    }
+
+    /**
+     * Single-pass normalization of a pure ASCII string: trimming, core filtering, collapsing whitespace
+     * and lower-casing at once. NFKD decomposition does not change ASCII characters, so it can be skipped.
+     * The output is created only if it differs from (trimmed) input.
+     *
+     * @return null if the fast path cannot be used for the string, e.g. because it contains non-ASCII characters
+     */
+    private String normalizeAscii(String s) {
+        boolean[] keep = getAsciiCoreFilter();
+        if (keep.length == 0 || lowercaseEnabled && !isAsciiLowerCasePlain()) {
+            return null;
+        }
+        int start = 0;
+        int end = s.length();
+        if (trimEnabled) {
+            while (start < end && s.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && s.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+        StringBuilder out = null; // created on first difference from the input
+        boolean inWhitespace = false;
+        boolean blank = true;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            boolean removed;
+            char n;
+            if (!keep[c]) {
+                removed = true;
+                n = c;
+            } else if (trimWhitespaceEnabled && isRegexWhitespace(c)) {
+                removed = inWhitespace;
+                n = ' ';
+                inWhitespace = true;
+            } else {
+                removed = false;
+                n = lowercaseEnabled && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+                inWhitespace = false;
+            }
+            if (out == null && (removed || n != c)) {
+                out = new StringBuilder(end - start);
+                out.append(s, start, i);
+            }
+            if (!removed) {
+                if (out != null) {
+                    out.append(n);
+                }
+                if (blank && !Character.isWhitespace(n)) {
+                    blank = false;
+                }
+            }
+        }
+        if (trimWhitespaceEnabled && blank) {
+            return "";
+        } else if (out != null) {
+            return out.toString();
+        } else {
+            return s.substring(start, end);
+        }
+    }
+
+    /** Characters matched by {@code \s} in {@link #WHITESPACE_PATTERN}. */
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private boolean[] getAsciiCoreFilter() {
+        boolean[] filter = asciiCoreFilter;
+        if (filter == null) {
+            if (isCoreCharacterFilter()) {
+                filter = new boolean[0x80];
+                for (char c = 0; c < 0x80; c++) {
+                    String single = String.valueOf(c);
+                    filter[c] = single.equals(normalizeCore(single));
+                }
+            } else {
+                filter = new boolean[0];
+            }
+            asciiCoreFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * Lower-casing in {@link #lowerCase(String)} uses the default locale. For ASCII characters it differs
+     * from the plain one only in some locales (e.g. Turkish dotless i); the fast path is not used then.
+     */
+    private static boolean isAsciiLowerCasePlain() {
+        Locale locale = Locale.getDefault();
+        LowerCaseCheck check = lastLowerCaseCheck;
+        if (check == null || check.locale != locale) {
+            check = new LowerCaseCheck(locale, "abcdefghijklmnopqrstuvwxyz".equals("ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase(locale)));
+            lastLowerCaseCheck = check;
+        }
+        return check.plain;
+    }
+
+    private static class LowerCaseCheck {
+        private final Locale locale;
+        private final boolean plain;
+
+        private LowerCaseCheck(Locale locale, boolean plain) {
+            this.locale = locale;
+            this.plain = plain;
+        }
+    }
+
     protected String preprocess(String s) {
         if (configuration == null || !Boolean.FALSE.equals(configuration.isTrim())) {
             s = trim(s);
@@ -26,6 +26,11 @@ public class AlphanumericPolyStringNormalizer extends AbstractPolyStringNormaliz
         return s;
     }
 
+    @Override
+    protected boolean isCoreCharacterFilter() {
+        return true;
+    }
+
     @Override
     public QName getName() {
         return PrismConstants.ALPHANUMERIC_POLY_STRING_NORMALIZER;
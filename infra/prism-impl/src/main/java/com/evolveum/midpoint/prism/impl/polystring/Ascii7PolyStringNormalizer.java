@@ -22,6 +22,11 @@ public class Ascii7PolyStringNormalizer extends AbstractPolyStringNormalizer {
         return s;
     }
 
+    @Override
+    protected boolean isCoreCharacterFilter() {
+        return true;
+    }
+
     @Override
     public QName getName() {
         return PrismConstants.ASCII7_POLY_STRING_NORMALIZER;
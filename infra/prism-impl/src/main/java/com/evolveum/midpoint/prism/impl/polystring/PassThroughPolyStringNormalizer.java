@@ -21,6 +21,11 @@ public class PassThroughPolyStringNormalizer extends AbstractPolyStringNormalize
         return s;
     }
 
+    @Override
+    protected boolean isCoreCharacterFilter() {
+        return true;
+    }
+
     @Override
     public QName getName() {
         return PrismConstants.PASSTHROUGH_POLY_STRING_NORMALIZER;
@@ -79,6 +79,16 @@ public class SchemaRegistryImpl implements DebugDumpable, SchemaRegistry {
      */
     private String catalogResourceName = DEFAULT_RUNTIME_CATALOG_RESOURCE;
 
+    /**
+     * File with a snapshot of parsed prism schemas (see {@link SchemaSnapshot}). If set, the schemas are loaded
+     * from it, provided it matches the registered schemas. Otherwise, they are parsed and the snapshot is (re)written.
+     * Null means that no snapshot is used.
+     */
+    private File schemaSnapshotFile;
+
+    /** Whether prism schemas were loaded from the snapshot during the last initialization. */
+    private boolean loadedFromSnapshot;
+
     /**
      * Schema that is used for "native" validation of XML files.
      * It is set up during initialization. So any schemas added after that will not be reflected here.
@@ -262,6 +272,23 @@ public class SchemaRegistryImpl implements DebugDumpable, SchemaRegistry {
         this.catalogFiles = catalogFiles;
     }
 
+    public File getSchemaSnapshotFile() {
+        return schemaSnapshotFile;
+    }
+
+    /**
+     * Must be called before call to initialize()
+     */
+    @Experimental
+    public void setSchemaSnapshotFile(File schemaSnapshotFile) {
+        this.schemaSnapshotFile = schemaSnapshotFile;
+    }
+
+    @Experimental
+    public boolean isLoadedFromSnapshot() {
+        return loadedFromSnapshot;
+    }
+
     @SuppressWarnings("unused") // consider removal
     public String getCatalogResourceName() {
         return catalogResourceName;
@@ -519,14 +546,21 @@ public class SchemaRegistryImpl implements DebugDumpable, SchemaRegistry {
     }
 
     protected void parsePrismSchemas() throws SchemaException {
-        parsePrismSchemas(schemaDescriptions, true);
-        applyAugmentations();
-        for (SchemaDescription schemaDescription : schemaDescriptions) {
-            if (schemaDescription.getSchema() != null) {
-                PrismSchemaImpl schema = (PrismSchemaImpl) schemaDescription.getSchema();
-                resolveMissingTypeDefinitionsInGlobalItemDefinitions(schema);
-                processTypes(schema);
+        SchemaSnapshot snapshot = schemaSnapshotFile != null ? createSnapshot() : null;
+        loadedFromSnapshot = snapshot != null && loadPrismSchemasFromSnapshot(snapshot);
+        if (!loadedFromSnapshot) {
+            parsePrismSchemas(schemaDescriptions, true);
+            applyAugmentations();
+            for (SchemaDescription schemaDescription : schemaDescriptions) {
+                if (schemaDescription.getSchema() != null) {
+                    PrismSchemaImpl schema = (PrismSchemaImpl) schemaDescription.getSchema();
+                    resolveMissingTypeDefinitionsInGlobalItemDefinitions(schema);
+                    processTypes(schema);
 
+                }
+            }
+            if (snapshot != null) {
+                snapshot.store(schemaDescriptions);
             }
         }
         if (LOGGER.isTraceEnabled()) {
@@ -541,6 +575,39 @@ public class SchemaRegistryImpl implements DebugDumpable, SchemaRegistry {
         }
     }
 
+    private SchemaSnapshot createSnapshot() {
+        // Definitions are created by the code of prism and by the definition factory (that can be application-specific).
+        List<Class<?>> codeClasses = new ArrayList<>();
+        codeClasses.add(SchemaRegistryImpl.class);
+        if (prismContext instanceof PrismContextImpl) {
+            codeClasses.add(((PrismContextImpl) prismContext).getDefinitionFactory().getClass());
+        }
+        return SchemaSnapshot.create(schemaSnapshotFile, schemaDescriptions, codeClasses.toArray(new Class<?>[0]));
+    }
+
+    /**
+     * Sets schemas from the snapshot to individual descriptions. Extensions and substitutions are already applied
+     * in the snapshot; we only need to fill-in the registry-level structures.
+     */
+    private boolean loadPrismSchemasFromSnapshot(SchemaSnapshot snapshot) {
+        long started = System.currentTimeMillis();
+        List<PrismSchemaImpl> schemas = snapshot.load(schemaDescriptions, prismContext);
+        if (schemas == null) {
+            return false;
+        }
+        for (int i = 0; i < schemas.size(); i++) {
+            PrismSchemaImpl schema = schemas.get(i);
+            if (schema != null) {
+                SchemaDescriptionImpl description = schemaDescriptions.get(i);
+                description.setSchema(schema);
+                detectAugmentations(schema);
+            }
+        }
+        LOGGER.debug("Loaded {} prism schemas from snapshot {} in {} ms", schemas.stream().filter(Objects::nonNull).count(),
+                schemaSnapshotFile, System.currentTimeMillis() - started);
+        return true;
+    }
+
     private void fillInSubstitutionGroups() {
         // TODO Auto-generated method stub
 
@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.prism.impl.schema;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.evolveum.midpoint.prism.AbstractFreezable;
+import com.evolveum.midpoint.prism.Definition;
+import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.prism.ItemProcessing;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.SchemaMigration;
+import com.evolveum.midpoint.prism.SchemaMigrationOperation;
+import com.evolveum.midpoint.prism.SimpleTypeDefinition;
+import com.evolveum.midpoint.prism.impl.DisplayableValueImpl;
+import com.evolveum.midpoint.prism.impl.PrismReferenceValueImpl;
+import com.evolveum.midpoint.prism.impl.PrismValueImpl;
+import com.evolveum.midpoint.prism.path.ItemName;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.schema.PrismSchema;
+import com.evolveum.midpoint.util.TransientCache;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Binary snapshot of prism schemas as they are after {@link SchemaRegistryImpl#parsePrismSchemas()}, i.e. parsed,
+ * with extensions and substitutions applied. Loading it avoids the costly XSD processing at startup.
+ *
+ * The snapshot is a serialized form of the whole definitions graph. It is bound to a hash of all the registered
+ * schema sources (including extension schemas) and of the code that creates the definitions. If the hash does not match,
+ * the snapshot is ignored, schemas are parsed as usual, and the snapshot is written anew.
+ *
+ * The code is hashed by its content (JAR file, nested JAR in a Spring Boot archive, or exploded classes),
+ * so a rebuilt library with the same size and timestamp is still detected.
+ *
+ * Note that schemas that are not registered but only reachable via the catalog (e.g. imported standard XSDs)
+ * are not covered by the hash. They are expected to be bundled with the code.
+ *
+ * As the snapshot is read by Java deserialization, only the classes the definitions consist of are accepted,
+ * see {@link #createClassFilter(Set)}. A snapshot containing any other class is rejected (and replaced) like
+ * an outdated one. The same check is applied when the snapshot is written, so a definition graph with
+ * an unexpected class is not stored at all.
+ */
+class SchemaSnapshot {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SchemaSnapshot.class);
+
+    /** To be changed when the file structure (not the serialized classes) changes. */
+    private static final String FORMAT = "midPoint schema snapshot 1";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /** Definitions are allowed only from midPoint code, not any implementation of the interface. */
+    private static final String PRISM_PACKAGE_PREFIX = "com.evolveum.midpoint.";
+
+    /**
+     * Classes allowed in the snapshot in addition to definitions ({@link Definition} implementations) and compile-time
+     * classes: the parts of definitions, QNames, basic JDK types and collections.
+     */
+    private static final Set<String> ALLOWED_CLASSES = Set.of(
+            SchemaContent.class.getName(),
+            AbstractFreezable.class.getName(),
+            ItemName.class.getName(),
+            ItemProcessing.class.getName(),
+            SchemaMigration.class.getName(),
+            SchemaMigrationOperation.class.getName(),
+            SimpleTypeDefinition.DerivationMethod.class.getName(),
+            DisplayableValueImpl.class.getName(), // allowed values
+            PrismValueImpl.class.getName(), PrismReferenceValueImpl.class.getName(), // value enumeration ref
+            PolyString.class.getName(),
+            TransientCache.class.getName(),
+            QName.class.getName(),
+            "java.lang.Object", "java.lang.Enum", "java.lang.Number", "java.lang.String",
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Short",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+            "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.ArrayDeque", "java.util.Arrays$ArrayList",
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap", "java.util.IdentityHashMap",
+            "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+            "java.util.Collections$EmptyList", "java.util.Collections$EmptySet", "java.util.Collections$EmptyMap",
+            "java.util.Collections$SingletonList", "java.util.Collections$SingletonSet",
+            "java.util.Collections$SingletonMap",
+            "java.util.Collections$UnmodifiableCollection", "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableSet",
+            "java.util.Collections$UnmodifiableSortedSet", "java.util.Collections$UnmodifiableMap",
+            "java.util.Collections$UnmodifiableSortedMap",
+            "java.util.CollSer"); // serialized form of List.of(), Set.of(), Map.of()
+
+    @NotNull private final File file;
+    @NotNull private final String hash;
+    @NotNull private final ObjectInputFilter classFilter;
+
+    private SchemaSnapshot(@NotNull File file, @NotNull String hash, @NotNull ObjectInputFilter classFilter) {
+        this.file = file;
+        this.hash = hash;
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * Returns null if the snapshot cannot be used, because we are not able to tell whether the code has changed.
+     */
+    @Nullable
+    static SchemaSnapshot create(@NotNull File file, @NotNull List<SchemaDescriptionImpl> descriptions,
+            @NotNull Class<?>... codeClasses) {
+        String hash = computeHash(descriptions, codeClasses);
+        if (hash == null) {
+            return null;
+        }
+        Set<String> compileTimePackages = new HashSet<>();
+        for (SchemaDescriptionImpl description : descriptions) {
+            Package compileTimePackage = description.getCompileTimeClassesPackage();
+            if (compileTimePackage != null) {
+                compileTimePackages.add(compileTimePackage.getName());
+            }
+        }
+        return new SchemaSnapshot(file, hash, createClassFilter(compileTimePackages));
+    }
+
+    /**
+     * Returns the filter accepting only the classes the snapshot consists of (and arrays of them or of primitives):
+     * definitions, compile-time classes from given packages (exact match, not subpackages)
+     * and classes from {@link #ALLOWED_CLASSES}.
+     */
+    static ObjectInputFilter createClassFilter(@NotNull Set<String> compileTimePackages) {
+        return info -> {
+            Class<?> clazz = info.serialClass();
+            if (clazz == null) {
+                return ObjectInputFilter.Status.UNDECIDED; // only checking the limits, we do not set any
+            }
+            if (isAllowed(clazz, compileTimePackages)) {
+                return ObjectInputFilter.Status.ALLOWED;
+            } else {
+                LOGGER.warn("Class {} is not allowed in schema snapshot", clazz.getName());
+                return ObjectInputFilter.Status.REJECTED;
+            }
+        };
+    }
+
+    /**
+     * Returns the schemas for individual descriptions (null for non-prism ones), or null if the snapshot
+     * does not exist, is outdated or cannot be read. Definitions are revived using given prism context.
+     */
+    @Nullable
+    List<PrismSchemaImpl> load(@NotNull List<SchemaDescriptionImpl> descriptions, @NotNull PrismContext prismContext) {
+        if (!file.isFile()) {
+            LOGGER.debug("Schema snapshot {} does not exist", file);
+            return null;
+        }
+        try (ObjectInputStream in = new RevivingObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)), prismContext, classFilter)) {
+            if (!FORMAT.equals(in.readUTF())) {
+                LOGGER.info("Schema snapshot {} has unsupported format, ignoring it", file);
+                return null;
+            }
+            if (!hash.equals(in.readUTF())) {
+                LOGGER.info("Schema snapshot {} does not match current schemas, ignoring it", file);
+                return null;
+            }
+            //noinspection unchecked
+            List<SchemaContent> contents = (List<SchemaContent>) in.readObject();
+            if (contents.size() != descriptions.size()) {
+                LOGGER.warn("Schema snapshot {} contains {} schemas but {} were expected, ignoring it",
+                        file, contents.size(), descriptions.size());
+                return null;
+            }
+            List<PrismSchemaImpl> schemas = new ArrayList<>(contents.size());
+            for (SchemaContent content : contents) {
+                schemas.add(content != null ? content.toSchema(prismContext) : null);
+            }
+            return schemas;
+        } catch (IOException | ClassNotFoundException | RuntimeException | StackOverflowError e) {
+            LOGGER.warn("Couldn't load schema snapshot {}, schemas will be parsed: {}", file, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the schemas of given descriptions. Failures are only logged, as the snapshot is just an optimization.
+     */
+    void store(@NotNull List<SchemaDescriptionImpl> descriptions) {
+        List<SchemaContent> contents = new ArrayList<>(descriptions.size());
+        for (SchemaDescriptionImpl description : descriptions) {
+            PrismSchema schema = description.getSchema();
+            contents.add(schema != null ? new SchemaContent(schema) : null);
+        }
+        File tempFile = null;
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (directory != null) {
+                Files.createDirectories(directory.toPath());
+            }
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            try (ObjectOutputStream out = new CheckingObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)), classFilter)) {
+                out.writeUTF(FORMAT);
+                out.writeUTF(hash);
+                out.writeObject(contents);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info("Schema snapshot {} was written", file);
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            LOGGER.warn("Couldn't write schema snapshot {}: {}", file, e.getMessage(), e);
+            if (tempFile != null && !tempFile.delete()) {
+                LOGGER.debug("Couldn't delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    @Nullable
+    private static String computeHash(List<SchemaDescriptionImpl> descriptions, Class<?>... codeClasses) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        update(digest, FORMAT);
+        for (Class<?> codeClass : codeClasses) {
+            if (!updateWithCodeSource(digest, codeClass)) {
+                LOGGER.info("Code source of {} is unknown, schema snapshot will not be used", codeClass);
+                return null;
+            }
+        }
+        for (SchemaDescriptionImpl description : descriptions) {
+            update(digest, description.getSourceDescription());
+            update(digest, description.getNamespace());
+            update(digest, String.valueOf(description.isPrismSchema()));
+            Package compileTimePackage = description.getCompileTimeClassesPackage();
+            update(digest, compileTimePackage != null ? compileTimePackage.getName() : null);
+            updateWithNode(digest, description.getDomElement());
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * The serialized classes must be the same as the ones that wrote the snapshot. We do not rely on serialVersionUID
+     * here, but on the content of the code (typically a JAR file). Returns false if the code cannot be read.
+     */
+    private static boolean updateWithCodeSource(MessageDigest digest, Class<?> codeClass) {
+        update(digest, codeClass.getName());
+        CodeSource codeSource = codeClass.getProtectionDomain().getCodeSource();
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location == null) {
+            return false;
+        }
+        try {
+            if ("file".equals(location.getProtocol())) {
+                Path codePath = Paths.get(location.toURI());
+                if (Files.isDirectory(codePath)) {
+                    // Exploded classes, e.g. when running from IDE or tests
+                    updateWithDirectory(digest, codePath);
+                } else {
+                    try (InputStream in = Files.newInputStream(codePath)) {
+                        updateWithStream(digest, in);
+                    }
+                }
+            } else if ("jar".equals(location.getProtocol())) {
+                try (InputStream in = openArchive(location)) {
+                    updateWithStream(digest, in);
+                }
+            } else {
+                return false;
+            }
+            return true;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOGGER.debug("Couldn't read code source {} of {}: {}", location, codeClass, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Opens the archive the code is loaded from, for `jar:` location of the code source. For example:
+     *
+     * - `jar:file:/lib.jar!/` is a plain JAR, opened as `file:/lib.jar`;
+     * - `jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/` is a JAR nested in Spring Boot archive, opened as an entry
+     * of the outer archive;
+     * - `jar:nested:/app.jar/!BOOT-INF/lib/lib.jar!/` is the same for newer Spring Boot, opened by its `nested:` URL;
+     * - `jar:file:/app.jar!/BOOT-INF/classes!/` is a directory in the archive, the whole outer archive is opened.
+     */
+    static InputStream openArchive(URL location) throws IOException {
+        String spec = location.toString();
+        if (spec.endsWith("!/")) {
+            spec = spec.substring(0, spec.length() - 2);
+        }
+        int separator = spec.lastIndexOf("!/");
+        if (separator >= 0 && !spec.endsWith(".jar")) {
+            spec = spec.substring(0, separator);
+            separator = spec.lastIndexOf("!/");
+        }
+        URL archiveUrl = separator >= 0 ? new URL(spec) : new URL(spec.substring("jar:".length()));
+        URLConnection connection = archiveUrl.openConnection();
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+
+    private static void updateWithDirectory(MessageDigest digest, Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            update(digest, directory.relativize(file).toString());
+            try (InputStream in = Files.newInputStream(file)) {
+                updateWithStream(digest, in);
+            }
+        }
+    }
+
+    private static void updateWithStream(MessageDigest digest, InputStream in) throws IOException {
+        byte[] buffer = new byte[65536];
+        long length = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            length += read;
+        }
+        update(digest, String.valueOf(length));
+    }
+
+    private static void updateWithNode(MessageDigest digest, Node node) {
+        if (node == null) {
+            update(digest, null);
+            return;
+        }
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                Element element = (Element) node;
+                update(digest, "<");
+                update(digest, element.getNamespaceURI());
+                update(digest, element.getLocalName() != null ? element.getLocalName() : element.getTagName());
+                NamedNodeMap attributes = element.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attribute = (Attr) attributes.item(i);
+                    update(digest, "@");
+                    update(digest, attribute.getNamespaceURI());
+                    update(digest, attribute.getName());
+                    update(digest, attribute.getValue());
+                }
+                for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    updateWithNode(digest, child);
+                }
+                update(digest, ">");
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                update(digest, "#");
+                update(digest, node.getNodeValue());
+                break;
+            default:
+                // comments and processing instructions do not influence the schema
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) 1);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        } else {
+            digest.update((byte) 0);
+        }
+    }
+
+    private static boolean isAllowed(Class<?> clazz, Set<String> compileTimePackages) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        return clazz.isPrimitive()
+                || ALLOWED_CLASSES.contains(clazz.getName())
+                || Definition.class.isAssignableFrom(clazz) && clazz.getName().startsWith(PRISM_PACKAGE_PREFIX)
+                || compileTimePackages.contains(clazz.getPackageName());
+    }
+
+    /**
+     * Definitions and substitutions of a single prism schema. The whole list of contents is serialized at once,
+     * so the references between definitions of different schemas are preserved.
+     */
+    private static class SchemaContent implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @NotNull private final String namespace;
+        @NotNull private final List<Definition> definitions;
+        @NotNull private final List<QName> substitutionHeads = new ArrayList<>();
+        @NotNull private final List<ItemDefinition<?>> substitutionDefinitions = new ArrayList<>();
+
+        private SchemaContent(@NotNull PrismSchema schema) {
+            namespace = schema.getNamespace();
+            definitions = new ArrayList<>(schema.getDefinitions());
+            for (Map.Entry<QName, ItemDefinition<?>> entry : schema.getSubstitutions().entries()) {
+                substitutionHeads.add(entry.getKey());
+                substitutionDefinitions.add(entry.getValue());
+            }
+        }
+
+        private PrismSchemaImpl toSchema(PrismContext prismContext) {
+            PrismSchemaImpl schema = new PrismSchemaImpl(namespace, prismContext);
+            definitions.forEach(schema::add);
+            for (int i = 0; i < substitutionHeads.size(); i++) {
+                schema.addSubstitution(substitutionHeads.get(i), substitutionDefinitions.get(i));
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Sets the (transient) prism context of all deserialized definitions, including the ones that are not reachable
+     * by {@link Definition#revive(PrismContext)} of the top-level ones.
+     */
+    private static class RevivingObjectInputStream extends ObjectInputStream {
+
+        @NotNull private final PrismContext prismContext;
+
+        private RevivingObjectInputStream(InputStream in, @NotNull PrismContext prismContext,
+                @NotNull ObjectInputFilter classFilter) throws IOException {
+            super(in);
+            this.prismContext = prismContext;
+            setObjectInputFilter(classFilter);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof Definition) {
+                ((Definition) obj).revive(prismContext);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Fails when writing a class that would be rejected when the snapshot is read. Without this check, such a snapshot
+     * would be rejected and written again on each start.
+     */
+    private static class CheckingObjectOutputStream extends ObjectOutputStream {
+
+        @NotNull private final ObjectInputFilter classFilter;
+
+        private CheckingObjectOutputStream(OutputStream out, @NotNull ObjectInputFilter classFilter) throws IOException {
+            super(out);
+            this.classFilter = classFilter;
+        }
+
+        @Override
+        protected void annotateClass(Class<?> clazz) throws IOException {
+            if (classFilter.checkInput(new ClassInfo(clazz)) == ObjectInputFilter.Status.REJECTED) {
+                throw new NotSerializableException("Class " + clazz.getName() + " is not allowed in schema snapshot");
+            }
+        }
+    }
+
+    /** Describes a single class for {@link ObjectInputFilter} check. */
+    static class ClassInfo implements ObjectInputFilter.FilterInfo {
+
+        private final Class<?> clazz;
+
+        ClassInfo(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public Class<?> serialClass() {
+            return clazz;
+        }
+
+        @Override
+        public long arrayLength() {
+            return -1;
+        }
+
+        @Override
+        public long depth() {
+            return 1;
+        }
+
+        @Override
+        public long references() {
+            return 0;
+        }
+
+        @Override
+        public long streamBytes() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.prism.impl.util;
+
+import java.util.ArrayList;
+
+/**
+ * Array list that makes its modification count visible, so that indices built over its content
+ * can tell whether they are up to date.
+ *
+ * The count is increased by all structural modifications (as in {@link ArrayList}) and also by replacing
+ * an element at given position.
+ */
+public class ModCountingArrayList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    public int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        modCount++;
+        return super.set(index, element);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.prism;
+
+import static org.testng.AssertJUnit.*;
+
+import static com.evolveum.midpoint.prism.PrismInternalTestUtil.USER_JACK_DESCRIPTION;
+import static com.evolveum.midpoint.prism.PrismInternalTestUtil.USER_JACK_FILE_XML;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.foo.AssignmentType;
+import com.evolveum.midpoint.prism.foo.UserType;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+
+/**
+ * Tests {@link CloneStrategy#COPY_ON_WRITE} clones.
+ */
+public class TestCopyOnWriteClone extends AbstractPrismTest {
+
+    private static final ItemPath PATH_ASSIGNMENT_2_DESCRIPTION =
+            ItemPath.create(UserType.F_ASSIGNMENT, 1112L, AssignmentType.F_DESCRIPTION);
+
+    @Test
+    public void test100CloneOfFrozenObjectIsEqualAndMutable() throws SchemaException, IOException {
+        given();
+        PrismObject<UserType> user = createFrozenUser();
+
+        when();
+        PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+
+        then();
+        assertFalse("clone is immutable", clone.isImmutable());
+        assertEquals("clone differs from the original", user, clone);
+        assertEquals("original differs from the clone", clone, user);
+        assertEquals("clone differs from literal clone", user.clone(), clone);
+    }
+
+    @Test
+    public void test110ItemsOfCloneAreOwnedByClone() throws SchemaException, IOException {
+        given();
+        PrismObject<UserType> user = createFrozenUser();
+        PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+
+        when();
+        PrismContainer<AssignmentType> assignment = clone.findContainer(UserType.F_ASSIGNMENT);
+        PrismProperty<String> description = clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION);
+
+        then();
+        assertFalse("assignment is immutable", assignment.isImmutable());
+        assertSame("wrong assignment parent", clone.getValue(), assignment.getParent());
+        assertNotSame("assignment is shared", user.findContainer(UserType.F_ASSIGNMENT), assignment);
+        assertFalse("description is immutable", description.isImmutable());
+        assertSame("wrong description parent", assignment.findValue(1112L), description.getParent());
+    }
+
+    @Test
+    public void test200ModifyingCloneDoesNotAffectOriginal() throws SchemaException, IOException {
+        given();
+        PrismObject<UserType> user = createFrozenUser();
+        PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+
+        when();
+        clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION).setRealValue("changed");
+        clone.removeProperty(UserType.F_DESCRIPTION);
+
+        then();
+        assertEquals("wrong description in clone", "changed",
+                clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION).getRealValue());
+        assertNull("description is still in clone", clone.findProperty(UserType.F_DESCRIPTION));
+        assertEquals("wrong description in original", "Assignment 2",
+                user.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION).getRealValue());
+        assertEquals("wrong description in original", USER_JACK_DESCRIPTION,
+                user.findProperty(UserType.F_DESCRIPTION).getRealValue());
+        assertEquals("unmodified assignment differs",
+                user.findContainer(UserType.F_ASSIGNMENT).findValue(1111L),
+                clone.findContainer(UserType.F_ASSIGNMENT).findValue(1111L));
+        assertFalse("clone is still equal to the original", user.equals(clone));
+    }
+
+    @Test
+    public void test210CloneOfCloneAndFreeze() throws SchemaException, IOException {
+        given();
+        PrismObject<UserType> user = createFrozenUser();
+        PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+
+        when();
+        PrismObject<UserType> cloneOfClone = clone.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+        clone.freeze();
+
+        then();
+        assertEquals("frozen clone differs from the original", user, clone);
+        assertEquals("clone of clone differs from the original", user, cloneOfClone);
+        assertTrue("assignment in frozen clone is not immutable",
+                clone.findContainer(UserType.F_ASSIGNMENT).isImmutable());
+    }
+
+    @Test
+    public void test300CloneOfMutableObjectIsLiteral() throws SchemaException, IOException {
+        given();
+        PrismObject<UserType> user = PrismTestUtil.parseObject(USER_JACK_FILE_XML);
+
+        when();
+        PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+        clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION).setRealValue("changed");
+
+        then();
+        assertEquals("wrong description in original", "Assignment 2",
+                user.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION).getRealValue());
+    }
+
+    /**
+     * A clone can be shared by threads that only read it (e.g. a resource from the resource cache
+     * used by workers of a multi-threaded task). Reads replace the shared items, so this must be thread-safe.
+     */
+    @Test
+    public void test400ConcurrentReadsOfClone() throws Exception {
+        given();
+        PrismObject<UserType> user = createFrozenUser();
+        int threads = 8;
+        int iterations = 200;
+
+        expect("concurrent readers of each clone see the same copies of the shared items");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < iterations; i++) {
+                PrismObject<UserType> clone = user.cloneComplex(CloneStrategy.COPY_ON_WRITE);
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<PrismProperty<String>>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    boolean findFirst = t % 2 == 0;
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        if (findFirst) {
+                            PrismProperty<String> description = clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION);
+                            assertEquals("wrong # of items", user.getValue().getItems().size(), clone.getValue().getItems().size());
+                            return description;
+                        } else {
+                            assertEquals("wrong # of items", user.getValue().getItems().size(), clone.getValue().getItems().size());
+                            return clone.findProperty(PATH_ASSIGNMENT_2_DESCRIPTION);
+                        }
+                    }));
+                }
+
+                PrismProperty<String> first = futures.get(0).get(10, TimeUnit.SECONDS);
+                for (Future<PrismProperty<String>> future : futures) {
+                    PrismProperty<String> description = future.get(10, TimeUnit.SECONDS);
+                    assertSame("threads see different copies of the item", first, description);
+                    assertFalse("description is immutable", description.isImmutable());
+                }
+                assertEquals("wrong description", "Assignment 2", first.getRealValue());
+                assertEquals("clone differs from the original", user, clone);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PrismObject<UserType> createFrozenUser() throws SchemaException, IOException {
+        PrismObject<UserType> user = PrismTestUtil.parseObject(USER_JACK_FILE_XML);
+        user.freeze();
+        return user;
+    }
+}
@@ -237,6 +237,48 @@ public class TestPath extends AbstractPrismTest {
         assertEquals("Remainder fooBar, fooNull", pathBar, remainder1);
     }
 
+    @Test
+    public void testPathKeyedCollections() {
+        // GIVEN
+        ItemPath pathFooBar = ItemPath.create(new QName(NS, "foo"), new QName(NS, "bar"));
+        ItemPath pathFooNullBarUnqualified = ItemPath.create(new QName("foo"), null, new QName("bar"));
+        ItemPath pathFoo123Bar = ItemPath.create(new QName(NS, "foo"), 123L, new QName(NS, "bar"));
+        ItemPath pathFooBarOtherNs = ItemPath.create(new QName(NS, "foo"), new QName(NS + "other", "bar"));
+
+        // WHEN
+        PathKeyedMap<String> map = new PathKeyedMap<>();
+        map.put(pathFooBar, "a");
+        map.put(pathFoo123Bar, "b");
+        String replaced = map.put(pathFooNullBarUnqualified, "c");
+
+        PathSet set = new PathSet();
+        boolean added1 = set.add(pathFooBar);
+        boolean added2 = set.add(pathFooNullBarUnqualified);
+        boolean added3 = set.add(pathFoo123Bar);
+
+        // THEN
+        assertEquals("Wrong hash of equivalent paths",
+                ItemPathKey.of(pathFooBar).hashCode(), ItemPathKey.of(pathFooNullBarUnqualified).hashCode());
+        assertEquals("Wrong replaced value", "a", replaced);
+        assertEquals("Wrong map size", 2, map.size());
+        assertEquals("Wrong value for foo/bar", "c", map.get(pathFooBar));
+        assertEquals("Wrong value for foo/123/bar", "b", map.get(pathFoo123Bar));
+        assertNull("Unexpected value for foo/other:bar", map.get(pathFooBarOtherNs));
+        assertSame("Original key was not kept", pathFooBar,
+                map.keySet().stream().filter(pathFooBar::equivalent).findFirst().orElse(null));
+        assertEquals("Wrong removed value", "c", map.remove(pathFooNullBarUnqualified));
+        assertFalse("foo/bar is still in the map", map.containsKey(pathFooBar));
+
+        assertTrue(added1);
+        assertFalse(added2);
+        assertTrue(added3);
+        assertEquals("Wrong set size", 2, set.size());
+        assertTrue(set.contains(pathFooNullBarUnqualified));
+        assertFalse(set.contains(pathFooBarOtherNs));
+        assertTrue(set.remove(pathFooNullBarUnqualified));
+        assertFalse(set.contains(pathFooBar));
+    }
+
     private void assertNormalizedPath(UniformItemPath normalized, Object... expected) {
         assertEquals("wrong path length", normalized.size(), expected.length);
         for (int i = 0; i < normalized.size(); i += 2) {
@@ -12,6 +12,7 @@ import static com.evolveum.midpoint.prism.PrismInternalTestUtil.constructInitial
 import static com.evolveum.midpoint.prism.PrismInternalTestUtil.getFooSchema;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
 import javax.xml.namespace.QName;
 
@@ -19,6 +20,7 @@ import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import org.testng.annotations.Test;
 
 import com.evolveum.midpoint.prism.foo.UserType;
+import com.evolveum.midpoint.prism.impl.polystring.AbstractPolyStringNormalizer;
 import com.evolveum.midpoint.prism.impl.polystring.AlphanumericPolyStringNormalizer;
 import com.evolveum.midpoint.prism.impl.polystring.Ascii7PolyStringNormalizer;
 import com.evolveum.midpoint.prism.impl.polystring.PassThroughPolyStringNormalizer;
@@ -26,7 +28,11 @@ import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.polystring.PolyStringNormalizer;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringNormalizerConfigurationType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 
 /**
  * @author semancik
@@ -199,6 +205,91 @@ public class TestPolyString extends AbstractPrismTest {
                 "  Ľala  ho  papľuha!    ");
     }
 
+    /**
+     * Normalization of ASCII strings has a single-pass fast path. It must give the same results
+     * as the step-by-step normalization, for all normalizers and configurations.
+     */
+    @Test
+    public void testNormalizationFastPath() {
+        given();
+        List<AbstractPolyStringNormalizer> normalizers = new ArrayList<>();
+        for (int flags = -1; flags < 16; flags++) {
+            PolyStringNormalizerConfigurationType configuration = null;
+            if (flags >= 0) {
+                configuration = new PolyStringNormalizerConfigurationType();
+                configuration.setTrim((flags & 1) != 0);
+                configuration.setNfkd((flags & 2) != 0);
+                configuration.setTrimWhitespace((flags & 4) != 0);
+                configuration.setLowercase((flags & 8) != 0);
+            }
+            for (AbstractPolyStringNormalizer normalizer : Arrays.asList(new AlphanumericPolyStringNormalizer(),
+                    new Ascii7PolyStringNormalizer(), new PassThroughPolyStringNormalizer())) {
+                normalizer.configure(configuration);
+                normalizers.add(normalizer);
+            }
+        }
+        List<String> corpus = createNormalizationCorpus();
+
+        when();
+        int checked = 0;
+        for (AbstractPolyStringNormalizer normalizer : normalizers) {
+            for (String orig : corpus) {
+                String expected = normalizer.normalizeStepByStep(orig);
+                String actual = normalizer.normalize(orig);
+                if (!expected.equals(actual)) {
+                    fail("Wrong norm of '" + unicodeEscape(orig) + "' by " + normalizer + ": '"
+                            + unicodeEscape(actual) + "', expected '" + unicodeEscape(expected) + "'");
+                }
+                checked++;
+            }
+        }
+
+        then();
+        displayValue("normalizations checked", checked);
+    }
+
+    /**
+     * All ASCII strings up to two characters, plus random strings mixing ASCII with characters
+     * that are changed or removed by normalization (whitespace, controls, accents, compatibility forms, surrogates).
+     */
+    private List<String> createNormalizationCorpus() {
+        List<String> corpus = new ArrayList<>();
+        corpus.add("");
+        for (char c1 = 0; c1 < 0x80; c1++) {
+            corpus.add(String.valueOf(c1));
+            for (char c2 = 0; c2 < 0x80; c2++) {
+                corpus.add(new String(new char[] { c1, c2 }));
+            }
+        }
+        char[][] ranges = {
+                { 0x20, 0x7e }, { 0x20, 0x7e }, { 0x20, 0x7e }, // mostly printable ASCII
+                { 0x00, 0x20 }, { 0x7f, 0x7f }, // controls, whitespace, DEL
+                { 0xa0, 0xff }, // Latin-1 incl. non-breaking space
+                { 0x100, 0x17f }, // Latin Extended-A (Ľ, ž, ...)
+                { 0x300, 0x36f }, // combining diacritical marks
+                { 0x400, 0x44f }, // Cyrillic
+                { 0x2000, 0x200b }, // Unicode spaces
+                { 0xfb00, 0xfb06 }, // ligatures
+                { 0xff01, 0xff5e }, // full-width ASCII
+                { 0x4e00, 0x4e20 }, // CJK
+        };
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                if (random.nextInt(50) == 0) {
+                    sb.appendCodePoint(0x1f600 + random.nextInt(0x50)); // emoji (surrogate pair)
+                } else {
+                    char[] range = ranges[random.nextInt(ranges.length)];
+                    sb.append((char) (range[0] + random.nextInt(range[1] - range[0] + 1)));
+                }
+            }
+            corpus.add(sb.toString());
+        }
+        return corpus;
+    }
+
     private void testNormalization(PolyStringNormalizer normalizer, String orig, String expectedNorm) {
         PolyString polyString = new PolyString(orig);
         polyString.recompute(normalizer);
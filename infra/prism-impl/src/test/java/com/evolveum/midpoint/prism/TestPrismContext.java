@@ -10,7 +10,10 @@ import static org.testng.AssertJUnit.*;
 
 import static com.evolveum.midpoint.prism.PrismInternalTestUtil.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 
@@ -23,6 +26,7 @@ import com.evolveum.midpoint.prism.foo.AccountType;
 import com.evolveum.midpoint.prism.foo.AssignmentType;
 import com.evolveum.midpoint.prism.foo.UserType;
 import com.evolveum.midpoint.prism.impl.PrismContextImpl;
+import com.evolveum.midpoint.prism.impl.schema.SchemaRegistryImpl;
 import com.evolveum.midpoint.prism.schema.PrismSchema;
 import com.evolveum.midpoint.prism.schema.SchemaRegistry;
 import com.evolveum.midpoint.prism.util.PrismAsserts;
@@ -211,4 +215,63 @@ public class TestPrismContext extends AbstractPrismTest {
         // THEN
         assertNotNull("No foo XSD DOM", fooXsd);
     }
+
+    @Test
+    public void testSchemaSnapshot() throws Exception {
+        given();
+        File snapshotFile = new File("target/schema-snapshot.bin");
+        Files.deleteIfExists(snapshotFile.toPath());
+        PrismContext parsedContext = constructPrismContextWithSnapshot(snapshotFile);
+        assertFalse("Schemas loaded from non-existing snapshot",
+                ((SchemaRegistryImpl) parsedContext.getSchemaRegistry()).isLoadedFromSnapshot());
+        assertTrue("Snapshot was not written", snapshotFile.isFile());
+
+        when();
+        PrismContext loadedContext = constructPrismContextWithSnapshot(snapshotFile);
+
+        then();
+        SchemaRegistry schemaRegistry = loadedContext.getSchemaRegistry();
+        assertTrue("Schemas not loaded from snapshot", ((SchemaRegistryImpl) schemaRegistry).isLoadedFromSnapshot());
+
+        PrismObjectDefinition<UserType> userDefinition = schemaRegistry.findObjectDefinitionByCompileTimeClass(UserType.class);
+        assertNotNull("No user definition", userDefinition);
+        assertSame("Wrong prism context in user definition", loadedContext, userDefinition.getPrismContext());
+        assertEquals("Wrong user definition",
+                parsedContext.getSchemaRegistry().findObjectDefinitionByCompileTimeClass(UserType.class).debugDump(),
+                userDefinition.debugDump());
+
+        PrismPropertyDefinition<?> ignoredTypeDef = schemaRegistry.findPropertyDefinitionByElementName(EXTENSION_IGNORED_TYPE_ELEMENT);
+        PrismAsserts.assertDefinition(ignoredTypeDef, EXTENSION_IGNORED_TYPE_ELEMENT, DOMUtil.XSD_STRING, 0, -1);
+        assertTrue("Element " + EXTENSION_IGNORED_TYPE_ELEMENT + " is NOT ignored", ignoredTypeDef.isIgnored());
+        PrismContainerDefinition<?> meleeContextDefinition = schemaRegistry.findContainerDefinitionByElementName(EXTENSION_MELEE_CONTEXT_ELEMENT);
+        PrismReferenceDefinition opponentRefDef = meleeContextDefinition.findReferenceDefinition(EXTENSION_MELEE_CONTEXT_OPPONENT_REF_ELEMENT);
+        assertTrue("opponentRef definition is NOT composite", opponentRefDef.isComposite());
+
+        PrismObject<UserType> parsedJack = parsedContext.parseObject(USER_JACK_FILE_XML);
+        PrismObject<UserType> loadedJack = loadedContext.parseObject(USER_JACK_FILE_XML);
+        assertEquals("Jack parsed with schemas from snapshot differs", parsedJack, loadedJack);
+    }
+
+    @Test
+    public void testSchemaSnapshotCorrupted() throws Exception {
+        given();
+        File snapshotFile = new File("target/schema-snapshot-corrupted.bin");
+        Files.write(snapshotFile.toPath(), "corrupted".getBytes(StandardCharsets.UTF_8));
+
+        when();
+        PrismContext prismContext = constructPrismContextWithSnapshot(snapshotFile);
+
+        then();
+        SchemaRegistryImpl schemaRegistry = (SchemaRegistryImpl) prismContext.getSchemaRegistry();
+        assertFalse("Schemas loaded from corrupted snapshot", schemaRegistry.isLoadedFromSnapshot());
+        assertNotNull("No user definition", schemaRegistry.findObjectDefinitionByCompileTimeClass(UserType.class));
+        assertTrue("Snapshot was not rewritten", snapshotFile.length() > "corrupted".length());
+    }
+
+    private PrismContext constructPrismContextWithSnapshot(File snapshotFile) throws SchemaException, SAXException, IOException {
+        PrismContextImpl prismContext = constructPrismContext();
+        ((SchemaRegistryImpl) prismContext.getSchemaRegistry()).setSchemaSnapshotFile(snapshotFile);
+        prismContext.initialize();
+        return prismContext;
+    }
 }
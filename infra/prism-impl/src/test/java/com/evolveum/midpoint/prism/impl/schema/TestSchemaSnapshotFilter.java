@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.prism.impl.schema;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.foo.UserType;
+import com.evolveum.midpoint.prism.impl.PrismObjectImpl;
+import com.evolveum.midpoint.prism.impl.PrismPropertyDefinitionImpl;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests the class filter used when reading and writing schema snapshots and opening of the code archives.
+ * (Reading and writing of snapshots is tested in TestPrismContext.)
+ */
+public class TestSchemaSnapshotFilter extends AbstractUnitTest {
+
+    private static final ObjectInputFilter FILTER =
+            SchemaSnapshot.createClassFilter(Set.of(UserType.class.getPackageName()));
+
+    @Test
+    public void testAllowedClasses() {
+        assertStatus(ObjectInputFilter.Status.ALLOWED, PrismPropertyDefinitionImpl.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, UserType.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, QName.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, ArrayList.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, HashMap.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, Integer.class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, int[].class);
+        assertStatus(ObjectInputFilter.Status.ALLOWED, QName[][].class);
+    }
+
+    @Test
+    public void testRejectedClasses() {
+        assertStatus(ObjectInputFilter.Status.REJECTED, File.class);
+        assertStatus(ObjectInputFilter.Status.REJECTED, URL.class);
+        assertStatus(ObjectInputFilter.Status.REJECTED, File[].class);
+        assertStatus(ObjectInputFilter.Status.REJECTED, java.util.PriorityQueue.class);
+        // midPoint class that is not a part of definitions
+        assertStatus(ObjectInputFilter.Status.REJECTED, PrismObjectImpl.class);
+    }
+
+    @Test
+    public void testUnregisteredCompileTimePackageRejected() {
+        ObjectInputFilter filter = SchemaSnapshot.createClassFilter(Set.of());
+        assertEquals(ObjectInputFilter.Status.REJECTED,
+                filter.checkInput(new SchemaSnapshot.ClassInfo(UserType.class)));
+        assertEquals(ObjectInputFilter.Status.ALLOWED,
+                filter.checkInput(new SchemaSnapshot.ClassInfo(PrismPropertyDefinitionImpl.class)));
+    }
+
+    @Test
+    public void testOpenArchive() throws Exception {
+        File jar = File.createTempFile("snapshot-test", ".jar");
+        jar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("test.txt"));
+            out.write("test".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        byte[] expected = Files.readAllBytes(jar.toPath());
+
+        // code source location of classes loaded from a JAR
+        URL location = new URL("jar:" + jar.toURI().toURL() + "!/");
+        try (InputStream in = SchemaSnapshot.openArchive(location)) {
+            assertEquals(expected.length, in.readAllBytes().length);
+        }
+    }
+
+    private void assertStatus(ObjectInputFilter.Status expected, Class<?> clazz) {
+        assertEquals("Wrong status for " + clazz, expected, FILTER.checkInput(new SchemaSnapshot.ClassInfo(clazz)));
+    }
+}
@@ -108,6 +108,7 @@ public class MidPointPrismContextFactory implements PrismContextFactory {
         registerExtensionSchemas(schemaRegistry);
         registerAxiomSchemas(schemaRegistry);
         schemaRegistry.setValueMetadataTypeName(ValueMetadataType.COMPLEX_TYPE);
+        configureSchemaSnapshot(schemaRegistry);
         return schemaRegistry;
     }
 
@@ -130,6 +131,12 @@ public class MidPointPrismContextFactory implements PrismContextFactory {
         }
     }
 
+    /**
+     * Sets up the snapshot of parsed schemas, if desired. No snapshot is used by default.
+     */
+    protected void configureSchemaSnapshot(SchemaRegistryImpl schemaRegistry) {
+    }
+
     private void registerBuiltinSchemas(SchemaRegistryImpl schemaRegistry) throws SchemaException {
         // Note: the order of schema registration may affect the way how the schema files are located
         // (whether are pulled from the registry or by using a catalog file).
@@ -177,7 +177,7 @@ public class SearchResultList<T> extends AbstractFreezable
 
     public <R> SearchResultList<R> map(Function<T, R> mappingFunction) {
         return new SearchResultList<>(
-                list.stream().map(mappingFunction).collect(Collectors.toList()),
+                list != null ? list.stream().map(mappingFunction).collect(Collectors.toList()) : null,
                 metadata);
     }
 
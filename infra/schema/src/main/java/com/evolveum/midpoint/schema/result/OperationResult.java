@@ -38,6 +38,7 @@ import com.evolveum.midpoint.prism.Visitable;
 import com.evolveum.midpoint.prism.Visitor;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
@@ -301,10 +302,18 @@ public class OperationResult
         }
     }
 
+    /**
+     * Arguments are formatted only if profiling trace logging is enabled, so we provide them as objects
+     * that are converted to strings only when needed.
+     */
     private Object[] createArguments() {
-        List<String> arguments = new ArrayList<>();
-        getParams().forEach((key, value) -> arguments.add(key + " => " + value));       // todo what with large values?
-        getContext().forEach((key, value) -> arguments.add("c:" + key + " => " + value));
+        List<Object> arguments = new ArrayList<>();
+        if (params != null) {
+            params.forEach((key, value) -> arguments.add(new Argument("", key, value)));       // todo what with large values?
+        }
+        if (context != null) {
+            context.forEach((key, value) -> arguments.add(new Argument("c:", key, value)));
+        }
         return arguments.toArray();
     }
 
@@ -499,6 +508,9 @@ public class OperationResult
     }
 
     public void addSubresult(OperationResult subresult) {
+        if (isLean()) {
+            collapseLastSubresult();
+        }
         getSubresults().add(subresult);
         if (subresult.tracingProfile == null) {
             subresult.tracingProfile = tracingProfile;
@@ -1165,13 +1177,13 @@ public class OperationResult
 
     @Override
     public OperationResult addParam(String name, ObjectQuery value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, renderQuery(value));
         return this;
     }
 
     @Override
     public OperationResult addParam(String name, ObjectDelta<?> value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, renderDelta(value));
         return this;
     }
 
@@ -1261,13 +1273,13 @@ public class OperationResult
 
     @Override
     public OperationResult addContext(String name, ObjectQuery value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, renderQuery(value));
         return this;
     }
 
     @Override
     public OperationResult addContext(String name, ObjectDelta<?> value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, renderDelta(value));
         return this;
     }
 
@@ -1357,11 +1369,11 @@ public class OperationResult
     }
 
     public void addReturn(String name, ObjectQuery value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, renderQuery(value));
     }
 
     public void addReturn(String name, ObjectDelta<?> value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, renderDelta(value));
     }
 
     public void addReturn(String name, String... values) {
@@ -1394,6 +1406,35 @@ public class OperationResult
         return Arrays.asList(values);
     }
 
+    /**
+     * Renders the query, or defers the rendering if it can be done safely: when the filter is immutable, we keep
+     * a shallow copy of the query (with its own paging) that cannot be changed by the caller. Queries are added on each
+     * (often very frequent) search, but the rendered value is seen only rarely.
+     */
+    private Collection<String> renderQuery(ObjectQuery value) {
+        if (value == null) {
+            return collectionize((String) null);
+        }
+        ObjectFilter filter = value.getFilter();
+        if (filter != null && !filter.isImmutable()) {
+            return collectionize(value.toString());
+        }
+        ObjectQuery snapshot = value.cloneEmpty(); // copies paging and other flags, not the filter
+        snapshot.setFilter(filter);
+        return new LazilyRenderedValue(snapshot);
+    }
+
+    /** Renders the delta, or defers the rendering if the delta is immutable (so it cannot change in the meanwhile). */
+    private Collection<String> renderDelta(ObjectDelta<?> value) {
+        if (value == null) {
+            return collectionize((String) null);
+        } else if (value.isImmutable()) {
+            return new LazilyRenderedValue(value);
+        } else {
+            return collectionize(value.toString());
+        }
+    }
+
     private Collection<String> stringifyCol(Collection<?> values) {
         if (values == null) {
             return null;
@@ -1975,6 +2016,31 @@ public class OperationResult
         }
     }
 
+    /**
+     * In "lean" mode, successful results that could be removed by {@link #cleanupResult()} are removed as soon as
+     * a next sibling is started, so long-running operations do not accumulate them. This is a lighter variant of cleanup:
+     * a result is removed only if it is preceded by another successful one. The parent status, as computed by any
+     * of computeStatus methods, stays therefore the same. Traced results are kept intact.
+     */
+    private void collapseLastSubresult() {
+        if (subresults == null || subresults.size() < 2 || isTraced()) {
+            return;
+        }
+        int lastIndex = subresults.size() - 1;
+        OperationResult last = subresults.get(lastIndex);
+        OperationResult previous = subresults.get(lastIndex - 1);
+        if (last != null && previous != null
+                && last.end != null && last.status == OperationResultStatus.SUCCESS && !last.isTraced()
+                && last.canCleanup(getPreserveDuringCleanup())
+                && previous.status == OperationResultStatus.SUCCESS) {
+            subresults.remove(lastIndex);
+        }
+    }
+
+    private static boolean isLean() {
+        return Boolean.TRUE.equals(getCurrentHandlingStrategy().isLean());
+    }
+
     private boolean canCleanup(OperationResultImportanceType preserveDuringCleanup) {
         return isLesserThan(importance, preserveDuringCleanup) && (status == OperationResultStatus.SUCCESS || status == OperationResultStatus.NOT_APPLICABLE);
     }
@@ -2225,6 +2291,62 @@ public class OperationResult
         }
     }
 
+    /**
+     * Single-valued param/context/return value that is rendered to string on the first access,
+     * e.g. when the result is serialized, dumped, or stored in a trace. The value must not change
+     * after it is added, see {@link #renderQuery(ObjectQuery)} and {@link #renderDelta(ObjectDelta)}.
+     *
+     * Serialized (and therefore also cloned) as a plain list with the rendered value.
+     */
+    private static class LazilyRenderedValue extends AbstractList<String> implements Serializable {
+
+        private transient Object value;
+        private transient String rendered;
+
+        private LazilyRenderedValue(@NotNull Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public synchronized String get(int index) {
+            if (index != 0) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: 1");
+            }
+            if (value != null) {
+                rendered = value.toString();
+                value = null; // no longer needed; the original object can be garbage collected
+            }
+            return rendered;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        }
+    }
+
+    /** Operation argument as presented to {@link OperationInvocationRecord}. Formatted only when really logged. */
+    private static class Argument {
+        private final String prefix;
+        private final String name;
+        private final Collection<String> values;
+
+        private Argument(String prefix, String name, Collection<String> values) {
+            this.prefix = prefix;
+            this.name = name;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return prefix + name + " => " + values;
+        }
+    }
+
     private static class OperationStatusCounter {
         private int shownRecords;        // how many actual records will be shown (after this wave of stripping)
         private int shownCount;            // how many entries will be shown (after this wave of stripping)
@@ -49,8 +49,10 @@ public interface OperationResultBuilder {
 
     OperationResultBuilder addParam(String name, PolyString value);
 
+    /** The query is rendered only when needed, so it should not be modified afterwards. */
     OperationResultBuilder addParam(String name, ObjectQuery value);
 
+    /** The delta is rendered only when needed, so it should not be modified afterwards. */
     OperationResultBuilder addParam(String name, ObjectDelta<?> value);
 
     OperationResultBuilder addParam(String name, String... values);
@@ -77,8 +79,10 @@ public interface OperationResultBuilder {
 
     OperationResultBuilder addContext(String name, PolyString value);
 
+    /** The query is rendered only when needed, so it should not be modified afterwards. */
     OperationResultBuilder addContext(String name, ObjectQuery value);
 
+    /** The delta is rendered only when needed, so it should not be modified afterwards. */
     OperationResultBuilder addContext(String name, ObjectDelta<?> value);
 
     OperationResultBuilder addContext(String name, String... values);
@@ -24,7 +24,15 @@ public enum ProvisioningOperation {
 
     ICF_SCRIPT("script"),
 
-    ICF_GET_LATEST_SYNC_TOKEN("getLatestSyncToken"), ICF_GET_SCHEMA("getSchema");
+    ICF_GET_LATEST_SYNC_TOKEN("getLatestSyncToken"), ICF_GET_SCHEMA("getSchema"),
+
+    /**
+     * Waiting times in pipelined search: the processing thread waiting for the connector to fetch an object,
+     * the processing thread waiting for an object to be converted, and the connector waiting for the processing
+     * thread to take objects from the (full) queue.
+     */
+    ICF_SEARCH_FETCH_WAIT("searchFetchWait"), ICF_SEARCH_CONVERT_WAIT("searchConvertWait"),
+    ICF_SEARCH_HANDLE_WAIT("searchHandleWait");
 
     @NotNull private final String name;
 
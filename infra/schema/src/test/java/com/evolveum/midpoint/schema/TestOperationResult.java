@@ -6,7 +6,10 @@
  */
 package com.evolveum.midpoint.schema;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 
 import static com.evolveum.midpoint.prism.util.PrismTestUtil.getPrismContext;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultImportanceType.MAJOR;
@@ -17,12 +20,14 @@ import java.util.List;
 import org.testng.annotations.Test;
 
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultHandlingStrategyType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 public class TestOperationResult extends AbstractSchemaTest {
 
@@ -208,6 +213,95 @@ public class TestOperationResult extends AbstractSchemaTest {
         checkResultConversion(root, true);
     }
 
+    @Test
+    public void testQueryParamIsRenderedWhenAdded() throws Exception {
+        given();
+        ObjectQuery query = getPrismContext().queryFor(UserType.class)
+                .item(UserType.F_NAME).eqPoly("jack")
+                .build();
+        String renderedBefore = query.toString();
+
+        when("query is added and then modified by the caller");
+        OperationResult root = new OperationResult("dummy");
+        OperationResult sub = root.subresult("sub")
+                .addParam(OperationResult.PARAM_QUERY, query)
+                .build();
+        query.setPaging(getPrismContext().queryFactory().createPaging(0, 10));
+        sub.recordSuccess();
+        root.computeStatus();
+        OperationResult other = new OperationResult("other");
+        other.addReturn("nullQuery", (ObjectQuery) null);
+
+        then("the param shows the query as it was when added");
+        assertFalse("Query was not modified", renderedBefore.equals(query.toString()));
+        assertEquals("Wrong rendered query", singletonList(renderedBefore),
+                sub.getParams().get(OperationResult.PARAM_QUERY));
+        assertEquals("Wrong rendered null query", singletonList(null), other.getReturn("nullQuery"));
+        assertEquals("Wrong cloned query", sub.getParams(), sub.clone().getParams());
+        checkResultConversion(root, true);
+    }
+
+    @Test
+    public void testFrozenQueryParamIsRenderedLater() throws Exception {
+        given();
+        ObjectQuery query = getPrismContext().queryFor(UserType.class)
+                .item(UserType.F_NAME).eqPoly("jack")
+                .build();
+        query.getFilter().freeze();
+        String renderedBefore = query.toString();
+
+        when("frozen query is added and then modified by the caller");
+        OperationResult root = new OperationResult("dummy");
+        OperationResult sub = root.subresult("sub")
+                .addParam(OperationResult.PARAM_QUERY, query)
+                .build();
+        query.setPaging(getPrismContext().queryFactory().createPaging(0, 10));
+        query.setFilter(null);
+        sub.recordSuccess();
+        root.computeStatus();
+
+        then("the param shows the query as it was when added");
+        assertEquals("Wrong rendered query", singletonList(renderedBefore),
+                sub.getParams().get(OperationResult.PARAM_QUERY));
+        assertEquals("Wrong cloned query", sub.getParams(), sub.clone().getParams());
+        checkResultConversion(root, true);
+    }
+
+    @Test
+    public void testLeanMode() throws Exception {
+        given();
+        OperationResult.applyOperationResultHandlingStrategy(
+                singletonList(new OperationResultHandlingStrategyType(getPrismContext())
+                        .name(LOCAL_1)
+                        .lean(true)), null);
+        OperationResult.setThreadLocalHandlingStrategy(LOCAL_1);
+        try {
+            when();
+            OperationResult root = new OperationResult("dummy");
+            for (int i = 0; i < 100; i++) {
+                OperationResult minor = root.createMinorSubresult("minor");
+                if (i == 50) {
+                    minor.recordWarning("Warning");
+                } else {
+                    minor.recordSuccess();
+                }
+            }
+            OperationResult normal = root.createSubresult("normal");
+            normal.recordSuccess();
+            root.computeStatus();
+            System.out.println("Lean result:\n" + root.debugDump());
+
+            then();
+            // the first success, the warning, the first success after it, and the normal one
+            assertEquals("Wrong # of subresults", 4, root.getSubresults().size());
+            assertEquals("Wrong status of subresult", OperationResultStatus.WARNING, root.getSubresults().get(1).getStatus());
+            assertEquals("Wrong overall status", OperationResultStatus.WARNING, root.getStatus());
+        } finally {
+            OperationResult.applyOperationResultHandlingStrategy(emptyList(), null);
+            OperationResult.setThreadLocalHandlingStrategy(null);
+        }
+    }
+
     private void checkResultConversion(OperationResult result, boolean assertEquals) throws SchemaException {
         when();
         OperationResultType resultType = result.createOperationResultType();
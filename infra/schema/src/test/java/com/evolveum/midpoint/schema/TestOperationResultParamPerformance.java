@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.schema;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Compares the cost of adding a query param to the operation result when it is rendered immediately (mutable filter)
+ * and when the rendering is deferred (frozen filter). Not a part of the test suite, to be run manually.
+ */
+public class TestOperationResultParamPerformance extends AbstractSchemaTest {
+
+    private static final long ITERATIONS = 1000000;
+
+    @Test
+    public void queryParamPerformance() {
+        ObjectQuery mutableQuery = createQuery();
+        ObjectQuery frozenQuery = createQuery();
+        frozenQuery.getFilter().freeze();
+
+        for (long i = 0; i < 100000; i++) {     // warm-up
+            addQueryParam(mutableQuery);
+            addQueryParam(frozenQuery);
+        }
+
+        long startMutable = System.currentTimeMillis();
+        for (long i = 0; i < ITERATIONS; i++) {
+            addQueryParam(mutableQuery);
+        }
+        long mutable = System.currentTimeMillis() - startMutable;
+        System.out.println("Rendered immediately: " + mutable + " ms = " + (mutable * 1000000) / ITERATIONS + " ns per iteration");
+
+        long startFrozen = System.currentTimeMillis();
+        for (long i = 0; i < ITERATIONS; i++) {
+            addQueryParam(frozenQuery);
+        }
+        long frozen = System.currentTimeMillis() - startFrozen;
+        System.out.println("Deferred: " + frozen + " ms = " + (frozen * 1000000) / ITERATIONS + " ns per iteration");
+    }
+
+    private ObjectQuery createQuery() {
+        return PrismTestUtil.getPrismContext().queryFor(UserType.class)
+                .item(UserType.F_NAME).eqPoly("jack")
+                .and().item(UserType.F_EMPLOYEE_NUMBER).eq("123")
+                .build();
+    }
+
+    private void addQueryParam(ObjectQuery query) {
+        OperationResult result = new OperationResult("dummy");
+        result.addParam(OperationResult.PARAM_QUERY, query);
+        result.recordSuccess();
+    }
+}
@@ -10,19 +10,28 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.PrismPropertyDefinition;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.util.DOMUtil;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AdminGuiConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CredentialsType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.PasswordType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import org.testng.annotations.Test;
 
 import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
 
 import static com.evolveum.midpoint.prism.util.PrismTestUtil.getPrismContext;
 
 public class TestDeltaPerformance extends AbstractSchemaPerformanceTest {
 
+    private static final int MANY_VALUES = 5000;
+
     @Test
     public void test100ApplyNameDelta() throws Exception {
         PrismObject<UserType> jack = getJack();
@@ -142,4 +151,55 @@ public class TestDeltaPerformance extends AbstractSchemaPerformanceTest {
                 "Diffs original with modified (30 items changed)",
                 () -> jack2.diff(jack));
     }
+
+    /**
+     * Values of large multi-valued items are looked up using the value index in ItemImpl,
+     * so these should scale linearly with the number of values.
+     */
+    @Test
+    public void test130ApplyDeltaAddingManyReferences() throws Exception {
+        PrismObject<UserType> jack = getJack();
+        List<ObjectReferenceType> orgRefs = new ArrayList<>();
+        for (int i = 0; i < MANY_VALUES; i++) {
+            orgRefs.add(new ObjectReferenceType().oid("org-" + i).type(OrgType.COMPLEX_TYPE));
+        }
+        ObjectDelta<UserType> delta = getPrismContext().deltaFor(UserType.class)
+                .item(UserType.F_PARENT_ORG_REF).addRealValues(orgRefs)
+                .asObjectDeltaCast(jack.getOid());
+        measure("delta.applyTo.addManyRefs",
+                "Applies delta adding " + MANY_VALUES + " parentOrgRef values to jack",
+                () -> { delta.applyTo(jack.clone()); return true; });
+
+        PrismObject<UserType> jack2 = jack.clone();
+        delta.applyTo(jack2);
+        delta.applyTo(jack2);
+        assertEquals("Wrong # of parentOrgRef values", MANY_VALUES, jack2.asObjectable().getParentOrgRef().size());
+
+        ObjectDelta<UserType> deleteDelta = getPrismContext().deltaFor(UserType.class)
+                .item(UserType.F_PARENT_ORG_REF).deleteRealValues(orgRefs)
+                .asObjectDeltaCast(jack.getOid());
+        measure("delta.applyTo.deleteManyRefs",
+                "Applies delta deleting " + MANY_VALUES + " parentOrgRef values from jack",
+                () -> { deleteDelta.applyTo(jack2.clone()); return true; });
+    }
+
+    @Test
+    public void test132ApplyDeltaAddingManyPolyStrings() throws Exception {
+        PrismObject<UserType> jack = getJack();
+        List<PolyString> organizations = new ArrayList<>();
+        for (int i = 0; i < MANY_VALUES; i++) {
+            organizations.add(new PolyString("org-" + i));
+        }
+        ObjectDelta<UserType> delta = getPrismContext().deltaFor(UserType.class)
+                .item(UserType.F_ORGANIZATION).addRealValues(organizations)
+                .asObjectDeltaCast(jack.getOid());
+        measure("delta.applyTo.addManyPolyStrings",
+                "Applies delta adding " + MANY_VALUES + " organization values to jack",
+                () -> { delta.applyTo(jack.clone()); return true; });
+
+        PrismObject<UserType> jack2 = jack.clone();
+        delta.applyTo(jack2);
+        delta.applyTo(jack2);
+        assertEquals("Wrong # of organization values", MANY_VALUES, jack2.asObjectable().getOrganization().size());
+    }
 }
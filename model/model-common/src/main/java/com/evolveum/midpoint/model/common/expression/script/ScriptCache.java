@@ -6,59 +6,110 @@
  */
 package com.evolveum.midpoint.model.common.expression.script;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.schema.expression.ExpressionProfile;
 
 /**
  * Cache for compiled scripts and interpreters, aware of expression profiles.
  *
+ * It is shared by all threads. Reads do not block each other; the number of compiled scripts kept
+ * is limited, and the least recently used ones are evicted first.
+ *
  * @param <C> compiled code
  * @author Radovan Semancik
  */
 public class ScriptCache<I,C> {
 
-    private final Map<String, I> interpreterCache = new HashMap<>();
-    private final Map<String, Map<String, C>> codeCache = new HashMap<>();
+    public static final int DEFAULT_MAX_CODE_CACHE_SIZE = 10000;
+
+    /** Key used for the null (i.e. default) profile, as concurrent maps do not support null keys. */
+    private static final String NULL_PROFILE_KEY = "";
+
+    private final Map<String, I> interpreterCache = new ConcurrentHashMap<>();
+    private final Cache<CodeKey, C> codeCache;
+
+    public ScriptCache() {
+        this(DEFAULT_MAX_CODE_CACHE_SIZE);
+    }
+
+    public ScriptCache(int maxCodeCacheSize) {
+        codeCache = CacheBuilder.newBuilder()
+                .maximumSize(maxCodeCacheSize)
+                .build();
+    }
 
-    public synchronized I getInterpreter(ExpressionProfile profile) {
+    public I getInterpreter(ExpressionProfile profile) {
         return interpreterCache.get(getProfileKey(profile));
     }
 
-    public synchronized void putInterpreter(ExpressionProfile profile, I interpreter) {
+    public void putInterpreter(ExpressionProfile profile, I interpreter) {
         interpreterCache.put(getProfileKey(profile), interpreter);
     }
 
-    public synchronized C getCode(ExpressionProfile profile, String sourceCodeKey) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.get(profileKey);
-        if (profileCache == null) {
-            return null;
-        }
-        return profileCache.get(sourceCodeKey);
+    public C getCode(ExpressionProfile profile, String sourceCodeKey) {
+        return codeCache.getIfPresent(new CodeKey(getProfileKey(profile), sourceCodeKey));
     }
 
-    public synchronized void putCode(ExpressionProfile profile, String sourceCodeKey, C compiledCode) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.get(profileKey);
-        if (profileCache == null) {
-            profileCache = new HashMap<>();
-            codeCache.put(profileKey, profileCache);
-        }
-        profileCache.put(sourceCodeKey, compiledCode);
+    public void putCode(ExpressionProfile profile, String sourceCodeKey, C compiledCode) {
+        codeCache.put(new CodeKey(getProfileKey(profile), sourceCodeKey), compiledCode);
     }
 
+    @NotNull
     private String getProfileKey(ExpressionProfile profile) {
         if (profile == null) {
-            return null;
+            return NULL_PROFILE_KEY;
         } else {
+            // Identifier is never empty, so it cannot clash with the null profile key.
             return profile.getIdentifier();
         }
     }
 
-    public synchronized void clear() {
-        codeCache.clear();
+    public void clear() {
+        codeCache.invalidateAll();
     }
 
+    /**
+     * Profile and the source code. The source is compared as a whole, so the (cached) string hash code
+     * is used only to locate the entry.
+     */
+    private static class CodeKey {
+        @NotNull private final String profileKey;
+        @NotNull private final String source;
+        private final int hash;
+
+        private CodeKey(@NotNull String profileKey, @NotNull String source) {
+            this.profileKey = profileKey;
+            this.source = source;
+            this.hash = 31 * profileKey.hashCode() + source.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CodeKey)) {
+                return false;
+            }
+            CodeKey other = (CodeKey) o;
+            return hash == other.hash && profileKey.equals(other.profileKey) && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "CodeKey{profile='" + profileKey + "', source hash=" + Objects.hashCode(source) + "}";
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Set of cache invalidation events to be sent to other cluster nodes in a single message.
+ *
+ * Events are deduplicated: the same (type, OID) is kept only once, and object-level events are
+ * subsumed by type-level ones, which are subsumed by global (type = null) invalidation.
+ * If there are too many objects of the same type, they are replaced by the invalidation of the whole type.
+ *
+ * Serialized form is gzipped UTF-8 text with one event per line: `*` for global invalidation,
+ * `type` for invalidation of the whole type, and `type/oid` for invalidation of a single object
+ * (type being the REST type name, just like in the single-event REST path).
+ *
+ * Not thread safe.
+ */
+public class CacheInvalidationBatch {
+
+    private static final String ALL = "*";
+
+    private final int maxObjectsPerType;
+
+    private boolean global;
+
+    /** Object OIDs per type. If the OID set is null, the whole type is to be invalidated. */
+    @NotNull private final Map<Class<? extends ObjectType>, Set<String>> oidsByType = new LinkedHashMap<>();
+
+    private int size;
+
+    public CacheInvalidationBatch(int maxObjectsPerType) {
+        this.maxObjectsPerType = maxObjectsPerType;
+    }
+
+    public void add(Class<? extends ObjectType> type, String oid) {
+        if (global) {
+            return;
+        }
+        if (type == null) {
+            global = true;
+            oidsByType.clear();
+        } else if (oid == null) {
+            oidsByType.put(type, null);
+        } else if (!oidsByType.containsKey(type)) {
+            Set<String> oids = new LinkedHashSet<>();
+            oids.add(oid);
+            oidsByType.put(type, oids);
+        } else {
+            Set<String> oids = oidsByType.get(type);
+            if (oids != null && oids.add(oid) && oids.size() > maxObjectsPerType) {
+                oidsByType.put(type, null); // escalating to the type-level invalidation
+            }
+        }
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return !global && oidsByType.isEmpty();
+    }
+
+    /** Number of events added to this batch, including the deduplicated ones. */
+    public int getEventsAdded() {
+        return size;
+    }
+
+    public void dispatch(@NotNull CacheDispatcher cacheDispatcher) {
+        // clusterwide is false: we got this from another node so we don't need to redistribute it
+        if (global) {
+            cacheDispatcher.dispatchInvalidation(null, null, false, new CacheInvalidationContext(true, null));
+            return;
+        }
+        oidsByType.forEach((type, oids) -> {
+            if (oids == null) {
+                cacheDispatcher.dispatchInvalidation(type, null, false, new CacheInvalidationContext(true, null));
+            } else {
+                for (String oid : oids) {
+                    cacheDispatcher.dispatchInvalidation(type, oid, false, new CacheInvalidationContext(true, null));
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            if (global) {
+                writer.write(ALL + "\n");
+            } else {
+                for (Map.Entry<Class<? extends ObjectType>, Set<String>> entry : oidsByType.entrySet()) {
+                    String restType = ObjectTypes.getRestTypeFromClass(entry.getKey());
+                    if (entry.getValue() == null) {
+                        writer.write(restType + "\n");
+                    } else {
+                        for (String oid : entry.getValue()) {
+                            writer.write(restType + "/" + oid + "\n");
+                        }
+                    }
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @NotNull
+    public static CacheInvalidationBatch parse(@NotNull byte[] serialized) throws IOException {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(Integer.MAX_VALUE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(serialized)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (ALL.equals(line)) {
+                    batch.add(null, null);
+                } else {
+                    int slash = line.indexOf('/');
+                    String restType = slash >= 0 ? line.substring(0, slash) : line;
+                    String oid = slash >= 0 ? line.substring(slash + 1) : null;
+                    batch.add(ObjectTypes.getClassFromRestType(restType), oid);
+                }
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationBatch{" +
+                "global=" + global +
+                ", types=" + oidsByType.size() +
+                ", eventsAdded=" + size +
+                '}';
+    }
+}
@@ -6,9 +6,15 @@
  */
 package com.evolveum.midpoint.model.impl;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.apache.commons.configuration2.Configuration;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -16,6 +22,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.model.impl.security.NodeAuthenticationToken;
 import com.evolveum.midpoint.repo.api.CacheDispatcher;
 import com.evolveum.midpoint.repo.api.CacheListener;
@@ -28,20 +35,69 @@ import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
+/**
+ * Distributes cache invalidation events to other cluster nodes.
+ *
+ * By default, each event is sent to each node synchronously, in the thread that caused the invalidation.
+ * If `maxStaleness` is configured (in milliseconds) in `midpoint.clusterCacheInvalidation` section of
+ * the configuration, events are collected and sent asynchronously in batches, at most after that time.
+ * Batches are deduplicated and too many objects of the same type are escalated to the invalidation
+ * of the whole type (see `maxObjectsPerType`). Batches are sent one after another by a single thread,
+ * so the invalidations of the same object are delivered to each node in the order they were made.
+ */
 @Component
 public class ClusterCacheListener implements CacheListener {
 
     private static final Trace LOGGER = TraceManager.getTrace(ClusterCacheListener.class);
 
+    private static final String CONFIG_MAX_STALENESS = "maxStaleness";
+    private static final String CONFIG_MAX_OBJECTS_PER_TYPE = "maxObjectsPerType";
+    private static final int DEFAULT_MAX_OBJECTS_PER_TYPE = 1000;
+
     @Autowired private TaskManager taskManager;
     @Autowired private CacheDispatcher cacheDispatcher;
     @Autowired private ClusterExecutionHelper clusterExecutionHelper;
+    @Autowired private MidpointConfiguration midpointConfiguration;
+
+    private int maxObjectsPerType;
+
+    /** Events collected for the next asynchronous flush; guarded by this object. Null if sending synchronously. */
+    private CacheInvalidationBatch pendingBatch;
+
+    private ScheduledExecutorService flushExecutor;
 
     @PostConstruct
     public void addListener() {
+        Configuration config = midpointConfiguration.getConfiguration(MidpointConfiguration.CLUSTER_CACHE_INVALIDATION_CONFIGURATION);
+        long maxStaleness = config.getLong(CONFIG_MAX_STALENESS, 0);
+        maxObjectsPerType = config.getInt(CONFIG_MAX_OBJECTS_PER_TYPE, DEFAULT_MAX_OBJECTS_PER_TYPE);
+        if (maxStaleness > 0) {
+            pendingBatch = new CacheInvalidationBatch(maxObjectsPerType);
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Cluster cache invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushExecutor.scheduleWithFixedDelay(this::flush, maxStaleness, maxStaleness, TimeUnit.MILLISECONDS);
+            LOGGER.info("Cluster cache invalidation events will be sent asynchronously, max staleness = {} ms", maxStaleness);
+        }
         cacheDispatcher.registerCacheListener(this);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                if (flushExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Override
     public <O extends ObjectType> void invalidate(Class<O> type, String oid, boolean clusterwide,
             CacheInvalidationContext context) {
@@ -50,6 +106,13 @@ public class ClusterCacheListener implements CacheListener {
             return;
         }
 
+        if (flushExecutor != null) {
+            synchronized (this) {
+                pendingBatch.add(type, oid);
+            }
+            return;
+        }
+
         Task task = taskManager.createTaskInstance("invalidate");
         OperationResult result = task.getResult();
 
@@ -72,6 +135,43 @@ public class ClusterCacheListener implements CacheListener {
         }, null, "cache invalidation", result);
     }
 
+    /** Sends collected events to other nodes. Called only from the flush thread (or after it was stopped). */
+    private void flush() {
+        CacheInvalidationBatch batch;
+        synchronized (this) {
+            if (pendingBatch.isEmpty()) {
+                return;
+            }
+            batch = pendingBatch;
+            pendingBatch = new CacheInvalidationBatch(maxObjectsPerType);
+        }
+
+        try {
+            byte[] message = batch.serialize();
+            LOGGER.trace("Sending cache invalidation batch {} ({} bytes)", batch, message.length);
+
+            Task task = taskManager.createTaskInstance("invalidateBatch");
+            OperationResult result = task.getResult();
+            clusterExecutionHelper.execute((client, node, result1) -> {
+                client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+                client.type(MediaType.APPLICATION_OCTET_STREAM);
+                Response response = client.post(message);
+                Response.StatusType statusInfo = response.getStatusInfo();
+                if (statusInfo.getFamily() != Response.Status.Family.SUCCESSFUL) {
+                    LOGGER.warn("Cluster-wide cache clearance (batch) finished on {} with status {}, {}", node.getNodeIdentifier(),
+                            statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                } else {
+                    LOGGER.debug("Cluster-wide cache clearance (batch) finished on {} with status {}, {}", node.getNodeIdentifier(),
+                            statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                }
+                response.close();
+            }, null, "cache invalidation", result);
+        } catch (Throwable t) {
+            // The flush thread must survive; entries on other nodes will expire eventually.
+            LOGGER.error("Couldn't send cache invalidation batch {}: {}", batch, t.getMessage(), t);
+        }
+    }
+
     @NotNull
     private <O extends ObjectType> String getInvalidationRestPath(Class<O> type, String oid) {
         StringBuilder sb = new StringBuilder(ClusterServiceConsts.EVENT_INVALIDATION);
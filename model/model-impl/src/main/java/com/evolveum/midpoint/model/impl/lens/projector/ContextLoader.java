@@ -12,8 +12,11 @@ import static com.evolveum.midpoint.schema.result.OperationResult.DEFAULT;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.evolveum.midpoint.model.impl.lens.projector.ProjectionShadowPrefetcher.PrefetchedShadows;
 import com.evolveum.midpoint.model.impl.lens.projector.util.ProcessorExecution;
 import com.evolveum.midpoint.model.impl.lens.projector.util.ProcessorMethod;
 import com.evolveum.midpoint.prism.*;
@@ -93,6 +96,7 @@ public class ContextLoader implements ProjectorProcessor {
     @Autowired private ClockworkMedic medic;
     @Autowired private RelationRegistry relationRegistry;
     @Autowired private SchemaService schemaService;
+    @Autowired private ProjectionShadowPrefetcher shadowPrefetcher;
 
     private static final Trace LOGGER = TraceManager.getTrace(ContextLoader.class);
 
@@ -172,19 +176,24 @@ public class ContextLoader implements ProjectorProcessor {
 
             context.checkConsistenceIfNeeded();
 
-            for (LensProjectionContext projectionContext: context.getProjectionContexts()) {
-                context.checkAbortRequested();
-                // TODO: not perfect. Practically, we want loadProjection operation to contain all the projection
-                //  results. But for that we would need code restructure.
-                OperationResult projectionResult = result.createMinorSubresult(OPERATION_LOAD_PROJECTION);
-                try {
-                    finishLoadOfProjectionContext(context, projectionContext, task, projectionResult);
-                } catch (Throwable e) {
-                    projectionResult.recordFatalError(e);
-                    throw e;
-                } finally {
-                    projectionResult.computeStatusIfUnknown();
+            PrefetchedShadows prefetchedShadows = prefetchProjectionShadows(context, task, result);
+            try {
+                for (LensProjectionContext projectionContext: context.getProjectionContexts()) {
+                    context.checkAbortRequested();
+                    // TODO: not perfect. Practically, we want loadProjection operation to contain all the projection
+                    //  results. But for that we would need code restructure.
+                    OperationResult projectionResult = result.createMinorSubresult(OPERATION_LOAD_PROJECTION);
+                    try {
+                        finishLoadOfProjectionContext(context, projectionContext, prefetchedShadows, task, projectionResult);
+                    } catch (Throwable e) {
+                        projectionResult.recordFatalError(e);
+                        throw e;
+                    } finally {
+                        projectionResult.computeStatusIfUnknown();
+                    }
                 }
+            } finally {
+                prefetchedShadows.discard();
             }
 
             context.checkConsistenceIfNeeded();
@@ -263,7 +272,7 @@ public class ContextLoader implements ProjectorProcessor {
             CommunicationException, SchemaException, ConfigurationException, SecurityViolationException,
             ExpressionEvaluationException {
         preprocessProjectionContext(context, projectionContext, task, result);
-        finishLoadOfProjectionContext(context, projectionContext, task, result);
+        finishLoadOfProjectionContext(context, projectionContext, null, task, result);
     }
 
     /**
@@ -1228,8 +1237,49 @@ public class ContextLoader implements ProjectorProcessor {
      * Check reconcile flag in account sync context and set accountOld
      * variable if it's not set (from provisioning), load resource (if not set already), etc.
      */
+    /**
+     * Starts concurrent fetching of shadows that {@link #finishLoadOfProjectionContext(LensContext, LensProjectionContext,
+     * PrefetchedShadows, Task, OperationResult)} is going to fetch from the resources. The conditions here must be
+     * kept in sync with that method.
+     *
+     * Shadows that are to be read from the repository only are not prefetched; there is not much to gain there.
+     */
+    @NotNull
+    private <F extends ObjectType> PrefetchedShadows prefetchProjectionShadows(LensContext<F> context, Task task,
+            OperationResult result) {
+        if (!shadowPrefetcher.isEnabled() || result.isTraced()) {
+            // Traced operations should be executed just as usual.
+            return new PrefetchedShadows(task);
+        }
+        Map<LensProjectionContext, Collection<SelectorOptions<GetOperationOptions>>> requests = new LinkedHashMap<>();
+        for (LensProjectionContext projContext : context.getProjectionContexts()) {
+            if (projContext.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN
+                    || projContext.getOid() == null
+                    || projContext.getResourceOid() == null
+                    || projContext.isAdd() && !projContext.isCompleted()) {
+                continue;
+            }
+            setReconciliationIfVolatile(projContext);
+            boolean toBeLoaded = projContext.getObjectCurrent() == null
+                    || projContext.isDoReconciliation() && !projContext.isFullShadow()
+                    || needToReload(context, projContext);
+            if (!toBeLoaded) {
+                continue;
+            }
+            Collection<SelectorOptions<GetOperationOptions>> options = createProjectionLoadingOptions(projContext);
+            if (!GetOperationOptions.isNoFetch(SelectorOptions.findRootOptions(options))) {
+                requests.put(projContext, options);
+            }
+        }
+        return shadowPrefetcher.prefetch(requests, task);
+    }
+
+    /**
+     * @param prefetchedShadows Shadows fetched in advance by {@link ProjectionShadowPrefetcher}, if any.
+     */
     private <F extends ObjectType> void finishLoadOfProjectionContext(LensContext<F> context,
-            LensProjectionContext projContext, Task task, OperationResult result)
+            LensProjectionContext projContext, @Nullable PrefetchedShadows prefetchedShadows, Task task,
+            OperationResult result)
             throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException,
             SecurityViolationException, ExpressionEvaluationException {
 
@@ -1243,12 +1293,7 @@ public class ContextLoader implements ProjectorProcessor {
         // method in dependency processor (it checks objectCurrent, among other things). So let's be conservative
         // and load also completed projections.
 
-        // MID-2436 (volatile objects) - as a quick but effective hack, we set reconciliation:=TRUE for volatile accounts
-        ResourceObjectTypeDefinitionType objectDefinition = projContext.getResourceObjectTypeDefinitionType();
-        if (objectDefinition != null && objectDefinition.getVolatility() == ResourceObjectVolatilityType.UNPREDICTABLE && !projContext.isDoReconciliation()) {
-            LOGGER.trace("Resource object volatility is UNPREDICTABLE => setting doReconciliation to TRUE for {}", projContext.getResourceShadowDiscriminator());
-            projContext.setDoReconciliation(true);
-        }
+        setReconciliationIfVolatile(projContext);
 
         // Remember OID before the object could be wiped
         String projectionObjectOid = projContext.getOid();
@@ -1279,8 +1324,13 @@ public class ContextLoader implements ProjectorProcessor {
                             projContext.getHumanReadableName(), options);
 
                     try {
-                        PrismObject<ShadowType> objectOld = provisioningService.getObject(
-                                projContext.getObjectTypeClass(), projectionObjectOid, options, task, result);
+                        PrismObject<ShadowType> objectOld;
+                        if (prefetchedShadows != null && prefetchedShadows.contains(projContext, projectionObjectOid)) {
+                            objectOld = prefetchedShadows.get(projContext, result);
+                        } else {
+                            objectOld = provisioningService.getObject(
+                                    projContext.getObjectTypeClass(), projectionObjectOid, options, task, result);
+                        }
                         GetOperationOptions rootOptions = SelectorOptions.findRootOptions(options);
                         if (!GetOperationOptions.isNoFetch(rootOptions) && !GetOperationOptions.isRaw(rootOptions)) {
                             LOGGER.trace("Full shadow loaded for {}:\n{}", projContext.getHumanReadableName(), objectOld.debugDumpLazily(1));
@@ -1433,6 +1483,17 @@ public class ContextLoader implements ProjectorProcessor {
         setPrimaryDeltaOldValue(projContext);
     }
 
+    /**
+     * MID-2436 (volatile objects) - as a quick but effective hack, we set reconciliation:=TRUE for volatile accounts
+     */
+    private void setReconciliationIfVolatile(LensProjectionContext projContext) {
+        ResourceObjectTypeDefinitionType objectDefinition = projContext.getResourceObjectTypeDefinitionType();
+        if (objectDefinition != null && objectDefinition.getVolatility() == ResourceObjectVolatilityType.UNPREDICTABLE && !projContext.isDoReconciliation()) {
+            LOGGER.trace("Resource object volatility is UNPREDICTABLE => setting doReconciliation to TRUE for {}", projContext.getResourceShadowDiscriminator());
+            projContext.setDoReconciliation(true);
+        }
+    }
+
     private Collection<SelectorOptions<GetOperationOptions>> createProjectionLoadingOptions(LensProjectionContext projContext) {
         GetOperationOptionsBuilder builder = schemaService.getOperationOptionsBuilder()
                 .pointInTime(PointInTimeType.FUTURE)
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.lens.projector;
+
+import static com.evolveum.midpoint.prism.polystring.PolyString.getOrig;
+import static com.evolveum.midpoint.util.MiscUtil.or0;
+
+import java.util.*;
+import java.util.concurrent.*;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.provisioning.api.ProvisioningService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.ProvisioningOperation;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Fetches shadows of projections on different resources concurrently.
+ *
+ * Used by {@link ContextLoader} for projections that are to be fetched from their resources (typically when reconciling):
+ * instead of waiting for the resources one after another, the shadows are fetched in a bounded thread pool.
+ * Projections on the same resource are fetched sequentially, in their original order, so a resource is never
+ * accessed by more than one thread on behalf of a single clockwork run.
+ *
+ * The fetched objects (or exceptions) together with their operation results are picked up by the context loader
+ * in the clockwork thread, in the usual order. So the projection contexts are never touched by other threads,
+ * and the operation result tree is the same as if the projections were loaded sequentially.
+ *
+ * Tasks are not thread-safe, so the fetches for each resource are executed under a transient subtask of the caller's
+ * task (with the same owner, channel and execution environment). Provisioning statistics of these fetches (i.e. connector
+ * operations) are merged into the caller's task by the clockwork thread, when all the fetches on the resource are done.
+ *
+ * A clockwork can be run also in a pool thread, e.g. when a fetch discovers a change that is synchronized right away.
+ * Nothing is prefetched there: waiting for other pool threads could exhaust the pool and deadlock. The projections
+ * are then fetched by the caller thread, as usual.
+ *
+ * Disabled by default. It is enabled by setting `midpoint.projectionLoading.threads` configuration property
+ * to a positive value.
+ */
+@Component
+public class ProjectionShadowPrefetcher {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ProjectionShadowPrefetcher.class);
+
+    private static final String OP_FETCH = ProjectionShadowPrefetcher.class.getName() + ".fetch";
+
+    private static final String CONFIG_THREADS = "threads";
+
+    /** Set in pool threads while fetching. */
+    private static final ThreadLocal<Boolean> IN_POOL_THREAD = new ThreadLocal<>();
+
+    @Autowired private MidpointConfiguration midpointConfiguration;
+    @Autowired private ProvisioningService provisioningService;
+
+    /** Null if the prefetching is disabled. */
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void initialize() {
+        Configuration config = midpointConfiguration.getConfiguration(MidpointConfiguration.PROJECTION_LOADING_CONFIGURATION);
+        int threads = config.getInt(CONFIG_THREADS, 0);
+        if (threads > 0) {
+            start(threads);
+        }
+    }
+
+    /** Creates the thread pool. Separate from {@link #initialize()} to be usable in tests. */
+    void start(int threads) {
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Projection loading");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("Projections on different resources will be loaded concurrently using {} thread(s)", threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    boolean isEnabled() {
+        return executor != null && !Boolean.TRUE.equals(IN_POOL_THREAD.get());
+    }
+
+    /**
+     * Starts fetching the shadows for given projection contexts, using given options.
+     * Does nothing (i.e. returns empty prefetch) if there are not at least two resources involved,
+     * or if called from a pool thread.
+     */
+    @NotNull
+    PrefetchedShadows prefetch(@NotNull Map<LensProjectionContext, Collection<SelectorOptions<GetOperationOptions>>> requests,
+            @NotNull Task task) {
+        if (!isEnabled()) {
+            return new PrefetchedShadows(task);
+        }
+        Set<String> resourceOids = new HashSet<>();
+        requests.keySet().forEach(projCtx -> resourceOids.add(projCtx.getResourceOid()));
+        if (resourceOids.size() < 2) {
+            return new PrefetchedShadows(task);
+        }
+
+        PrefetchedShadows prefetched = new PrefetchedShadows(task);
+        Map<String, ResourceFetches> fetchesByResource = new LinkedHashMap<>();
+        requests.forEach((projCtx, options) -> {
+            ResourceFetches resourceFetches = fetchesByResource.computeIfAbsent(
+                    projCtx.getResourceOid(), k -> new ResourceFetches(createSubtask(task)));
+            Fetch fetch = new Fetch(projCtx.getOid(), options, resourceFetches);
+            resourceFetches.fetches.add(fetch);
+            prefetched.fetches.put(projCtx, fetch);
+        });
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        for (ResourceFetches resourceFetches : fetchesByResource.values()) {
+            resourceFetches.job = executor.submit(
+                    () -> fetchAll(resourceFetches.fetches, securityContext, resourceFetches.subtask));
+            prefetched.resourceFetches.add(resourceFetches);
+        }
+        LOGGER.trace("Started fetching {} shadow(s) on {} resource(s)", requests.size(), fetchesByResource.size());
+        return prefetched;
+    }
+
+    /** Executed in the caller thread, as the task may not be accessed concurrently. */
+    private Task createSubtask(Task task) {
+        Task subtask = task.createSubtask();
+        TaskExecutionEnvironmentType executionEnvironment = task.getExecutionEnvironment();
+        if (executionEnvironment != null) {
+            subtask.setExecutionEnvironment(executionEnvironment.clone());
+        }
+        return subtask;
+    }
+
+    /** Executed in a pool thread. */
+    private void fetchAll(List<Fetch> fetches, SecurityContext securityContext, Task task) {
+        SecurityContextHolder.setContext(securityContext);
+        IN_POOL_THREAD.set(true);
+        try {
+            for (Fetch fetch : fetches) {
+                if (Thread.currentThread().isInterrupted()) {
+                    fetch.outcome.cancel(false);
+                    continue;
+                }
+                // Operation results are not thread-safe. So each fetch gets its own one;
+                // its content is attached to the real result by the clockwork thread.
+                OperationResult result = new OperationResult(OP_FETCH);
+                try {
+                    PrismObject<ShadowType> shadow = fetchShadow(fetch.oid, fetch.options, task, result);
+                    fetch.outcome.complete(new FetchOutcome(shadow, null, result));
+                } catch (Throwable t) {
+                    fetch.outcome.complete(new FetchOutcome(null, t, result));
+                }
+            }
+        } finally {
+            IN_POOL_THREAD.remove();
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    /** Executed in a pool thread. Can be overridden in tests. */
+    PrismObject<ShadowType> fetchShadow(String oid, Collection<SelectorOptions<GetOperationOptions>> options, Task task,
+            OperationResult result) throws CommonException {
+        return provisioningService.getObject(ShadowType.class, oid, options, task, result);
+    }
+
+    /**
+     * Merges provisioning statistics of the subtask into the caller's task. Executed in the clockwork thread,
+     * after all the fetches using the subtask are done.
+     *
+     * Each operation is recorded separately, so the minimum and maximum times are kept; the total time is the same.
+     */
+    private static void mergeStatistics(@NotNull Task subtask, @NotNull Task task) {
+        OperationStatsType stats = subtask.getAggregatedLiveOperationStats();
+        EnvironmentalPerformanceInformationType environmental =
+                stats != null ? stats.getEnvironmentalPerformanceInformation() : null;
+        ProvisioningStatisticsType provisioning = environmental != null ? environmental.getProvisioningStatistics() : null;
+        if (provisioning == null) {
+            return;
+        }
+        for (ProvisioningStatisticsEntryType entry : provisioning.getEntry()) {
+            ObjectReferenceType resourceRef = entry.getResourceRef();
+            String resourceOid = resourceRef != null ? resourceRef.getOid() : null;
+            String resourceName = resourceRef != null ? getOrig(resourceRef.getTargetName()) : null;
+            for (ProvisioningStatisticsOperationEntryType operationEntry : entry.getOperation()) {
+                ProvisioningOperation operation = ProvisioningOperation.find(operationEntry.getOperation());
+                if (operation == null) {
+                    LOGGER.debug("Unknown provisioning operation {}, not merging its statistics", operationEntry.getOperation());
+                    continue;
+                }
+                boolean success = operationEntry.getStatus() == OperationResultStatusType.SUCCESS;
+                int count = or0(operationEntry.getCount());
+                long total = or0(operationEntry.getTotalTime());
+                Long min = operationEntry.getMinTime();
+                Long max = operationEntry.getMaxTime();
+                if (count <= 1 || min == null || max == null) {
+                    task.recordProvisioningOperation(resourceOid, resourceName, entry.getObjectClass(), operation,
+                            success, count, total);
+                    continue;
+                }
+                task.recordProvisioningOperation(resourceOid, resourceName, entry.getObjectClass(), operation,
+                        success, 1, min);
+                task.recordProvisioningOperation(resourceOid, resourceName, entry.getObjectClass(), operation,
+                        success, 1, max);
+                int restCount = count - 2;
+                long restTotal = total - min - max;
+                for (int i = 0; i < restCount; i++) {
+                    long duration = restTotal / restCount + (i < restTotal % restCount ? 1 : 0);
+                    task.recordProvisioningOperation(resourceOid, resourceName, entry.getObjectClass(), operation,
+                            success, 1, duration);
+                }
+            }
+        }
+    }
+
+    private static class Fetch {
+        @NotNull private final String oid;
+        private final Collection<SelectorOptions<GetOperationOptions>> options;
+        @NotNull private final CompletableFuture<FetchOutcome> outcome = new CompletableFuture<>();
+
+        /** All the fetches on the resource, including this one. */
+        @NotNull private final ResourceFetches resourceFetches;
+
+        private Fetch(@NotNull String oid, Collection<SelectorOptions<GetOperationOptions>> options,
+                @NotNull ResourceFetches resourceFetches) {
+            this.oid = oid;
+            this.options = options;
+            this.resourceFetches = resourceFetches;
+        }
+    }
+
+    /** Fetches on a single resource, executed by one job under one subtask. */
+    private static class ResourceFetches {
+        @NotNull private final Task subtask;
+        @NotNull private final List<Fetch> fetches = new ArrayList<>();
+
+        /** The job fetching the shadows. */
+        private Future<?> job;
+
+        /** Were the statistics of the subtask merged into the caller's task? Accessed only by the clockwork thread. */
+        private boolean statisticsMerged;
+
+        private ResourceFetches(@NotNull Task subtask) {
+            this.subtask = subtask;
+        }
+
+        /** Merges the statistics of the subtask, if all the fetches are done and it was not done yet. */
+        private void mergeStatisticsIfDone(@NotNull Task task) {
+            if (!statisticsMerged && fetches.stream().allMatch(fetch -> fetch.outcome.isDone())) {
+                mergeStatistics(subtask, task);
+                statisticsMerged = true;
+            }
+        }
+    }
+
+    private static class FetchOutcome {
+        private final PrismObject<ShadowType> shadow;
+        private final Throwable exception;
+        @NotNull private final OperationResult result;
+
+        private FetchOutcome(PrismObject<ShadowType> shadow, Throwable exception, @NotNull OperationResult result) {
+            this.shadow = shadow;
+            this.exception = exception;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Shadows being prefetched for a single run of the context loader. Not thread-safe: to be used only
+     * by the clockwork thread.
+     */
+    static class PrefetchedShadows {
+
+        /** The caller's task, i.e. the one the clockwork runs under. */
+        @NotNull private final Task task;
+
+        @NotNull private final Map<LensProjectionContext, Fetch> fetches = new IdentityHashMap<>();
+        @NotNull private final List<ResourceFetches> resourceFetches = new ArrayList<>();
+
+        PrefetchedShadows(@NotNull Task task) {
+            this.task = task;
+        }
+
+        /** Is the shadow with given OID being prefetched for the projection context? */
+        boolean contains(@NotNull LensProjectionContext projCtx, String oid) {
+            Fetch fetch = fetches.get(projCtx);
+            return fetch != null && fetch.oid.equals(oid);
+        }
+
+        /**
+         * Returns the prefetched shadow (waiting for it if needed), or throws the exception the fetching ended with.
+         * The operation result of the fetch is attached to the provided one, just as if the fetch was executed here.
+         */
+        @NotNull
+        PrismObject<ShadowType> get(@NotNull LensProjectionContext projCtx, @NotNull OperationResult result)
+                throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException,
+                SecurityViolationException, ExpressionEvaluationException {
+            Fetch fetch = Objects.requireNonNull(fetches.remove(projCtx), "not prefetched");
+            FetchOutcome outcome = null;
+            try {
+                while (outcome == null) {
+                    try {
+                        outcome = fetch.outcome.get(1, TimeUnit.SECONDS);
+                    } catch (TimeoutException e) {
+                        if (fetch.resourceFetches.job.isDone() && !fetch.outcome.isDone()) {
+                            // The job was cancelled (e.g. on system shutdown) before getting to this shadow.
+                            throw new SystemException("Shadow " + fetch.oid + " was not loaded");
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException("Interrupted while waiting for shadow " + fetch.oid + " to be loaded", e);
+            } catch (ExecutionException | CancellationException e) {
+                throw new SystemException("Shadow " + fetch.oid + " couldn't be loaded: " + e.getMessage(), e);
+            }
+            outcome.result.getSubresults().forEach(result::addSubresult);
+            fetch.resourceFetches.mergeStatisticsIfDone(task);
+            Throwable t = outcome.exception;
+            if (t == null) {
+                return outcome.shadow;
+            } else if (t instanceof ObjectNotFoundException) {
+                throw (ObjectNotFoundException) t;
+            } else if (t instanceof CommunicationException) {
+                throw (CommunicationException) t;
+            } else if (t instanceof SchemaException) {
+                throw (SchemaException) t;
+            } else if (t instanceof ConfigurationException) {
+                throw (ConfigurationException) t;
+            } else if (t instanceof SecurityViolationException) {
+                throw (SecurityViolationException) t;
+            } else if (t instanceof ExpressionEvaluationException) {
+                throw (ExpressionEvaluationException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else {
+                throw new SystemException(t);
+            }
+        }
+
+        /** Stops fetching of shadows that were not needed after all (e.g. because of an error). */
+        void discard() {
+            if (!fetches.isEmpty()) {
+                LOGGER.trace("Discarding {} prefetched shadow(s)", fetches.size());
+                fetches.clear();
+            }
+            // Not interrupting the running fetches, as the connectors may not cope with that well.
+            // Statistics of the jobs that are still running are not merged.
+            resourceFetches.forEach(r -> r.job.cancel(false));
+            resourceFetches.forEach(r -> r.mergeStatisticsIfDone(task));
+        }
+    }
+}
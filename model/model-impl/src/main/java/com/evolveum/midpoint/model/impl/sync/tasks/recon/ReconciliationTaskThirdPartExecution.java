@@ -28,6 +28,7 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.RunningTask;
@@ -53,6 +54,9 @@ class ReconciliationTaskThirdPartExecution
                 ReconciliationTaskThirdPartExecution,
                 ReconciliationTaskThirdPartExecution.ItemProcessor> {
 
+    /** Checks existence of resource objects in batches. Created when the search starts. */
+    private RemainingShadowsExistenceChecker existenceChecker;
+
     ReconciliationTaskThirdPartExecution(ReconciliationTaskExecution taskExecution) {
         super(taskExecution);
 
@@ -103,6 +107,23 @@ class ReconciliationTaskThirdPartExecution
                 .build();
     }
 
+    @Override
+    protected ResultHandler<ShadowType> createSearchResultHandler() {
+        existenceChecker = new RemainingShadowsExistenceChecker(taskExecution.getResourceOid(),
+                taskExecution.getObjectClassDefinition(), taskHandler.getProvisioningService(), getPrismContext(),
+                localCoordinatorTask, super.createSearchResultHandler());
+        return existenceChecker::handle;
+    }
+
+    @Override
+    protected void processItems(OperationResult opResult) throws CommunicationException, ObjectNotFoundException,
+            SchemaException, SecurityViolationException, ConfigurationException, ExpressionEvaluationException {
+        super.processItems(opResult);
+        if (existenceChecker != null) {
+            existenceChecker.processPending(opResult);
+        }
+    }
+
     @Override
     protected Function<ItemPath, ItemDefinition<?>> createItemDefinitionProvider() {
         return createItemDefinitionProviderForAttributes(taskExecution.getTargetInfo().getObjectClassDefinition());
@@ -141,6 +162,10 @@ class ReconciliationTaskThirdPartExecution
                 ConfigurationException, ExpressionEvaluationException, ObjectNotFoundException {
             logger.trace("Reconciling shadow {}, fullSynchronizationTimestamp={}", shadow,
                     shadow.asObjectable().getFullSynchronizationTimestamp());
+            if (partExecution.existenceChecker != null && partExecution.existenceChecker.isConfirmedExisting(shadow)) {
+                logger.trace("Resource object for {} was found by the batched existence check, not fetching it", shadow);
+                return;
+            }
             try {
                 Collection<SelectorOptions<GetOperationOptions>> options;
                 if (TaskUtil.isDryRun(task)) {
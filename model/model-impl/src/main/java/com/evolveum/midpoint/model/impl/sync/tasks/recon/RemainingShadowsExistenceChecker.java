@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.sync.tasks.recon;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.QueryFactory;
+import com.evolveum.midpoint.provisioning.api.ProvisioningService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.processor.ResourceAttribute;
+import com.evolveum.midpoint.schema.processor.ResourceAttributeDefinition;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskUtil;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Checks the existence of resource objects for shadows processed by the third part of the reconciliation
+ * (i.e. shadows not seen by the resource search) in batches.
+ *
+ * Shadows found by the repository search are collected into batches. For each batch, a single resource search
+ * with an OR of primary identifier values is executed. Shadows whose resource objects were found are recorded
+ * as existing, and the item processor then does not need to fetch them one by one. The other shadows
+ * (i.e. those that were probably deleted on the resource) are processed just as before, using individual
+ * `getObject` calls, with all the discovery machinery.
+ *
+ * Shadows with pending operations are never confirmed as existing: they must be fetched individually,
+ * because that fetch (with `forceRefresh` option) is what refreshes their pending operations.
+ *
+ * If the batched search cannot be used (e.g. the object class has more than one primary identifier, or the search
+ * failed), the checker falls back to the individual processing for the rest of the task part.
+ *
+ * The collecting is done in the thread that executes the repository search; the item processor can then
+ * run in worker threads. Hence {@link #isConfirmedExisting(PrismObject)} is thread-safe.
+ */
+class RemainingShadowsExistenceChecker {
+
+    private static final Trace LOGGER = TraceManager.getTrace(RemainingShadowsExistenceChecker.class);
+
+    private static final String OP_CHECK_EXISTENCE = RemainingShadowsExistenceChecker.class.getName() + ".checkExistence";
+
+    private static final int BATCH_SIZE = 100;
+
+    @NotNull private final String resourceOid;
+    @NotNull private final ObjectClassComplexTypeDefinition objectClassDefinition;
+    @NotNull private final ProvisioningService provisioningService;
+    @NotNull private final PrismContext prismContext;
+    @NotNull private final Task task;
+
+    /** Handler that submits the shadows for processing. */
+    @NotNull private final ResultHandler<ShadowType> submitter;
+
+    /** Shadows waiting for the existence check. */
+    @NotNull private final List<PrismObject<ShadowType>> pending = new ArrayList<>();
+
+    /** OIDs of shadows whose resource objects were found. Entries are removed when the shadows are processed. */
+    @NotNull private final Set<String> confirmedOids = ConcurrentHashMap.newKeySet();
+
+    /** Primary identifier used for the search. Null if the batched checking cannot (or should not) be used. */
+    private ResourceAttributeDefinition<?> primaryIdentifierDefinition;
+
+    /** True if the submitter asked to stop. */
+    private boolean stopped;
+
+    RemainingShadowsExistenceChecker(@NotNull String resourceOid, @NotNull ObjectClassComplexTypeDefinition objectClassDefinition,
+            @NotNull ProvisioningService provisioningService, @NotNull PrismContext prismContext, @NotNull Task task,
+            @NotNull ResultHandler<ShadowType> submitter) {
+        this.resourceOid = resourceOid;
+        this.objectClassDefinition = objectClassDefinition;
+        this.provisioningService = provisioningService;
+        this.prismContext = prismContext;
+        this.task = task;
+        this.submitter = submitter;
+        Collection<? extends ResourceAttributeDefinition<?>> primaryIdentifiers = objectClassDefinition.getPrimaryIdentifiers();
+        if (primaryIdentifiers.size() == 1) {
+            primaryIdentifierDefinition = primaryIdentifiers.iterator().next();
+        } else {
+            LOGGER.debug("Batched existence checks are not available for {}: primary identifiers: {}",
+                    objectClassDefinition, primaryIdentifiers);
+        }
+    }
+
+    /** Serves as a repository search result handler. */
+    boolean handle(PrismObject<ShadowType> shadow, OperationResult result) {
+        if (stopped) {
+            return false;
+        }
+        if (primaryIdentifierDefinition == null) {
+            return submit(shadow, result);
+        }
+        pending.add(shadow);
+        if (pending.size() >= BATCH_SIZE) {
+            processPending(result);
+        }
+        return !stopped;
+    }
+
+    /** Checks and submits the rest of the shadows. To be called after the repository search is over. */
+    void processPending(OperationResult result) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PrismObject<ShadowType>> batch = new ArrayList<>(pending);
+        pending.clear();
+        if (stopped) {
+            return;
+        }
+        checkExistence(batch, result);
+        for (PrismObject<ShadowType> shadow : batch) {
+            if (!submit(shadow, result)) {
+                return;
+            }
+        }
+    }
+
+    private boolean submit(PrismObject<ShadowType> shadow, OperationResult result) {
+        if (!submitter.handle(shadow, result)) {
+            stopped = true;
+        }
+        return !stopped;
+    }
+
+    /**
+     * Returns true if the resource object for given shadow was found by a batched search.
+     * (If false, the existence is unknown.) Each shadow is reported only once.
+     * Shadows with pending operations are never reported as existing.
+     */
+    boolean isConfirmedExisting(PrismObject<ShadowType> shadow) {
+        return confirmedOids.remove(shadow.getOid());
+    }
+
+    private void checkExistence(List<PrismObject<ShadowType>> batch, OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(OP_CHECK_EXISTENCE)
+                .setMinor()
+                .addParam("shadows", batch.size())
+                .build();
+        try {
+            ObjectQuery query = createQuery(batch, result);
+            if (query == null) {
+                result.recordNotApplicable();
+                return;
+            }
+            Collection<SelectorOptions<GetOperationOptions>> options = TaskUtil.isDryRun(task) ?
+                    SelectorOptions.createCollection(GetOperationOptions.createDoNotDiscovery()) : null;
+            SearchResultList<PrismObject<ShadowType>> found =
+                    provisioningService.searchObjects(ShadowType.class, query, options, task, result);
+            for (PrismObject<ShadowType> object : found) {
+                if (object.getOid() != null && ShadowUtil.isExists(object.asObjectable())) {
+                    confirmedOids.add(object.getOid());
+                }
+            }
+            result.addReturn("found", found.size());
+            LOGGER.trace("Batched existence check: {} shadows, {} resource objects found", batch.size(), found.size());
+        } catch (CommonException | RuntimeException e) {
+            // Not fatal: the shadows will be checked one by one.
+            LOGGER.warn("Couldn't check existence of {} shadows on {} in a single search, will check them individually "
+                    + "(for the rest of this task part): {}", batch.size(), resourceOid, e.getMessage(), e);
+            result.recordHandledError(e);
+            primaryIdentifierDefinition = null;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
+    /**
+     * Creates query for resource objects having primary identifier values of given shadows.
+     * Returns null if there is nothing to search for.
+     */
+    private ObjectQuery createQuery(List<PrismObject<ShadowType>> shadows, OperationResult result)
+            throws CommonException {
+        ItemPath identifierPath = ItemPath.create(ShadowType.F_ATTRIBUTES, primaryIdentifierDefinition.getItemName());
+        List<ObjectFilter> identifierFilters = new ArrayList<>();
+        for (PrismObject<ShadowType> shadow : shadows) {
+            if (!shadow.asObjectable().getPendingOperation().isEmpty()) {
+                // Such shadows must go through the individual (refreshing) fetch anyway.
+                continue;
+            }
+            // Shadows come from the repository, so the definitions must be applied to get proper attribute values.
+            provisioningService.applyDefinition(shadow, task, result);
+            Collection<ResourceAttribute<?>> identifiers = ShadowUtil.getPrimaryIdentifiers(shadow);
+            if (identifiers == null) {
+                continue;
+            }
+            for (ResourceAttribute<?> identifier : identifiers) {
+                if (identifier.getElementName().equals(primaryIdentifierDefinition.getItemName())) {
+                    for (PrismPropertyValue<?> value : identifier.getValues()) {
+                        identifierFilters.add(prismContext.queryFor(ShadowType.class)
+                                .item(identifierPath, primaryIdentifierDefinition).eq(value.getRealValue())
+                                .buildFilter());
+                    }
+                }
+            }
+        }
+        if (identifierFilters.isEmpty()) {
+            return null;
+        }
+        QueryFactory queryFactory = prismContext.queryFactory();
+        return queryFactory.createQuery(
+                queryFactory.createAnd(
+                        ObjectQueryUtil.createResourceAndObjectClassFilter(
+                                resourceOid, objectClassDefinition.getTypeName(), prismContext),
+                        queryFactory.createOr(identifierFilters)));
+    }
+}
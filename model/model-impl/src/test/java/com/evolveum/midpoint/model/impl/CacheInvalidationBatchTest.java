@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheListener;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+public class CacheInvalidationBatchTest extends AbstractUnitTest {
+
+    @Test
+    public void test100DeduplicateAndRoundTrip() throws Exception {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(10);
+        batch.add(UserType.class, "u1");
+        batch.add(RoleType.class, "r1");
+        batch.add(UserType.class, "u2");
+        batch.add(UserType.class, "u1");
+
+        List<String> dispatched = dispatch(CacheInvalidationBatch.parse(batch.serialize()));
+
+        assertEquals(4, batch.getEventsAdded());
+        assertEquals(Arrays.asList("UserType/u1", "UserType/u2", "RoleType/r1"), dispatched);
+    }
+
+    @Test
+    public void test200EscalateToType() throws Exception {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(2);
+        batch.add(UserType.class, "u1");
+        batch.add(UserType.class, "u2");
+        batch.add(RoleType.class, "r1");
+        batch.add(UserType.class, "u3");
+        batch.add(UserType.class, "u4");
+
+        List<String> dispatched = dispatch(CacheInvalidationBatch.parse(batch.serialize()));
+
+        assertEquals(Arrays.asList("UserType", "RoleType/r1"), dispatched);
+    }
+
+    @Test
+    public void test300GlobalInvalidation() throws Exception {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(10);
+        batch.add(UserType.class, "u1");
+        batch.add(null, null);
+        batch.add(RoleType.class, null);
+
+        List<String> dispatched = dispatch(CacheInvalidationBatch.parse(batch.serialize()));
+
+        assertEquals(Arrays.asList("*"), dispatched);
+    }
+
+    @Test
+    public void test400Empty() {
+        assertTrue(new CacheInvalidationBatch(10).isEmpty());
+    }
+
+    private List<String> dispatch(CacheInvalidationBatch batch) {
+        List<String> dispatched = new ArrayList<>();
+        batch.dispatch(new CacheDispatcher() {
+            @Override
+            public void registerCacheListener(CacheListener cacheListener) {
+            }
+
+            @Override
+            public void unregisterCacheListener(CacheListener cacheListener) {
+            }
+
+            @Override
+            public <O extends ObjectType> void dispatchInvalidation(Class<O> type, String oid, boolean clusterwide,
+                    CacheInvalidationContext context) {
+                assertTrue("not from remote node", context.isFromRemoteNode());
+                dispatched.add(type == null ? "*" : type.getSimpleName() + (oid != null ? "/" + oid : ""));
+            }
+        });
+        return dispatched;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.lens.projector;
+
+import static org.testng.AssertJUnit.*;
+
+import java.util.*;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.impl.AbstractModelImplementationIntegrationTest;
+import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
+import com.evolveum.midpoint.model.impl.lens.projector.ProjectionShadowPrefetcher.PrefetchedShadows;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResourceShadowDiscriminator;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.ProvisioningOperation;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ProvisioningStatisticsOperationEntryType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests {@link ProjectionShadowPrefetcher} with the provisioning replaced by a simple fetching function.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestProjectionShadowPrefetcher extends AbstractModelImplementationIntegrationTest {
+
+    private static final String RESOURCE_A_OID = "0b5a9f4e-3d41-4bd5-a1c5-58b3b6a3e0a1";
+    private static final String RESOURCE_B_OID = "0b5a9f4e-3d41-4bd5-a1c5-58b3b6a3e0b2";
+
+    private static final String OP_TEST_FETCH = TestProjectionShadowPrefetcher.class.getName() + ".fetch";
+
+    @Test
+    public void test100FetchInOrderPerResource() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = createOperationResult();
+        LensContext<UserType> context = createUserLensContext();
+        LensProjectionContext a1 = createProjectionContext(context, RESOURCE_A_OID, "a1");
+        LensProjectionContext a2 = createProjectionContext(context, RESOURCE_A_OID, "a2");
+        LensProjectionContext b1 = createProjectionContext(context, RESOURCE_B_OID, "b1");
+
+        List<String> fetchedOids = Collections.synchronizedList(new ArrayList<>());
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        Set<Task> tasks = Collections.synchronizedSet(new HashSet<>());
+        TestingPrefetcher prefetcher = new TestingPrefetcher((oid, fetchTask, fetchResult) -> {
+            fetchedOids.add(oid);
+            threads.add(Thread.currentThread());
+            tasks.add(fetchTask);
+            fetchTask.recordProvisioningOperation(oid.startsWith("a") ? RESOURCE_A_OID : RESOURCE_B_OID, null, null,
+                    ProvisioningOperation.ICF_GET, true, 1, oid.equals("a2") ? 20 : 10);
+            fetchResult.createSubresult(OP_TEST_FETCH).recordSuccess();
+            return createShadow(oid);
+        });
+        prefetcher.start(2);
+        try {
+            when();
+            PrefetchedShadows prefetched = prefetcher.prefetch(requests(a1, a2, b1), task);
+            PrismObject<ShadowType> shadowA1 = prefetched.get(a1, result);
+            PrismObject<ShadowType> shadowA2 = prefetched.get(a2, result);
+            PrismObject<ShadowType> shadowB1 = prefetched.get(b1, result);
+
+            then();
+            assertEquals("Wrong shadow for a1", "a1", shadowA1.getOid());
+            assertEquals("Wrong shadow for a2", "a2", shadowA2.getOid());
+            assertEquals("Wrong shadow for b1", "b1", shadowB1.getOid());
+            assertTrue("Shadows on the same resource were not fetched in order: " + fetchedOids,
+                    fetchedOids.indexOf("a1") < fetchedOids.indexOf("a2"));
+            assertFalse("Fetched in the caller thread", threads.contains(Thread.currentThread()));
+            assertFalse("Caller's task was used for fetching", tasks.contains(task));
+            assertEquals("Wrong # of tasks used for fetching (one per resource expected)", 2, tasks.size());
+            assertEquals("Wrong # of fetch results attached", 3,
+                    result.getSubresults().stream().filter(r -> OP_TEST_FETCH.equals(r.getOperation())).count());
+            assertProvisioningOperation(task, RESOURCE_A_OID, 2, 30, 10, 20);
+            assertProvisioningOperation(task, RESOURCE_B_OID, 1, 10, 10, 10);
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void test110FetchErrorIsThrownToCaller() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = createOperationResult();
+        LensContext<UserType> context = createUserLensContext();
+        LensProjectionContext a1 = createProjectionContext(context, RESOURCE_A_OID, "a1");
+        LensProjectionContext b1 = createProjectionContext(context, RESOURCE_B_OID, "b1");
+
+        TestingPrefetcher prefetcher = new TestingPrefetcher((oid, fetchTask, fetchResult) -> {
+            if ("b1".equals(oid)) {
+                throw new CommunicationException("Simulated failure");
+            }
+            return createShadow(oid);
+        });
+        prefetcher.start(2);
+        try {
+            when();
+            PrefetchedShadows prefetched = prefetcher.prefetch(requests(a1, b1), task);
+            PrismObject<ShadowType> shadowA1 = prefetched.get(a1, result);
+            try {
+                prefetched.get(b1, result);
+                fail("Unexpected success");
+            } catch (CommunicationException e) {
+                then();
+                assertEquals("Wrong exception message", "Simulated failure", e.getMessage());
+            }
+            assertEquals("Wrong shadow for a1", "a1", shadowA1.getOid());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * A clockwork run in a pool thread must not wait for other pool threads.
+     * So nothing is prefetched there, even if the pool has free threads.
+     */
+    @Test
+    public void test120NoPrefetchingInPoolThread() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = createOperationResult();
+        LensContext<UserType> context = createUserLensContext();
+        LensProjectionContext a1 = createProjectionContext(context, RESOURCE_A_OID, "a1");
+        LensProjectionContext b1 = createProjectionContext(context, RESOURCE_B_OID, "b1");
+        LensContext<UserType> nestedContext = createUserLensContext();
+        LensProjectionContext nestedA = createProjectionContext(nestedContext, RESOURCE_A_OID, "nested-a");
+        LensProjectionContext nestedB = createProjectionContext(nestedContext, RESOURCE_B_OID, "nested-b");
+
+        List<Boolean> nestedPrefetched = Collections.synchronizedList(new ArrayList<>());
+        TestingPrefetcher[] prefetcherHolder = new TestingPrefetcher[1];
+        TestingPrefetcher prefetcher = new TestingPrefetcher((oid, fetchTask, fetchResult) -> {
+            PrefetchedShadows nested = prefetcherHolder[0].prefetch(requests(nestedA, nestedB), fetchTask);
+            nestedPrefetched.add(nested.contains(nestedA, "nested-a") || nested.contains(nestedB, "nested-b"));
+            return createShadow(oid);
+        });
+        prefetcherHolder[0] = prefetcher;
+        prefetcher.start(4);
+        try {
+            when();
+            PrefetchedShadows prefetched = prefetcher.prefetch(requests(a1, b1), task);
+            prefetched.get(a1, result);
+            prefetched.get(b1, result);
+
+            then();
+            assertEquals("Wrong nested prefetch attempts", Arrays.asList(false, false), nestedPrefetched);
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void test130NoPrefetchingForSingleResource() throws Exception {
+        given();
+        Task task = getTestTask();
+        LensContext<UserType> context = createUserLensContext();
+        LensProjectionContext a1 = createProjectionContext(context, RESOURCE_A_OID, "a1");
+        LensProjectionContext a2 = createProjectionContext(context, RESOURCE_A_OID, "a2");
+
+        TestingPrefetcher prefetcher = new TestingPrefetcher((oid, fetchTask, fetchResult) -> {
+            throw new AssertionError("Unexpected fetch of " + oid);
+        });
+        prefetcher.start(2);
+        try {
+            when();
+            PrefetchedShadows prefetched = prefetcher.prefetch(requests(a1, a2), task);
+
+            then();
+            assertFalse("a1 is prefetched", prefetched.contains(a1, "a1"));
+            assertFalse("a2 is prefetched", prefetched.contains(a2, "a2"));
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /** Checks the statistics merged from the subtasks into the caller's task. */
+    private void assertProvisioningOperation(Task task, String resourceOid, int count, long total, long min, long max) {
+        ProvisioningStatisticsOperationEntryType operation = task.getAggregatedLiveOperationStats()
+                .getEnvironmentalPerformanceInformation().getProvisioningStatistics().getEntry().stream()
+                .filter(entry -> resourceOid.equals(entry.getResourceRef().getOid()))
+                .flatMap(entry -> entry.getOperation().stream())
+                .filter(op -> ProvisioningOperation.ICF_GET.getName().equals(op.getOperation()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No provisioning statistics for " + resourceOid));
+        assertEquals("Wrong count for " + resourceOid, Integer.valueOf(count), operation.getCount());
+        assertEquals("Wrong total time for " + resourceOid, Long.valueOf(total), operation.getTotalTime());
+        assertEquals("Wrong min time for " + resourceOid, Long.valueOf(min), operation.getMinTime());
+        assertEquals("Wrong max time for " + resourceOid, Long.valueOf(max), operation.getMaxTime());
+    }
+
+    private LensProjectionContext createProjectionContext(LensContext<UserType> context, String resourceOid, String oid) {
+        LensProjectionContext projCtx = context.createProjectionContext(
+                new ResourceShadowDiscriminator(resourceOid, ShadowKindType.ACCOUNT, "default", null, false));
+        projCtx.setOid(oid);
+        return projCtx;
+    }
+
+    private Map<LensProjectionContext, Collection<SelectorOptions<GetOperationOptions>>> requests(
+            LensProjectionContext... projectionContexts) {
+        Map<LensProjectionContext, Collection<SelectorOptions<GetOperationOptions>>> requests = new LinkedHashMap<>();
+        for (LensProjectionContext projCtx : projectionContexts) {
+            requests.put(projCtx, null);
+        }
+        return requests;
+    }
+
+    private PrismObject<ShadowType> createShadow(String oid) {
+        ShadowType shadow = new ShadowType(prismContext);
+        shadow.setOid(oid);
+        return shadow.asPrismObject();
+    }
+
+    @FunctionalInterface
+    private interface FetchFunction {
+        PrismObject<ShadowType> fetch(String oid, Task task, OperationResult result) throws CommonException;
+    }
+
+    private static class TestingPrefetcher extends ProjectionShadowPrefetcher {
+
+        private final FetchFunction fetchFunction;
+
+        private TestingPrefetcher(FetchFunction fetchFunction) {
+            this.fetchFunction = fetchFunction;
+        }
+
+        @Override
+        PrismObject<ShadowType> fetchShadow(String oid, Collection<SelectorOptions<GetOperationOptions>> options, Task task,
+                OperationResult result) throws CommonException {
+            return fetchFunction.fetch(oid, task, result);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.sync.tasks.recon;
+
+import static org.testng.AssertJUnit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.refinery.RefinedResourceSchemaImpl;
+import com.evolveum.midpoint.model.impl.AbstractInternalModelIntegrationTest;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationExecutionStatusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.PendingOperationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Tests the batched existence checks used by the third part of the reconciliation.
+ * Both shadows used here have their accounts on the dummy resource.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestRemainingShadowsExistenceChecker extends AbstractInternalModelIntegrationTest {
+
+    @Test
+    public void test100ShadowWithoutPendingOperations() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        PrismObject<ShadowType> shadow = getShadow(ACCOUNT_HBARBOSSA_DUMMY_OID, result);
+        List<PrismObject<ShadowType>> submitted = new ArrayList<>();
+        RemainingShadowsExistenceChecker checker = createChecker(submitted, task, result);
+
+        when();
+        checker.handle(shadow, result);
+        checker.processPending(result);
+
+        then();
+        assertEquals("Wrong # of submitted shadows", 1, submitted.size());
+        assertTrue("Existence was not confirmed", checker.isConfirmedExisting(shadow));
+        assertFalse("Existence was confirmed twice", checker.isConfirmedExisting(shadow));
+    }
+
+    /**
+     * Shadow with pending operations must be fetched individually (with the refresh), so its existence must not
+     * be confirmed, even if its account exists.
+     */
+    @Test
+    public void test110ShadowWithPendingOperations() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        PrismObject<ShadowType> shadowWithoutOperations = getShadow(ACCOUNT_HBARBOSSA_DUMMY_OID, result);
+        PrismObject<ShadowType> shadowWithOperations = getShadow(ACCOUNT_SHADOW_GUYBRUSH_OID, result);
+        PendingOperationType pendingOperation = new PendingOperationType(prismContext);
+        pendingOperation.setExecutionStatus(PendingOperationExecutionStatusType.EXECUTING);
+        shadowWithOperations.asObjectable().getPendingOperation().add(pendingOperation);
+        List<PrismObject<ShadowType>> submitted = new ArrayList<>();
+        RemainingShadowsExistenceChecker checker = createChecker(submitted, task, result);
+
+        when();
+        checker.handle(shadowWithoutOperations, result);
+        checker.handle(shadowWithOperations, result);
+        checker.processPending(result);
+
+        then();
+        assertEquals("Wrong # of submitted shadows", 2, submitted.size());
+        assertTrue("Existence of shadow without pending operations was not confirmed",
+                checker.isConfirmedExisting(shadowWithoutOperations));
+        assertFalse("Existence of shadow with pending operations was confirmed",
+                checker.isConfirmedExisting(shadowWithOperations));
+    }
+
+    private PrismObject<ShadowType> getShadow(String oid, OperationResult result) throws Exception {
+        return repositoryService.getObject(ShadowType.class, oid, null, result);
+    }
+
+    private RemainingShadowsExistenceChecker createChecker(List<PrismObject<ShadowType>> submitted, Task task,
+            OperationResult result) throws Exception {
+        PrismObject<ResourceType> resource =
+                provisioningService.getObject(ResourceType.class, RESOURCE_DUMMY_OID, null, task, result);
+        ObjectClassComplexTypeDefinition objectClassDefinition = RefinedResourceSchemaImpl
+                .getRefinedSchema(resource, prismContext)
+                .findObjectClassDefinition(RESOURCE_DUMMY_ACCOUNT_OBJECTCLASS_QNAME);
+        assertNotNull("No account object class definition", objectClassDefinition);
+        return new RemainingShadowsExistenceChecker(RESOURCE_DUMMY_OID, objectClassDefinition, provisioningService,
+                prismContext, task, (shadow, handlerResult) -> submitted.add(shadow));
+    }
+}
@@ -13,6 +13,7 @@ import com.evolveum.icf.dummy.resource.ObjectAlreadyExistsException;
 import com.evolveum.icf.dummy.resource.SchemaViolationException;
 import com.evolveum.midpoint.model.intest.AbstractEmptyModelIntegrationTest;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.processor.ResourceAttribute;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -204,6 +205,36 @@ public class TestTaskReporting extends AbstractEmptyModelIntegrationTest {
                 .display();
     }
 
+    /**
+     * Operation execution records of search-based tasks are buffered. Here the task processes fewer objects
+     * than the buffer holds (100), so all the records must be written when the part (bucket) ends.
+     */
+    @Test
+    public void test105ImportWritesBufferedOperationExecutionRecords() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        long start = System.currentTimeMillis();
+
+        when();
+        rerunTask(TASK_IMPORT.oid, result);
+        waitForTaskFinish(TASK_IMPORT.oid, true);
+
+        then();
+        for (int i = 0; i < USERS; i++) {
+            if (i == IDX_LONG_UID) {
+                continue; // not created yet
+            }
+            ShadowType shadow = assertShadow(formatAccountName(i), RESOURCE_DUMMY_SOURCE.getResource())
+                    .assertHasComplexOperationExecution(TASK_IMPORT.oid, OperationResultStatusType.SUCCESS)
+                    .getObjectable();
+            assertThat(shadow.getOperationExecution())
+                    .as("operation execution records of %s written by this run", shadow)
+                    .anyMatch(record -> TASK_IMPORT.oid.equals(record.getTaskRef().getOid())
+                            && XmlTypeConverter.toMillis(record.getTimestamp()) >= start);
+        }
+    }
+
     @Test
     public void test110ImportWithSingleMalformedAccount() throws Exception {
         given();
@@ -7,6 +7,7 @@
 package com.evolveum.midpoint.provisioning.impl;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.prism.CloneStrategy;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.repo.api.Cache;
@@ -125,7 +126,7 @@ public class ResourceCache implements Cache {
             resourceToReturn = cachedResource;
         } else {
             LOGGER.debug("HIT(returning clone) for {} (v{})", cachedResource, cachedResource.getVersion());
-            resourceToReturn = cachedResource.clone();
+            resourceToReturn = cachedResource.cloneComplex(CloneStrategy.COPY_ON_WRITE);
         }
 
         if (resourceToReturn != null) {
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.shadows;
+
+import static java.util.Collections.emptyMap;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
+import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectFound;
+import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectHandler;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FetchErrorReportingMethodType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Handles objects found by resource object search: collects them into batches, looks up their repo shadows
+ * using a single repository query per batch, and then shadows the objects and passes them to the client handler,
+ * one by one, in the original order.
+ *
+ * Objects whose shadows were not found by the batch lookup are processed just like before, i.e. the shadow is looked up
+ * (using the stored attributes) and, if not found, created. Such objects pay for both lookups. Hence, if a batch lookup
+ * finds shadows for less than half of the objects (e.g. when importing new accounts), batching is switched off
+ * for the rest of the search.
+ *
+ * The batch size adapts to the speed of the connector: we do not want to keep objects waiting in the batch for too long
+ * if the connector delivers them slowly, because the batch lookup brings nothing in that case. Hence the batch
+ * is processed when it is full or when its first object has waited for {@link #MAX_WAIT_NANOS}, whichever comes first;
+ * and the batch size is set so that it is (on average) filled in that time.
+ *
+ * Each deferred object is processed in its own operation result that is created directly under the search result,
+ * so errors and traces are not attributed to the object whose arrival caused the batch to be processed.
+ *
+ * The handler is to be used in a single thread; after the search is over, {@link #processPendingObjects()}
+ * must be called.
+ */
+class BatchingObjectFoundHandler implements ResourceObjectHandler {
+
+    private static final Trace LOGGER = TraceManager.getTrace(BatchingObjectFoundHandler.class);
+
+    private static final String OP_PREFETCH_SHADOWS = BatchingObjectFoundHandler.class.getName() + ".prefetchShadows";
+    private static final String OP_HANDLE_OBJECT = BatchingObjectFoundHandler.class.getName() + ".handleObject";
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** Weight of the latest sample when computing average connector latency. */
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    @NotNull private final ProvisioningContext ctx;
+    @NotNull private final ResultHandler<ShadowType> handler;
+    private final FetchErrorReportingMethodType errorReportingMethod;
+    @NotNull private final ShadowsLocalBeans localBeans;
+
+    /** Result of the search operation. Deferred objects are processed in its subresults. */
+    @NotNull private final OperationResult searchResult;
+
+    @NotNull private final List<PendingObject> pendingObjects = new ArrayList<>();
+
+    /** Current batch size. Starts at 1, i.e. no batching until we know something about the connector. */
+    private int batchSize = 1;
+
+    /** Average time spent in the connector per object (nanoseconds); negative if not known yet. */
+    private double averageLatency = -1;
+
+    /** When the control was returned to the connector for the last time (System.nanoTime). */
+    private long returnedToConnectorAt;
+
+    /** True if the client handler asked to stop, or failed. Further objects are not processed then. */
+    private boolean stopped;
+
+    /** False if the batch lookup turned out not to pay off. Objects are then processed immediately, without batching. */
+    private boolean batchingEnabled = true;
+
+    BatchingObjectFoundHandler(@NotNull ProvisioningContext ctx, @NotNull ResultHandler<ShadowType> handler,
+            FetchErrorReportingMethodType errorReportingMethod, @NotNull ShadowsLocalBeans localBeans,
+            @NotNull OperationResult searchResult) {
+        this.ctx = ctx;
+        this.handler = handler;
+        this.errorReportingMethod = errorReportingMethod;
+        this.localBeans = localBeans;
+        this.searchResult = searchResult;
+    }
+
+    @Override
+    public boolean handle(ResourceObjectFound objectFound, OperationResult objResult) {
+        long arrivedAt = System.nanoTime();
+        if (stopped) {
+            return false;
+        }
+        recordLatency(arrivedAt);
+        try {
+            if (objResult.isTraced() || !batchingEnabled) {
+                // The tracing should cover the processing of this object. So let us not defer it.
+                // The same if batching does not pay off.
+                processPendingObjects();
+                if (!stopped) {
+                    processObject(objectFound, null, objResult);
+                }
+            } else {
+                pendingObjects.add(new PendingObject(objectFound, determinePrimaryIdentifierValue(objectFound), arrivedAt));
+                if (pendingObjects.size() >= batchSize || arrivedAt - pendingObjects.get(0).arrivedAt >= MAX_WAIT_NANOS) {
+                    processPendingObjects();
+                }
+            }
+            return !stopped;
+        } finally {
+            returnedToConnectorAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Processes objects collected so far (unless the processing was stopped).
+     */
+    void processPendingObjects() {
+        if (pendingObjects.isEmpty()) {
+            return;
+        }
+        List<PendingObject> batch = new ArrayList<>(pendingObjects);
+        pendingObjects.clear();
+        if (stopped) {
+            LOGGER.trace("Processing was stopped, ignoring {} pending object(s)", batch.size());
+            return;
+        }
+
+        Map<String, PrismObject<ShadowType>> prefetchedShadows = prefetchShadows(batch);
+        for (PendingObject pendingObject : batch) {
+            if (stopped) {
+                LOGGER.trace("Processing was stopped, ignoring the rest of the batch");
+                return;
+            }
+            PrismObject<ShadowType> prefetchedShadow = pendingObject.primaryIdentifierValue != null ?
+                    prefetchedShadows.get(pendingObject.primaryIdentifierValue) : null;
+            processObjectInOwnResult(pendingObject, prefetchedShadow);
+        }
+    }
+
+    private void processObjectInOwnResult(PendingObject pendingObject, PrismObject<ShadowType> prefetchedShadow) {
+        OperationResult result = searchResult.subresult(OP_HANDLE_OBJECT)
+                .setMinor()
+                .addArbitraryObjectAsParam("primaryIdentifierValue", pendingObject.objectFound.getPrimaryIdentifierValue())
+                .build();
+        try {
+            processObject(pendingObject.objectFound, prefetchedShadow, result);
+        } finally {
+            result.computeStatusIfUnknown();
+            // Summarizing successes just like the resource object converter does for its object-level results.
+            if (result.isSuccess() && !result.isTraced()) {
+                result.getSubresults().clear();
+            }
+            searchResult.summarize();
+        }
+    }
+
+    private void processObject(ResourceObjectFound objectFound, PrismObject<ShadowType> prefetchedShadow,
+            OperationResult result) {
+        boolean cont = false;
+        try {
+            ShadowedObjectFound shadowedObjectFound =
+                    new ShadowedObjectFound(objectFound, prefetchedShadow, localBeans, ctx);
+            shadowedObjectFound.initialize(ctx.getTask(), result);
+            PrismObject<ShadowType> shadowedObject = shadowedObjectFound.getResultingObject(errorReportingMethod);
+            cont = handler.handle(shadowedObject, result);
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+            if (!cont) {
+                stopped = true;
+            }
+        }
+    }
+
+    @NotNull
+    private Map<String, PrismObject<ShadowType>> prefetchShadows(List<PendingObject> batch) {
+        Set<String> primaryIdentifierValues = new HashSet<>();
+        for (PendingObject pendingObject : batch) {
+            if (pendingObject.primaryIdentifierValue != null) {
+                primaryIdentifierValues.add(pendingObject.primaryIdentifierValue);
+            }
+        }
+        // For a single object the regular lookup is as good as the batched one.
+        if (primaryIdentifierValues.size() < 2) {
+            return emptyMap();
+        }
+        OperationResult result = searchResult.subresult(OP_PREFETCH_SHADOWS)
+                .setMinor()
+                .addParam("objects", primaryIdentifierValues.size())
+                .build();
+        try {
+            Map<String, PrismObject<ShadowType>> shadows = localBeans.shadowManager
+                    .lookupLiveShadowsByIndexedPrimaryIdValues(ctx, primaryIdentifierValues, result);
+            result.addReturn("found", shadows.size());
+            if (shadows.size() * 2 < primaryIdentifierValues.size()) {
+                // Most objects will be looked up individually anyway, so the batch lookup is only an overhead.
+                LOGGER.debug("Batch lookup found shadows only for {} of {} objects, switching batching off",
+                        shadows.size(), primaryIdentifierValues.size());
+                batchingEnabled = false;
+            }
+            return shadows;
+        } catch (SchemaException | RuntimeException e) {
+            // Not fatal: the shadows will be looked up one by one.
+            LOGGER.warn("Couldn't look up shadows for {} objects found, will look them up individually: {}",
+                    primaryIdentifierValues.size(), e.getMessage(), e);
+            result.recordHandledError(e);
+            return emptyMap();
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
+    private String determinePrimaryIdentifierValue(ResourceObjectFound objectFound) {
+        if (!objectFound.getInitializationState().isOk()) {
+            return null; // Such objects are processed in a special way anyway.
+        }
+        try {
+            return localBeans.shadowManager.determinePrimaryIdentifierValue(ctx, objectFound.getResourceObject());
+        } catch (SchemaException | RuntimeException e) {
+            LOGGER.trace("Couldn't determine primary identifier value for {}, its shadow will be looked up individually",
+                    objectFound, e);
+            return null;
+        }
+    }
+
+    private void recordLatency(long arrivedAt) {
+        if (returnedToConnectorAt == 0) {
+            return; // The first object: the time includes the search setup.
+        }
+        long latency = arrivedAt - returnedToConnectorAt;
+        averageLatency = averageLatency < 0 ?
+                latency : LATENCY_SMOOTHING * latency + (1 - LATENCY_SMOOTHING) * averageLatency;
+        batchSize = (int) Math.max(1, Math.min(MAX_BATCH_SIZE, MAX_WAIT_NANOS / Math.max(averageLatency, 1)));
+    }
+
+    private static class PendingObject {
+        @NotNull private final ResourceObjectFound objectFound;
+        private final String primaryIdentifierValue;
+        private final long arrivedAt;
+
+        private PendingObject(@NotNull ResourceObjectFound objectFound, String primaryIdentifierValue, long arrivedAt) {
+            this.objectFound = objectFound;
+            this.primaryIdentifierValue = primaryIdentifierValue;
+            this.arrivedAt = arrivedAt;
+        }
+    }
+}
@@ -36,8 +36,10 @@ import com.evolveum.midpoint.provisioning.impl.shadows.manager.ShadowManager;
 import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
 import com.evolveum.midpoint.provisioning.ucf.api.GenericFrameworkException;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.repo.common.expression.ExpressionFactory;
 import com.evolveum.midpoint.schema.*;
+import com.evolveum.midpoint.schema.cache.CacheConfigurationManager;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.internals.InternalsConfig;
@@ -74,6 +76,7 @@ class SearchHelper {
     @Autowired private ExpressionFactory expressionFactory;
     @Autowired private DefinitionsHelper definitionsHelper;
     @Autowired private ShadowsLocalBeans localBeans;
+    @Autowired private CacheConfigurationManager cacheConfigurationManager;
 
     public SearchResultMetadata searchObjectsIterative(ObjectQuery query,
             Collection<SelectorOptions<GetOperationOptions>> options, ResultHandler<ShadowType> handler,
@@ -133,33 +136,54 @@ class SearchHelper {
         // (we do not have raw/noFetch option)
         InternalMonitor.recordCount(InternalCounters.SHADOW_FETCH_OPERATION_COUNT);
 
-        ResourceObjectHandler resultHandler = (ResourceObjectFound objectFound, OperationResult objResult) -> {
-
-            ShadowedObjectFound shadowedObjectFound = new ShadowedObjectFound(objectFound, localBeans, ctx);
-            shadowedObjectFound.initialize(ctx.getTask(), objResult);
-            PrismObject<ShadowType> shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod);
+        // Objects found are processed in batches, so their repo shadows can be looked up using a single query per batch.
+        BatchingObjectFoundHandler resultHandler =
+                new BatchingObjectFoundHandler(ctx, handler, ucfErrorReportingMethod, localBeans, parentResult);
 
+        ObjectQuery attributeQuery = createAttributeQuery(query);
+        boolean fetchAssociations = SelectorOptions.hasToLoadPath(ShadowType.F_ASSOCIATION, options);
+        try {
+            SearchResultMetadata metadata;
             try {
-                return handler.handle(shadowedObject, objResult);
+                metadata = resourceObjectConverter.searchResourceObjects(ctx, resultHandler, attributeQuery,
+                        fetchAssociations, ucfErrorReportingMethod, parentResult);
             } catch (Throwable t) {
-                objResult.recordFatalError(t);
+                processPendingObjectsAfterFailure(resultHandler, t);
                 throw t;
-            } finally {
-                objResult.computeStatusIfUnknown();
             }
-        };
-
-        ObjectQuery attributeQuery = createAttributeQuery(query);
-        boolean fetchAssociations = SelectorOptions.hasToLoadPath(ShadowType.F_ASSOCIATION, options);
-        try {
-            return resourceObjectConverter.searchResourceObjects(ctx, resultHandler, attributeQuery,
-                    fetchAssociations, ucfErrorReportingMethod, parentResult);
+            processPendingObjects(resultHandler);
+            return metadata;
         } catch (TunnelException e) {
             unwrapAndThrowSearchingTunnelException(e);
             throw new AssertionError();
         }
     }
 
+    /**
+     * Processes objects found by the search but not processed yet (because they were waiting in a batch).
+     */
+    private void processPendingObjects(BatchingObjectFoundHandler resultHandler) {
+        RepositoryCache.enterLocalCaches(cacheConfigurationManager);
+        try {
+            resultHandler.processPendingObjects();
+        } finally {
+            RepositoryCache.exitLocalCaches();
+        }
+    }
+
+    /**
+     * Objects found before the search failed would be processed without batching as well. But any failure here
+     * must not mask the search failure, which is the one the caller has to see.
+     */
+    private void processPendingObjectsAfterFailure(BatchingObjectFoundHandler resultHandler, Throwable searchFailure) {
+        try {
+            processPendingObjects(resultHandler);
+        } catch (Throwable t) {
+            LOGGER.error("Couldn't process objects found before the search failed: {}", t.getMessage(), t);
+            searchFailure.addSuppressed(t);
+        }
+    }
+
     private ObjectQuery createAttributeQuery(ObjectQuery query) throws SchemaException {
         QueryFactory queryFactory = prismContext.queryFactory();
 
@@ -16,6 +16,7 @@ import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.util.DebugUtil;
+import com.evolveum.midpoint.util.QNameUtil;
 import com.evolveum.midpoint.util.annotation.Experimental;
 import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -24,6 +25,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.xml.namespace.QName;
 
@@ -72,16 +74,29 @@ class ShadowAcquisition {
     /** Whether we want to skip the classification. It is used e.g. in emergency shadow creation. */
     private final boolean skipClassification;
 
+    /**
+     * Live shadow for the primary identifier, if it was looked up beforehand (e.g. for the whole page of search results).
+     * It is used only after being checked; if it is not usable, the regular lookup takes place.
+     */
+    @Nullable private final PrismObject<ShadowType> prefetchedRepoShadow;
+
     private final CommonBeans beans;
     private final ShadowsLocalBeans localBeans;
 
     public ShadowAcquisition(@NotNull ProvisioningContext ctx, @NotNull PrismProperty<?> primaryIdentifier,
             @NotNull QName objectClass, @NotNull ResourceObjectSupplier resourceObjectSupplier,
             boolean skipClassification, CommonBeans commonBeans) {
+        this(ctx, primaryIdentifier, objectClass, resourceObjectSupplier, null, skipClassification, commonBeans);
+    }
+
+    public ShadowAcquisition(@NotNull ProvisioningContext ctx, @NotNull PrismProperty<?> primaryIdentifier,
+            @NotNull QName objectClass, @NotNull ResourceObjectSupplier resourceObjectSupplier,
+            @Nullable PrismObject<ShadowType> prefetchedRepoShadow, boolean skipClassification, CommonBeans commonBeans) {
         this.ctx = ctx;
         this.primaryIdentifier = primaryIdentifier;
         this.objectClass = objectClass;
         this.resourceObjectSupplier = resourceObjectSupplier;
+        this.prefetchedRepoShadow = prefetchedRepoShadow;
         this.skipClassification = skipClassification;
         this.beans = commonBeans;
         this.localBeans = commonBeans.shadowsFacade.getLocalBeans();
@@ -135,8 +150,7 @@ class ShadowAcquisition {
     private PrismObject<ShadowType> obtainRepoShadow(OperationResult result) throws SchemaException, ObjectNotFoundException,
             CommunicationException, ConfigurationException, ExpressionEvaluationException, EncryptionException {
 
-        PrismObject<ShadowType> existingRepoShadow = beans.shadowManager.lookupLiveShadowByPrimaryId(ctx, primaryIdentifier,
-                objectClass, result);
+        PrismObject<ShadowType> existingRepoShadow = lookupLiveShadow(result);
 
         if (existingRepoShadow != null) {
             LOGGER.trace("Found shadow object in the repository {}", ShadowUtil.shortDumpShadowLazily(existingRepoShadow));
@@ -159,6 +173,18 @@ class ShadowAcquisition {
         }
     }
 
+    private PrismObject<ShadowType> lookupLiveShadow(OperationResult result) throws SchemaException, ObjectNotFoundException,
+            CommunicationException, ConfigurationException, ExpressionEvaluationException {
+        if (prefetchedRepoShadow != null && QNameUtil.match(objectClass, prefetchedRepoShadow.asObjectable().getObjectClass())) {
+            PrismObject<ShadowType> checkedShadow = beans.shadowManager.checkPrefetchedLiveShadow(prefetchedRepoShadow, result);
+            if (checkedShadow != null) {
+                return checkedShadow;
+            }
+            LOGGER.trace("Prefetched shadow {} cannot be used, looking up the shadow again", prefetchedRepoShadow);
+        }
+        return beans.shadowManager.lookupLiveShadowByPrimaryId(ctx, primaryIdentifier, objectClass, result);
+    }
+
     @NotNull
     private PrismObject<ShadowType> findConflictingShadow(PrismObject<ShadowType> resourceObject,
             ObjectAlreadyExistsException e, OperationResult result)
@@ -12,6 +12,7 @@ import static java.util.Objects.requireNonNull;
 import javax.xml.namespace.QName;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -55,6 +56,18 @@ class ShadowAcquisitionHelper {
             PrismObject<ShadowType> resourceObject, boolean skipClassification, OperationResult result)
             throws SchemaException, ConfigurationException, ObjectNotFoundException, SecurityViolationException,
             CommunicationException, GenericConnectorException, ExpressionEvaluationException, EncryptionException {
+        return acquireRepoShadow(ctx, resourceObject, null, skipClassification, result);
+    }
+
+    /**
+     * As {@link #acquireRepoShadow(ProvisioningContext, PrismObject, boolean, OperationResult)} but with the (potential)
+     * live shadow already looked up by the caller.
+     */
+    public @NotNull PrismObject<ShadowType> acquireRepoShadow(ProvisioningContext ctx,
+            PrismObject<ShadowType> resourceObject, @Nullable PrismObject<ShadowType> prefetchedRepoShadow,
+            boolean skipClassification, OperationResult result)
+            throws SchemaException, ConfigurationException, ObjectNotFoundException, SecurityViolationException,
+            CommunicationException, GenericConnectorException, ExpressionEvaluationException, EncryptionException {
 
         PrismProperty<?> primaryIdentifier = requireNonNull(
                 ProvisioningUtil.getSingleValuedPrimaryIdentifier(resourceObject),
@@ -63,7 +76,8 @@ class ShadowAcquisitionHelper {
                 resourceObject.asObjectable().getObjectClass(),
                 () -> "No object class in " + ShadowUtil.shortDumpShadow(resourceObject));
 
-        return new ShadowAcquisition(ctx, primaryIdentifier, objectClass, () -> resourceObject, skipClassification, commonBeans)
+        return new ShadowAcquisition(ctx, primaryIdentifier, objectClass, () -> resourceObject, prefetchedRepoShadow,
+                skipClassification, commonBeans)
                 .execute(result);
     }
 
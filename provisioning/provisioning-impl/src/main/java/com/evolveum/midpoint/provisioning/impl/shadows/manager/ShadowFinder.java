@@ -40,7 +40,9 @@ import org.springframework.stereotype.Component;
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.evolveum.midpoint.provisioning.util.ProvisioningUtil.selectLiveShadow;
@@ -48,6 +50,7 @@ import static com.evolveum.midpoint.provisioning.util.ProvisioningUtil.selectLiv
 import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -110,6 +113,59 @@ class ShadowFinder {
         return liveShadow;
     }
 
+    /**
+     * Looks up live shadows for a batch of (normalized) primary identifier values, using a single query over the indexed
+     * `primaryIdentifierValue` property. Shadows are returned as they are in the repository: the caller is responsible
+     * for calling {@link #checkPrefetchedLiveShadow(PrismObject, OperationResult)} before using any of them.
+     *
+     * Values that have no shadow found are simply missing in the returned map. (Shadows without the indexed value, e.g.
+     * ones created by older versions, are not found here; the caller has to fall back to the attribute-based lookup.)
+     */
+    @NotNull Map<String, PrismObject<ShadowType>> lookupLiveShadowsByIndexedPrimaryIdValues(ProvisioningContext ctx,
+            Collection<String> primaryIdentifierValues, OperationResult result) throws SchemaException {
+
+        if (primaryIdentifierValues.isEmpty()) {
+            return emptyMap();
+        }
+
+        ObjectQuery query = createQueryByPrimaryIdValues(ctx, primaryIdentifierValues);
+        LOGGER.trace("Searching for shadows by {} primaryIdentifierValue(s) using filter:\n{}",
+                primaryIdentifierValues.size(), DebugUtil.debugDumpLazily(query, 1));
+
+        // Explicitly avoid all caches. We want to avoid shadow duplication.
+        Collection<SelectorOptions<GetOperationOptions>> options = schemaService.getOperationOptionsBuilder()
+                .staleness(0L)
+                .build();
+
+        Map<String, PrismObject<ShadowType>> shadowsByValue = new HashMap<>();
+        for (PrismObject<ShadowType> shadow : searchRepoShadows(query, options, result)) {
+            String value = shadow.asObjectable().getPrimaryIdentifierValue();
+            // Dead shadows should not have the value set; but let's be careful.
+            if (value != null && ShadowUtil.isNotDead(shadow)) {
+                shadowsByValue.put(value, shadow);
+            }
+        }
+        LOGGER.trace("Found {} live shadows for {} primary identifier values", shadowsByValue.size(),
+                primaryIdentifierValues.size());
+        return shadowsByValue;
+    }
+
+    /**
+     * Does the same checks on a live shadow obtained by {@link #lookupLiveShadowsByIndexedPrimaryIdValues(ProvisioningContext,
+     * Collection, OperationResult)} as {@link #lookupLiveShadowByPrimaryId(ProvisioningContext, PrismProperty, QName,
+     * OperationResult)} does on the shadow it finds.
+     *
+     * @return the shadow if it can be used; null if it does not exist any more
+     */
+    PrismObject<ShadowType> checkPrefetchedLiveShadow(PrismObject<ShadowType> liveShadow, OperationResult result)
+            throws SchemaException {
+        if (!checkExistsFlagForLiveShadow(liveShadow, result)) {
+            return null;
+        }
+        checkConsistency(liveShadow);
+        return liveShadow;
+    }
+
     /** @return true if the shadow is OK; false if it does not exist any more */
     private boolean checkExistsFlagForLiveShadow(PrismObject<ShadowType> liveShadow, OperationResult result)
             throws SchemaException {
@@ -286,6 +342,29 @@ class ShadowFinder {
         }
     }
 
+    /**
+     * The repository does not support multi-valued `eq` filters in general, so the values are OR-ed.
+     */
+    private ObjectQuery createQueryByPrimaryIdValues(ProvisioningContext ctx, Collection<String> primaryIdentifierValues)
+            throws SchemaException {
+        try {
+            S_FilterEntry q = prismContext.queryFor(ShadowType.class)
+                    .block();
+            for (String primaryIdentifierValue : primaryIdentifierValues) {
+                q = q.item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).eq(primaryIdentifierValue)
+                        .or();
+            }
+            return q.none().endBlock()
+                    .and().item(ShadowType.F_OBJECT_CLASS).eq(ctx.getObjectClassDefinition().getTypeName())
+                    .and().item(ShadowType.F_RESOURCE_REF).ref(ctx.getResourceOid())
+                    .build();
+
+        } catch (ExpressionEvaluationException | CommunicationException | ConfigurationException | ObjectNotFoundException e) {
+            // Should not happen at this stage. And we do not want to pollute throws clauses all the way up.
+            throw new SystemException(e.getMessage(), e);
+        }
+    }
+
     private ObjectQuery createQueryBySelectedIds(ProvisioningContext ctx, Collection<ResourceAttribute<?>> identifiers,
             boolean primaryIdentifiersOnly) throws SchemaException, ConfigurationException,
             ObjectNotFoundException, CommunicationException, ExpressionEvaluationException {
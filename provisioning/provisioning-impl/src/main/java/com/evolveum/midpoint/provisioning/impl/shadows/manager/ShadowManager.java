@@ -9,6 +9,7 @@ package com.evolveum.midpoint.provisioning.impl.shadows.manager;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 
@@ -142,6 +143,28 @@ public class ShadowManager {
         return shadowFinder.lookupLiveShadowByPrimaryId(ctx, primaryIdentifier, objectClass, result);
     }
 
+    /**
+     * Looks up live shadows for a batch of primary identifier values (indexed `primaryIdentifierValue` property)
+     * in a single repository query. Shadows obtained in this way have to be checked by
+     * {@link #checkPrefetchedLiveShadow(PrismObject, OperationResult)} before use.
+     */
+    public @NotNull Map<String, PrismObject<ShadowType>> lookupLiveShadowsByIndexedPrimaryIdValues(ProvisioningContext ctx,
+            Collection<String> primaryIdentifierValues, OperationResult result) throws SchemaException {
+        return shadowFinder.lookupLiveShadowsByIndexedPrimaryIdValues(ctx, primaryIdentifierValues, result);
+    }
+
+    /**
+     * Checks a live shadow obtained by {@link #lookupLiveShadowsByIndexedPrimaryIdValues(ProvisioningContext, Collection,
+     * OperationResult)} in the same way as {@link #lookupLiveShadowByPrimaryId(ProvisioningContext, PrismProperty, QName,
+     * OperationResult)} checks its result.
+     *
+     * @return the shadow or null if it does not exist any more
+     */
+    public PrismObject<ShadowType> checkPrefetchedLiveShadow(PrismObject<ShadowType> liveShadow, OperationResult result)
+            throws SchemaException {
+        return shadowFinder.checkPrefetchedLiveShadow(liveShadow, result);
+    }
+
     /**
      * Looks up live (or any other, if there's none) shadow by primary identifier(s).
      */
@@ -42,6 +42,7 @@ import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.processor.*;
+import com.evolveum.midpoint.schema.result.OperationConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
 import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
@@ -605,6 +606,66 @@ public class TestDummy extends AbstractBasicDummyTest {
         assertSteadyResource();
     }
 
+    /**
+     * Objects found by the search are processed in batches. Each of them must be processed in its own result
+     * placed directly under the search, not under the result of another object that was found later.
+     */
+    @Test
+    public void test112bSearchIterativeObjectResults() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+
+        ObjectQuery query = ObjectQueryUtil.createResourceAndObjectClassQuery(RESOURCE_DUMMY_OID,
+                new QName(ResourceTypeUtil.getResourceNamespace(resourceType),
+                        SchemaConstants.ACCOUNT_OBJECT_CLASS_LOCAL_NAME), prismContext);
+
+        List<OperationResult> objectResults = new ArrayList<>();
+
+        when();
+        provisioningService.searchObjectsIterative(ShadowType.class, query, null,
+                (object, objectResult) -> {
+                    objectResults.add(objectResult);
+                    // Warnings are not cleaned up, so we can find the results in the result tree afterwards.
+                    objectResult.recordWarning("Seen " + object.getName());
+                    return true;
+                },
+                null, result);
+
+        then();
+        result.computeStatus();
+        display("searchObjectsIterative result", result);
+
+        assertEquals("Wrong # of objects found", 4, objectResults.size());
+        Set<OperationResult> distinctResults = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctResults.addAll(objectResults);
+        assertEquals("Objects share their results", 4, distinctResults.size());
+
+        Set<OperationResult> parents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (OperationResult objectResult : objectResults) {
+            OperationResult parent = findParentResult(result, objectResult);
+            assertNotNull("Object result " + objectResult.getOperation() + " is not in the result tree", parent);
+            assertFalse("Object result is under the result of another object: " + parent.getOperation(),
+                    OperationConstants.OPERATION_SEARCH_RESULT.equals(parent.getOperation()));
+            parents.add(parent);
+        }
+        assertEquals("Object results are not under the same parent", 1, parents.size());
+
+        assertSteadyResource();
+    }
+
+    private OperationResult findParentResult(OperationResult root, OperationResult child) {
+        for (OperationResult subresult : root.getSubresults()) {
+            if (subresult == child) {
+                return root;
+            }
+            OperationResult parent = findParentResult(subresult, child);
+            if (parent != null) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
     protected <T extends ShadowType> void assertProtected(List<PrismObject<T>> shadows, int expectedNumberOfProtectedShadows) {
         int actual = countProtected(shadows);
         assertEquals("Unexpected number of protected shadows", expectedNumberOfProtectedShadows, actual);
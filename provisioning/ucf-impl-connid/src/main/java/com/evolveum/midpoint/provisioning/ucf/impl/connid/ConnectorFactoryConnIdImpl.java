@@ -100,6 +100,16 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
             CONNECTOR_SCHEMA_LEGACY_SCHEMA_XML_ELEMENT_NAME);
     public static final QName CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE = DOMUtil.XSD_BOOLEAN;
 
+    public static final String CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_XML_ELEMENT_NAME = "pipelinedSearchThreads";
+    public static final QName CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
+            CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_XML_ELEMENT_NAME);
+    public static final QName CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_TYPE = DOMUtil.XSD_INT;
+
+    public static final String CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_XML_ELEMENT_NAME = "pipelinedSearchQueueSize";
+    public static final QName CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
+            CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_XML_ELEMENT_NAME);
+    public static final QName CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_TYPE = DOMUtil.XSD_INT;
+
     public static final String CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME = "timeouts";
     public static final QName CONNECTOR_SCHEMA_TIMEOUTS_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
             CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME);
@@ -431,6 +441,12 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
         configurationContainerDef.createPropertyDefinition(
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_ELEMENT,
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE, 0, 1);
+        configurationContainerDef.createPropertyDefinition(
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_ELEMENT,
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_TYPE, 0, 1);
+        configurationContainerDef.createPropertyDefinition(
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_ELEMENT,
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_TYPE, 0, 1);
 
         // No need to create definition of "configuration" element.
         // midPoint will look for this element, but it will be generated as part
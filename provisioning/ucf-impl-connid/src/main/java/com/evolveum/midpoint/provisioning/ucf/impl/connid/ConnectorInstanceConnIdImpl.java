@@ -96,6 +96,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
 
     private static final String OP_FETCH_CHANGES = ConnectorInstance.class.getName() + ".fetchChanges";
 
+    private static final int DEFAULT_PIPELINED_SEARCH_QUEUE_SIZE = 100;
+
     private final ConnectorInfo connectorInfo;
     private final ConnectorType connectorType;
     private ConnectorFacade connIdConnectorFacade;
@@ -126,6 +128,13 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
     private String instanceName; // resource name
     private boolean caseIgnoreAttributeNames = false;
 
+    /** Number of threads converting objects found in pipelined search. Zero means no pipelining. */
+    private int pipelinedSearchThreads;
+    private int pipelinedSearchQueueSize = DEFAULT_PIPELINED_SEARCH_QUEUE_SIZE;
+
+    /** Threads for pipelined search. Null if pipelining is not used. */
+    private volatile PipelinedSearchExecutors pipelinedSearchExecutors;
+
     ConnectorInstanceConnIdImpl(ConnectorInfo connectorInfo, ConnectorType connectorType,
             String schemaNamespace, PrismSchema connectorSchema, Protector protector,
             PrismContext prismContext, LocalizationService localizationService) {
@@ -230,6 +239,23 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
             }
             LOGGER.trace("Legacy schema (config): {}", legacySchema);
 
+            PrismProperty<Integer> pipelinedSearchThreadsProperty = configurationCloned.findProperty(new ItemName(
+                    SchemaConstants.NS_ICF_CONFIGURATION,
+                    ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_THREADS_XML_ELEMENT_NAME));
+            Integer pipelinedSearchThreadsConfig = pipelinedSearchThreadsProperty != null ?
+                    pipelinedSearchThreadsProperty.getRealValue() : null;
+            pipelinedSearchThreads = pipelinedSearchThreadsConfig != null ? pipelinedSearchThreadsConfig : 0;
+            PrismProperty<Integer> pipelinedSearchQueueSizeProperty = configurationCloned.findProperty(new ItemName(
+                    SchemaConstants.NS_ICF_CONFIGURATION,
+                    ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_PIPELINED_SEARCH_QUEUE_SIZE_XML_ELEMENT_NAME));
+            Integer pipelinedSearchQueueSizeConfig = pipelinedSearchQueueSizeProperty != null ?
+                    pipelinedSearchQueueSizeProperty.getRealValue() : null;
+            pipelinedSearchQueueSize = pipelinedSearchQueueSizeConfig != null ?
+                    pipelinedSearchQueueSizeConfig : DEFAULT_PIPELINED_SEARCH_QUEUE_SIZE;
+            LOGGER.trace("Pipelined search (config): threads = {}, queue size = {}", pipelinedSearchThreads,
+                    pipelinedSearchQueueSize);
+            updatePipelinedSearchExecutors();
+
         } catch (Throwable ex) {
             Throwable midpointEx = processConnIdException(ex, this, result);
             result.computeStatus("Removing attribute values failed");
@@ -2158,6 +2184,25 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
             connIdConnectorFacade.dispose();
             connIdConnectorFacade = null;
         }
+        PipelinedSearchExecutors executors = pipelinedSearchExecutors;
+        if (executors != null) {
+            pipelinedSearchExecutors = null;
+            executors.shutdown();
+        }
+    }
+
+    /** Creates, replaces or removes the threads for pipelined search, according to the current configuration. */
+    private void updatePipelinedSearchExecutors() {
+        PipelinedSearchExecutors oldExecutors = pipelinedSearchExecutors;
+        if (oldExecutors != null && oldExecutors.getConversionThreads() == pipelinedSearchThreads) {
+            return;
+        }
+        pipelinedSearchExecutors = pipelinedSearchThreads > 0 ? new PipelinedSearchExecutors(pipelinedSearchThreads) : null;
+        if (oldExecutors != null) {
+            LOGGER.debug("Shutting down old threads for pipelined search for instance: {} (connector reconfiguration)",
+                    instanceName);
+            oldExecutors.shutdown();
+        }
     }
 
     private void recordIcfOperationStart(StateReporter reporter, ProvisioningOperation operation, ObjectClassComplexTypeDefinition objectClassDefinition, Uid uid) {
@@ -2263,6 +2308,15 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
         return caseIgnoreAttributeNames;
     }
 
+    /** Returns null if the search is not to be pipelined. */
+    PipelinedSearchExecutors getPipelinedSearchExecutors() {
+        return pipelinedSearchExecutors;
+    }
+
+    int getPipelinedSearchQueueSize() {
+        return pipelinedSearchQueueSize;
+    }
+
     ConnectorFacade getConnIdConnectorFacade() {
         return connIdConnectorFacade;
     }
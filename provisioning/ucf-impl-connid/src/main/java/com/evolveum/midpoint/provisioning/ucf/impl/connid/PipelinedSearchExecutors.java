@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Threads used by pipelined searches (see `pipelinedSearchThreads` connector configuration property)
+ * of a single connector instance. They are shared by all searches of the instance, and are shut down
+ * when the instance is disposed or reconfigured to use a different number of threads.
+ */
+class PipelinedSearchExecutors {
+
+    private static final long FETCH_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private final int conversionThreads;
+
+    /**
+     * Converts the objects found. The number of threads is fixed; if more searches run concurrently,
+     * their conversions wait for each other.
+     */
+    @NotNull private final ExecutorService conversionExecutor;
+
+    /**
+     * Runs the connector searches. A search occupies its thread until it is over, so there is a thread for each
+     * pipelined search running; idle threads are reused by later searches. (The number of searches is limited
+     * by the calling threads, as each of them waits for its search.) Conversions are not executed here, so
+     * connectors waiting for a room in their queues cannot block them.
+     */
+    @NotNull private final ExecutorService fetchExecutor;
+
+    PipelinedSearchExecutors(int conversionThreads) {
+        this.conversionThreads = conversionThreads;
+        this.conversionExecutor = Executors.newFixedThreadPool(conversionThreads,
+                new ThreadFactoryBuilder().setNameFormat("connid-search-convert-%d").setDaemon(true).build());
+        this.fetchExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                FETCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("connid-search-fetch-%d").setDaemon(true).build());
+    }
+
+    int getConversionThreads() {
+        return conversionThreads;
+    }
+
+    @NotNull ExecutorService getConversionExecutor() {
+        return conversionExecutor;
+    }
+
+    @NotNull ExecutorService getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    /** Stops the running searches (by interrupting them) and releases the threads. */
+    void shutdown() {
+        fetchExecutor.shutdownNow();
+        conversionExecutor.shutdownNow();
+    }
+
+    boolean isShutdown() {
+        return fetchExecutor.isShutdown() && conversionExecutor.isShutdown();
+    }
+}
@@ -10,7 +10,9 @@ package com.evolveum.midpoint.provisioning.ucf.impl.connid;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnIdUtil.processConnIdException;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnectorInstanceConnIdImpl.toShadowDefinition;
 
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.xml.namespace.QName;
 
 import com.google.common.base.MoreObjects;
@@ -37,6 +39,8 @@ import com.evolveum.midpoint.schema.statistics.ProvisioningOperation;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
 import com.evolveum.midpoint.task.api.StateReporter;
 import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.resource.capabilities_3.PagedSearchCapabilityType;
 import com.evolveum.prism.xml.ns._public.query_3.OrderDirectionType;
@@ -46,6 +50,13 @@ import com.evolveum.prism.xml.ns._public.query_3.OrderDirectionType;
  */
 class SearchExecutor {
 
+    private static final Trace LOGGER = TraceManager.getTrace(SearchExecutor.class);
+
+    private static final String OP_CONVERT_OBJECT = SearchExecutor.class.getName() + ".convertObject";
+
+    /** How often the threads blocked on the pipeline queue check whether the search was stopped. */
+    private static final long QUEUE_POLL_INTERVAL_MILLIS = 100;
+
     @NotNull private final ObjectClassComplexTypeDefinition objectClassDefinition;
     @NotNull private final PrismObjectDefinition<ShadowType> objectDefinition;
     @NotNull private final ObjectClass icfObjectClass;
@@ -207,8 +218,13 @@ class SearchExecutor {
 
             InternalMonitor.recordConnectorOperation("search");
             recordIcfOperationStart();
-            connIdSearchResult = connectorInstance.getConnIdConnectorFacade()
-                    .search(icfObjectClass, connIdFilter, connIdHandler, connIdOptions);
+            PipelinedSearchExecutors pipelinedSearchExecutors = connectorInstance.getPipelinedSearchExecutors();
+            if (pipelinedSearchExecutors != null) {
+                connIdSearchResult = new SearchPipeline(pipelinedSearchExecutors).execute(connIdOptions);
+            } else {
+                connIdSearchResult = connectorInstance.getConnIdConnectorFacade()
+                        .search(icfObjectClass, connIdFilter, connIdHandler, connIdOptions);
+            }
             recordIcfOperationEnd(null);
 
             icfOpResult.recordSuccess();
@@ -296,6 +312,27 @@ class SearchExecutor {
         return pagedSearchConfiguration == null;
     }
 
+    /** Is the object with given number (starting at 0) before the page requested? Applies to simulated paging only. */
+    private boolean isBeforeSimulatedPage(int number) {
+        if (isNoConnectorPaging() && query != null && query.getPaging() != null) {
+            int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
+            return number < offset;
+        } else {
+            return false;
+        }
+    }
+
+    /** Is the object with given number (starting at 0) after the page requested? Applies to simulated paging only. */
+    private boolean isAfterSimulatedPage(int number) {
+        if (isNoConnectorPaging() && query != null && query.getPaging() != null) {
+            int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
+            Integer maxSize = query.getPaging().getMaxSize();
+            return maxSize != null && number >= offset + maxSize;
+        } else {
+            return false;
+        }
+    }
+
     private class SearchResultsHandler implements ResultsHandler {
 
         @Override
@@ -305,17 +342,11 @@ class SearchExecutor {
             recordIcfOperationSuspend();
             try {
                 int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
-                if (isNoConnectorPaging()) {
-                    if (query != null && query.getPaging() != null) {
-                        int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
-                        Integer maxSize = query.getPaging().getMaxSize();
-                        if (number < offset) {
-                            return true;
-                        }
-                        if (maxSize != null && number >= offset + maxSize) {
-                            return false;
-                        }
-                    }
+                if (isBeforeSimulatedPage(number)) {
+                    return true;
+                }
+                if (isAfterSimulatedPage(number)) {
+                    return false;
                 }
 
                 UcfObjectFound ucfObject = connectorInstance.connIdConvertor.convertToUcfObject(
@@ -336,4 +367,232 @@ class SearchExecutor {
             return "(midPoint searching result handler)";
         }
     }
+
+    /**
+     * Pipelined execution of the search (see `pipelinedSearchThreads` connector configuration property).
+     *
+     * The connector runs in its own thread. It only submits the objects found for conversion and puts the (future)
+     * converted objects into a bounded queue, waiting if the queue is full. The conversion runs in a thread pool.
+     * The converted objects are passed to the handler in the current thread, in the order in which they were found.
+     * The threads are shared by all searches of the connector instance, see {@link PipelinedSearchExecutors}.
+     *
+     * When the handler asks to stop (or fails), the connector is told to stop at the next object, and the objects
+     * remaining in the queue are discarded. Errors are reported in the same way as in the non-pipelined search.
+     *
+     * Time spent waiting in individual stages is reported as separate provisioning operations.
+     */
+    private class SearchPipeline {
+
+        /** Put into the queue by the connector thread after the search is over. */
+        private final Future<ConvertedObject> endOfData = CompletableFuture.completedFuture(null);
+
+        @NotNull private final BlockingQueue<Future<ConvertedObject>> queue =
+                new ArrayBlockingQueue<>(Math.max(1, connectorInstance.getPipelinedSearchQueueSize()));
+
+        @NotNull private final ExecutorService conversionExecutor;
+
+        @NotNull private final ExecutorService fetchExecutor;
+
+        /** Set when the processing should stop: the handler asked for it, or there was an error. */
+        private volatile boolean stopRequested;
+
+        /** Set when the processing thread no longer takes objects from the queue (it was interrupted). */
+        private volatile boolean abandoned;
+
+        /** Time the connector spent waiting for the space in the queue (nanoseconds). */
+        @NotNull private final AtomicLong handleWait = new AtomicLong();
+
+        /** Time the processing thread spent waiting for objects being fetched (nanoseconds). */
+        private long fetchWait;
+
+        /** Time the processing thread spent waiting for objects being converted (nanoseconds). */
+        private long convertWait;
+
+        private int objectsProcessed;
+
+        private SearchPipeline(@NotNull PipelinedSearchExecutors executors) {
+            this.conversionExecutor = executors.getConversionExecutor();
+            this.fetchExecutor = executors.getFetchExecutor();
+        }
+
+        SearchResult execute(OperationOptions connIdOptions) throws Throwable {
+            Future<SearchResult> fetchFuture = fetchExecutor.submit(() -> fetch(connIdOptions));
+            Throwable processingFailure;
+            try {
+                processingFailure = processObjects();
+            } catch (InterruptedException e) {
+                LOGGER.debug("Interrupted while waiting for objects being fetched; stopping the search");
+                stopRequested = true;
+                abandoned = true;
+                fetchFuture.cancel(true);
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                // The executors are shared, so the conversions of this search have to be cancelled one by one.
+                cancelQueuedConversions();
+                recordWaitTimes();
+            }
+
+            // The connector has finished by now, because the end-of-data mark was taken from the queue.
+            SearchResult searchResult;
+            try {
+                searchResult = fetchFuture.get();
+            } catch (ExecutionException e) {
+                // If the processing failed as well, the connector failure is most probably only a consequence of it.
+                throw processingFailure != null ? processingFailure : e.getCause();
+            }
+            if (processingFailure != null) {
+                throw processingFailure;
+            }
+            return searchResult;
+        }
+
+        /** Executed in the connector thread. */
+        private SearchResult fetch(OperationOptions connIdOptions) throws InterruptedException {
+            try {
+                return connectorInstance.getConnIdConnectorFacade()
+                        .search(icfObjectClass, connIdFilter, this::enqueue, connIdOptions);
+            } finally {
+                while (!abandoned && !queue.offer(endOfData, QUEUE_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // waiting for the processing thread to make room in the queue
+                }
+            }
+        }
+
+        /** Executed in the connector thread. */
+        private boolean enqueue(ConnectorObject connectorObject) {
+            Validate.notNull(connectorObject, "null connector object"); // todo apply error reporting method?
+
+            if (stopRequested) {
+                return false;
+            }
+            int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
+            if (isBeforeSimulatedPage(number)) {
+                return true;
+            }
+            if (isAfterSimulatedPage(number)) {
+                return false;
+            }
+
+            Future<ConvertedObject> converted = conversionExecutor.submit(() -> convert(connectorObject));
+            long start = System.nanoTime();
+            try {
+                while (!queue.offer(converted, QUEUE_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stopRequested) {
+                        converted.cancel(false);
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                converted.cancel(false);
+                return false;
+            } finally {
+                handleWait.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        /** Executed in a conversion thread. */
+        private ConvertedObject convert(ConnectorObject connectorObject) throws SchemaException {
+            // Operation results are not thread-safe, so the conversion gets a separate one.
+            // It is attached to the search result in the processing thread.
+            OperationResult conversionResult = new OperationResult(OP_CONVERT_OBJECT);
+            UcfObjectFound ucfObject = connectorInstance.connIdConvertor.convertToUcfObject(
+                    connectorObject, objectDefinition, false, connectorInstance.isCaseIgnoreAttributeNames(),
+                    connectorInstance.isLegacySchema(), errorReportingMethod, conversionResult);
+            return new ConvertedObject(ucfObject, conversionResult);
+        }
+
+        /**
+         * Executed in the processing (i.e. current) thread. Takes the objects from the queue until the end-of-data mark.
+         *
+         * @return failure of conversion or processing, if there was any
+         */
+        private Throwable processObjects() throws InterruptedException {
+            Throwable failure = null;
+            for (;;) {
+                long start = System.nanoTime();
+                Future<ConvertedObject> next = queue.take();
+                fetchWait += System.nanoTime() - start;
+
+                if (next == endOfData) {
+                    return failure;
+                }
+                if (stopRequested) {
+                    next.cancel(false); // discarding the rest
+                    continue;
+                }
+                try {
+                    ConvertedObject converted = getConverted(next);
+                    converted.result.getSubresults().forEach(result::addSubresult);
+                    objectsProcessed++;
+                    if (!handler.handle(converted.ucfObject)) {
+                        stopRequested = true;
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                    stopRequested = true;
+                }
+            }
+        }
+
+        /**
+         * Cancels the conversions left in the queue. The connector is either finished or told to stop at this point.
+         * (If it has not noticed the stop request yet, it may add one more object, whose conversion is then wasted.)
+         */
+        private void cancelQueuedConversions() {
+            Future<ConvertedObject> next;
+            while ((next = queue.poll()) != null) {
+                next.cancel(false);
+            }
+        }
+
+        private ConvertedObject getConverted(Future<ConvertedObject> future) throws InterruptedException {
+            long start = System.nanoTime();
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SchemaException) {
+                    // The same as in non-pipelined search
+                    throw new IntermediateException(e.getCause());
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                } else {
+                    throw new SystemException(e.getCause());
+                }
+            } finally {
+                convertWait += System.nanoTime() - start;
+            }
+        }
+
+        private void recordWaitTimes() {
+            long fetchWaitMillis = TimeUnit.NANOSECONDS.toMillis(fetchWait);
+            long convertWaitMillis = TimeUnit.NANOSECONDS.toMillis(convertWait);
+            long handleWaitMillis = TimeUnit.NANOSECONDS.toMillis(handleWait.get());
+            LOGGER.debug("Pipelined search of {} finished: {} objects processed; waiting for fetch: {} ms, "
+                            + "for conversion: {} ms, for processing: {} ms", icfObjectClass, objectsProcessed,
+                    fetchWaitMillis, convertWaitMillis, handleWaitMillis);
+            if (reporter != null) {
+                reporter.recordIcfOperationWait(ProvisioningOperation.ICF_SEARCH_FETCH_WAIT, objectClassDefinition,
+                        objectsProcessed, fetchWaitMillis);
+                reporter.recordIcfOperationWait(ProvisioningOperation.ICF_SEARCH_CONVERT_WAIT, objectClassDefinition,
+                        objectsProcessed, convertWaitMillis);
+                reporter.recordIcfOperationWait(ProvisioningOperation.ICF_SEARCH_HANDLE_WAIT, objectClassDefinition,
+                        objectsProcessed, handleWaitMillis);
+            }
+        }
+    }
+
+    private static class ConvertedObject {
+        @NotNull private final UcfObjectFound ucfObject;
+        @NotNull private final OperationResult result;
+
+        private ConvertedObject(@NotNull UcfObjectFound ucfObject, @NotNull OperationResult result) {
+            this.ucfObject = ucfObject;
+            this.result = result;
+        }
+    }
 }
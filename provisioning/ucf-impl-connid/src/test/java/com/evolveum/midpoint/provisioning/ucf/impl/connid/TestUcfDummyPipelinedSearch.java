@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.BreakMode;
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.icf.dummy.resource.DummyResource;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.provisioning.ucf.api.ObjectHandler;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.test.DummyResourceContoller;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * UCF test of pipelined search (`pipelinedSearchThreads` connector configuration property).
+ * Uses a separate dummy resource instance.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-ucf-connid-test.xml" })
+public class TestUcfDummyPipelinedSearch extends AbstractUcfDummyTest {
+
+    private static final File RESOURCE_DUMMY_PIPELINED_FILE = new File(UcfTestUtil.TEST_DIR, "resource-dummy-pipelined.xml");
+    private static final String RESOURCE_DUMMY_PIPELINED_INSTANCE = "pipelined";
+
+    private static final int ACCOUNTS = 50;
+
+    private DummyResource pipelinedDummyResource;
+    private ObjectClassComplexTypeDefinition accountDefinition;
+
+    @Test
+    public void test000Setup() throws Exception {
+        DummyResourceContoller controller = DummyResourceContoller.create(RESOURCE_DUMMY_PIPELINED_INSTANCE);
+        controller.populateWithDefaultSchema();
+        pipelinedDummyResource = controller.getDummyResource();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            pipelinedDummyResource.addAccount(new DummyAccount(String.format("account-%03d", i)));
+        }
+
+        ResourceType pipelinedResource = PrismTestUtil.<ResourceType>parseObject(RESOURCE_DUMMY_PIPELINED_FILE).asObjectable();
+        cc = connectorFactory.createConnectorInstance(connectorType,
+                ResourceTypeUtil.getResourceNamespace(pipelinedResource),
+                "pipelined", "dummy test connector instance with pipelined search");
+        OperationResult result = createOperationResult();
+        cc.configure(pipelinedResource.getConnectorConfiguration().asPrismContainerValue(),
+                ResourceTypeUtil.getSchemaGenerationConstraints(pipelinedResource), result);
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+
+        assertNotNull("No threads for pipelined search", getPipelinedSearchExecutors());
+
+        resourceSchema = cc.fetchResourceSchema(result);
+        assertNotNull("No resource schema", resourceSchema);
+        accountDefinition = resourceSchema.findDefaultObjectClassDefinition(ShadowKindType.ACCOUNT);
+        assertNotNull("No account definition", accountDefinition);
+    }
+
+    /** Objects are handled in the order in which the connector returned them, in the calling thread. */
+    @Test
+    public void test100SearchOrder() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        List<String> names = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        ObjectHandler handler = ucfObject -> {
+            names.add(getName(ucfObject.getResourceObject()));
+            threads.add(Thread.currentThread());
+            return true;
+        };
+
+        when();
+        cc.search(accountDefinition, null, handler, null, null, null, null, null, result);
+
+        then();
+        assertEquals("Wrong order of objects", getAccountNames(), names);
+        for (Thread thread : threads) {
+            assertSame("Handler was not called in the calling thread", Thread.currentThread(), thread);
+        }
+    }
+
+    /** Two searches at once share the threads; neither of them is blocked by the other. */
+    @Test
+    public void test110ConcurrentSearches() throws Exception {
+        given();
+        OperationResult result1 = createOperationResult();
+        OperationResult result2 = createOperationResult();
+        List<String> names1 = new ArrayList<>();
+        List<String> names2 = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try {
+                cc.search(accountDefinition, null, ucfObject -> names1.add(getName(ucfObject.getResourceObject())),
+                        null, null, null, null, null, result1);
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        });
+        thread.setName("search1");
+
+        when();
+        thread.start();
+        cc.search(accountDefinition, null, ucfObject -> names2.add(getName(ucfObject.getResourceObject())),
+                null, null, null, null, null, result2);
+        thread.join(60000);
+
+        then();
+        assertFalse("Search 1 is still running", thread.isAlive());
+        assertNull("Search 1 failed: " + failure[0], failure[0]);
+        assertEquals("Wrong objects in search 1", getAccountNames(), names1);
+        assertEquals("Wrong objects in search 2", getAccountNames(), names2);
+    }
+
+    /** When the handler asks to stop, no more objects are handled, and later searches are not affected. */
+    @Test
+    public void test120HandlerStopsSearch() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        List<String> names = new ArrayList<>();
+        ObjectHandler handler = ucfObject -> {
+            names.add(getName(ucfObject.getResourceObject()));
+            return names.size() < 5;
+        };
+
+        when();
+        cc.search(accountDefinition, null, handler, null, null, null, null, null, result);
+
+        then();
+        assertEquals("Wrong objects handled", getAccountNames().subList(0, 5), names);
+
+        and("next search is complete");
+        List<String> allNames = new ArrayList<>();
+        cc.search(accountDefinition, null, ucfObject -> allNames.add(getName(ucfObject.getResourceObject())),
+                null, null, null, null, null, createOperationResult());
+        assertEquals("Wrong objects in the next search", getAccountNames(), allNames);
+    }
+
+    /** A handler failure stops the search and is thrown from it. */
+    @Test
+    public void test130HandlerFailure() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        List<String> names = new ArrayList<>();
+        ObjectHandler handler = ucfObject -> {
+            names.add(getName(ucfObject.getResourceObject()));
+            if (names.size() == 3) {
+                throw new IllegalStateException("Simulated handler failure");
+            }
+            return true;
+        };
+
+        when();
+        try {
+            cc.search(accountDefinition, null, handler, null, null, null, null, null, result);
+            fail("Unexpected success");
+        } catch (Exception e) {
+            then();
+            displayExpectedException(e);
+            assertMessageInChain(e, "Simulated handler failure");
+        }
+        assertEquals("Objects were handled after the failure", 3, names.size());
+    }
+
+    /** A connector failure is thrown from the search in the same way as in non-pipelined search. */
+    @Test
+    public void test140ConnectorFailure() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        pipelinedDummyResource.setGetBreakMode(BreakMode.NETWORK);
+
+        when();
+        try {
+            cc.search(accountDefinition, null, ucfObject -> true, null, null, null, null, null, result);
+            fail("Unexpected success");
+        } catch (CommunicationException e) {
+            then();
+            displayExpectedException(e);
+        } finally {
+            pipelinedDummyResource.setGetBreakMode(BreakMode.NONE);
+        }
+    }
+
+    /** Interruption of the calling thread stops the search. */
+    @Test
+    public void test150InterruptedSearch() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        List<String> names = new ArrayList<>();
+        ObjectHandler handler = ucfObject -> {
+            names.add(getName(ucfObject.getResourceObject()));
+            if (names.size() == 3) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+
+        when();
+        try {
+            cc.search(accountDefinition, null, handler, null, null, null, null, null, result);
+        } finally {
+            // Clearing the flag, so other tests are not affected.
+            Thread.interrupted();
+        }
+
+        then();
+        assertTrue("Too many objects handled: " + names.size(), names.size() < ACCOUNTS);
+    }
+
+    /** Disposing the connector instance releases the threads. */
+    @Test
+    public void test900Dispose() {
+        given();
+        PipelinedSearchExecutors executors = getPipelinedSearchExecutors();
+
+        when();
+        cc.dispose();
+
+        then();
+        assertTrue("Threads for pipelined search were not shut down", executors.isShutdown());
+        assertNull("Threads for pipelined search are still there", getPipelinedSearchExecutors());
+    }
+
+    private PipelinedSearchExecutors getPipelinedSearchExecutors() {
+        return ((ConnectorInstanceConnIdImpl) cc).getPipelinedSearchExecutors();
+    }
+
+    private List<String> getAccountNames() throws Exception {
+        return pipelinedDummyResource.listAccounts().stream()
+                .map(DummyAccount::getName)
+                .collect(Collectors.toList());
+    }
+
+    private String getName(PrismObject<ShadowType> resourceObject) {
+        try {
+            return ShadowUtil.getAttributeValue(resourceObject, SchemaConstants.ICFS_NAME);
+        } catch (SchemaException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void assertMessageInChain(Throwable throwable, String message) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(message)) {
+                return;
+            }
+        }
+        fail("No '" + message + "' in " + throwable);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Result of a single item of a batch operation, see {@link RepositoryService#addObjects}
+ * and {@link RepositoryService#modifyObjects}.
+ * Batch operations return these results in the same order as the items were provided.
+ * <p>
+ * EXPERIMENTAL.
+ */
+public class BatchItemResult {
+
+    private final String oid;
+    private final Exception exception;
+
+    private BatchItemResult(String oid, Exception exception) {
+        this.oid = oid;
+        this.exception = exception;
+    }
+
+    public static BatchItemResult success(@NotNull String oid) {
+        return new BatchItemResult(oid, null);
+    }
+
+    public static BatchItemResult failure(@Nullable String oid, @NotNull Exception exception) {
+        return new BatchItemResult(oid, exception);
+    }
+
+    /**
+     * OID of the added or modified object.
+     * For failed add it is the OID provided in the object (if any), otherwise null.
+     */
+    public @Nullable String getOid() {
+        return oid;
+    }
+
+    /** Exception that caused the item to fail, null for successful item. */
+    public @Nullable Exception getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "oid='" + oid + '\'' +
+                (exception != null ? ", exception=" + exception : "") +
+                '}';
+    }
+}
@@ -6,7 +6,9 @@
  */
 package com.evolveum.midpoint.repo.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.evolveum.midpoint.util.annotation.Experimental;
 
@@ -16,6 +18,7 @@ import org.jetbrains.annotations.Nullable;
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.perf.PerformanceMonitor;
 import com.evolveum.midpoint.repo.api.query.ObjectFilterExpressionEvaluator;
@@ -113,10 +116,12 @@ public interface RepositoryService {
 
     String OP_ADD_OBJECT = "addObject";
     String OP_ADD_OBJECT_OVERWRITE = "addObjectOverwrite"; // addObject with overwrite option
+    String OP_ADD_OBJECTS = "addObjects";
     String OP_DELETE_OBJECT = "deleteObject";
     String OP_COUNT_OBJECTS = "countObjects";
     String OP_MODIFY_OBJECT = "modifyObject";
     String OP_MODIFY_OBJECT_DYNAMICALLY = "modifyObjectDynamically";
+    String OP_MODIFY_OBJECTS = "modifyObjects";
     String OP_GET_VERSION = "getVersion";
     String OP_IS_ANY_SUBORDINATE = "isAnySubordinate";
     String OP_ADVANCE_SEQUENCE = "advanceSequence";
@@ -311,6 +316,67 @@ public interface RepositoryService {
         @NotNull Collection<? extends ItemDelta<?, ?>> get(T object) throws SchemaException;
     }
 
+    /**
+     * Adds multiple objects, typically for bulk imports.
+     * Each object is added as with {@link #addObject}, but the implementation may write
+     * multiple objects in a single transaction and use JDBC batching.
+     * Failure of one object does not prevent adding other objects, the outcome for each
+     * object is returned in the list of results in the same order as the objects were provided.
+     *
+     * The implementation may update the provided objects, as the implementations of {@link #addObject} do,
+     * e.g. set their OIDs (if missing), versions or container IDs. This may happen even for objects that were not added.
+     *
+     * Default implementation simply calls {@link #addObject} for each object.
+     */
+    @Experimental
+    @NotNull
+    default List<BatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            @NotNull OperationResult parentResult) {
+        List<BatchItemResult> results = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            try {
+                results.add(BatchItemResult.success(addObject(object, options, parentResult)));
+            } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+                results.add(BatchItemResult.failure(object.getOid(), e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Modifies multiple objects, each object is modified as with {@link #modifyObject}
+     * using the modifications from the provided MODIFY delta.
+     * The implementation may modify multiple objects in a single transaction.
+     * Failure of one object does not prevent modification of other objects, the outcome
+     * for each delta is returned in the list of results in the same order as the deltas.
+     *
+     * Default implementation simply calls {@link #modifyObject} for each delta.
+     */
+    @Experimental
+    @NotNull
+    default List<BatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable RepoModifyOptions options,
+            @NotNull OperationResult parentResult) {
+        List<BatchItemResult> results = new ArrayList<>(deltas.size());
+        for (ObjectDelta<? extends ObjectType> delta : deltas) {
+            try {
+                if (!delta.isModify()) {
+                    throw new IllegalArgumentException("Only MODIFY deltas are supported: " + delta);
+                }
+                modifyObject(delta.getObjectTypeClass(), delta.getOid(),
+                        delta.getModifications(), options, parentResult);
+                results.add(BatchItemResult.success(delta.getOid()));
+            } catch (ObjectNotFoundException | SchemaException | ObjectAlreadyExistsException
+                    | RuntimeException e) {
+                results.add(BatchItemResult.failure(delta.getOid(), e));
+            }
+        }
+        return results;
+    }
+
     /**
      * <p>Deletes object with specified OID.</p>
      * <p>
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.api;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+
+/**
+ * Storage of work buckets of multi-node (coordinator/worker) tasks outside of the coordinator task object.
+ *
+ * Buckets stored in the coordinator task work state are allocated by modifying the whole task,
+ * so all the workers contend on a single row which also keeps growing with the number of buckets.
+ * Implementations of this interface store each bucket separately and claim them with row-level locks,
+ * so workers allocating buckets concurrently do not wait for each other.
+ *
+ * This is an optional repository component, task manager uses the buckets in the coordinator
+ * task if no implementation is available.
+ *
+ * Buckets are identified by the coordinator task OID and the sequential number of the bucket.
+ * State and worker reference of the returned buckets reflect the state in the store.
+ *
+ * EXPERIMENTAL.
+ */
+public interface WorkBucketStore {
+
+    /**
+     * Claims up to `maxCount` READY buckets of the coordinator for the worker, lowest sequential numbers first.
+     * Claimed buckets are DELEGATED to the worker.
+     * Buckets locked by other concurrent claims are skipped, so this operation never waits for other workers.
+     *
+     * @return Claimed buckets ordered by the sequential number, empty list if nothing is available now.
+     */
+    @NotNull List<WorkBucketType> claimReadyBuckets(@NotNull String coordinatorOid,
+            @NotNull String workerOid, int maxCount, @NotNull OperationResult result);
+
+    /** Returns all the buckets of the coordinator ordered by the sequential number. */
+    @NotNull List<WorkBucketType> getBuckets(@NotNull String coordinatorOid, @NotNull OperationResult result);
+
+    /**
+     * Adds new buckets for the coordinator, e.g. when there are no READY buckets left.
+     *
+     * @return false if some of the buckets already exist, e.g. because other worker created them
+     * concurrently; in that case none of the buckets is added.
+     */
+    boolean addBuckets(@NotNull String coordinatorOid,
+            @NotNull List<WorkBucketType> buckets, @NotNull OperationResult result);
+
+    /**
+     * Marks the bucket DELEGATED to the worker as COMPLETE.
+     * Completed buckets with lower sequential numbers are deleted, only the last completed bucket
+     * is kept, as this is enough to determine where to continue with the bucket creation.
+     *
+     * @return false if there is no such bucket delegated to the worker
+     */
+    boolean completeBucket(@NotNull String coordinatorOid, @NotNull String workerOid,
+            int sequentialNumber, @NotNull OperationResult result);
+
+    /**
+     * Returns DELEGATED bucket to the READY state, so it can be claimed by any worker.
+     * If the worker OID is provided, the bucket is released only if it is delegated to that worker.
+     *
+     * @return false if there is no such delegated bucket
+     */
+    boolean releaseBucket(@NotNull String coordinatorOid, @Nullable String workerOid,
+            int sequentialNumber, @NotNull OperationResult result);
+
+    /** Deletes all the buckets of the coordinator, e.g. when the work state of the task is reset. */
+    void deleteBuckets(@NotNull String coordinatorOid, @NotNull OperationResult result);
+}
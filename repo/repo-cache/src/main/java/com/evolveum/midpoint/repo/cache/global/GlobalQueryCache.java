@@ -9,6 +9,7 @@ package com.evolveum.midpoint.repo.cache.global;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.repo.cache.local.QueryKey;
+import com.evolveum.midpoint.repo.cache.local.QueryKeyIndex;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.cache.CacheType;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -24,6 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -43,8 +45,23 @@ public class GlobalQueryCache extends AbstractGlobalCache {
 
     private static final String CACHE_NAME = "queryCache";
 
+    /**
+     * How many puts can be done before the index is checked for keys that are no longer in the cache.
+     * Entries can disappear from the cache without us knowing (expiration, eviction), so we need to do this occasionally.
+     */
+    private static final int INDEX_CLEANUP_INTERVAL = 10000;
+
     private org.cache2k.Cache<QueryKey, GlobalCacheQueryValue> cache;
 
+    /**
+     * Index of the cached queries. Keys are added to the index before they are put into the cache
+     * and removed only after checking they are not in the cache; both under the lock of the index.
+     * So each key in the cache is always in the index.
+     */
+    private final QueryKeyIndex index = new QueryKeyIndex();
+
+    private int putsSinceIndexCleanup;
+
     public void initialize() {
         if (cache != null) {
             LOGGER.warn("Global query cache was already initialized -- ignoring this request.");
@@ -93,6 +110,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
     public void remove(QueryKey cacheKey) {
         if (cache != null) {
             cache.remove(cacheKey);
+            removeFromIndexIfNotCached(Collections.singleton(cacheKey));
         }
     }
 
@@ -102,14 +120,45 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             if (cacheObject.size() > QUERY_RESULT_SIZE_LIMIT) {
                 throw new IllegalStateException("Trying to cache result list greater than " + QUERY_RESULT_SIZE_LIMIT + ": " + cacheObject.size());
             }
-            //noinspection unchecked
-            cache.put(key, new GlobalCacheQueryValue(cacheObject));
+            synchronized (index) {
+                index.add(key, cacheObject);
+                //noinspection unchecked
+                cache.put(key, new GlobalCacheQueryValue(cacheObject));
+                if (++putsSinceIndexCleanup >= INDEX_CLEANUP_INTERVAL) {
+                    putsSinceIndexCleanup = 0;
+                    removeFromIndexIfNotCached(new ArrayList<>(index.getKeys()));
+                }
+            }
         }
     }
 
-    public void invokeAll(EntryProcessor<QueryKey, GlobalCacheQueryValue, Void> entryProcessor) {
-        if (cache != null) {
-            cache.invokeAll(cache.keys(), entryProcessor);
+    /**
+     * Index of the cached queries, used to find queries possibly affected by a change.
+     * It can contain keys no longer present in the cache. Do not modify it directly.
+     */
+    public QueryKeyIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Invokes the entry processor for specified keys, e.g. those obtained from the {@link #getIndex()}.
+     * Keys not present in the cache are skipped and removed from the index.
+     */
+    public void invokeForKeys(Collection<QueryKey<?>> keys, EntryProcessor<QueryKey, GlobalCacheQueryValue, Void> entryProcessor) {
+        if (cache != null && !keys.isEmpty()) {
+            cache.invokeAll(keys, e -> e.exists() ? entryProcessor.process(e) : null);
+            // Removal from the index can't be done in the processor, as it's called under the lock of the entry.
+            removeFromIndexIfNotCached(keys);
+        }
+    }
+
+    private void removeFromIndexIfNotCached(Collection<? extends QueryKey> keys) {
+        synchronized (index) {
+            for (QueryKey key : keys) {
+                if (!cache.containsKey(key)) {
+                    index.remove(key);
+                }
+            }
         }
     }
 
@@ -125,7 +174,10 @@ public class GlobalQueryCache extends AbstractGlobalCache {
     @Override
     public void clear() {
         if (cache != null) {
-            cache.clear();
+            synchronized (index) {
+                cache.clear();
+                index.clear();
+            }
         }
     }
 
@@ -15,6 +15,7 @@ import java.util.Collection;
 
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.prism.CloneStrategy;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.repo.cache.global.GlobalObjectCache;
@@ -97,7 +98,7 @@ class GetObjectOpExecution<O extends ObjectType>
         if (readOnly) {
             return immutable;
         } else {
-            return immutable.clone();
+            return immutable.cloneComplex(CloneStrategy.COPY_ON_WRITE);
         }
     }
 }
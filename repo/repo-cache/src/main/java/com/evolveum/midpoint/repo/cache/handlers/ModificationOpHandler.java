@@ -9,6 +9,7 @@ package com.evolveum.midpoint.repo.cache.handlers;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.cache.other.MonitoringUtil;
 import com.evolveum.midpoint.schema.DeltaConvertor;
@@ -24,6 +25,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import static com.evolveum.midpoint.repo.cache.RepositoryCache.CLASS_NAME_WITH_DOT;
@@ -38,7 +40,9 @@ import static com.evolveum.midpoint.schema.util.TraceUtil.isAtLeastNormal;
 public class ModificationOpHandler extends BaseOpHandler {
 
     private static final String ADD_OBJECT = CLASS_NAME_WITH_DOT + "addObject";
+    private static final String ADD_OBJECTS = CLASS_NAME_WITH_DOT + "addObjects";
     private static final String MODIFY_OBJECT = CLASS_NAME_WITH_DOT + "modifyObject";
+    private static final String MODIFY_OBJECTS = CLASS_NAME_WITH_DOT + "modifyObjects";
     private static final String DELETE_OBJECT = CLASS_NAME_WITH_DOT + "deleteObject";
     private static final String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
     private static final String RETURN_UNUSED_VALUES_TO_SEQUENCE = CLASS_NAME_WITH_DOT + "returnUnusedValuesToSequence";
@@ -147,6 +151,83 @@ public class ModificationOpHandler extends BaseOpHandler {
         }
     }
 
+    /**
+     * Batch variant of {@link #addObject}; objects are not traced individually,
+     * but all successfully added objects are invalidated just like with single add.
+     */
+    @NotNull
+    public List<BatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            RepoAddOptions options, OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(ADD_OBJECTS)
+                .addParam("count", objects.size())
+                .addArbitraryObjectAsParam("options", options)
+                .build();
+        try {
+            List<BatchItemResult> batchResults;
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                batchResults = repositoryService.addObjects(objects, options, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+            }
+            for (int i = 0; i < objects.size(); i++) {
+                BatchItemResult batchResult = batchResults.get(i);
+                if (batchResult.isSuccess()) {
+                    invalidateAfterAdd(objects.get(i), batchResult.getOid(), options, result);
+                }
+            }
+            return batchResults;
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
+    private <T extends ObjectType> void invalidateAfterAdd(
+            PrismObject<T> object, String oid, RepoAddOptions options, OperationResult result) {
+        if (options != null && options.isOverwrite()) {
+            invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid,
+                    new ModifyObjectResult<>(object.getUserData(RepositoryService.KEY_ORIGINAL_OBJECT), object,
+                            Collections.emptyList()), result);
+        } else {
+            invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid, new AddObjectResult<>(object), result);
+        }
+    }
+
+    /**
+     * Batch variant of {@link #modifyObject}; all the modified objects are invalidated,
+     * even the failed ones, because we don't know what happened with them.
+     */
+    @NotNull
+    public List<BatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            RepoModifyOptions options, OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(MODIFY_OBJECTS)
+                .addParam("count", deltas.size())
+                .addArbitraryObjectAsParam("options", options)
+                .build();
+        try {
+            randomDelay();
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                return repositoryService.modifyObjects(deltas, options, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+                for (ObjectDelta<? extends ObjectType> delta : deltas) {
+                    invalidator.invalidateCacheEntries(delta.getObjectTypeClass(), delta.getOid(), null, result);
+                }
+            }
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
     @NotNull
     public <T extends ObjectType> DeleteObjectResult deleteObject(Class<T> type, String oid, OperationResult parentResult)
             throws ObjectNotFoundException {
@@ -13,6 +13,7 @@ import java.util.Collection;
 
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.prism.CloneStrategy;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
@@ -71,7 +72,7 @@ class SearchOpExecution<O extends ObjectType>
         if (readOnly) {
             return immutableList;
         } else {
-            return immutableList.deepClone();
+            return immutableList.map(object -> object.cloneComplex(CloneStrategy.COPY_ON_WRITE));
         }
     }
 
@@ -21,6 +21,7 @@ import com.evolveum.midpoint.repo.cache.other.MonitoringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 
+import com.evolveum.midpoint.prism.CloneStrategy;
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
@@ -282,7 +283,8 @@ public class SearchOpHandler extends CachedOpHandler {
         try {
             for (PrismObject<T> immutableObject : immutableList) {
                 immutableObject.checkImmutable();
-                PrismObject<T> objectToHandle = exec.readOnly ? immutableObject : immutableObject.clone();
+                PrismObject<T> objectToHandle = exec.readOnly ?
+                        immutableObject : immutableObject.cloneComplex(CloneStrategy.COPY_ON_WRITE);
                 if (!handler.handle(objectToHandle, result)) {
                     break;
                 }
@@ -7,6 +7,8 @@
 
 package com.evolveum.midpoint.repo.cache.invalidation;
 
+import java.util.Set;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -19,6 +21,7 @@ import com.evolveum.midpoint.repo.api.DeleteObjectResult;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
 import com.evolveum.midpoint.repo.cache.handlers.AddObjectResult;
 import com.evolveum.midpoint.repo.cache.local.QueryKey;
+import com.evolveum.midpoint.repo.cache.local.QueryKeyIndex;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -122,6 +125,11 @@ public abstract class ChangeDescription {
             return false;
         }
 
+        @Override
+        boolean canMatchAfterChange() {
+            return false;
+        }
+
         @Override
         public String toString() {
             return "Delete{" +
@@ -145,6 +153,11 @@ public abstract class ChangeDescription {
             return safeInvalidation;
         }
 
+        @Override
+        boolean canMatchAfterChange() {
+            return safeInvalidation;
+        }
+
         @Override
         public String toString() {
             return "Any{" +
@@ -238,6 +251,28 @@ public abstract class ChangeDescription {
         }
     }
 
+    /**
+     * Returns false if {@link #mayMatchAfterChange(ObjectFilter, SearchResultList, MatchingRuleRegistry)}
+     * returns false for any filter. Such change can affect only queries that contain the object in their result
+     * (or that have no filter).
+     */
+    boolean canMatchAfterChange() {
+        return true;
+    }
+
+    /**
+     * Returns keys of queries that may be affected by this change, i.e. a superset of queries for which
+     * {@link #mayAffect(QueryKey, SearchResultList, MatchingRuleRegistry)} returns true.
+     */
+    @NotNull
+    Set<QueryKey<?>> getPotentiallyAffectedKeys(@NotNull QueryKeyIndex index) {
+        if (!canMatchAfterChange() && oid != null) {
+            return index.getKeysForObject(type, oid);
+        } else {
+            return index.getKeysForType(type);
+        }
+    }
+
     public abstract boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
             throws SchemaException;
 
@@ -9,7 +9,6 @@ package com.evolveum.midpoint.repo.cache.local;
 
 import static com.evolveum.midpoint.repo.cache.handlers.SearchOpHandler.QUERY_RESULT_SIZE_LIMIT;
 
-import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,6 +30,9 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
 
     private final Map<QueryKey, SearchResultList> data = new ConcurrentHashMap<>();
 
+    /** Index over {@link #data}, changed along with it. */
+    private final QueryKeyIndex index = new QueryKeyIndex();
+
     public <T extends ObjectType> SearchResultList<PrismObject<T>> get(QueryKey key) {
         //noinspection unchecked
         return data.get(key);
@@ -41,11 +43,21 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
         if (list.size() > QUERY_RESULT_SIZE_LIMIT) {
             throw new IllegalStateException("Trying to cache result list greater than " + QUERY_RESULT_SIZE_LIMIT + ": " + list.size());
         }
+        index.add(key, list);
         data.put(key, list);
     }
 
     public void remove(QueryKey key) {
         data.remove(key);
+        index.remove(key);
+    }
+
+    /**
+     * Index of the cached queries, used to find queries possibly affected by a change.
+     * Do not modify it directly, use {@link #put(QueryKey, SearchResultList)} and {@link #remove(QueryKey)}.
+     */
+    public QueryKeyIndex getIndex() {
+        return index;
     }
 
     @Override
@@ -81,8 +93,4 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
         }
         return rv;
     }
-
-    public Iterator<Map.Entry<QueryKey, SearchResultList>> getEntryIterator() {
-        return data.entrySet().iterator();
-    }
 }
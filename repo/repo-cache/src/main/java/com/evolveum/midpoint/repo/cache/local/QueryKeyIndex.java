@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.local;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Secondary index over query cache entries. It allows the invalidator to find queries that can be affected
+ * by a change of an object without evaluating all the cached queries.
+ *
+ * Keys are indexed by:
+ *
+ * - the type of the query - only queries over the type of changed object (or its supertypes) can be affected,
+ * - OIDs of objects in the query result - if the changed object cannot match the query after the change
+ * (e.g. it was deleted), only queries containing the object in their results can be affected.
+ *
+ * Queries without filter can be affected by any change of the object of matching type, so they are kept
+ * in a separate (and typically small) residual set.
+ *
+ * The index may contain keys that are no longer in the cache - the caller must check the cache anyway.
+ * But each key in the cache must be in the index.
+ */
+public class QueryKeyIndex {
+
+    @NotNull private final Map<Class<?>, Set<QueryKey<?>>> keysByType = new ConcurrentHashMap<>();
+    @NotNull private final Map<String, Set<QueryKey<?>>> keysByOid = new ConcurrentHashMap<>();
+    @NotNull private final Set<QueryKey<?>> unfilteredKeys = ConcurrentHashMap.newKeySet();
+
+    /** OIDs indexed for each key, needed for removal of the key. */
+    @NotNull private final Map<QueryKey<?>, Set<String>> oidsByKey = new ConcurrentHashMap<>();
+
+    public void add(@NotNull QueryKey<?> key, @NotNull SearchResultList<?> result) {
+        Set<String> oids = getOids(result);
+        Set<String> previousOids = oidsByKey.put(key, oids);
+        keysByType.computeIfAbsent(key.getType(), k -> ConcurrentHashMap.newKeySet())
+                .add(key);
+        if (key.getQuery() == null || key.getQuery().getFilter() == null) {
+            unfilteredKeys.add(key);
+        }
+        for (String oid : oids) {
+            keysByOid.computeIfAbsent(oid, k -> ConcurrentHashMap.newKeySet())
+                    .add(key);
+        }
+        if (previousOids != null) {
+            // Value for the key was replaced, we don't want to keep OIDs that are not in the result anymore.
+            for (String previousOid : previousOids) {
+                if (!oids.contains(previousOid)) {
+                    removeFromOidIndex(key, previousOid);
+                }
+            }
+        }
+    }
+
+    public void remove(@NotNull QueryKey<?> key) {
+        Set<String> oids = oidsByKey.remove(key);
+        if (oids == null) {
+            return;
+        }
+        Set<QueryKey<?>> typeKeys = keysByType.get(key.getType());
+        if (typeKeys != null) {
+            typeKeys.remove(key);
+        }
+        unfilteredKeys.remove(key);
+        for (String oid : oids) {
+            removeFromOidIndex(key, oid);
+        }
+    }
+
+    private void removeFromOidIndex(QueryKey<?> key, String oid) {
+        keysByOid.computeIfPresent(oid, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    public void clear() {
+        keysByType.clear();
+        keysByOid.clear();
+        unfilteredKeys.clear();
+        oidsByKey.clear();
+    }
+
+    @NotNull
+    public Set<QueryKey<?>> getKeys() {
+        return oidsByKey.keySet();
+    }
+
+    public int size() {
+        return oidsByKey.size();
+    }
+
+    /**
+     * Returns keys of all queries that can return objects of given type,
+     * i.e. queries over the type itself or any of its supertypes.
+     */
+    @NotNull
+    public Set<QueryKey<?>> getKeysForType(@NotNull Class<?> type) {
+        Set<QueryKey<?>> rv = new HashSet<>();
+        for (Class<?> queryType = type; queryType != null && ObjectType.class.isAssignableFrom(queryType);
+                queryType = queryType.getSuperclass()) {
+            Set<QueryKey<?>> keys = keysByType.get(queryType);
+            if (keys != null) {
+                rv.addAll(keys);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Returns keys of queries over given type (or its supertypes) that either contain the object
+     * with given OID in their result or have no filter at all.
+     */
+    @NotNull
+    public Set<QueryKey<?>> getKeysForObject(@NotNull Class<?> type, @NotNull String oid) {
+        Set<QueryKey<?>> rv = new HashSet<>();
+        Set<QueryKey<?>> keysWithOid = keysByOid.get(oid);
+        if (keysWithOid != null) {
+            for (QueryKey<?> key : keysWithOid) {
+                if (key.getType().isAssignableFrom(type)) {
+                    rv.add(key);
+                }
+            }
+        }
+        for (QueryKey<?> key : unfilteredKeys) {
+            if (key.getType().isAssignableFrom(type)) {
+                rv.add(key);
+            }
+        }
+        return rv;
+    }
+
+    @NotNull
+    private static Set<String> getOids(@Nullable SearchResultList<?> result) {
+        Set<String> oids = new HashSet<>();
+        if (result != null) {
+            for (Object o : result) {
+                if (o instanceof PrismObject<?>) {
+                    String oid = ((PrismObject<?>) o).getOid();
+                    if (oid != null) {
+                        oids.add(oid);
+                    }
+                }
+            }
+        }
+        return oids;
+    }
+}
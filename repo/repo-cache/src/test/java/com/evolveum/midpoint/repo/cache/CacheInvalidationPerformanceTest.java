@@ -27,6 +27,7 @@ import org.xml.sax.SAXException;
 
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.repo.cache.global.GlobalQueryCache;
 import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -46,6 +47,7 @@ public class CacheInvalidationPerformanceTest extends AbstractSpringTest impleme
     private static final String CLASS_DOT = CacheInvalidationPerformanceTest.class.getName() + ".";
 
     @Autowired RepositoryCache repositoryCache;
+    @Autowired GlobalQueryCache globalQueryCache;
 
     @BeforeSuite
     public void setup() throws SchemaException, SAXException, IOException {
@@ -101,6 +103,68 @@ public class CacheInvalidationPerformanceTest extends AbstractSpringTest impleme
         then();
     }
 
+    /**
+     * Modifications of objects of other type than the type of cached queries should not evaluate
+     * the cached queries at all, so their duration should not depend on the number of cached queries.
+     */
+    @Test
+    public void test200InvalidationOfUnrelatedType10k() throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        testInvalidationOfUnrelatedType(10_000);
+    }
+
+    @Test
+    public void test210InvalidationOfUnrelatedType100k() throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        testInvalidationOfUnrelatedType(100_000);
+    }
+
+    private void testInvalidationOfUnrelatedType(int cachedSearches)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        given();
+        OperationResult result = createOperationResult();
+        globalQueryCache.clear();
+
+        RoleType role = new RoleType(getPrismContext())
+                .name("role-" + cachedSearches)
+                .displayName("some display name")
+                .locality("some locality");
+        repositoryCache.addObject(role.asPrismObject(), null, result);
+
+        modifyRoleName(role, "Initial modification duration", 50, result);
+
+        fillCacheWithArchetypeQueries(cachedSearches, result);
+        displayValue("cached queries", globalQueryCache.size());
+
+        when();
+        modifyRoleName(role, "Modification duration with " + cachedSearches + " cached queries of other type", 50, result);
+
+        then();
+    }
+
+    private void fillCacheWithArchetypeQueries(int cachedSearches, OperationResult result) throws SchemaException {
+        for (int i = 0; i < cachedSearches; i++) {
+            ObjectQuery query = getPrismContext().queryFor(ArchetypeType.class)
+                    .item(ArchetypeType.F_NAME).eq(PolyString.fromOrig("name-" + i)).matchingOrig()
+                    .or().item(ArchetypeType.F_COST_CENTER).eq("cc100").matchingCaseIgnore()
+                    .build();
+            repositoryCache.searchObjects(ArchetypeType.class, query, null, result);
+        }
+    }
+
+    private void modifyRoleName(RoleType role, String label, int iterations, OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < iterations; i++) {
+            List<ItemDelta<?, ?>> itemDeltas = getPrismContext().deltaFor(RoleType.class)
+                    .item(RoleType.F_NAME)
+                    .replace(PolyString.fromOrig(RandomStringUtils.randomAlphabetic(10)))
+                    .asItemDeltas();
+            repositoryCache.modifyObject(RoleType.class, role.getOid(), itemDeltas, result);
+        }
+        long duration = System.currentTimeMillis() - start;
+        double average = (double) duration / iterations;
+        displayValue(label, String.format("%,.2f ms", average));
+    }
+
     private void modifyArchetypeName(ArchetypeType archetype, String label, int iterations, OperationResult result)
             throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
         long start = System.currentTimeMillis();
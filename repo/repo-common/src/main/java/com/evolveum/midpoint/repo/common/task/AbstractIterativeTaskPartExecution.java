@@ -21,8 +21,10 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.repo.api.PreconditionViolationException;
+import com.evolveum.midpoint.repo.common.util.OperationExecutionRecorderForTasks;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
@@ -30,6 +32,7 @@ import com.evolveum.midpoint.task.api.RunningTask;
 import com.evolveum.midpoint.task.api.TaskException;
 import com.evolveum.midpoint.task.api.TaskWorkBucketProcessingResult;
 import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 
 import java.util.Locale;
@@ -150,6 +153,12 @@ public abstract class AbstractIterativeTaskPartExecution<I,
     @Experimental
     private int expectedParts;
 
+    /**
+     * Buffer for operation execution records written during the current run (i.e. bucket).
+     * Null if the buffering is not supported, see {@link #isOperationExecutionBufferingSupported()}.
+     */
+    private volatile OperationExecutionRecorderForTasks.Buffer operationExecutionBuffer;
+
     protected AbstractIterativeTaskPartExecution(@NotNull TE taskExecution) {
         this.taskHandler = taskExecution.taskHandler;
         this.taskExecution = taskExecution;
@@ -184,16 +193,23 @@ public abstract class AbstractIterativeTaskPartExecution<I,
 
         itemProcessor = setupItemProcessor(opResult);
         coordinator = setupCoordinator();
+        operationExecutionBuffer = isOperationExecutionBufferingSupported() ?
+                new OperationExecutionRecorderForTasks.Buffer() : null;
 
+        Throwable processingException = null;
         try {
             coordinator.createWorkerTasks(getReportingOptions());
             processItems(opResult);
+        } catch (Throwable t) {
+            processingException = t;
+            throw t;
         } finally {
             // This is redundant in the case of live sync event handling (because the handler gets a notification when all
             // items are submitted, and must stop the threads in order to allow provisioning to update the token).
             //
             // But overall, it is necessary to do this here in order to avoid endless waiting if any exception occurs.
             coordinator.finishProcessing(opResult);
+            flushOperationExecutionRecords(processingException, opResult);
         }
 
         setOperationResultStatus(opResult);
@@ -290,6 +306,41 @@ public abstract class AbstractIterativeTaskPartExecution<I,
     protected void finish(OperationResult opResult) throws SchemaException {
     }
 
+    /**
+     * Can operation execution records be buffered and written in batches at the end of the run (bucket)?
+     * This is not suitable for runs that can take unlimited time, like live sync or async update,
+     * because the records would appear only when the run is over.
+     */
+    protected boolean isOperationExecutionBufferingSupported() {
+        return false;
+    }
+
+    @Nullable OperationExecutionRecorderForTasks.Buffer getOperationExecutionBuffer() {
+        return operationExecutionBuffer;
+    }
+
+    /**
+     * Writes buffered operation execution records. Called after all the worker threads have finished.
+     *
+     * A failure here is only logged, just like failures of writing individual records. It must not replace
+     * the exception from the processing (if any), so it is attached to it as a suppressed one.
+     */
+    private void flushOperationExecutionRecords(Throwable processingException, OperationResult opResult) {
+        if (operationExecutionBuffer == null) {
+            return;
+        }
+        try {
+            taskHandler.getOperationExecutionRecorder()
+                    .flush(operationExecutionBuffer, localCoordinatorTask, opResult);
+        } catch (Throwable t) {
+            LoggingUtils.logUnexpectedException(logger, "Couldn't write buffered operation execution records in {}",
+                    t, localCoordinatorTask);
+            if (processingException != null) {
+                processingException.addSuppressed(t);
+            }
+        }
+    }
+
     private void checkTaskPersistence() {
         if (localCoordinatorTask.getOid() == null) {
             throw new IllegalArgumentException(
@@ -365,6 +365,12 @@ public abstract class AbstractSearchIterativeTaskPartExecution<O extends ObjectT
         return false;
     }
 
+    /** Search-based runs (buckets) are finite, so the records can be written at their end. */
+    @Override
+    protected boolean isOperationExecutionBufferingSupported() {
+        return true;
+    }
+
     /**
      * Pre-processing query (e.g. evaluate expressions).
      */
@@ -531,8 +537,11 @@ public abstract class AbstractSearchIterativeTaskPartExecution<O extends ObjectT
     /**
      * Passes all objects found into the processing coordinator.
      * (Which processes them directly or queues them for the worker threads.)
+     *
+     * Can be overridden to pre-process the objects before submission (e.g. in batches); the overriding method
+     * must eventually pass them to the handler provided by this method.
      */
-    protected final ResultHandler<O> createSearchResultHandler() {
+    protected ResultHandler<O> createSearchResultHandler() {
         return (object, parentResult) -> {
             ItemProcessingRequest<PrismObject<O>> request = new ObjectProcessingRequest<>(object, itemProcessor);
             return coordinator.submit(request, parentResult);
@@ -434,7 +434,8 @@ class ItemProcessingGatekeeper<I> {
         OperationExecutionRecorderForTasks.Target target = request.getOperationExecutionRecordingTarget();
         RunningTask task = taskExecution.localCoordinatorTask;
 
-        getOperationExecutionRecorder().recordOperationExecution(target, task, partExecution.partUri, result);
+        getOperationExecutionRecorder().recordOperationExecution(target, task, partExecution.partUri,
+                partExecution.getOperationExecutionBuffer(), result);
     }
 
     private OperationExecutionRecorderForTasks getOperationExecutionRecorder() {
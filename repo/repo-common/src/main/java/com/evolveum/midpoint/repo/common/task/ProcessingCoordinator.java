@@ -34,6 +34,10 @@ public class ProcessingCoordinator<I> {
 
     @NotNull private final Trace logger;
 
+    /**
+     * How long the idle worker waits for a request before checking whether it can still run.
+     * Requests are handed to waiting workers immediately, so this does not add any latency to processing.
+     */
     private static final long WORKER_THREAD_WAIT_FOR_REQUEST = 100L;
 
     private static final String OP_HANDLE_ASYNCHRONOUSLY = ProcessingCoordinator.class.getName() + ".handleAsynchronously";
@@ -44,7 +48,7 @@ public class ProcessingCoordinator<I> {
     private final int threadsCount;
     private final boolean multithreaded;
     private final List<OperationResult> workerSpecificResults;
-    private final RequestsBuffer<I> requestsBuffer;
+    private final RequestsDispatcher<ItemProcessingRequest<I>> requestsDispatcher;
 
     @NotNull private final TaskManager taskManager;
 
@@ -70,11 +74,11 @@ public class ProcessingCoordinator<I> {
         if (threadsCount > 0) {
             multithreaded = true;
             workerSpecificResults = new ArrayList<>(threadsCount);
-            requestsBuffer = new RequestsBuffer<>(threadsCount);
+            requestsDispatcher = new RequestsDispatcher<>(threadsCount);
         } else {
             multithreaded = false;
             workerSpecificResults = null;
-            requestsBuffer = null;
+            requestsDispatcher = null;
         }
     }
 
@@ -87,7 +91,7 @@ public class ProcessingCoordinator<I> {
 
         if (multithreaded) {
             try {
-                while (!requestsBuffer.offer(request)) {
+                while (!requestsDispatcher.offer(request)) {
                     if (!canRun()) {
                         recordInterrupted(result);
                         request.acknowledge(false, result);
@@ -145,7 +149,7 @@ public class ProcessingCoordinator<I> {
             workerSpecificResult.addContext("subtaskIndex", i+1);
             workerSpecificResults.add(workerSpecificResult);
 
-            RunningLightweightTask subtask = coordinatorTask.createSubtask(new WorkerHandler(workerSpecificResult));
+            RunningLightweightTask subtask = coordinatorTask.createSubtask(new WorkerHandler(i, workerSpecificResult));
             initializeStatisticsCollection(subtask, reportingOptions);
             subtask.setCategory(coordinatorTask.getCategory());
             subtask.setResult(new OperationResult(OP_EXECUTE_WORKER, OperationResultStatus.IN_PROGRESS, (String) null));
@@ -180,6 +184,9 @@ public class ProcessingCoordinator<I> {
         logger.trace("ProcessingCoordinator: finishing processing. Coordinator task canRun = {}", coordinatorTask.canRun());
 
         allItemsSubmitted.set(true);
+        if (multithreaded) {
+            requestsDispatcher.wakeUpAll();
+        }
         waitForWorkersFinish(result);
         nackQueuedRequests(result);
     }
@@ -193,15 +200,17 @@ public class ProcessingCoordinator<I> {
     private void nackQueuedRequests(OperationResult result) {
         if (multithreaded) {
             logger.trace("Acknowledging (release=false) all pending requests");
-            int count = requestsBuffer.nackAllRequests(result);
+            int count = requestsDispatcher.nackAllRequests(result);
             logger.trace("Acknowledged {} pending requests", count);
         }
     }
 
     private class WorkerHandler implements LightweightTaskHandler {
+        private final int workerIndex;
         private final OperationResult workerSpecificResult;
 
-        private WorkerHandler(OperationResult workerSpecificResult) {
+        private WorkerHandler(int workerIndex, OperationResult workerSpecificResult) {
+            this.workerIndex = workerIndex;
             this.workerSpecificResult = workerSpecificResult;
         }
 
@@ -209,18 +218,30 @@ public class ProcessingCoordinator<I> {
         public void run(RunningLightweightTask workerTask) {
 
             assert multithreaded;
-            assert requestsBuffer != null;
+            assert requestsDispatcher != null;
 
             // temporary hack: how to see thread name for this task
             workerTask.setName(workerTask.getName().getOrig() + " (" + Thread.currentThread().getName() + ")");
             workerSpecificResult.addArbitraryObjectAsContext("subtaskName", workerTask.getName());
 
-            String taskIdentifier = workerTask.getTaskIdentifier();
-
             while (canRun(workerTask)) {
 
                 workerTask.refreshThreadLocalStatistics();
-                ItemProcessingRequest<I> request = requestsBuffer.poll(taskIdentifier);
+                ItemProcessingRequest<I> request;
+                try {
+                    request = requestsDispatcher.poll(workerIndex, WORKER_THREAD_WAIT_FOR_REQUEST);
+                    if (request == null && allItemsSubmitted.get()) {
+                        // The last request could have been submitted just before the flag was set.
+                        request = requestsDispatcher.poll(workerIndex, 0);
+                        if (request == null) {
+                            logger.trace("Queue is empty and nothing more is expected - exiting");
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    logger.trace("Waiting interrupted, exiting");
+                    break;
+                }
 
                 if (request != null) {
                     try {
@@ -228,30 +249,15 @@ public class ProcessingCoordinator<I> {
                             stopRequestedByAnyWorker.set(true);
                         }
                     } finally {
-                        requestsBuffer.markProcessed(request, taskIdentifier);
                         treatOperationResultAfterOperation();
                         workerTask.setProgress(workerTask.getProgress() + 1);
                     }
-                } else {
-                    if (allItemsSubmitted.get()) {
-                        logger.trace("Queue is empty and nothing more is expected - exiting");
-                        break;
-                    } else {
-                        logger.trace("No requests to be processed but expecting some to come. Waiting for {} msec", WORKER_THREAD_WAIT_FOR_REQUEST);
-                        try {
-                            //noinspection BusyWait
-                            Thread.sleep(WORKER_THREAD_WAIT_FOR_REQUEST);
-                        } catch (InterruptedException e) {
-                            logger.trace("Waiting interrupted, exiting");
-                            break;
-                        }
-                    }
                 }
             }
 
-            int reservedRequests = requestsBuffer.getReservedRequestsCount(taskIdentifier);
-            if (reservedRequests > 0) {
-                logger.warn("Worker task exiting but it has {} reserved (pre-assigned) change requests", reservedRequests);
+            int pendingRequests = requestsDispatcher.getPendingRequestsCount(workerIndex);
+            if (pendingRequests > 0) {
+                logger.warn("Worker task exiting but it has {} pending (pre-assigned) requests", pendingRequests);
             }
             workerTask.refreshThreadLocalStatistics();
         }
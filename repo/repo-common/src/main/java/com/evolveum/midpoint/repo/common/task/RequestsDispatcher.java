@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.evolveum.midpoint.schema.AcknowledgementSink;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Dispatches requests to be processed to worker threads.
+ *
+ * Its primary responsibility is to ensure that requests related to given correlation value
+ * (e.g. primary identifier of a resource object, see {@link CorrelatableProcessingRequest})
+ * are processed exactly in the order in which they were submitted and never concurrently.
+ * This is ensured by routing such requests to the queue of a single worker selected by the hash
+ * of the correlation value. Each of these queues is consumed only by its own worker,
+ * so no global lock is needed to keep the order.
+ *
+ * Requests without correlation value are put into a shared queue and any idle worker can take them.
+ *
+ * Idle workers are blocked and woken up as soon as there is a request for them.
+ * Total number of waiting requests is bounded, {@link #offer(AcknowledgementSink)} waits for free
+ * capacity for a while when the limit is reached.
+ *
+ * The dispatcher is used by multiple worker threads and a single submitting thread.
+ */
+class RequestsDispatcher<R extends AcknowledgementSink> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(RequestsDispatcher.class);
+
+    private static final long REQUEST_QUEUE_OFFER_TIMEOUT = 1000L;
+
+    private final List<WorkerQueue<R>> workerQueues;
+
+    /** Requests without correlation value that can be processed by any worker. */
+    private final Queue<R> sharedQueue = new ConcurrentLinkedQueue<>();
+
+    /** Free capacity for requests, acquired when the request is offered and released when it's taken. */
+    private final Semaphore freeCapacity;
+
+    /** Where to start looking for an idle worker, so the shared requests are spread among the workers. */
+    private final AtomicInteger nextWorkerToWake = new AtomicInteger();
+
+    RequestsDispatcher(int workersCount) {
+        workerQueues = new ArrayList<>(workersCount);
+        for (int i = 0; i < workersCount; i++) {
+            workerQueues.add(new WorkerQueue<>());
+        }
+        // Actually, capacity of workersCount should be sufficient but it doesn't hurt if it is larger.
+        freeCapacity = new Semaphore(workersCount * 2);
+    }
+
+    /**
+     * Offers a request for processing.
+     *
+     * @return false if there was no free capacity for the request for some time; the caller should retry.
+     * @throws InterruptedException If present, the request was not accepted.
+     */
+    boolean offer(R request) throws InterruptedException {
+        if (!freeCapacity.tryAcquire(REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+
+        Object correlationValue = getCorrelationValue(request);
+        if (correlationValue != null) {
+            int workerIndex = Math.floorMod(correlationValue.hashCode(), workerQueues.size());
+            LOGGER.trace("Dispatching request {} (ID {}) to worker #{}", request, correlationValue, workerIndex);
+            WorkerQueue<R> workerQueue = workerQueues.get(workerIndex);
+            workerQueue.requests.offer(request);
+            workerQueue.wakeUpIfIdle();
+        } else {
+            sharedQueue.offer(request);
+            wakeUpAnyIdleWorker();
+        }
+        return true;
+    }
+
+    private Object getCorrelationValue(R request) {
+        if (!(request instanceof CorrelatableProcessingRequest)) {
+            return null;
+        }
+
+        Object correlationValue = ((CorrelatableProcessingRequest) request).getCorrelationValue();
+        if (correlationValue == null) {
+            LOGGER.warn("Null correlationValue in request {}", request);
+        }
+        return correlationValue;
+    }
+
+    private void wakeUpAnyIdleWorker() {
+        int size = workerQueues.size();
+        int start = Math.floorMod(nextWorkerToWake.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            if (workerQueues.get((start + i) % size).wakeUpIfIdle()) {
+                return;
+            }
+        }
+        // All workers are busy, the first one to finish will take the request from the shared queue.
+    }
+
+    /**
+     * Obtains a request to be processed by the specified worker, waiting at most the specified time.
+     * Requests dispatched to the worker's own queue have priority over the shared ones.
+     *
+     * @return Request to be processed or null, if nothing came in the meantime (or if the worker was woken up
+     * by {@link #wakeUpAll()}).
+     */
+    R poll(int workerIndex, long timeout) throws InterruptedException {
+        WorkerQueue<R> workerQueue = workerQueues.get(workerIndex);
+        R request = pollAvailable(workerQueue);
+        if (request != null) {
+            return request;
+        }
+
+        workerQueue.idle.set(true);
+        try {
+            // Checking once more after announcing that we are idle, so we don't miss the wake-up.
+            request = pollAvailable(workerQueue);
+            if (request != null) {
+                return request;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            workerQueue.wakeUpSignal.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            return pollAvailable(workerQueue);
+        } finally {
+            workerQueue.idle.set(false);
+        }
+    }
+
+    /** Does NOT wait, it just checks the worker queue and the shared queue. */
+    private R pollAvailable(WorkerQueue<R> workerQueue) {
+        R request = workerQueue.requests.poll();
+        if (request == null) {
+            request = sharedQueue.poll();
+        }
+        if (request != null) {
+            LOGGER.trace("Got request: {}", request);
+            freeCapacity.release();
+        }
+        return request;
+    }
+
+    /** Wakes up all waiting workers, e.g. to let them find out that no more requests will come. */
+    void wakeUpAll() {
+        for (WorkerQueue<R> workerQueue : workerQueues) {
+            workerQueue.wakeUpSignal.release();
+        }
+    }
+
+    int getPendingRequestsCount(int workerIndex) {
+        return workerQueues.get(workerIndex).requests.size();
+    }
+
+    // should be called when there's no concurrency
+    int nackAllRequests(OperationResult result) {
+        AtomicInteger nackCounter = new AtomicInteger();
+
+        nackAll(sharedQueue, nackCounter, result);
+        workerQueues.forEach(workerQueue -> nackAll(workerQueue.requests, nackCounter, result));
+
+        return nackCounter.get();
+    }
+
+    private void nackAll(Queue<R> queue, AtomicInteger counter, OperationResult result) {
+        for (;;) {
+            R request = queue.poll();
+            if (request == null) {
+                break;
+            } else {
+                request.acknowledge(false, result);
+                counter.incrementAndGet();
+            }
+        }
+    }
+
+    private static class WorkerQueue<R> {
+
+        /** Requests dispatched to this worker by their correlation value, in the order of submission. */
+        private final Queue<R> requests = new ConcurrentLinkedQueue<>();
+
+        /** True if the worker is waiting (or going to wait) for the {@link #wakeUpSignal}. */
+        private final AtomicBoolean idle = new AtomicBoolean();
+
+        /**
+         * Released when the idle worker should wake up.
+         * Superfluous permits only cause the worker to check the queues once more.
+         */
+        private final Semaphore wakeUpSignal = new Semaphore(0);
+
+        /** Wakes up the worker if it's idle, returns true if it was idle. */
+        private boolean wakeUpIfIdle() {
+            if (idle.compareAndSet(true, false)) {
+                wakeUpSignal.release();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -7,9 +7,15 @@
 
 package com.evolveum.midpoint.repo.common.util;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -17,10 +23,12 @@ import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.BatchItemResult;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
@@ -41,6 +49,8 @@ public class OperationExecutionRecorderForTasks {
 
     private static final Trace LOGGER = TraceManager.getTrace(OperationExecutionRecorderForTasks.class);
 
+    private static final String OP_FLUSH = OperationExecutionRecorderForTasks.class.getName() + ".flush";
+
     /**
      * Writes an operation execution record.
      *
@@ -57,14 +67,92 @@ public class OperationExecutionRecorderForTasks {
      * TODO move redirection to the writer level?
      */
     public void recordOperationExecution(Target target, RunningTask task, String partUri, OperationResult result) {
+        recordOperationExecution(target, task, partUri, null, result);
+    }
+
+    /**
+     * Writes an operation execution record, or puts it into provided buffer. The buffer is written when it is full;
+     * the rest must be written by calling {@link #flush(Buffer, RunningTask, OperationResult)}.
+     *
+     * See {@link #recordOperationExecution(Target, RunningTask, String, OperationResult)} for the description
+     * of other parameters.
+     */
+    public void recordOperationExecution(Target target, RunningTask task, String partUri, @Nullable Buffer buffer,
+            OperationResult result) {
         OperationExecutionType recordToAdd = createExecutionRecord(task, partUri, result);
-        if (target.canWriteToObject()) {
+        if (buffer != null && !result.isTraced()) {
+            Buffer.Content full = buffer.add(target, recordToAdd);
+            if (full != null) {
+                write(full, task, result);
+            }
+        } else if (target.canWriteToObject()) {
             recordOperationExecutionToOwner(target, recordToAdd, task, result);
         } else {
             recordOperationExecutionToBackupHolder(target, recordToAdd, task, result);
         }
     }
 
+    /**
+     * Writes all the records collected in the buffer.
+     */
+    public void flush(@NotNull Buffer buffer, RunningTask task, OperationResult result) {
+        Buffer.Content content = buffer.drain();
+        if (content != null) {
+            write(content, task, result);
+        }
+    }
+
+    private void write(Buffer.Content content, RunningTask task, OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(OP_FLUSH)
+                .setMinor()
+                .addParam("ownerRecords", content.ownerRecords.size())
+                .addParam("backupHolderRecords", content.backupHolderRecords.size())
+                .build();
+        try {
+            List<OperationExecutionWriter.Request<?>> requests = new ArrayList<>();
+            for (BufferedRecord buffered : content.ownerRecords) {
+                ObjectType owner = buffered.target.ownerObject.asObjectable();
+                requests.add(new OperationExecutionWriter.Request<>(owner.getClass(), owner.getOid(), buffered.record,
+                        buffered.existingRecords, true));
+            }
+            List<BatchItemResult> outcomes;
+            try {
+                outcomes = writer.write(requests, result);
+            } catch (Exception e) {
+                LOGGER.warn("Couldn't write operation execution records for {} objects in {}, trying backup holder",
+                        requests.size(), task, e);
+                outcomes = null;
+            }
+
+            // The same task and part records are replaced on each write to the backup holder. So the last one is enough.
+            Map<String, BufferedRecord> backupHolderRecords = new LinkedHashMap<>();
+            for (BufferedRecord buffered : content.backupHolderRecords) {
+                backupHolderRecords.put(buffered.target.backupHolderOid, buffered);
+            }
+            for (int i = 0; i < content.ownerRecords.size(); i++) {
+                BufferedRecord buffered = content.ownerRecords.get(i);
+                Exception exception = outcomes != null ? outcomes.get(i).getException() : null;
+                if (outcomes == null || exception != null && !(exception instanceof ObjectNotFoundException)) {
+                    if (exception != null) {
+                        LOGGER.warn("Couldn't write operation execution for {} in {}, trying backup holder",
+                                buffered.target.ownerObject, task, exception);
+                    }
+                    backupHolderRecords.put(buffered.target.backupHolderOid, buffered);
+                } else if (exception != null) {
+                    LOGGER.trace("Object {} deleted but this was expected.", buffered.target.ownerObject);
+                }
+            }
+            for (BufferedRecord buffered : backupHolderRecords.values()) {
+                recordOperationExecutionToBackupHolder(buffered.target, buffered.record, task, result);
+            }
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
     private void recordOperationExecutionToOwner(Target target, OperationExecutionType recordToAdd,
             RunningTask task, OperationResult result) {
         ObjectType owner = target.ownerObject.asObjectable();
@@ -110,6 +198,90 @@ public class OperationExecutionRecorderForTasks {
         return operation;
     }
 
+    /**
+     * Operation execution records waiting to be written. Collected by {@link #recordOperationExecution(Target,
+     * RunningTask, String, Buffer, OperationResult)} and written when there are {@link #flushThreshold} of them,
+     * or when {@link #flush(Buffer, RunningTask, OperationResult)} is called.
+     *
+     * Records for the same object are coalesced: only the last one is kept. This is what the writer would do anyway,
+     * as it replaces the records of the same task and part on each write. The same holds for the backup holder.
+     *
+     * Buffered records are lost if the node crashes before they are written. The caller should hence flush
+     * the buffer at points where the processing state is persisted (e.g. at the end of a bucket).
+     *
+     * Thread-safe, as items are processed by worker threads.
+     */
+    public static class Buffer {
+
+        public static final int DEFAULT_FLUSH_THRESHOLD = 100;
+
+        private final int flushThreshold;
+
+        /** Records for the owners, keyed by owner OID. */
+        @NotNull private final Map<String, BufferedRecord> ownerRecords = new LinkedHashMap<>();
+
+        /** Records for the backup holder (in the order of arrival). */
+        @NotNull private final List<BufferedRecord> backupHolderRecords = new ArrayList<>();
+
+        public Buffer() {
+            this(DEFAULT_FLUSH_THRESHOLD);
+        }
+
+        public Buffer(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+        }
+
+        /** Adds the record. Returns the content to be written if the buffer is full. */
+        private synchronized Content add(Target target, OperationExecutionType record) {
+            if (target.canWriteToObject()) {
+                // The owner object can be modified later, so we have to copy the list.
+                List<OperationExecutionType> existingRecords =
+                        new ArrayList<>(target.ownerObject.asObjectable().getOperationExecution());
+                ownerRecords.put(target.ownerObject.getOid(), new BufferedRecord(target, record, existingRecords));
+            } else {
+                backupHolderRecords.add(new BufferedRecord(target, record, null));
+            }
+            return ownerRecords.size() + backupHolderRecords.size() >= flushThreshold ? drain() : null;
+        }
+
+        private synchronized Content drain() {
+            if (ownerRecords.isEmpty() && backupHolderRecords.isEmpty()) {
+                return null;
+            }
+            Content content = new Content(new ArrayList<>(ownerRecords.values()), new ArrayList<>(backupHolderRecords));
+            ownerRecords.clear();
+            backupHolderRecords.clear();
+            return content;
+        }
+
+        public synchronized int size() {
+            return ownerRecords.size() + backupHolderRecords.size();
+        }
+
+        private static class Content {
+            @NotNull private final List<BufferedRecord> ownerRecords;
+            @NotNull private final List<BufferedRecord> backupHolderRecords;
+
+            private Content(@NotNull List<BufferedRecord> ownerRecords, @NotNull List<BufferedRecord> backupHolderRecords) {
+                this.ownerRecords = ownerRecords;
+                this.backupHolderRecords = backupHolderRecords;
+            }
+        }
+    }
+
+    private static class BufferedRecord {
+        @NotNull private final Target target;
+        @NotNull private final OperationExecutionType record;
+        private final List<OperationExecutionType> existingRecords;
+
+        private BufferedRecord(@NotNull Target target, @NotNull OperationExecutionType record,
+                List<OperationExecutionType> existingRecords) {
+            this.target = target;
+            this.record = record;
+            this.existingRecords = existingRecords;
+        }
+    }
+
     /**
      * Specification of where to write operation execution record.
      */
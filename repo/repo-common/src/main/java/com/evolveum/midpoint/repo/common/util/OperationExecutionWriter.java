@@ -10,8 +10,10 @@ package com.evolveum.midpoint.repo.common.util;
 import com.evolveum.midpoint.prism.PrismContainerValue;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.BatchItemResult;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeListener;
@@ -69,6 +71,7 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
     private static final int DEFAULT_NUMBER_OF_RESULTS_TO_KEEP = 5;
 
     private static final String OP_WRITE = OperationExecutionWriter.class.getName() + ".write";
+    private static final String OP_WRITE_BATCH = OperationExecutionWriter.class.getName() + ".writeBatch";
 
     /** Extracted recorded strategy for simple OpExec records (from system configuration). */
     private volatile OperationExecutionRecordingStrategyType simpleExecsRecordingStrategy;
@@ -89,35 +92,16 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
     public <O extends ObjectType> void write(Request<O> request, OperationResult parentResult)
             throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
 
-        OperationExecutionRecordTypeType currentRecordType = toNotNull(request.recordToAdd.getRecordType());
-
         OperationResult result = parentResult.subresult(OP_WRITE)
                 .setMinor()
                 .build();
         try {
-            if (shouldSkipOperationExecutionRecording(currentRecordType)) {
-                LOGGER.trace("Skipping operation execution recording because it's turned off.");
-                return;
-            }
-
-            CleaningSpecification cleaningSpec = CleaningSpecification.createFrom(selectCleanupPolicy(currentRecordType));
-
-            boolean addingRecord;
-            if (cleaningSpec.isKeepNone()) {
-                LOGGER.trace("Will skip operation execution recording because it's turned off (recordsToKeep is set to 0).");
-                addingRecord = false;
-            } else if (request.recordToAdd.getStatus() == OperationResultStatusType.SUCCESS &&
-                    shouldSkipOperationExecutionRecordingWhenSuccess(currentRecordType)) {
-                LOGGER.trace("Will skip operation execution recording because it's turned off for successful processing.");
-                addingRecord = false;
-            } else {
-                addingRecord = true;
-            }
-
             try {
-                List<OperationExecutionType> recordsToAdd = addingRecord ? singletonList(request.recordToAdd) : emptyList();
-                List<OperationExecutionType> recordsToDelete = getRecordsToDelete(request, cleaningSpec, addingRecord, result);
-                executeChanges(request, recordsToAdd, recordsToDelete, result);
+                List<ItemDelta<?, ?>> modifications = computeModifications(request, result);
+                if (modifications != null) {
+                    LOGGER.trace("Operation execution delta:\n{}", DebugUtil.debugDumpLazily(modifications));
+                    repositoryService.modifyObject(request.objectType, request.oid, modifications, result);
+                }
             } catch (ObjectNotFoundException e) {
                 if (!request.deletedOk) {
                     throw e;
@@ -135,6 +119,95 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
         }
     }
 
+    /**
+     * Writes operation execution records for multiple objects, using a single batch repository modification.
+     * Each request is treated as in {@link #write(Request, OperationResult)}. Failure for one object does not prevent
+     * writing records to other objects; the outcomes are returned in the order of the requests.
+     *
+     * The requests should provide existing records; otherwise each object has to be read before the writing.
+     */
+    public @NotNull List<BatchItemResult> write(@NotNull List<? extends Request<?>> requests, OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(OP_WRITE_BATCH)
+                .setMinor()
+                .addParam("requests", requests.size())
+                .build();
+        try {
+            BatchItemResult[] outcomes = new BatchItemResult[requests.size()];
+            List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+            List<Integer> deltaIndices = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                Request<?> request = requests.get(i);
+                try {
+                    List<ItemDelta<?, ?>> modifications = computeModifications(request, result);
+                    if (modifications != null) {
+                        deltas.add(createModifyDelta(request, modifications));
+                        deltaIndices.add(i);
+                    } else {
+                        outcomes[i] = BatchItemResult.success(request.oid);
+                    }
+                } catch (SchemaException | ObjectNotFoundException | RuntimeException e) {
+                    outcomes[i] = BatchItemResult.failure(request.oid, e);
+                }
+            }
+            if (!deltas.isEmpty()) {
+                LOGGER.trace("Writing operation execution records to {} object(s)", deltas.size());
+                List<BatchItemResult> modifyResults = repositoryService.modifyObjects(deltas, null, result);
+                for (int j = 0; j < modifyResults.size(); j++) {
+                    outcomes[deltaIndices.get(j)] = modifyResults.get(j);
+                }
+            }
+            return Arrays.asList(outcomes);
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+            // Individual failures are reported to the caller, and mostly expected (e.g. deleted objects).
+            result.switchHandledErrorToSuccess();
+        }
+    }
+
+    private <O extends ObjectType> ObjectDelta<O> createModifyDelta(Request<O> request, List<ItemDelta<?, ?>> modifications) {
+        return prismContext.deltaFactory().object()
+                .createModifyDelta(request.oid, modifications, request.objectType);
+    }
+
+    /**
+     * Computes modifications needed to add the record and delete the superfluous ones.
+     * Returns null if the recording is turned off.
+     */
+    @Nullable
+    private <O extends ObjectType> List<ItemDelta<?, ?>> computeModifications(Request<O> request, OperationResult result)
+            throws SchemaException, ObjectNotFoundException {
+        OperationExecutionRecordTypeType currentRecordType = toNotNull(request.recordToAdd.getRecordType());
+        if (shouldSkipOperationExecutionRecording(currentRecordType)) {
+            LOGGER.trace("Skipping operation execution recording because it's turned off.");
+            return null;
+        }
+
+        CleaningSpecification cleaningSpec = CleaningSpecification.createFrom(selectCleanupPolicy(currentRecordType));
+
+        boolean addingRecord;
+        if (cleaningSpec.isKeepNone()) {
+            LOGGER.trace("Will skip operation execution recording because it's turned off (recordsToKeep is set to 0).");
+            addingRecord = false;
+        } else if (request.recordToAdd.getStatus() == OperationResultStatusType.SUCCESS &&
+                shouldSkipOperationExecutionRecordingWhenSuccess(currentRecordType)) {
+            LOGGER.trace("Will skip operation execution recording because it's turned off for successful processing.");
+            addingRecord = false;
+        } else {
+            addingRecord = true;
+        }
+
+        List<OperationExecutionType> recordsToAdd = addingRecord ? singletonList(request.recordToAdd) : emptyList();
+        List<OperationExecutionType> recordsToDelete = getRecordsToDelete(request, cleaningSpec, addingRecord, result);
+        return prismContext.deltaFor(request.objectType)
+                .item(ObjectType.F_OPERATION_EXECUTION)
+                .add(PrismContainerValue.toPcvList(recordsToAdd)) // assuming these are parent-less
+                .delete(PrismContainerValue.toPcvList(CloneUtil.cloneCollectionMembers(recordsToDelete)))
+                .asItemDeltas();
+    }
+
     private OperationExecutionRecordTypeType toNotNull(OperationExecutionRecordTypeType recordType) {
         return MoreObjects.firstNonNull(recordType, SIMPLE);
     }
@@ -156,18 +229,6 @@ public class OperationExecutionWriter implements SystemConfigurationChangeListen
         return toNotNull(recordType) == SIMPLE ? simpleVersion : complexVersion;
     }
 
-    private <O extends ObjectType> void executeChanges(Request<O> request,
-            List<OperationExecutionType> recordsToAdd, List<OperationExecutionType> recordsToDelete, OperationResult result)
-            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
-        List<ItemDelta<?, ?>> deltas = prismContext.deltaFor(request.objectType)
-                .item(ObjectType.F_OPERATION_EXECUTION)
-                .add(PrismContainerValue.toPcvList(recordsToAdd)) // assuming these are parent-less
-                .delete(PrismContainerValue.toPcvList(CloneUtil.cloneCollectionMembers(recordsToDelete)))
-                .asItemDeltas();
-        LOGGER.trace("Operation execution delta:\n{}", DebugUtil.debugDumpLazily(deltas));
-        repositoryService.modifyObject(request.objectType, request.oid, deltas, result);
-    }
-
     private <O extends ObjectType> List<OperationExecutionType> getRecordsToDelete(Request<O> request,
             CleaningSpecification cleaningSpecification, boolean addingRecord, OperationResult result)
             throws SchemaException, ObjectNotFoundException {
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.common.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.AcknowledgementSink;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+
+/**
+ * Microbenchmark comparing {@link RequestsDispatcher} with the previous implementation
+ * based on a single synchronized buffer, see {@link SynchronizedRequestsBuffer}.
+ * Uses one submitting thread and many workers with a short processing time per request,
+ * which is the case where the contention on the buffer was most visible (e.g. live sync).
+ * It also checks that requests with the same correlation value are processed in order.
+ *
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ */
+public class RequestsDispatcherPerfTest extends AbstractUnitTest
+        implements PerformanceTestClassMixin {
+
+    private static final int WORKERS = 32;
+    private static final int REQUESTS = 200_000;
+    private static final int CORRELATION_VALUES = 1_000;
+    private static final int UNCORRELATED_EVERY = 4; // every n-th request has no correlation value
+    private static final int PROCESSING_ITERATIONS = 2_000; // busy work per request
+
+    /** The same as the previous worker thread wait in {@link ProcessingCoordinator}. */
+    private static final long BUFFER_WORKER_WAIT = 100L;
+
+    @Test
+    public void test100SynchronizedBuffer() throws Exception {
+        SynchronizedRequestsBuffer buffer = new SynchronizedRequestsBuffer(WORKERS);
+        runBenchmark("buffer", "Previous synchronized requests buffer", buffer::offer,
+                workerIndex -> () -> {
+                    String taskIdentifier = String.valueOf(workerIndex);
+                    TestRequest request = buffer.poll(taskIdentifier);
+                    if (request == null) {
+                        //noinspection BusyWait
+                        Thread.sleep(BUFFER_WORKER_WAIT);
+                        return null;
+                    }
+                    return new PolledRequest(request, () -> buffer.markProcessed(request, taskIdentifier));
+                });
+    }
+
+    @Test
+    public void test200ShardedDispatcher() throws Exception {
+        RequestsDispatcher<TestRequest> dispatcher = new RequestsDispatcher<>(WORKERS);
+        runBenchmark("dispatcher", "Sharded requests dispatcher", dispatcher::offer,
+                workerIndex -> () -> {
+                    TestRequest request = dispatcher.poll(workerIndex, 1000L);
+                    return request != null ? new PolledRequest(request, () -> {}) : null;
+                });
+    }
+
+    private void runBenchmark(String name, String description,
+            Offerer offerer, WorkerPollerFactory pollerFactory) throws Exception {
+        Map<Object, AtomicInteger> lastSequence = new ConcurrentHashMap<>();
+        Set<Object> inProcessing = ConcurrentHashMap.newKeySet();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        AtomicInteger processed = new AtomicInteger();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            WorkerPoller poller = pollerFactory.create(i);
+            Thread worker = new Thread(() -> {
+                try {
+                    while (processed.get() < REQUESTS) {
+                        PolledRequest polled = poller.poll();
+                        if (polled == null) {
+                            continue;
+                        }
+                        polled.request.process(lastSequence, inProcessing, errors);
+                        polled.afterProcessing.run();
+                        processed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    errors.add("Worker interrupted");
+                }
+            });
+            workers.add(worker);
+        }
+
+        Stopwatch stopwatch = stopwatch(name, description);
+        try (Split ignored = stopwatch.start()) {
+            workers.forEach(Thread::start);
+            for (int i = 0; i < REQUESTS; i++) {
+                TestRequest request = i % UNCORRELATED_EVERY == 0
+                        ? new TestRequest(null, i)
+                        : new CorrelatedTestRequest("id-" + (i % CORRELATION_VALUES), i);
+                //noinspection StatementWithEmptyBody
+                while (!offerer.offer(request)) {
+                    // retry, as the coordinator does
+                }
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        display(String.format("%s: %,d requests in %,d ms, %,.0f requests/s", description, REQUESTS,
+                stopwatch.getTotal() / 1_000_000, REQUESTS * 1e9 / stopwatch.getTotal()));
+        assertThat(errors).isEmpty();
+        assertThat(processed.get()).isEqualTo(REQUESTS);
+    }
+
+    @FunctionalInterface
+    private interface Offerer {
+        boolean offer(TestRequest request) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface WorkerPoller {
+        PolledRequest poll() throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface WorkerPollerFactory {
+        WorkerPoller create(int workerIndex);
+    }
+
+    private static class PolledRequest {
+        private final TestRequest request;
+        private final Runnable afterProcessing;
+
+        PolledRequest(TestRequest request, Runnable afterProcessing) {
+            this.request = request;
+            this.afterProcessing = afterProcessing;
+        }
+    }
+
+    private static class TestRequest implements AcknowledgementSink {
+        private final Object correlationValue;
+        private final int sequence;
+
+        TestRequest(Object correlationValue, int sequence) {
+            this.correlationValue = correlationValue;
+            this.sequence = sequence;
+        }
+
+        public Object getCorrelationValue() {
+            return correlationValue;
+        }
+
+        @Override
+        public void acknowledge(boolean release, OperationResult result) {
+        }
+
+        void process(Map<Object, AtomicInteger> lastSequence, Set<Object> inProcessing, List<String> errors) {
+            if (correlationValue != null && !inProcessing.add(correlationValue)) {
+                errors.add("Concurrent processing of " + correlationValue);
+            }
+
+            long dummy = sequence;
+            for (int i = 0; i < PROCESSING_ITERATIONS; i++) {
+                dummy = dummy * 31 + i;
+            }
+            if (dummy == 42) { // practically never, just to prevent elimination of the loop
+                errors.add("Unexpected");
+            }
+
+            if (correlationValue != null) {
+                int previous = lastSequence.computeIfAbsent(correlationValue, k -> new AtomicInteger(-1))
+                        .getAndSet(sequence);
+                if (previous > sequence) {
+                    errors.add("Out of order processing of " + correlationValue
+                            + ": " + sequence + " after " + previous);
+                }
+                inProcessing.remove(correlationValue);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return correlationValue + "#" + sequence;
+        }
+    }
+
+    private static class CorrelatedTestRequest extends TestRequest implements CorrelatableProcessingRequest {
+
+        CorrelatedTestRequest(Object correlationValue, int sequence) {
+            super(correlationValue, sequence);
+        }
+    }
+
+    /**
+     * Simplified copy of the previous implementation (RequestsBuffer) used as a baseline:
+     * global bounded queue, all polling synchronized and binding of correlation values to tasks.
+     */
+    private static class SynchronizedRequestsBuffer {
+
+        private final BlockingQueue<TestRequest> globalQueue;
+        private final Map<Object, String> bindingsMap = new HashMap<>();
+        private final Map<String, Queue<TestRequest>> reservedRequestsQueueMap = new HashMap<>();
+
+        SynchronizedRequestsBuffer(int threadsCount) {
+            globalQueue = new ArrayBlockingQueue<>(threadsCount * 2);
+        }
+
+        boolean offer(TestRequest request) throws InterruptedException {
+            return globalQueue.offer(request, 1000L, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized TestRequest poll(String taskIdentifier) {
+            Queue<TestRequest> reserved = reservedRequestsQueueMap.get(taskIdentifier);
+            TestRequest request = reserved != null ? reserved.poll() : null;
+            if (request != null) {
+                bind(request, taskIdentifier);
+                return request;
+            }
+
+            for (;;) {
+                request = globalQueue.poll();
+                if (request == null || bind(request, taskIdentifier)) {
+                    return request;
+                }
+            }
+        }
+
+        private boolean bind(TestRequest request, String taskIdentifier) {
+            Object correlationValue = request.getCorrelationValue();
+            if (correlationValue == null) {
+                return true;
+            }
+            String boundTo = bindingsMap.get(correlationValue);
+            if (boundTo == null) {
+                bindingsMap.put(correlationValue, taskIdentifier);
+                return true;
+            }
+            if (boundTo.equals(taskIdentifier)) {
+                return true;
+            }
+            reservedRequestsQueueMap.computeIfAbsent(boundTo, key -> new ArrayDeque<>()).offer(request);
+            return false;
+        }
+
+        synchronized void markProcessed(TestRequest request, String taskIdentifier) {
+            Object correlationValue = request.getCorrelationValue();
+            if (correlationValue == null) {
+                return;
+            }
+            Queue<TestRequest> reserved = reservedRequestsQueueMap.get(taskIdentifier);
+            if (reserved != null && reserved.stream()
+                    .anyMatch(r -> correlationValue.equals(r.getCorrelationValue()))) {
+                return;
+            }
+            bindingsMap.remove(correlationValue);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+-- Copyright (C) 2010-2021 Evolveum and contributors
+--
+-- This work is dual-licensed under the Apache License 2.0
+-- and European Union Public License. See LICENSE file for details.
+--
+-- @formatter:off because of terribly unreliable IDEA reformat for SQL
+-- Audit tables for the new repository (MA_ prefix), see pgnew-repo.sql for naming conventions.
+-- This script must be executed after pgnew-repo.sql, it uses enum types defined there
+-- (ObjectType, OperationResultStatusType).
+--
+-- All audit tables are partitioned by month using the timestamp of the audit event.
+-- Related rows (deltas, references) carry the timestamp of their audit event, so they always
+-- land in the partition with the same suffix as their event.
+-- This allows audit cleanup to drop whole partitions instead of deleting the rows.
+-- There are no foreign keys between audit tables, these would prevent dropping the partitions.
+
+-- region custom enum types
+CREATE TYPE AuditEventTypeType AS ENUM ('GET_OBJECT', 'ADD_OBJECT', 'MODIFY_OBJECT',
+    'DELETE_OBJECT', 'EXECUTE_CHANGES_RAW', 'SYNCHRONIZATION', 'CREATE_SESSION',
+    'TERMINATE_SESSION', 'WORK_ITEM', 'WORKFLOW_PROCESS_INSTANCE', 'RECONCILIATION',
+    'SUSPEND_TASK', 'RESUME_TASK', 'RUN_TASK_IMMEDIATELY');
+
+CREATE TYPE AuditEventStageType AS ENUM ('REQUEST', 'EXECUTION');
+
+CREATE TYPE ChangeTypeType AS ENUM ('ADD', 'MODIFY', 'DELETE');
+-- endregion
+
+-- region audit tables
+CREATE TABLE ma_audit_event (
+    id BIGSERIAL NOT NULL,
+    timestamp TIMESTAMPTZ NOT NULL,
+    eventIdentifier TEXT,
+    eventType AuditEventTypeType,
+    eventStage AuditEventStageType,
+    sessionIdentifier TEXT,
+    requestIdentifier TEXT,
+    taskIdentifier TEXT,
+    taskOid UUID,
+    hostIdentifier TEXT,
+    nodeIdentifier TEXT,
+    remoteHostAddress TEXT,
+    initiatorOid UUID,
+    initiatorType ObjectType,
+    initiatorName TEXT,
+    attorneyOid UUID,
+    attorneyName TEXT,
+    targetOid UUID,
+    targetType ObjectType,
+    targetName TEXT,
+    targetOwnerOid UUID,
+    targetOwnerType ObjectType,
+    targetOwnerName TEXT,
+    channel TEXT, -- full URI, we do not want m_uri ID anymore
+    outcome OperationResultStatusType,
+    parameter TEXT,
+    result TEXT,
+    message TEXT,
+    changedItemPaths TEXT[],
+    resourceOids TEXT[],
+    properties JSONB,
+    -- custom column properties are stored as JSON object with single string value per name
+    customColumnProperties JSONB,
+
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX ma_audit_event_timestamp_idx ON ma_audit_event (timestamp);
+CREATE INDEX ma_audit_event_eventIdentifier_idx ON ma_audit_event (eventIdentifier);
+CREATE INDEX ma_audit_event_sessionIdentifier_idx ON ma_audit_event (sessionIdentifier);
+CREATE INDEX ma_audit_event_requestIdentifier_idx ON ma_audit_event (requestIdentifier);
+CREATE INDEX ma_audit_event_initiatorOid_idx ON ma_audit_event (initiatorOid);
+CREATE INDEX ma_audit_event_targetOid_idx ON ma_audit_event (targetOid);
+CREATE INDEX ma_audit_event_changedItemPaths_idx ON ma_audit_event USING gin (changedItemPaths);
+CREATE INDEX ma_audit_event_resourceOids_idx ON ma_audit_event USING gin (resourceOids);
+CREATE INDEX ma_audit_event_properties_idx ON ma_audit_event USING gin (properties);
+CREATE INDEX ma_audit_event_customColumnProperties_idx
+    ON ma_audit_event USING gin (customColumnProperties);
+
+CREATE TABLE ma_audit_delta (
+    recordId BIGINT NOT NULL, -- id of ma_audit_event
+    timestamp TIMESTAMPTZ NOT NULL, -- timestamp of ma_audit_event, partition key
+    checksum TEXT NOT NULL,
+    delta BYTEA,
+    deltaOid UUID,
+    deltaType ChangeTypeType,
+    fullResult BYTEA,
+    objectNameNorm TEXT,
+    objectNameOrig TEXT,
+    resourceOid UUID,
+    resourceNameNorm TEXT,
+    resourceNameOrig TEXT,
+    status OperationResultStatusType,
+
+    PRIMARY KEY (recordId, timestamp, checksum)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE ma_audit_ref (
+    id BIGSERIAL NOT NULL, -- unique only within the partition
+    recordId BIGINT NOT NULL, -- id of ma_audit_event
+    timestamp TIMESTAMPTZ NOT NULL, -- timestamp of ma_audit_event, partition key
+    name TEXT, -- multiple refs can have the same name, conceptually it's a Map(name -> refs[])
+    targetOid UUID,
+    targetType ObjectType,
+    targetNameOrig TEXT,
+    targetNameNorm TEXT,
+
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX ma_audit_ref_recordId_timestamp_idx ON ma_audit_ref (recordId, timestamp);
+
+-- Default partitions catch any rows without a monthly partition, e.g. when partitions
+-- were not created ahead in time. Rows from the default partitions are removed by cleanup
+-- using DELETE, because these partitions can't be dropped.
+-- Note that creating a monthly partition fails if the default partition already contains
+-- rows for its range - these must be moved (or deleted) first.
+CREATE TABLE ma_audit_event_default PARTITION OF ma_audit_event DEFAULT;
+CREATE TABLE ma_audit_delta_default PARTITION OF ma_audit_delta DEFAULT;
+CREATE TABLE ma_audit_ref_default PARTITION OF ma_audit_ref DEFAULT;
+-- endregion
+
+-- region partition management
+/*
+Creates monthly partitions for all audit tables, starting with the current month.
+Partitions are named with YYYYMM suffix, e.g. ma_audit_event_202105.
+Existing partitions are skipped, so it's safe to call this procedure repeatedly,
+e.g. on every start of the application or from a scheduled job.
+
+Example creating partitions for this month and two following months:
+CALL audit_create_monthly_partitions(3);
+*/
+CREATE OR REPLACE PROCEDURE audit_create_monthly_partitions(futureCount int)
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    dateFrom TIMESTAMPTZ = date_trunc('month', current_timestamp);
+    dateTo TIMESTAMPTZ;
+    tableSuffix TEXT;
+    tableName TEXT;
+BEGIN
+    FOR i IN 1..futureCount LOOP
+        dateTo := dateFrom + interval '1 month';
+        tableSuffix := to_char(dateFrom, 'YYYYMM');
+
+        FOREACH tableName IN ARRAY ARRAY['ma_audit_event', 'ma_audit_delta', 'ma_audit_ref'] LOOP
+            IF to_regclass(tableName || '_' || tableSuffix) IS NULL THEN
+                RAISE NOTICE 'Creating partition %_% for range: % - %',
+                    tableName, tableSuffix, dateFrom, dateTo;
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                    tableName || '_' || tableSuffix, tableName, dateFrom, dateTo);
+            END IF;
+        END LOOP;
+
+        dateFrom := dateTo;
+    END LOOP;
+END $$;
+
+/*
+Drops all monthly audit partitions (of all audit tables) containing only rows older
+than the provided cutoff timestamp and returns the count of dropped partition suffixes.
+Partitions are detached first, so other sessions don't see the tables with partial content.
+Rows older than the cutoff in the partition containing the cutoff and in the default partition
+must be deleted separately.
+*/
+CREATE OR REPLACE FUNCTION audit_drop_partitions_before(cutoff TIMESTAMPTZ)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    tableSuffix TEXT;
+    tableName TEXT;
+    dropped INTEGER = 0;
+BEGIN
+    FOR tableSuffix IN
+        SELECT substring(c.relname from '\d{6}$')
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'ma_audit_event'::regclass
+                AND c.relname ~ '^ma_audit_event_\d{6}$'
+            ORDER BY 1
+    LOOP
+        -- partition covers the whole month, it can be dropped if the next month starts before cutoff
+        EXIT WHEN to_timestamp(tableSuffix, 'YYYYMM') + interval '1 month' > cutoff;
+
+        FOREACH tableName IN ARRAY ARRAY['ma_audit_event', 'ma_audit_delta', 'ma_audit_ref'] LOOP
+            IF to_regclass(tableName || '_' || tableSuffix) IS NOT NULL THEN
+                RAISE NOTICE 'Dropping partition %_%', tableName, tableSuffix;
+                EXECUTE format('ALTER TABLE %I DETACH PARTITION %I',
+                    tableName, tableName || '_' || tableSuffix);
+                EXECUTE format('DROP TABLE %I', tableName || '_' || tableSuffix);
+            END IF;
+        END LOOP;
+        dropped := dropped + 1;
+    END LOOP;
+
+    RETURN dropped;
+END $$;
+-- endregion
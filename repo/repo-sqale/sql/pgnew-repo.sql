@@ -16,12 +16,13 @@
 -- TEXT is used instead of VARCHAR, see: https://dba.stackexchange.com/a/21496/157622
 
 -- noinspection SqlResolveForFile @ operator-class/"gin__int_ops"
+-- noinspection SqlResolveForFile @ operator-class/"gin_trgm_ops"
 
 -- just in case PUBLIC schema was dropped (fastest way to remove all midpoint objects)
 -- drop schema public cascade;
 CREATE SCHEMA IF NOT EXISTS public;
 CREATE EXTENSION IF NOT EXISTS intarray; -- support for indexing INTEGER[] columns
---CREATE EXTENSION IF NOT EXISTS pg_trgm; -- support for trigram indexes TODO for ext with LIKE and fulltext
+CREATE EXTENSION IF NOT EXISTS pg_trgm; -- support for trigram indexes, used for full-text search
 
 -- region custom enum types
 -- Some enums are from schema, some are only defined in repo-sqale.
@@ -38,6 +39,10 @@ CREATE TYPE ContainerType AS ENUM (
     'OPERATION_EXECUTION',
     'TRIGGER');
 
+CREATE TYPE ExtItemHolderType AS ENUM ('EXTENSION', 'ATTRIBUTES');
+
+CREATE TYPE ExtItemCardinality AS ENUM ('SCALAR', 'ARRAY');
+
 CREATE TYPE ObjectType AS ENUM (
     'ABSTRACT_ROLE',
     'ACCESS_CERTIFICATION_CAMPAIGN',
@@ -119,6 +124,8 @@ CREATE TYPE TaskWaitingReasonType AS ENUM ('OTHER_TASKS', 'OTHER');
 CREATE TYPE ThreadStopActionType AS ENUM ('RESTART', 'RESCHEDULE', 'SUSPEND', 'CLOSE');
 
 CREATE TYPE TimeIntervalStatusType AS ENUM ('BEFORE', 'IN', 'AFTER');
+
+CREATE TYPE WorkBucketStateType AS ENUM ('READY', 'DELEGATED', 'COMPLETE');
 -- endregion
 
 -- region OID-pool table
@@ -244,7 +251,9 @@ CREATE TABLE m_object (
     -- TODO compare with [] in JSONB, check performance, indexing, etc. first
     policySituations INTEGER[], -- soft-references m_uri, only EQ filter
     subtypes TEXT[], -- only EQ filter
-    textInfo TEXT[], -- TODO not mapped yet, see RObjectTextInfo#createItemsSet, this may not be []
+    -- normalized words from items configured for full-text search, separated by spaces,
+    -- indexed with trigram index on each concrete table to support LIKE '%word%'
+    fullTextInfo TEXT,
     ext JSONB,
     -- metadata
     creatorRefTargetOid UUID,
@@ -460,6 +469,7 @@ CREATE TRIGGER m_generic_object_oid_delete_tr AFTER DELETE ON m_generic_object
 -- TODO unique per genericObjectTypeId?
 --  No indexes for GenericObjectType#objectType were in old repo, what queries are expected?
 CREATE INDEX m_generic_object_nameOrig_idx ON m_generic_object (nameOrig);
+CREATE INDEX m_generic_object_fullTextInfo_idx ON m_generic_object USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_generic_object ADD CONSTRAINT m_generic_object_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_generic_object_subtypes_idx ON m_generic_object USING gin(subtypes);
 -- endregion
@@ -498,6 +508,7 @@ CREATE TRIGGER m_user_oid_delete_tr AFTER DELETE ON m_user
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_user_nameOrig_idx ON m_user (nameOrig);
+CREATE INDEX m_user_fullTextInfo_idx ON m_user USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_user ADD CONSTRAINT m_user_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_user_policySituation_idx ON m_user USING GIN(policysituations gin__int_ops);
 CREATE INDEX m_user_ext_idx ON m_user USING gin (ext);
@@ -560,6 +571,7 @@ CREATE TRIGGER m_role_oid_delete_tr AFTER DELETE ON m_role
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_role_nameOrig_idx ON m_role (nameOrig);
+CREATE INDEX m_role_fullTextInfo_idx ON m_role USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_role ADD CONSTRAINT m_role_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_role_subtypes_idx ON m_role USING gin(subtypes);
 
@@ -580,6 +592,7 @@ CREATE TRIGGER m_service_oid_delete_tr AFTER DELETE ON m_service
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_service_nameOrig_idx ON m_service (nameOrig);
+CREATE INDEX m_service_fullTextInfo_idx ON m_service USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_service ADD CONSTRAINT m_service_nameNorm_key UNIQUE (nameNorm);
 
 -- Represents ArchetypeType, see https://wiki.evolveum.com/display/midPoint/Archetypes
@@ -598,6 +611,7 @@ CREATE TRIGGER m_archetype_oid_delete_tr AFTER DELETE ON m_archetype
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_archetype_nameOrig_idx ON m_archetype (nameOrig);
+CREATE INDEX m_archetype_fullTextInfo_idx ON m_archetype USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_archetype ADD CONSTRAINT m_archetype_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_archetype_subtypes_idx ON m_archetype USING gin(subtypes);
 -- endregion
@@ -621,6 +635,7 @@ CREATE TRIGGER m_org_oid_delete_tr AFTER DELETE ON m_org
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_org_nameOrig_idx ON m_org (nameOrig);
+CREATE INDEX m_org_fullTextInfo_idx ON m_org USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_org ADD CONSTRAINT m_org_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_org_displayOrder_idx ON m_org (displayOrder);
 CREATE INDEX m_org_subtypes_idx ON m_org USING gin(subtypes);
@@ -642,93 +657,247 @@ CREATE INDEX m_ref_object_parent_orgTargetOidRelationId_idx
 
 -- region org-closure
 /*
-Trigger on m_ref_object_parent_org refreshes this view.
-This is not most performant, but it is *correct* and it's still WIP.
-Closure contains also identity (org = org) entries because:
-* It's easier to do optimized matrix-multiplication based refresh with them later.
+Org closure table is maintained incrementally by triggers on m_org and m_ref_object_parent_org,
+so it is consistent with parent-org refs inside the same transaction that modifies them.
+Closure contains also identity (org = org) entries for each org because:
+* Adding an edge is then a simple cross join of ancestors of parent and descendants of child.
 * It actually makes some query easier and requires AND instead of OR conditions.
 * While the table shows that o => o (=> means "is parent of"), this is not the semantics
 of isParent/ChildOf searches and they never return parameter OID as a result.
+Column paths contains the number of different paths from ancestor to descendant (1 for identity).
+This allows to remove an edge without recomputing the closure (org hierarchy is a DAG, not a tree).
+Only parent-org refs between existing orgs are part of the closure, refs of other objects are not.
+Refs pointing to not (yet) existing org are added to the closure when the org is added.
+All the changes are serialized using transaction-level advisory lock, otherwise concurrent changes
+of the connected parts of the hierarchy would not see each other.
 */
-CREATE MATERIALIZED VIEW m_org_closure AS
-WITH RECURSIVE org_h (
-    ancestor_oid, -- ref.targetoid
-    descendant_oid --ref.ownerOid
-    -- paths -- number of different paths, not used for materialized view version
-    -- depth -- possible later, but cycle detected must be added to the recursive term
-) AS (
-    -- non-recursive term:
-    -- Gather all organization oids from parent-org refs and initialize identity lines (o => o).
-    -- We don't want the orgs not in org hierarchy, that would require org triggers too.
-    SELECT o.oid, o.oid FROM m_org o
-        WHERE EXISTS(
-            SELECT 1 FROM m_ref_object_parent_org r
-                WHERE r.targetOid = o.oid OR r.ownerOid = o.oid)
-    UNION
-    -- recursive (iterative) term:
-    -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
-    SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
-        FROM m_ref_object_parent_org as par, org_h as chi
-        WHERE par.ownerOid = chi.ancestor_oid
-)
-SELECT * FROM org_h;
+CREATE TABLE m_org_closure (
+    ancestor_oid UUID NOT NULL,
+    descendant_oid UUID NOT NULL,
+    paths INTEGER NOT NULL,
+
+    PRIMARY KEY (ancestor_oid, descendant_oid)
+);
 
--- unique index is like PK if it was table
-CREATE UNIQUE INDEX m_org_closure_asc_desc_idx
-    ON m_org_closure (ancestor_oid, descendant_oid);
 CREATE INDEX m_org_closure_desc_asc_idx
     ON m_org_closure (descendant_oid, ancestor_oid);
 
--- The trigger for m_ref_object_parent_org that flags the view for refresh.
-CREATE OR REPLACE FUNCTION mark_org_closure_for_refresh()
+-- Adds edge parent => child to the closure, including all transitive paths going through it.
+CREATE OR REPLACE FUNCTION m_org_closure_add_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE sql
+AS $$
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid, paths)
+        SELECT a.ancestor_oid, d.descendant_oid, a.paths * d.paths
+            FROM m_org_closure a, m_org_closure d
+            WHERE a.descendant_oid = parent_oid AND d.ancestor_oid = child_oid
+    ON CONFLICT (ancestor_oid, descendant_oid)
+        DO UPDATE SET paths = m_org_closure.paths + EXCLUDED.paths;
+$$;
+
+-- Removes edge parent => child from the closure, rows without any remaining path are deleted.
+CREATE OR REPLACE FUNCTION m_org_closure_remove_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE sql
+AS $$
+    UPDATE m_org_closure c SET paths = c.paths - a.paths * d.paths
+        FROM m_org_closure a, m_org_closure d
+        WHERE a.descendant_oid = parent_oid AND d.ancestor_oid = child_oid
+            AND c.ancestor_oid = a.ancestor_oid AND c.descendant_oid = d.descendant_oid;
+
+    DELETE FROM m_org_closure
+        WHERE paths <= 0
+            AND descendant_oid IN (
+                SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child_oid);
+$$;
+
+-- Computes the closure from scratch, used for the rebuild and the consistency check.
+CREATE OR REPLACE FUNCTION m_org_closure_compute()
+    RETURNS TABLE (ancestor_oid UUID, descendant_oid UUID, paths INTEGER)
+    LANGUAGE sql
+AS $$
+    WITH RECURSIVE org_h (
+        ancestor_oid, -- ref.targetoid
+        descendant_oid, --ref.ownerOid
+        path -- used only to cut cycles, which should not exist, but we don't want to loop forever
+    ) AS (
+        -- non-recursive term: identity lines (o => o) for all orgs
+        SELECT o.oid, o.oid, ARRAY[o.oid] FROM m_org o
+        UNION ALL
+        -- recursive (iterative) term: each path is extended by the parent of its ancestor,
+        -- each path is generated once, which is what we need for the paths count
+        SELECT par.targetOid, chi.descendant_oid, par.targetOid || chi.path
+            FROM m_ref_object_parent_org par, org_h chi
+            WHERE par.ownerOid = chi.ancestor_oid
+                AND par.ownerType = 'ORG'
+                AND EXISTS (SELECT 1 FROM m_org o WHERE o.oid = par.targetOid)
+                AND par.targetOid <> ALL(chi.path)
+    )
+    SELECT ancestor_oid, descendant_oid, count(*)::INTEGER FROM org_h
+        GROUP BY ancestor_oid, descendant_oid;
+$$;
+
+-- Replaces the whole content of the closure, normally not needed as it is maintained incrementally.
+-- This can be used after many changes with triggers off or to repair inconsistent closure.
+CREATE OR REPLACE FUNCTION m_org_closure_rebuild()
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    DELETE FROM m_org_closure;
+    INSERT INTO m_org_closure SELECT * FROM m_org_closure_compute();
+END $$;
+
+-- Returns number of rows that are different in the current and in the computed closure.
+CREATE OR REPLACE FUNCTION m_org_closure_check()
+    RETURNS INTEGER
+    LANGUAGE sql
+AS $$
+    SELECT count(*)::INTEGER FROM (
+        (SELECT * FROM m_org_closure EXCEPT ALL SELECT * FROM m_org_closure_compute())
+        UNION ALL
+        (SELECT * FROM m_org_closure_compute() EXCEPT ALL SELECT * FROM m_org_closure)
+    ) diff;
+$$;
+
+-- Statement triggers for m_ref_object_parent_org process all changed refs from the statement.
+-- Edges are processed one by one, because they can be connected to each other.
+CREATE OR REPLACE FUNCTION m_org_closure_parent_ref_insert()
     RETURNS trigger
     LANGUAGE plpgsql
 AS $$
+DECLARE
+    r record;
 BEGIN
-    IF TG_OP = 'TRUNCATE' OR OLD.ownerType = 'ORG' OR NEW.ownerType = 'ORG' THEN
-        INSERT INTO m_global_metadata VALUES ('orgClosureRefreshNeeded', 'true')
-            ON CONFLICT (name) DO UPDATE SET value = 'true';
+    IF EXISTS(SELECT 1 FROM new_refs WHERE ownerType = 'ORG') THEN
+        PERFORM pg_advisory_xact_lock(47);
+        FOR r IN SELECT targetOid, ownerOid FROM new_refs WHERE ownerType = 'ORG' LOOP
+            PERFORM m_org_closure_add_edge(r.targetOid, r.ownerOid);
+        END LOOP;
     END IF;
 
     -- after trigger returns null
     RETURN NULL;
 END $$;
 
-CREATE TRIGGER m_ref_object_parent_mark_refresh_tr
-    AFTER INSERT OR UPDATE OR DELETE ON m_ref_object_parent_org
-    FOR EACH ROW EXECUTE PROCEDURE mark_org_closure_for_refresh();
-CREATE TRIGGER m_ref_object_parent_mark_refresh_trunc_tr
-    AFTER TRUNCATE ON m_ref_object_parent_org
-    FOR EACH STATEMENT EXECUTE PROCEDURE mark_org_closure_for_refresh();
+CREATE OR REPLACE FUNCTION m_org_closure_parent_ref_delete()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    r record;
+BEGIN
+    IF EXISTS(SELECT 1 FROM old_refs WHERE ownerType = 'ORG') THEN
+        PERFORM pg_advisory_xact_lock(47);
+        FOR r IN SELECT targetOid, ownerOid FROM old_refs WHERE ownerType = 'ORG' LOOP
+            PERFORM m_org_closure_remove_edge(r.targetOid, r.ownerOid);
+        END LOOP;
+    END IF;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
 
--- This procedure for conditional refresh when needed is called from the application code.
--- The refresh can be forced, e.g. after many changes with triggers off (or just to be sure).
-CREATE OR REPLACE PROCEDURE m_refresh_org_closure(force boolean = false)
+-- Update of the ref (e.g. changed target or relation) removes the old edges and adds the new ones.
+-- Removing first keeps paths counts non-negative when the same edge is in both old and new refs.
+CREATE OR REPLACE FUNCTION m_org_closure_parent_ref_update()
+    RETURNS trigger
     LANGUAGE plpgsql
 AS $$
 DECLARE
-    flag_val text;
+    r record;
 BEGIN
-    SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-    IF flag_val = 'true' OR force THEN
-        -- We use advisory session lock only for the check + refresh, then release it immediately.
-        -- This can still dead-lock two transactions in a single thread on the select/delete combo,
-        -- (I mean, who would do that?!) but works fine for parallel transactions.
-        PERFORM pg_advisory_lock(47);
-        BEGIN
-            SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-            IF flag_val = 'true' OR force THEN
-                REFRESH MATERIALIZED VIEW m_org_closure;
-                DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-            END IF;
-            PERFORM pg_advisory_unlock(47);
-        EXCEPTION WHEN OTHERS THEN
-            -- Whatever happens we definitely want to release the lock.
-            PERFORM pg_advisory_unlock(47);
-            RAISE;
-        END;
+    IF EXISTS(SELECT 1 FROM old_refs WHERE ownerType = 'ORG')
+            OR EXISTS(SELECT 1 FROM new_refs WHERE ownerType = 'ORG') THEN
+        PERFORM pg_advisory_xact_lock(47);
+        FOR r IN SELECT targetOid, ownerOid FROM old_refs WHERE ownerType = 'ORG' LOOP
+            PERFORM m_org_closure_remove_edge(r.targetOid, r.ownerOid);
+        END LOOP;
+        FOR r IN SELECT targetOid, ownerOid FROM new_refs WHERE ownerType = 'ORG' LOOP
+            PERFORM m_org_closure_add_edge(r.targetOid, r.ownerOid);
+        END LOOP;
     END IF;
-END; $$;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE OR REPLACE FUNCTION m_org_closure_truncate()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM m_org_closure_rebuild();
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER m_ref_object_parent_org_closure_insert_tr
+    AFTER INSERT ON m_ref_object_parent_org
+    REFERENCING NEW TABLE AS new_refs
+    FOR EACH STATEMENT EXECUTE PROCEDURE m_org_closure_parent_ref_insert();
+CREATE TRIGGER m_ref_object_parent_org_closure_delete_tr
+    AFTER DELETE ON m_ref_object_parent_org
+    REFERENCING OLD TABLE AS old_refs
+    FOR EACH STATEMENT EXECUTE PROCEDURE m_org_closure_parent_ref_delete();
+CREATE TRIGGER m_ref_object_parent_org_closure_update_tr
+    AFTER UPDATE ON m_ref_object_parent_org
+    REFERENCING OLD TABLE AS old_refs NEW TABLE AS new_refs
+    FOR EACH STATEMENT EXECUTE PROCEDURE m_org_closure_parent_ref_update();
+CREATE TRIGGER m_ref_object_parent_org_closure_trunc_tr
+    AFTER TRUNCATE ON m_ref_object_parent_org
+    FOR EACH STATEMENT EXECUTE PROCEDURE m_org_closure_truncate();
+
+-- Row triggers for m_org add/remove identity line and edges to children added before the org.
+CREATE OR REPLACE FUNCTION m_org_closure_org_insert()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    r record;
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    INSERT INTO m_org_closure VALUES (NEW.oid, NEW.oid, 1)
+        ON CONFLICT (ancestor_oid, descendant_oid) DO NOTHING;
+    -- Children can reference the org before it is added (e.g. during import).
+    -- New org has no parent refs yet, they are inserted after the object row.
+    FOR r IN SELECT ownerOid FROM m_ref_object_parent_org
+            WHERE targetOid = NEW.oid AND ownerType = 'ORG' LOOP
+        PERFORM m_org_closure_add_edge(NEW.oid, r.ownerOid);
+    END LOOP;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE OR REPLACE FUNCTION m_org_closure_org_delete()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    r record;
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    -- Parent refs of the org may be not deleted by the cascade yet, but their edges must be
+    -- removed while the closure still contains the org. Later ref delete trigger does nothing.
+    FOR r IN SELECT targetOid FROM m_ref_object_parent_org WHERE ownerOid = OLD.oid LOOP
+        PERFORM m_org_closure_remove_edge(r.targetOid, OLD.oid);
+    END LOOP;
+    -- Refs from children stay in place, they are added to the closure again if the org is re-added.
+    DELETE FROM m_org_closure WHERE ancestor_oid = OLD.oid OR descendant_oid = OLD.oid;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER m_org_closure_insert_tr AFTER INSERT ON m_org
+    FOR EACH ROW EXECUTE PROCEDURE m_org_closure_org_insert();
+CREATE TRIGGER m_org_closure_delete_tr AFTER DELETE ON m_org
+    FOR EACH ROW EXECUTE PROCEDURE m_org_closure_org_delete();
+CREATE TRIGGER m_org_closure_trunc_tr AFTER TRUNCATE ON m_org
+    FOR EACH STATEMENT EXECUTE PROCEDURE m_org_closure_truncate();
 -- endregion
 -- endregion
 
@@ -754,6 +923,7 @@ CREATE TRIGGER m_resource_oid_delete_tr AFTER DELETE ON m_resource
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_resource_nameOrig_idx ON m_resource (nameOrig);
+CREATE INDEX m_resource_fullTextInfo_idx ON m_resource USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_resource ADD CONSTRAINT m_resource_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_resource_subtypes_idx ON m_resource USING gin(subtypes);
 
@@ -790,7 +960,8 @@ CREATE TABLE m_shadow (
     primaryIdentifierValue TEXT,
 --     status INTEGER, TODO how is this mapped? See RUtil.copyResultFromJAXB called from RTask and OperationResultMapper
     synchronizationSituation SynchronizationSituationType,
-    synchronizationTimestamp TIMESTAMPTZ
+    synchronizationTimestamp TIMESTAMPTZ,
+    attributes JSONB -- indexed shadow attributes, keyed by m_ext_item ID just like ext
 )
     INHERITS (m_object);
 
@@ -804,10 +975,12 @@ CREATE TRIGGER m_shadow_oid_delete_tr AFTER DELETE ON m_shadow
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_shadow_nameOrig_idx ON m_shadow (nameOrig);
+CREATE INDEX m_shadow_fullTextInfo_idx ON m_shadow USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_shadow ADD CONSTRAINT m_shadow_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_shadow_subtypes_idx ON m_shadow USING gin(subtypes);
 CREATE INDEX m_shadow_policySituation_idx ON m_shadow USING GIN(policysituations gin__int_ops);
 CREATE INDEX m_shadow_ext_idx ON m_shadow USING gin (ext);
+CREATE INDEX m_shadow_attributes_idx ON m_shadow USING gin (attributes);
 /*
 TODO: reconsider, especially boolean things like dead (perhaps WHERE in other indexes?)
  Also consider partitioning by some of the attributes (class/kind/intent?)
@@ -840,6 +1013,7 @@ CREATE TRIGGER m_node_oid_delete_tr AFTER DELETE ON m_node
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_node_nameOrig_idx ON m_node (nameOrig);
+CREATE INDEX m_node_fullTextInfo_idx ON m_node USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_node ADD CONSTRAINT m_node_nameNorm_key UNIQUE (nameNorm);
 -- not interested in other indexes for this one, this table will be small
 
@@ -878,6 +1052,7 @@ CREATE TRIGGER m_security_policy_oid_delete_tr AFTER DELETE ON m_security_policy
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_security_policy_nameOrig_idx ON m_security_policy (nameOrig);
+CREATE INDEX m_security_policy_fullTextInfo_idx ON m_security_policy USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_security_policy ADD CONSTRAINT m_security_policy_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_security_policy_subtypes_idx ON m_security_policy USING gin(subtypes);
 CREATE INDEX m_security_policy_policySituation_idx
@@ -899,6 +1074,7 @@ CREATE TRIGGER m_object_collection_oid_delete_tr AFTER DELETE ON m_object_collec
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_object_collection_nameOrig_idx ON m_object_collection (nameOrig);
+CREATE INDEX m_object_collection_fullTextInfo_idx ON m_object_collection USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_object_collection ADD CONSTRAINT m_object_collection_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_object_collection_subtypes_idx ON m_object_collection USING gin(subtypes);
 CREATE INDEX m_object_collection_policySituation_idx
@@ -920,6 +1096,7 @@ CREATE TRIGGER m_dashboard_oid_delete_tr AFTER DELETE ON m_dashboard
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_dashboard_nameOrig_idx ON m_dashboard (nameOrig);
+CREATE INDEX m_dashboard_fullTextInfo_idx ON m_dashboard USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_dashboard ADD CONSTRAINT m_dashboard_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_dashboard_subtypes_idx ON m_dashboard USING gin(subtypes);
 CREATE INDEX m_dashboard_policySituation_idx
@@ -941,6 +1118,7 @@ CREATE TRIGGER m_value_policy_oid_delete_tr AFTER DELETE ON m_value_policy
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_value_policy_nameOrig_idx ON m_value_policy (nameOrig);
+CREATE INDEX m_value_policy_fullTextInfo_idx ON m_value_policy USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_value_policy ADD CONSTRAINT m_value_policy_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_value_policy_subtypes_idx ON m_value_policy USING gin(subtypes);
 CREATE INDEX m_value_policy_policySituation_idx
@@ -964,6 +1142,7 @@ CREATE TRIGGER m_report_oid_delete_tr AFTER DELETE ON m_report
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_report_nameOrig_idx ON m_report (nameOrig);
+CREATE INDEX m_report_fullTextInfo_idx ON m_report USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_report ADD CONSTRAINT m_report_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_report_subtypes_idx ON m_report USING gin(subtypes);
 CREATE INDEX m_report_policySituation_idx ON m_report USING GIN(policysituations gin__int_ops);
@@ -988,6 +1167,7 @@ CREATE TRIGGER m_report_data_oid_delete_tr AFTER DELETE ON m_report_data
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_report_data_nameOrig_idx ON m_report_data (nameOrig);
+CREATE INDEX m_report_data_fullTextInfo_idx ON m_report_data USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_report_data ADD CONSTRAINT m_report_data_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_report_data_subtypes_idx ON m_report_data USING gin(subtypes);
 CREATE INDEX m_report_data_policySituation_idx
@@ -1009,6 +1189,7 @@ CREATE TRIGGER m_lookup_table_oid_delete_tr AFTER DELETE ON m_lookup_table
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_lookup_table_nameOrig_idx ON m_lookup_table (nameOrig);
+CREATE INDEX m_lookup_table_fullTextInfo_idx ON m_lookup_table USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_lookup_table ADD CONSTRAINT m_lookup_table_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_lookup_table_subtypes_idx ON m_lookup_table USING gin(subtypes);
 CREATE INDEX m_lookup_table_policySituation_idx
@@ -1056,6 +1237,7 @@ CREATE TRIGGER m_connector_oid_delete_tr AFTER DELETE ON m_connector
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_connector_nameOrig_idx ON m_connector (nameOrig);
+CREATE INDEX m_connector_fullTextInfo_idx ON m_connector USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_connector ADD CONSTRAINT m_connector_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_connector_subtypes_idx ON m_connector USING gin(subtypes);
 CREATE INDEX m_connector_policySituation_idx
@@ -1079,6 +1261,7 @@ CREATE TRIGGER m_connector_host_oid_delete_tr AFTER DELETE ON m_connector_host
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_connector_host_nameOrig_idx ON m_connector_host (nameOrig);
+CREATE INDEX m_connector_host_fullTextInfo_idx ON m_connector_host USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_connector_host ADD CONSTRAINT m_connector_host_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_connector_host_subtypes_idx ON m_connector_host USING gin(subtypes);
 CREATE INDEX m_connector_host_policySituation_idx
@@ -1122,6 +1305,7 @@ CREATE TRIGGER m_task_oid_delete_tr AFTER DELETE ON m_task
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_task_nameOrig_idx ON m_task (nameOrig);
+CREATE INDEX m_task_fullTextInfo_idx ON m_task USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_task ADD CONSTRAINT m_task_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_task_parent_idx ON m_task (parent);
 CREATE INDEX m_task_objectRefTargetOid_idx ON m_task(objectRefTargetOid);
@@ -1129,6 +1313,26 @@ ALTER TABLE m_task ADD CONSTRAINT m_task_taskIdentifier_key UNIQUE (taskIdentifi
 CREATE INDEX m_task_dependentTaskIdentifiers_idx ON m_task USING GIN(dependentTaskIdentifiers);
 CREATE INDEX m_task_subtypes_idx ON m_task USING gin(subtypes);
 CREATE INDEX m_task_policySituation_idx ON m_task USING GIN(policysituations gin__int_ops);
+
+/*
+Work buckets of multi-node (coordinator) tasks, used instead of workState/bucket in the task
+if enabled in the task manager configuration (workAllocationUseBucketStore).
+Each bucket is a separate row, so workers can claim them concurrently with FOR UPDATE SKIP LOCKED.
+Column bucket contains serialized WorkBucketType without state and workerRef,
+completed buckets are deleted except for the last one.
+*/
+CREATE TABLE m_task_work_bucket (
+    coordinatorOid UUID NOT NULL REFERENCES m_object_oid(oid) ON DELETE CASCADE,
+    sequentialNumber INTEGER NOT NULL,
+    state WorkBucketStateType NOT NULL,
+    workerOid UUID,
+    bucket TEXT NOT NULL,
+
+    PRIMARY KEY (coordinatorOid, sequentialNumber)
+);
+
+CREATE INDEX m_task_work_bucket_ready_idx ON m_task_work_bucket (coordinatorOid, sequentialNumber)
+    WHERE state = 'READY';
 -- endregion
 
 -- region cases
@@ -1162,6 +1366,7 @@ CREATE TRIGGER m_case_oid_delete_tr AFTER DELETE ON m_case
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_case_nameOrig_idx ON m_case (nameOrig);
+CREATE INDEX m_case_fullTextInfo_idx ON m_case USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_case ADD CONSTRAINT m_case_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_case_subtypes_idx ON m_case USING gin(subtypes);
 CREATE INDEX m_case_policySituation_idx ON m_case USING GIN(policysituations gin__int_ops);
@@ -1218,6 +1423,7 @@ CREATE TRIGGER m_access_cert_definition_oid_delete_tr AFTER DELETE ON m_access_c
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_access_cert_definition_nameOrig_idx ON m_access_cert_definition (nameOrig);
+CREATE INDEX m_access_cert_definition_fullTextInfo_idx ON m_access_cert_definition USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_access_cert_definition
     ADD CONSTRAINT m_access_cert_definition_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_access_cert_definition_subtypes_idx ON m_access_cert_definition USING gin(subtypes);
@@ -1253,6 +1459,7 @@ CREATE TRIGGER m_access_cert_campaign_oid_delete_tr AFTER DELETE ON m_access_cer
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_access_cert_campaign_nameOrig_idx ON m_access_cert_campaign (nameOrig);
+CREATE INDEX m_access_cert_campaign_fullTextInfo_idx ON m_access_cert_campaign USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_access_cert_campaign
     ADD CONSTRAINT m_access_cert_campaign_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_access_cert_campaign_subtypes_idx ON m_access_cert_campaign USING gin(subtypes);
@@ -1369,6 +1576,7 @@ CREATE TRIGGER m_object_template_oid_delete_tr AFTER DELETE ON m_object_template
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_object_template_nameOrig_idx ON m_object_template (nameOrig);
+CREATE INDEX m_object_template_fullTextInfo_idx ON m_object_template USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_object_template ADD CONSTRAINT m_object_template_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_object_template_subtypes_idx ON m_object_template USING gin(subtypes);
 CREATE INDEX m_object_template_policySituation_idx ON m_object_template USING GIN(policysituations gin__int_ops);
@@ -1404,6 +1612,7 @@ CREATE TRIGGER m_function_library_oid_delete_tr AFTER DELETE ON m_function_libra
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_function_library_nameOrig_idx ON m_function_library (nameOrig);
+CREATE INDEX m_function_library_fullTextInfo_idx ON m_function_library USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_function_library ADD CONSTRAINT m_function_library_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_function_library_subtypes_idx ON m_function_library USING gin(subtypes);
 CREATE INDEX m_function_library_policySituation_idx
@@ -1425,6 +1634,7 @@ CREATE TRIGGER m_sequence_oid_delete_tr AFTER DELETE ON m_sequence
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_sequence_nameOrig_idx ON m_sequence (nameOrig);
+CREATE INDEX m_sequence_fullTextInfo_idx ON m_sequence USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_sequence ADD CONSTRAINT m_sequence_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_sequence_subtypes_idx ON m_sequence USING gin(subtypes);
 CREATE INDEX m_sequence_policySituation_idx ON m_sequence USING GIN(policysituations gin__int_ops);
@@ -1445,6 +1655,7 @@ CREATE TRIGGER m_form_oid_delete_tr AFTER DELETE ON m_form
     FOR EACH ROW EXECUTE PROCEDURE delete_object_oid();
 
 CREATE INDEX m_form_nameOrig_idx ON m_form (nameOrig);
+CREATE INDEX m_form_fullTextInfo_idx ON m_form USING gin (fullTextInfo gin_trgm_ops);
 ALTER TABLE m_form ADD CONSTRAINT m_form_nameNorm_key UNIQUE (nameNorm);
 CREATE INDEX m_form_subtypes_idx ON m_form USING gin(subtypes);
 CREATE INDEX m_form_policySituation_idx ON m_form USING GIN(policysituations gin__int_ops);
@@ -1599,17 +1810,25 @@ CREATE INDEX m_operation_execution_timestampValue_idx ON m_operation_execution (
 -- endregion
 
 -- region Extension support
--- TODO: catalog unused at the moment
+/*
+Catalog of indexed extension items and shadow attributes.
+Values of these items are stored in JSONB columns (ext, attributes) using ID of the catalog row
+as a key, e.g. {"42": "value"}, or {"43": ["v1", "v2"]} for multi-value items.
+The same item name with different type or cardinality has a separate catalog row, so each key
+in JSONB has a single well-known representation of its value which is important for queries.
+*/
 CREATE TABLE m_ext_item (
     id SERIAL NOT NULL,
-    kind INTEGER, -- see RItemKind, is this necessary? does it contain cardinality?
-    name TEXT, -- no path for nested props needed?
-    type TEXT, -- data type TODO enum?
-    storageType TEXT NOT NULL default 'EXT_JSON', -- type of storage (JSON, column, table separate/common, etc.)
-    storageInfo TEXT, -- optional storage detail, name of column or table if necessary
+    itemName TEXT NOT NULL, -- item QName as URI
+    valueType TEXT NOT NULL, -- type QName as URI
+    holderType ExtItemHolderType NOT NULL,
+    cardinality ExtItemCardinality NOT NULL,
 
     PRIMARY KEY (id)
 );
+
+CREATE UNIQUE INDEX m_ext_item_key
+    ON m_ext_item (itemName, valueType, holderType, cardinality);
 -- endregion
 
 /*
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.querydsl.core.QueryFlag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.QExtItem;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Cache for {@link MExtItem} catalog of extension items, similar to {@link UriCache}.
+ * Method `get` never accesses the database and is used for query predicates (unknown item
+ * simply means that no object contains it), {@link #resolveExtensionItem(MExtItem.Key)}
+ * creates the catalog row if necessary.
+ *
+ * Just like with {@link UriCache}, the new row is inserted in its own separate transaction.
+ * The insert ignores conflicts on the unique key, so multiple nodes can add the same item
+ * concurrently; the row is read again after the insert to obtain the right ID.
+ */
+public class ExtItemCache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ExtItemCache.class);
+
+    private final Map<Integer, MExtItem> idToExtItem = new ConcurrentHashMap<>();
+    private final Map<MExtItem.Key, MExtItem> keyToExtItem = new ConcurrentHashMap<>();
+
+    private Supplier<JdbcSession> jdbcSessionSupplier;
+
+    /**
+     * Initializes the extension item cache.
+     * Provided {@link JdbcSession} supplier will be used for later writes as well.
+     */
+    public synchronized void initialize(Supplier<JdbcSession> jdbcSessionSupplier) {
+        this.jdbcSessionSupplier = jdbcSessionSupplier;
+
+        // this can be called repeatedly in tests, so the clear may be necessary
+        idToExtItem.clear();
+        keyToExtItem.clear();
+
+        QExtItem ei = QExtItem.DEFAULT;
+        List<MExtItem> result;
+        try (JdbcSession jdbcSession = jdbcSessionSupplier.get().startReadOnlyTransaction()) {
+            result = jdbcSession.newQuery()
+                    .select(ei)
+                    .from(ei)
+                    .fetch();
+            jdbcSession.commit();
+        }
+
+        for (MExtItem row : result) {
+            updateMaps(row);
+        }
+        LOGGER.info("Ext item cache initialized with {} items.", result.size());
+    }
+
+    private void updateMaps(MExtItem row) {
+        idToExtItem.put(row.id, row);
+        keyToExtItem.put(row.key(), row);
+    }
+
+    /** Returns extension item for ID or {@code null} - does not work with underlying database. */
+    public @Nullable MExtItem getExtensionItem(@NotNull Integer id) {
+        return idToExtItem.get(id);
+    }
+
+    /** Returns extension item for key or {@code null} - does not work with underlying database. */
+    public @Nullable MExtItem getExtensionItem(@NotNull MExtItem.Key key) {
+        MExtItem extItem = keyToExtItem.get(key);
+        LOGGER.trace("Ext item cache 'get' returned {} for key {}", extItem, key);
+        return extItem;
+    }
+
+    /** Returns extension item for the key creating new catalog row in DB as needed. */
+    public synchronized @NotNull MExtItem resolveExtensionItem(@NotNull MExtItem.Key key) {
+        if (jdbcSessionSupplier == null) {
+            throw new IllegalStateException("Ext item cache was not initialized yet!");
+        }
+
+        MExtItem extItem = getExtensionItem(key);
+        if (extItem != null) {
+            return extItem;
+        }
+
+        QExtItem ei = QExtItem.DEFAULT;
+        try (JdbcSession jdbcSession = jdbcSessionSupplier.get().startTransaction()) {
+            jdbcSession.newInsert(ei)
+                    .set(ei.itemName, key.itemName)
+                    .set(ei.valueType, key.valueType)
+                    .set(ei.holderType, key.holderType)
+                    .set(ei.cardinality, key.cardinality)
+                    .addFlag(QueryFlag.Position.END, " ON CONFLICT DO NOTHING")
+                    .execute();
+            Integer id = jdbcSession.newQuery()
+                    .select(ei.id)
+                    .from(ei)
+                    .where(ei.itemName.eq(key.itemName)
+                            .and(ei.valueType.eq(key.valueType))
+                            .and(ei.holderType.eq(key.holderType))
+                            .and(ei.cardinality.eq(key.cardinality)))
+                    .fetchOne();
+            jdbcSession.commit();
+
+            extItem = MExtItem.of(id, key);
+            updateMaps(extItem);
+        }
+
+        LOGGER.debug("Ext item cache inserted {}", extItem);
+        return extItem;
+    }
+}
@@ -8,15 +8,20 @@ package com.evolveum.midpoint.repo.sqale;
 
 import javax.xml.namespace.QName;
 
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.sql.SQLQuery;
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.prism.query.FullTextFilter;
 import com.evolveum.midpoint.prism.query.InOidFilter;
 import com.evolveum.midpoint.prism.query.OrgFilter;
+import com.evolveum.midpoint.repo.sqale.filtering.FullTextFilterProcessor;
 import com.evolveum.midpoint.repo.sqale.filtering.InOidFilterProcessor;
 import com.evolveum.midpoint.repo.sqale.filtering.OrgFilterProcessor;
 import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
-import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
 import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
 import com.evolveum.midpoint.repo.sqlbase.filtering.FilterProcessor;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryTableMapping;
@@ -25,8 +30,6 @@ import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
 public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         extends SqlQueryContext<S, Q, R> {
 
-    private boolean containsOrgFilter = false;
-
     public static <S, Q extends FlexibleRelationalPathBase<R>, R> SqaleQueryContext<S, Q, R> from(
             Class<S> schemaType,
             SqaleRepoContext sqlRepoContext) {
@@ -72,16 +75,33 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         return new OrgFilterProcessor(this);
     }
 
-    public @NotNull Integer searchCachedRelationId(QName qName) {
-        return repositoryContext().searchCachedRelationId(qName);
+    @Override
+    public FilterProcessor<FullTextFilter> createFullTextFilter() {
+        return new FullTextFilterProcessor(this);
+    }
+
+    /** Objects are iterated by OID which is unique and indexed by the primary key. */
+    @Override
+    public OrderSpecifier<?> iterationKeyOrder() {
+        return objectRoot().oid.asc();
+    }
+
+    @Override
+    public Predicate iterationKeyAfter(@NotNull Tuple lastRow) {
+        QObject<?> root = objectRoot();
+        return root.oid.gt(lastRow.get(root.oid));
     }
 
-    public void markContainsOrgFilter() {
-        containsOrgFilter = true;
-        SqaleQueryContext<?, ?, ?> parentContext = parentContext();
-        if (parentContext != null) {
-            parentContext.markContainsOrgFilter();
+    private QObject<?> objectRoot() {
+        if (!(entityPath instanceof QObject)) {
+            throw new UnsupportedOperationException(
+                    "Iterative search is supported only for objects, not for " + entityPath);
         }
+        return (QObject<?>) entityPath;
+    }
+
+    public @NotNull Integer searchCachedRelationId(QName qName) {
+        return repositoryContext().searchCachedRelationId(qName);
     }
 
     /**
@@ -100,14 +120,4 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
     public SqaleQueryContext<?, ?, ?> parentContext() {
         return (SqaleQueryContext<?, ?, ?>) super.parentContext();
     }
-
-    @Override
-    public void beforeQuery() {
-        if (containsOrgFilter) {
-            try (JdbcSession jdbcSession = repositoryContext().newJdbcSession().startTransaction()) {
-                jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-                jdbcSession.commit();
-            }
-        }
-    }
 }
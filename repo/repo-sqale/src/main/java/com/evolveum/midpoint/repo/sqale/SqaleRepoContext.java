@@ -12,28 +12,37 @@ import javax.xml.namespace.QName;
 
 import com.querydsl.sql.types.EnumAsObjectType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.repo.sqale.qmodel.common.MContainerType;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.QUri;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemCardinality;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
 import com.evolveum.midpoint.repo.sqale.qmodel.ref.MReferenceType;
-import com.evolveum.midpoint.repo.sqlbase.JdbcRepositoryConfiguration;
 import com.evolveum.midpoint.repo.sqlbase.SqlRepoContext;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryModelMappingRegistry;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.QuerydslJsonbType;
 import com.evolveum.midpoint.schema.SchemaService;
 import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventStageType;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventTypeType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import com.evolveum.prism.xml.ns._public.types_3.ChangeTypeType;
 
 /**
- * SQL repository context adding support for QName cache.
+ * SQL repository context adding support for QName cache and extension item catalog cache.
  */
 public class SqaleRepoContext extends SqlRepoContext {
 
     private final UriCache uriCache;
+    private final ExtItemCache extItemCache;
+
+    private volatile FullTextSearchConfigurationType fullTextSearchConfiguration;
 
     public SqaleRepoContext(
-            JdbcRepositoryConfiguration jdbcRepositoryConfiguration,
+            SqaleRepositoryConfiguration jdbcRepositoryConfiguration,
             DataSource dataSource,
             SchemaService schemaService,
             QueryModelMappingRegistry mappingRegistry) {
@@ -41,8 +50,13 @@ public class SqaleRepoContext extends SqlRepoContext {
 
         // each enum type must be registered if we want to map it as objects (to PG enum types)
         querydslConfig.register(new EnumAsObjectType<>(ActivationStatusType.class));
+        querydslConfig.register(new EnumAsObjectType<>(AuditEventStageType.class));
+        querydslConfig.register(new EnumAsObjectType<>(AuditEventTypeType.class));
         querydslConfig.register(new EnumAsObjectType<>(AvailabilityStatusType.class));
+        querydslConfig.register(new EnumAsObjectType<>(ChangeTypeType.class));
         querydslConfig.register(new EnumAsObjectType<>(MContainerType.class));
+        querydslConfig.register(new EnumAsObjectType<>(MExtItemCardinality.class));
+        querydslConfig.register(new EnumAsObjectType<>(MExtItemHolderType.class));
         querydslConfig.register(new EnumAsObjectType<>(MObjectType.class));
         querydslConfig.register(new EnumAsObjectType<>(MReferenceType.class));
         querydslConfig.register(new EnumAsObjectType<>(LockoutStatusType.class));
@@ -58,17 +72,35 @@ public class SqaleRepoContext extends SqlRepoContext {
         querydslConfig.register(new EnumAsObjectType<>(TaskWaitingReasonType.class));
         querydslConfig.register(new EnumAsObjectType<>(ThreadStopActionType.class));
         querydslConfig.register(new EnumAsObjectType<>(TimeIntervalStatusType.class));
+        querydslConfig.register(new EnumAsObjectType<>(WorkBucketStateType.class));
 
         // JSONB type support
         querydslConfig.register(new QuerydslJsonbType());
 
         uriCache = new UriCache();
+        extItemCache = new ExtItemCache();
+    }
+
+    @Override
+    public SqaleRepositoryConfiguration getJdbcRepositoryConfiguration() {
+        return (SqaleRepositoryConfiguration) super.getJdbcRepositoryConfiguration();
+    }
+
+    /** Returns full-text search configuration as applied from the system configuration or null. */
+    public @Nullable FullTextSearchConfigurationType getFullTextSearchConfiguration() {
+        return fullTextSearchConfiguration;
+    }
+
+    public void setFullTextSearchConfiguration(
+            @Nullable FullTextSearchConfigurationType fullTextSearchConfiguration) {
+        this.fullTextSearchConfiguration = fullTextSearchConfiguration;
     }
 
     // This has nothing to do with "repo cache" which is higher than this.
     @PostConstruct
     public void clearCaches() {
         uriCache.initialize(this::newJdbcSession);
+        extItemCache.initialize(this::newJdbcSession);
     }
 
     /** @see UriCache#searchId(String) */
@@ -99,4 +131,14 @@ public class SqaleRepoContext extends SqlRepoContext {
         return processCacheableUri(
                 QNameUtil.qNameToUri(normalizeRelation(qName)));
     }
+
+    /** @see ExtItemCache#getExtensionItem(MExtItem.Key) */
+    public @Nullable MExtItem getExtensionItem(@NotNull MExtItem.Key extItemKey) {
+        return extItemCache.getExtensionItem(extItemKey);
+    }
+
+    /** @see ExtItemCache#resolveExtensionItem(MExtItem.Key) */
+    public @NotNull MExtItem resolveExtensionItem(@NotNull MExtItem.Key extItemKey) {
+        return extItemCache.resolveExtensionItem(extItemKey);
+    }
 }
@@ -21,6 +21,10 @@ import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.repo.api.RepositoryServiceFactoryException;
 import com.evolveum.midpoint.repo.api.SqlPerformanceMonitorsCollection;
 import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditServiceFactory;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditDeltaMapping;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecordMapping;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditRefValueMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.QObjectTemplateMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.accesscert.QAccessCertificationDefinitionMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.assignment.QAssignmentMapping;
@@ -58,6 +62,7 @@ import com.evolveum.midpoint.repo.sqlbase.SystemConfigurationChangeDispatcherImp
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryModelMappingRegistry;
 import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorsCollectionImpl;
 import com.evolveum.midpoint.schema.SchemaService;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
 /**
@@ -100,7 +105,12 @@ public class SqaleRepositoryBeanConfig {
     @ConditionalOnMissingBean
     public DataSourceFactory dataSourceFactory(
             SqaleRepositoryConfiguration repositoryConfiguration) {
-        return new DataSourceFactory(repositoryConfiguration);
+        DataSourceFactory dataSourceFactory = new DataSourceFactory(repositoryConfiguration);
+        if (repositoryConfiguration.isUsingPostgreSQL()) {
+            // multi-row inserts for JDBC batches, used by batch add (addObjects)
+            dataSourceFactory.addDataSourceProperty("reWriteBatchedInserts", "true");
+        }
+        return dataSourceFactory;
     }
 
     @Bean
@@ -172,6 +182,11 @@ public class SqaleRepositoryBeanConfig {
                 .register(ValuePolicyType.COMPLEX_TYPE, QValuePolicyMapping.init(repositoryContext))
                 .register(QContainerMapping.initContainerMapping(repositoryContext))
                 .register(QReferenceMapping.init(repositoryContext))
+                // audit uses the same datasource, its tables are mapped here too
+                .register(AuditEventRecordType.COMPLEX_TYPE,
+                        QAuditEventRecordMapping.init(repositoryContext))
+                .register(QAuditDeltaMapping.init(repositoryContext))
+                .register(QAuditRefValueMapping.init(repositoryContext))
                 .seal();
 
         return repositoryContext;
@@ -191,7 +206,26 @@ public class SqaleRepositoryBeanConfig {
                 sqlPerformanceMonitorsCollection);
     }
 
-    // TODO @Bean for AuditServiceFactory later
+    /**
+     * Work bucket store is used by the task manager only if it's enabled in its configuration,
+     * see `workAllocationUseBucketStore`.
+     */
+    @Bean
+    public SqaleWorkBucketStore sqaleWorkBucketStore(SqaleRepoContext sqlRepoContext) {
+        return new SqaleWorkBucketStore(sqlRepoContext);
+    }
+
+    /**
+     * Audit service factory is always available with the new repository, but it is used only if
+     * it's specified as the `auditServiceFactoryClass` in the audit configuration.
+     * Destroy method assures flushing of the buffered audit records on shutdown.
+     */
+    @Bean(destroyMethod = "destroy")
+    public SqaleAuditServiceFactory sqaleAuditServiceFactory(
+            SqaleRepoContext sqlRepoContext,
+            SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
+        return new SqaleAuditServiceFactory(sqlRepoContext, sqlPerformanceMonitorsCollection);
+    }
 
     // TODO rethink? using Spring events
     @Bean
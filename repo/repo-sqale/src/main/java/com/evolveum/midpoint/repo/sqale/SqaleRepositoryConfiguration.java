@@ -37,6 +37,25 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private static final int DEFAULT_MIN_POOL_SIZE = 8;
     private static final int DEFAULT_MAX_POOL_SIZE = 20;
 
+    /** Size of the page for iterative search, see {@link #getIterativeSearchByPagingBatchSize()}. */
+    public static final String PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE =
+            "iterativeSearchByPagingBatchSize";
+
+    private static final int DEFAULT_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE = 100;
+
+    /**
+     * Number of threads used to parse full objects of search results in parallel,
+     * see {@link #getFullObjectParsingThreads()}.
+     */
+    public static final String PROPERTY_FULL_OBJECT_PARSING_THREADS = "fullObjectParsingThreads";
+
+    private static final int DEFAULT_FULL_OBJECT_PARSING_THREADS = 0;
+
+    /** Number of objects written in one transaction by batch operations, see {@link #getBatchCommitSize()}. */
+    public static final String PROPERTY_BATCH_COMMIT_SIZE = "batchCommitSize";
+
+    private static final int DEFAULT_BATCH_COMMIT_SIZE = 100;
+
     @NotNull private final Environment env; // for better Spring properties/override integration
     @NotNull private final Configuration configuration;
 
@@ -61,6 +80,10 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private String performanceStatisticsFile;
     private int performanceStatisticsLevel;
 
+    private int iterativeSearchByPagingBatchSize;
+    private int fullObjectParsingThreads;
+    private int batchCommitSize;
+
     public SqaleRepositoryConfiguration(
             @NotNull Environment env,
             @NotNull Configuration configuration) {
@@ -105,6 +128,14 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         performanceStatisticsLevel = configuration.getInt(PROPERTY_PERFORMANCE_STATISTICS_LEVEL,
                 SqlPerformanceMonitorImpl.LEVEL_LOCAL_STATISTICS);
 
+        iterativeSearchByPagingBatchSize = configuration.getInt(
+                PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE,
+                DEFAULT_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE);
+        fullObjectParsingThreads = configuration.getInt(
+                PROPERTY_FULL_OBJECT_PARSING_THREADS, DEFAULT_FULL_OBJECT_PARSING_THREADS);
+        batchCommitSize = configuration.getInt(
+                PROPERTY_BATCH_COMMIT_SIZE, DEFAULT_BATCH_COMMIT_SIZE);
+
         validateConfiguration();
     }
 
@@ -188,6 +219,30 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         return fullObjectFormat;
     }
 
+    /**
+     * Returns the number of rows fetched in one page (and one short transaction)
+     * of iterative search.
+     */
+    public int getIterativeSearchByPagingBatchSize() {
+        return iterativeSearchByPagingBatchSize;
+    }
+
+    /**
+     * Returns the size of the shared thread pool used to parse full objects of search results.
+     * Zero (default) means that the results are parsed serially on the calling thread.
+     */
+    public int getFullObjectParsingThreads() {
+        return fullObjectParsingThreads;
+    }
+
+    /**
+     * Returns the maximum number of objects written in a single transaction by batch operations
+     * like {@link com.evolveum.midpoint.repo.api.RepositoryService#addObjects}.
+     */
+    public int getBatchCommitSize() {
+        return batchCommitSize;
+    }
+
     public String getDefaultEmbeddedJdbcUrlPrefix() {
         throw new UnsupportedOperationException(
                 "This configuration (repository factory) does not support embedded database.");
@@ -9,11 +9,18 @@ package com.evolveum.midpoint.repo.sqale;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import javax.annotation.PreDestroy;
 
 import com.google.common.base.Strings;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.Expressions;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,6 +37,7 @@ import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
 import com.evolveum.midpoint.prism.equivalence.EquivalenceStrategy;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.api.perf.OperationRecord;
@@ -38,7 +46,9 @@ import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObjectMapping;
 import com.evolveum.midpoint.repo.sqale.update.AddObjectContext;
+import com.evolveum.midpoint.repo.sqale.update.BatchAddObjectContext;
 import com.evolveum.midpoint.repo.sqale.update.RootUpdateContext;
 import com.evolveum.midpoint.repo.sqlbase.*;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryTableMapping;
@@ -79,8 +89,13 @@ public class SqaleRepositoryService implements RepositoryService {
      */
     private static final String OP_NAME_PREFIX = SqaleRepositoryService.class.getSimpleName() + '.';
 
+    private static final String OP_TEST_ORG_CLOSURE_CONSISTENCY = "testOrgClosureConsistency";
+
     private static final int MAX_CONFLICT_WATCHERS = 10;
 
+    /** Capacity of the parsing pool queue per thread, if full the calling thread parses the row. */
+    private static final int PARSING_QUEUE_CAPACITY_PER_THREAD = 100;
+
     private final SqaleRepoContext repositoryContext;
     private final SqlQueryExecutor sqlQueryExecutor;
     private final SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection;
@@ -93,18 +108,45 @@ public class SqaleRepositoryService implements RepositoryService {
 
     private SqlPerformanceMonitorImpl performanceMonitor; // set to null in destroy
 
+    private final ExecutorService parsingPool; // null if parsing in parallel is not enabled
+
     public SqaleRepositoryService(
             SqaleRepoContext repositoryContext,
             SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
         this.repositoryContext = repositoryContext;
-        this.sqlQueryExecutor = new SqlQueryExecutor(repositoryContext);
         this.sqlPerformanceMonitorsCollection = sqlPerformanceMonitorsCollection;
 
         // monitor initialization and registration
-        JdbcRepositoryConfiguration config = repositoryContext.getJdbcRepositoryConfiguration();
+        SqaleRepositoryConfiguration config = repositoryContext.getJdbcRepositoryConfiguration();
         performanceMonitor = new SqlPerformanceMonitorImpl(
                 config.getPerformanceStatisticsLevel(), config.getPerformanceStatisticsFile());
         sqlPerformanceMonitorsCollection.register(performanceMonitor);
+
+        parsingPool = createParsingPool(config.getFullObjectParsingThreads());
+        this.sqlQueryExecutor =
+                new SqlQueryExecutor(repositoryContext, performanceMonitor, parsingPool);
+    }
+
+    /**
+     * Creates bounded pool for parsing of search results shared by all callers.
+     * When the queue is full, the row is parsed on the calling thread, which provides
+     * natural back-pressure and ensures progress for all concurrent searches.
+     */
+    private ExecutorService createParsingPool(int threads) {
+        if (threads <= 0) {
+            return null;
+        }
+
+        LOGGER.info("Full object parsing of search results will use {} threads", threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * PARSING_QUEUE_CAPACITY_PER_THREAD),
+                r -> {
+                    Thread thread = new Thread(r, "repo-parsing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     @Override
@@ -237,26 +279,7 @@ public class SqaleRepositoryService implements RepositoryService {
                 .build();
 
         try {
-            PolyString name = object.getName();
-            if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
-                throw new SchemaException("Attempt to add object without name.");
-            }
-
-            //noinspection ConstantConditions
-            LOGGER.debug(
-                    "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
-                    object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
-                    options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
-
-            if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
-                CryptoUtil.checkEncrypted(object);
-            }
-
-            if (InternalsConfig.consistencyChecks) {
-                object.checkConsistence(ConsistencyCheckScope.THOROUGH);
-            } else {
-                object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
-            }
+            checkObjectToAdd(object, options);
 
             if (object.getVersion() == null) {
                 object.setVersion("1");
@@ -276,6 +299,32 @@ public class SqaleRepositoryService implements RepositoryService {
         }
     }
 
+    /** Checks common for both single and batch add, also logs the object being added. */
+    private void checkObjectToAdd(
+            @NotNull PrismObject<? extends ObjectType> object, @NotNull RepoAddOptions options)
+            throws SchemaException {
+        PolyString name = object.getName();
+        if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
+            throw new SchemaException("Attempt to add object without name.");
+        }
+
+        //noinspection ConstantConditions
+        LOGGER.debug(
+                "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
+                object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
+                options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
+
+        if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
+            CryptoUtil.checkEncrypted(object);
+        }
+
+        if (InternalsConfig.consistencyChecks) {
+            object.checkConsistence(ConsistencyCheckScope.THOROUGH);
+        } else {
+            object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
+        }
+    }
+
     private <T extends ObjectType> String executeAddObject(
             @NotNull PrismObject<T> object,
             @NotNull RepoAddOptions options,
@@ -358,6 +407,195 @@ public class SqaleRepositoryService implements RepositoryService {
         }
     }
 
+    /**
+     * Adds objects in transactions of {@link SqaleRepositoryConfiguration#getBatchCommitSize()}
+     * objects, root rows are inserted using JDBC batches.
+     * If the transaction for the chunk fails (e.g. because of a conflicting name),
+     * objects from that chunk are added one by one to find out which ones failed.
+     * Overwrite is not supported by the batch, objects are added one by one in that case.
+     */
+    @Override
+    public @NotNull List<BatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            @NotNull OperationResult parentResult) {
+
+        Objects.requireNonNull(objects, "Objects must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        if (options == null) {
+            options = new RepoAddOptions();
+        }
+
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_ADD_OBJECTS)
+                .addParam("count", objects.size())
+                .addParam("options", options.toString())
+                .build();
+
+        try {
+            if (options.isOverwrite()) {
+                return RepositoryService.super.addObjects(objects, options, operationResult);
+            }
+
+            int chunkSize = Math.max(1,
+                    repositoryContext.getJdbcRepositoryConfiguration().getBatchCommitSize());
+            List<BatchItemResult> results = new ArrayList<>(objects.size());
+            for (int i = 0; i < objects.size(); i += chunkSize) {
+                results.addAll(addObjectsChunk(
+                        objects.subList(i, Math.min(i + chunkSize, objects.size())),
+                        options, operationResult));
+            }
+            return results;
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    private List<BatchItemResult> addObjectsChunk(
+            List<? extends PrismObject<? extends ObjectType>> chunk,
+            RepoAddOptions options,
+            OperationResult operationResult) {
+        BatchItemResult[] results = new BatchItemResult[chunk.size()];
+        List<PrismObject<? extends ObjectType>> validObjects = new ArrayList<>(chunk.size());
+        List<Integer> validIndexes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            PrismObject<? extends ObjectType> object = chunk.get(i);
+            try {
+                checkObjectToAdd(object, options);
+                validObjects.add(object);
+                validIndexes.add(i);
+            } catch (SchemaException | RuntimeException e) {
+                results[i] = BatchItemResult.failure(object.getOid(), e);
+            }
+        }
+
+        // OIDs are assigned by the batch, we need to reset them if we fall back to single adds
+        List<Boolean> withoutOid = validObjects.stream()
+                .map(o -> o.getOid() == null)
+                .collect(Collectors.toList());
+        long opHandle = registerOperationStart(OP_ADD_OBJECTS, ObjectType.class);
+        try {
+            List<String> oids = new BatchAddObjectContext(repositoryContext, validObjects).execute();
+            for (int i = 0; i < validObjects.size(); i++) {
+                String oid = oids.get(i);
+                PrismObject<? extends ObjectType> object = validObjects.get(i);
+                invokeConflictWatchers((w) -> w.afterAddObject(oid, object));
+                results[validIndexes.get(i)] = BatchItemResult.success(oid);
+            }
+        } catch (SchemaException | RuntimeException e) {
+            LOGGER.debug("Batch add of {} objects failed, adding them one by one; reason: {}",
+                    validObjects.size(), e.toString());
+            for (int i = 0; i < validObjects.size(); i++) {
+                PrismObject<? extends ObjectType> object = validObjects.get(i);
+                if (withoutOid.get(i)) {
+                    object.setOid(null);
+                }
+                try {
+                    results[validIndexes.get(i)] =
+                            BatchItemResult.success(addObject(object, options, operationResult));
+                } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException ex) {
+                    results[validIndexes.get(i)] = BatchItemResult.failure(object.getOid(), ex);
+                }
+            }
+        } finally {
+            registerOperationFinish(opHandle, 1);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Modifies objects in transactions of {@link SqaleRepositoryConfiguration#getBatchCommitSize()}
+     * deltas, saving the commit for each object.
+     * If the transaction for the chunk fails, deltas from that chunk are executed one by one
+     * using {@link #modifyObject} to find out which ones failed.
+     */
+    @Override
+    public @NotNull List<BatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable RepoModifyOptions options,
+            @NotNull OperationResult parentResult) {
+
+        Objects.requireNonNull(deltas, "Deltas must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_MODIFY_OBJECTS)
+                .addParam("count", deltas.size())
+                .addParam("options", String.valueOf(options))
+                .build();
+
+        try {
+            int chunkSize = Math.max(1,
+                    repositoryContext.getJdbcRepositoryConfiguration().getBatchCommitSize());
+            List<BatchItemResult> results = new ArrayList<>(deltas.size());
+            for (int i = 0; i < deltas.size(); i += chunkSize) {
+                List<? extends ObjectDelta<? extends ObjectType>> chunk =
+                        deltas.subList(i, Math.min(i + chunkSize, deltas.size()));
+                try {
+                    results.addAll(executeModifyObjectsChunk(
+                            chunk, RepoModifyOptions.isForceReindex(options)));
+                } catch (ObjectNotFoundException | SchemaException | RepositoryException
+                        | RuntimeException e) {
+                    LOGGER.debug("Batch modify of {} objects failed, modifying them one by one;"
+                            + " reason: {}", chunk.size(), e.toString());
+                    results.addAll(RepositoryService.super.modifyObjects(
+                            chunk, options, operationResult));
+                }
+            }
+            return results;
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    private List<BatchItemResult> executeModifyObjectsChunk(
+            List<? extends ObjectDelta<? extends ObjectType>> chunk, boolean forceReindex)
+            throws SchemaException, ObjectNotFoundException, RepositoryException {
+        for (ObjectDelta<? extends ObjectType> delta : chunk) {
+            if (!delta.isModify()) {
+                throw new IllegalArgumentException("Only MODIFY deltas are supported: " + delta);
+            }
+            if (InternalsConfig.encryptionChecks) {
+                CryptoUtil.checkEncrypted(delta.getModifications());
+            }
+            ItemDeltaCollectionsUtil.checkConsistence(delta.getModifications(),
+                    InternalsConfig.consistencyChecks
+                            ? ConsistencyCheckScope.THOROUGH
+                            : ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(chunk.size());
+        long opHandle = registerOperationStart(OP_MODIFY_OBJECTS, ObjectType.class);
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            List<String> modifiedOids = new ArrayList<>(chunk.size());
+            for (ObjectDelta<? extends ObjectType> delta : chunk) {
+                String oid = delta.getOid();
+                if (delta.isEmpty() && !forceReindex) {
+                    results.add(BatchItemResult.success(oid));
+                    continue;
+                }
+                RootUpdateContext<? extends ObjectType, QObject<MObject>, MObject> updateContext =
+                        prepareUpdateContext(jdbcSession, delta.getObjectTypeClass(), checkOid(oid));
+                PrismObject<? extends ObjectType> prismObject = updateContext.getPrismObject();
+                invokeConflictWatchers(w -> w.beforeModifyObject(prismObject));
+                updateContext.execute(delta.getModifications(), forceReindex);
+                modifiedOids.add(oid);
+                results.add(BatchItemResult.success(oid));
+            }
+            jdbcSession.commit();
+
+            for (String oid : modifiedOids) {
+                invokeConflictWatchers((w) -> w.afterModifyObject(oid));
+            }
+            return results;
+        } finally {
+            registerOperationFinish(opHandle, 1);
+        }
+    }
+
     @Override
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(
@@ -435,7 +673,8 @@ public class SqaleRepositoryService implements RepositoryService {
 
             logTraceModifications(modifications);
 
-            return executeModifyObject(type, oidUuid, modifications, precondition);
+            return executeModifyObject(type, oidUuid, modifications, precondition,
+                    RepoModifyOptions.isForceReindex(options));
         } catch (RepositoryException | RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -452,7 +691,8 @@ public class SqaleRepositoryService implements RepositoryService {
             @NotNull Class<T> type,
             @NotNull UUID oidUuid,
             @NotNull Collection<? extends ItemDelta<?, ?>> modifications,
-            @Nullable ModificationPrecondition<T> precondition)
+            @Nullable ModificationPrecondition<T> precondition,
+            boolean forceReindex)
             throws SchemaException, ObjectNotFoundException, PreconditionViolationException, RepositoryException {
 
         long opHandle = registerOperationStart(OP_MODIFY_OBJECT, type);
@@ -468,7 +708,8 @@ public class SqaleRepositoryService implements RepositoryService {
             invokeConflictWatchers(w -> w.beforeModifyObject(prismObject));
             PrismObject<T> originalObject = prismObject.clone(); // for result later
 
-            modifications = updateContext.execute(modifications);
+            // forced reindex rewrites fullObject even without modifications (e.g. to re-encode it)
+            modifications = updateContext.execute(modifications, forceReindex);
             jdbcSession.commit();
 
             LOGGER.trace("OBJECT after:\n{}", prismObject.debugDumpLazily());
@@ -592,8 +833,7 @@ public class SqaleRepositoryService implements RepositoryService {
             throw new ObjectNotFoundException(type, oid.toString());
         }
 
-        // object delete cascades to all owned related rows
-        // TODO org closure
+        // object delete cascades to all owned related rows, org closure is updated by triggers
         jdbcSession.newDelete(entityPath)
                 .where(entityPath.oid.eq(oid))
                 .execute();
@@ -645,7 +885,9 @@ public class SqaleRepositoryService implements RepositoryService {
                 .build();
 
         try {
-            return executeSearchObject(type, query, options);
+            SearchResultList<PrismObject<T>> objects = executeSearchObject(type, query, options);
+            recordUnreadableObjects(objects, operationResult);
+            return objects;
         } catch (RepositoryException | RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -668,7 +910,6 @@ public class SqaleRepositoryService implements RepositoryService {
                     SqaleQueryContext.from(type, repositoryContext),
                     query,
                     options);
-            // TODO see the commented code from old repo lower, problems for each object must be caught
             //noinspection unchecked
             return result.map(
                     o -> (PrismObject<T>) o.asPrismObject());
@@ -677,48 +918,102 @@ public class SqaleRepositoryService implements RepositoryService {
         }
     }
 
-    /*
-    TODO from ObjectRetriever, how to do this per-object Throwable catch + record result?
-     should we smuggle the OperationResult all the way to the mapping call?
-    @NotNull
-    private <T extends ObjectType> List<PrismObject<T>> queryResultToPrismObjects(
-            List<T> objects, Class<T> type,
-            Collection<SelectorOptions<GetOperationOptions>> options,
-            OperationResult result) throws SchemaException {
-        List<PrismObject<T>> rv = new ArrayList<>();
-        if (objects == null) {
-            return rv;
-        }
-        for (T object : objects) {
-            String oid = object.getOid();
-            Holder<PrismObject<T>> partialValueHolder = new Holder<>();
-            PrismObject<T> prismObject;
-            try {
-                prismObject = createPrismObject(object, type, oid, options, partialValueHolder);
-            } catch (Throwable t) {
-                if (!partialValueHolder.isEmpty()) {
-                    prismObject = partialValueHolder.getValue();
-                } else {
-                    prismObject = prismContext.createObject(type);
-                    prismObject.setOid(oid);
-                    prismObject.asObjectable().setName(PolyStringType.fromOrig("Unreadable object"));
-                }
-                result.recordFatalError("Couldn't retrieve " + type + " " + oid + ": " + t.getMessage(), t);
-                prismObject.asObjectable().setFetchResult(result.createOperationResultType());
-            }
-            rv.add(prismObject);
+    /**
+     * Objects that could not be parsed are returned as placeholders with fetch result
+     * containing the error (see {@link QObjectMapping#createPlaceholder}).
+     * This records the problem to the operation result of the search, but the search goes on.
+     */
+    private void recordUnreadableObjects(
+            List<? extends PrismObject<?>> objects, OperationResult operationResult) {
+        long unreadableCount = objects.stream()
+                .map(o -> ((ObjectType) o.asObjectable()).getFetchResult())
+                .filter(r -> r != null
+                        && QObjectMapping.OP_CREATE_PLACEHOLDER.equals(r.getOperation()))
+                .count();
+        if (unreadableCount > 0) {
+            operationResult.recordPartialError(
+                    "Couldn't retrieve " + unreadableCount + " object(s), see their fetch result");
         }
-        return rv;
     }
-    */
 
     @Override
     public <T extends ObjectType> SearchResultMetadata searchObjectsIterative(
             Class<T> type, ObjectQuery query, ResultHandler<T> handler,
             Collection<SelectorOptions<GetOperationOptions>> options, boolean strictlySequential,
             OperationResult parentResult) throws SchemaException {
-        return null;
-        // TODO
+
+        Objects.requireNonNull(type, "Object type must not be null.");
+        Objects.requireNonNull(handler, "Result handler must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        LOGGER.debug("Searching objects of type '{}' iteratively, strictlySequential={}",
+                type.getSimpleName(), strictlySequential);
+
+        OperationResult operationResult =
+                parentResult.subresult(OP_NAME_PREFIX + OP_SEARCH_OBJECTS_ITERATIVE)
+                        .addQualifier(type.getSimpleName())
+                        .addParam("type", type.getName())
+                        .addParam("query", query)
+                        .addParam("strictlySequential", strictlySequential)
+                        .build();
+
+        try {
+            if (strictlySequential && !isCustomPagingOkWithKeysetIteration(query)) {
+                throw new IllegalArgumentException("Externally specified ordering or offset"
+                        + " is not supported on strictly sequential iterative search."
+                        + " Query = " + query);
+            }
+            return executeSearchObjectsIterative(type, query, handler, options, operationResult);
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    /**
+     * Keyset pagination by OID is used unless custom ordering or offset is used.
+     * This is required for strictly sequential iteration, because OFFSET paging is not stable
+     * if the objects are modified (or deleted) by the handler.
+     */
+    private boolean isCustomPagingOkWithKeysetIteration(ObjectQuery query) {
+        if (query == null || query.getPaging() == null) {
+            return true;
+        }
+        ObjectPaging paging = query.getPaging();
+        return !paging.hasOrdering() && paging.getOffset() == null;
+    }
+
+    private <T extends ObjectType> SearchResultMetadata executeSearchObjectsIterative(
+            @NotNull Class<T> type,
+            ObjectQuery query,
+            @NotNull ResultHandler<T> handler,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            OperationResult operationResult)
+            throws RepositoryException, SchemaException {
+
+        long opHandle = registerOperationStart(OP_SEARCH_OBJECTS_ITERATIVE, type);
+        try {
+            int pageSize = repositoryContext.getJdbcRepositoryConfiguration()
+                    .getIterativeSearchByPagingBatchSize();
+            //noinspection unchecked
+            int handledObjects = sqlQueryExecutor.iterate(
+                    SqaleQueryContext.from(type, repositoryContext),
+                    query,
+                    options,
+                    pageSize,
+                    o -> handler.handle((PrismObject<T>) o.asPrismObject(), operationResult));
+            LOGGER.trace("Iterative search of type '{}' handled {} objects",
+                    type.getSimpleName(), handledObjects);
+
+            // Approximate number of results is not known, the iteration could be stopped.
+            return new SearchResultMetadata();
+        } finally {
+            registerOperationFinish(opHandle, 1);
+        }
     }
 
     @Override
@@ -811,10 +1106,41 @@ public class SqaleRepositoryService implements RepositoryService {
         // TODO - SELECT 1 + latency info if we can put it in the result?
     }
 
+    /**
+     * Org closure is maintained incrementally by DB triggers, this compares it with the closure
+     * computed from scratch from the parent-org references and rebuilds it if required.
+     */
     @Override
-    public void testOrgClosureConsistency(boolean repairIfNecessary, OperationResult testResult) {
+    public void testOrgClosureConsistency(boolean repairIfNecessary, OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(
+                OP_NAME_PREFIX + OP_TEST_ORG_CLOSURE_CONSISTENCY)
+                .addParam("repairIfNecessary", repairIfNecessary)
+                .build();
 
-        // TODO
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            Integer differences = jdbcSession.newQuery()
+                    .select(Expressions.numberTemplate(Integer.class, "m_org_closure_check()"))
+                    .fetchOne();
+            if (differences == null || differences == 0) {
+                LOGGER.debug("Org closure consistency check passed.");
+                operationResult.recordSuccess();
+            } else if (repairIfNecessary) {
+                LOGGER.warn("Org closure is not consistent ({} different rows), rebuilding it.",
+                        differences);
+                jdbcSession.executeStatement("SELECT m_org_closure_rebuild()");
+                jdbcSession.commit();
+                operationResult.recordHandledError("Org closure was not consistent ("
+                        + differences + " different rows) and it was rebuilt.");
+            } else {
+                LOGGER.warn("Org closure is not consistent ({} different rows).", differences);
+                operationResult.recordFatalError(
+                        "Org closure is not consistent (" + differences + " different rows).");
+            }
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
     }
 
     @Override
@@ -842,13 +1168,23 @@ public class SqaleRepositoryService implements RepositoryService {
 
     @Override
     public void applyFullTextSearchConfiguration(FullTextSearchConfigurationType fullTextSearch) {
-        // TODO
+        LOGGER.info("Applying full text search configuration ({} entries)",
+                fullTextSearch != null ? fullTextSearch.getIndexed().size() : 0);
+        FullTextSearchConfigurationType oldConfiguration =
+                repositoryContext.getFullTextSearchConfiguration();
+        repositoryContext.setFullTextSearchConfiguration(fullTextSearch);
+
+        // Initial application on startup has null old configuration, we can't tell whether
+        // the stored full-text info is current and we don't want reindex on each start.
+        if (oldConfiguration != null && !oldConfiguration.equals(fullTextSearch)) {
+            LOGGER.warn("Full text search configuration changed, full-text info is updated only"
+                    + " for added or modified objects. Run reindex task to update existing objects.");
+        }
     }
 
     @Override
     public FullTextSearchConfigurationType getFullTextSearchConfiguration() {
-        return null;
-        // TODO
+        return repositoryContext.getFullTextSearchConfiguration();
     }
 
     @Override
@@ -933,6 +1269,9 @@ public class SqaleRepositoryService implements RepositoryService {
 
     @PreDestroy
     public void destroy() {
+        if (parsingPool != null) {
+            parsingPool.shutdownNow();
+        }
         if (performanceMonitor != null) {
             performanceMonitor.shutdown();
             sqlPerformanceMonitorsCollection.deregister(performanceMonitor);
@@ -50,6 +50,25 @@ public class SqaleUtils {
         return (Class<S>) object.getClass();
     }
 
+    /**
+     * Appends the string as a quoted JSON string to the builder, escaping it as necessary.
+     * Returns the same builder for fluent calls.
+     */
+    public static StringBuilder appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
     public static String toString(Object object) {
         return new ToStringUtil(object).toString();
     }
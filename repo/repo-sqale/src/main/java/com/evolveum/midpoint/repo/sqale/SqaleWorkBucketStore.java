@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.sql.SQLExpressions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.repo.api.WorkBucketStore;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.MTaskWorkBucket;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.QTaskWorkBucket;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskWorkStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+
+/**
+ * Work bucket store using {@value QTaskWorkBucket#TABLE_NAME} table, one row per bucket.
+ * Claiming of the buckets uses `FOR UPDATE SKIP LOCKED`, so concurrent workers never wait
+ * for each other and never claim the same bucket.
+ * State and worker of the bucket are stored in columns, the rest of the bucket is serialized.
+ */
+public class SqaleWorkBucketStore implements WorkBucketStore {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SqaleWorkBucketStore.class);
+
+    private static final String OP_NAME_PREFIX = SqaleWorkBucketStore.class.getSimpleName() + '.';
+    private static final String OP_CLAIM_READY_BUCKETS = "claimReadyBuckets";
+    private static final String OP_GET_BUCKETS = "getBuckets";
+    private static final String OP_ADD_BUCKETS = "addBuckets";
+    private static final String OP_COMPLETE_BUCKET = "completeBucket";
+    private static final String OP_RELEASE_BUCKET = "releaseBucket";
+    private static final String OP_DELETE_BUCKETS = "deleteBuckets";
+
+    private static final String FOR_UPDATE_SKIP_LOCKED = "\nfor update skip locked";
+
+    private final SqaleRepoContext repositoryContext;
+
+    public SqaleWorkBucketStore(SqaleRepoContext repositoryContext) {
+        this.repositoryContext = repositoryContext;
+    }
+
+    @Override
+    public @NotNull List<WorkBucketType> claimReadyBuckets(@NotNull String coordinatorOid,
+            @NotNull String workerOid, int maxCount, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_CLAIM_READY_BUCKETS)
+                .addParam("coordinatorOid", coordinatorOid)
+                .addParam("workerOid", workerOid)
+                .addParam("maxCount", maxCount)
+                .build();
+        try {
+            UUID coordinatorUuid = UUID.fromString(coordinatorOid);
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            List<WorkBucketType> claimed = new ArrayList<>();
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                List<MTaskWorkBucket> rows = jdbcSession.newQuery()
+                        .select(twb)
+                        .from(twb)
+                        .where(twb.coordinatorOid.eq(coordinatorUuid)
+                                .and(twb.state.eq(WorkBucketStateType.READY)))
+                        .orderBy(twb.sequentialNumber.asc())
+                        .limit(maxCount)
+                        .addFlag(QueryFlag.Position.END, FOR_UPDATE_SKIP_LOCKED)
+                        .fetch();
+                if (!rows.isEmpty()) {
+                    UUID workerUuid = UUID.fromString(workerOid);
+                    jdbcSession.newUpdate(twb)
+                            .set(twb.state, WorkBucketStateType.DELEGATED)
+                            .set(twb.workerOid, workerUuid)
+                            .where(twb.coordinatorOid.eq(coordinatorUuid)
+                                    .and(twb.sequentialNumber.in(rows.stream()
+                                            .map(r -> r.sequentialNumber)
+                                            .collect(Collectors.toList()))))
+                            .execute();
+                    for (MTaskWorkBucket row : rows) {
+                        row.state = WorkBucketStateType.DELEGATED;
+                        row.workerOid = workerUuid;
+                        claimed.add(toSchemaObject(row));
+                    }
+                }
+                jdbcSession.commit();
+            }
+            LOGGER.trace("Claimed {} bucket(s) of {} for {}", claimed.size(), coordinatorOid, workerOid);
+            return claimed;
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public @NotNull List<WorkBucketType> getBuckets(
+            @NotNull String coordinatorOid, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_GET_BUCKETS)
+                .addParam("coordinatorOid", coordinatorOid)
+                .setMinor()
+                .build();
+        try {
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            List<MTaskWorkBucket> rows;
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startReadOnlyTransaction()) {
+                rows = jdbcSession.newQuery()
+                        .select(twb)
+                        .from(twb)
+                        .where(twb.coordinatorOid.eq(UUID.fromString(coordinatorOid)))
+                        .orderBy(twb.sequentialNumber.asc())
+                        .fetch();
+                jdbcSession.commit();
+            }
+            List<WorkBucketType> buckets = new ArrayList<>(rows.size());
+            for (MTaskWorkBucket row : rows) {
+                buckets.add(toSchemaObject(row));
+            }
+            return buckets;
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public boolean addBuckets(@NotNull String coordinatorOid,
+            @NotNull List<WorkBucketType> buckets, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_ADD_BUCKETS)
+                .addParam("coordinatorOid", coordinatorOid)
+                .addParam("count", buckets.size())
+                .build();
+        try {
+            if (buckets.isEmpty()) {
+                return true;
+            }
+            UUID coordinatorUuid = UUID.fromString(coordinatorOid);
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                // Bucket creation batch is small, so separate inserts are OK; the counts returned
+                // by JDBC batch with rewritten inserts are not reliable to detect the conflict.
+                for (WorkBucketType bucket : buckets) {
+                    long inserted = jdbcSession.newInsert(twb)
+                            .populate(toRow(coordinatorUuid, bucket))
+                            .addFlag(QueryFlag.Position.END, " ON CONFLICT DO NOTHING")
+                            .execute();
+                    if (inserted == 0) {
+                        // Other worker was faster, we don't want to add just some of the buckets.
+                        jdbcSession.rollback();
+                        LOGGER.trace("Conflict when adding bucket #{} to {}",
+                                bucket.getSequentialNumber(), coordinatorOid);
+                        return false;
+                    }
+                }
+                jdbcSession.commit();
+            }
+            return true;
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public boolean completeBucket(@NotNull String coordinatorOid, @NotNull String workerOid,
+            int sequentialNumber, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_COMPLETE_BUCKET)
+                .addParam("coordinatorOid", coordinatorOid)
+                .addParam("workerOid", workerOid)
+                .addParam("sequentialNumber", sequentialNumber)
+                .build();
+        try {
+            UUID coordinatorUuid = UUID.fromString(coordinatorOid);
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                long updated = jdbcSession.newUpdate(twb)
+                        .set(twb.state, WorkBucketStateType.COMPLETE)
+                        .where(bucketDelegatedTo(coordinatorUuid, UUID.fromString(workerOid), sequentialNumber))
+                        .execute();
+                if (updated == 0) {
+                    jdbcSession.commit();
+                    return false;
+                }
+
+                // Only the last complete bucket is needed, the older ones can be deleted.
+                // No one else touches completed buckets, so the delete can't block other workers.
+                QTaskWorkBucket twb2 = new QTaskWorkBucket("twb2");
+                long deleted = jdbcSession.newDelete(twb)
+                        .where(twb.coordinatorOid.eq(coordinatorUuid)
+                                .and(twb.state.eq(WorkBucketStateType.COMPLETE))
+                                .and(twb.sequentialNumber.lt(SQLExpressions
+                                        .select(twb2.sequentialNumber.max())
+                                        .from(twb2)
+                                        .where(twb2.coordinatorOid.eq(coordinatorUuid)
+                                                .and(twb2.state.eq(WorkBucketStateType.COMPLETE))))))
+                        .execute();
+                jdbcSession.commit();
+                LOGGER.trace("Completed bucket #{} of {}, deleted {} older complete bucket(s)",
+                        sequentialNumber, coordinatorOid, deleted);
+            }
+            return true;
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public boolean releaseBucket(@NotNull String coordinatorOid, @Nullable String workerOid,
+            int sequentialNumber, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_RELEASE_BUCKET)
+                .addParam("coordinatorOid", coordinatorOid)
+                .addParam("workerOid", workerOid)
+                .addParam("sequentialNumber", sequentialNumber)
+                .build();
+        try {
+            UUID coordinatorUuid = UUID.fromString(coordinatorOid);
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                long updated = jdbcSession.newUpdate(twb)
+                        .set(twb.state, WorkBucketStateType.READY)
+                        .setNull(twb.workerOid)
+                        .where(bucketDelegatedTo(coordinatorUuid,
+                                workerOid != null ? UUID.fromString(workerOid) : null, sequentialNumber))
+                        .execute();
+                jdbcSession.commit();
+                return updated > 0;
+            }
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public void deleteBuckets(@NotNull String coordinatorOid, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_DELETE_BUCKETS)
+                .addParam("coordinatorOid", coordinatorOid)
+                .build();
+        try {
+            QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+            try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                jdbcSession.newDelete(twb)
+                        .where(twb.coordinatorOid.eq(UUID.fromString(coordinatorOid)))
+                        .execute();
+                jdbcSession.commit();
+            }
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    /** Condition for DELEGATED bucket, if the worker UUID is null any worker matches. */
+    private BooleanExpression bucketDelegatedTo(
+            UUID coordinatorUuid, @Nullable UUID workerUuid, int sequentialNumber) {
+        QTaskWorkBucket twb = QTaskWorkBucket.DEFAULT;
+        BooleanExpression condition = twb.coordinatorOid.eq(coordinatorUuid)
+                .and(twb.sequentialNumber.eq(sequentialNumber))
+                .and(twb.state.eq(WorkBucketStateType.DELEGATED));
+        return workerUuid != null ? condition.and(twb.workerOid.eq(workerUuid)) : condition;
+    }
+
+    private MTaskWorkBucket toRow(UUID coordinatorUuid, WorkBucketType bucket) {
+        MTaskWorkBucket row = new MTaskWorkBucket();
+        row.coordinatorOid = coordinatorUuid;
+        row.sequentialNumber = bucket.getSequentialNumber();
+        row.state = bucket.getState() != null ? bucket.getState() : WorkBucketStateType.READY;
+        row.workerOid = bucket.getWorkerRef() != null && bucket.getWorkerRef().getOid() != null
+                ? UUID.fromString(bucket.getWorkerRef().getOid()) : null;
+        try {
+            // state and worker are in the columns, container ID is meaningless outside of the task
+            WorkBucketType bucketToStore = bucket.clone()
+                    .id(null)
+                    .state(null)
+                    .workerRef(null);
+            row.bucket = repositoryContext.createStringSerializer()
+                    .serializeRealValue(bucketToStore, TaskWorkStateType.F_BUCKET);
+        } catch (SchemaException e) {
+            throw new SystemException("Couldn't serialize work bucket " + bucket, e);
+        }
+        return row;
+    }
+
+    private WorkBucketType toSchemaObject(MTaskWorkBucket row) {
+        try {
+            WorkBucketType bucket = repositoryContext.createStringParser(row.bucket)
+                    .parseRealValue(WorkBucketType.class);
+            bucket.setSequentialNumber(row.sequentialNumber);
+            bucket.setState(row.state);
+            if (row.workerOid != null) {
+                bucket.workerRef(row.workerOid.toString(), TaskType.COMPLEX_TYPE);
+            }
+            return bucket;
+        } catch (SchemaException e) {
+            throw new SystemException("Couldn't parse work bucket #" + row.sequentialNumber
+                    + " of coordinator " + row.coordinatorOid, e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+/**
+ * Durability mode of {@link SqaleAuditService}, configured by
+ * {@value SqaleAuditServiceConfiguration#PROPERTY_DURABILITY} property of the audit service.
+ */
+public enum AuditDurability {
+
+    /**
+     * Audit record is stored in its own transaction before the {@code audit()} call returns.
+     * This is not the transaction of the caller (if any), the record is committed even if
+     * the caller's repository operation is rolled back later.
+     * This is the default.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Audit record is converted to rows and put into a bounded buffer, the {@code audit()} call
+     * returns immediately (unless the buffer is full).
+     * Buffered records are written by a background thread in multi-row inserts when enough
+     * records are gathered or when the flush interval passes.
+     * The buffer is flushed when the audit service is destroyed, records are lost only if
+     * the JVM is terminated without proper shutdown or if the database refuses them.
+     */
+    ASYNCHRONOUS
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.util.List;
+
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.MAuditDelta;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.MAuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.MAuditRefValue;
+
+/**
+ * Rows of a single audit record prepared for insert.
+ * Record ID is not known until the insert, it is set to all rows before they are inserted.
+ */
+class AuditRecordRows {
+
+    final MAuditEventRecord event;
+    final List<MAuditDelta> deltas;
+    final List<MAuditRefValue> refs;
+
+    AuditRecordRows(MAuditEventRecord event, List<MAuditDelta> deltas, List<MAuditRefValue> refs) {
+        this.event = event;
+        this.deltas = deltas;
+        this.refs = refs;
+    }
+
+    void setRecordId(long recordId) {
+        event.id = recordId;
+        for (MAuditDelta delta : deltas) {
+            delta.recordId = recordId;
+        }
+        for (MAuditRefValue ref : refs) {
+            ref.recordId = recordId;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.audit.api.AuditEventStage;
+import com.evolveum.midpoint.audit.api.AuditEventType;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.util.MiscUtil;
+
+/**
+ * Native SQL query with named parameters (`:name`) used by deprecated audit methods
+ * {@link SqaleAuditService#listRecords} and {@link SqaleAuditService#countObjects(String, Map)}.
+ * Named parameters are replaced by positional ones, collection and array values are expanded
+ * to the list of positional parameters (for `in (:names)` conditions).
+ * Parameters {@link SqaleAuditService#QUERY_FIRST_RESULT} and
+ * {@link SqaleAuditService#QUERY_MAX_RESULT} are translated to `OFFSET` and `LIMIT`.
+ *
+ * Postgres casts (`::type`) and string literals are not considered to be parameters.
+ */
+class AuditSqlQuery {
+
+    private final String query;
+    private final List<Object> parameters;
+
+    private AuditSqlQuery(String query, List<Object> parameters) {
+        this.query = query;
+        this.parameters = parameters;
+    }
+
+    static AuditSqlQuery create(@NotNull String query, Map<String, Object> params) {
+        Map<String, Object> namedParams = params != null ? new HashMap<>(params) : Map.of();
+        Object firstResult = namedParams.remove(SqaleAuditService.QUERY_FIRST_RESULT);
+        Object maxResult = namedParams.remove(SqaleAuditService.QUERY_MAX_RESULT);
+
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(query.length());
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = query.indexOf(c, i + 1);
+                end = end == -1 ? length : end + 1;
+                sb.append(query, i, end);
+                i = end;
+            } else if (c == ':' && i + 1 < length && query.charAt(i + 1) == ':') {
+                sb.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < length
+                    && Character.isJavaIdentifierStart(query.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(query.charAt(end))) {
+                    end++;
+                }
+                String name = query.substring(i + 1, end);
+                if (!namedParams.containsKey(name)) {
+                    throw new IllegalArgumentException(
+                            "No value for parameter '" + name + "' in query: " + query);
+                }
+                appendParameter(sb, parameters, namedParams.get(name));
+                i = end;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+
+        if (maxResult != null) {
+            sb.append(" LIMIT ").append(((Number) maxResult).intValue());
+        }
+        if (firstResult != null) {
+            sb.append(" OFFSET ").append(((Number) firstResult).intValue());
+        }
+        return new AuditSqlQuery(sb.toString(), parameters);
+    }
+
+    private static void appendParameter(StringBuilder sb, List<Object> parameters, Object value) {
+        if (value != null && value.getClass().isArray()) {
+            value = Arrays.asList((Object[]) value);
+        }
+
+        if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            if (values.isEmpty()) {
+                // in () is not valid SQL, null never matches anything
+                sb.append("NULL");
+                return;
+            }
+            boolean first = true;
+            for (Object singleValue : values) {
+                sb.append(first ? "?" : ", ?");
+                parameters.add(singleValue);
+                first = false;
+            }
+        } else {
+            sb.append('?');
+            parameters.add(value);
+        }
+    }
+
+    PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(query);
+        for (int i = 0; i < parameters.size(); i++) {
+            setParameter(stmt, i + 1, parameters.get(i));
+        }
+        return stmt;
+    }
+
+    private void setParameter(PreparedStatement stmt, int index, Object value)
+            throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (value instanceof XMLGregorianCalendar) {
+            stmt.setTimestamp(index,
+                    new Timestamp(MiscUtil.asDate((XMLGregorianCalendar) value).getTime()));
+        } else if (value instanceof Date) {
+            stmt.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+        } else if (value instanceof AuditEventType) {
+            setEnum(stmt, index, AuditEventType.toSchemaValue((AuditEventType) value));
+        } else if (value instanceof AuditEventStage) {
+            setEnum(stmt, index, AuditEventStage.toSchemaValue((AuditEventStage) value));
+        } else if (value instanceof OperationResultStatus) {
+            setEnum(stmt, index,
+                    OperationResultStatus.createStatusType((OperationResultStatus) value));
+        } else if (value instanceof Enum) {
+            setEnum(stmt, index, (Enum<?>) value);
+        } else {
+            stmt.setObject(index, value);
+        }
+    }
+
+    /** Enums are stored as PG enum types with the same values as Java enum names. */
+    private void setEnum(PreparedStatement stmt, int index, Enum<?> value) throws SQLException {
+        stmt.setObject(index, value.name(), Types.OTHER);
+    }
+
+    @Override
+    public String toString() {
+        return "AuditSqlQuery{query='" + query + "', parameters=" + parameters + '}';
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Bounded write-behind buffer for {@link AuditDurability#ASYNCHRONOUS} audit.
+ * Records are written by a single background thread in batches using the provided writer.
+ * A batch is written when it reaches the configured size or when the flush interval
+ * passes since the first record of the batch was taken from the buffer.
+ *
+ * When the buffer is full, {@link #add} blocks until there is space for the record.
+ * This slows down the producers to the speed of the database instead of losing records
+ * or consuming all the memory.
+ *
+ * Records are accepted only until {@link #shutdown} starts, the check of the running flag
+ * and the insertion into the buffer are done under a lock that the shutdown needs too.
+ * This way no record can get into the buffer after the flush thread decided it is done.
+ */
+class AuditWriteBuffer {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AuditWriteBuffer.class);
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * How long {@link #add} waits for space in the buffer while holding the lock.
+     * It limits how long the producers blocked on full buffer delay the {@link #shutdown}.
+     */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final BlockingQueue<AuditRecordRows> queue;
+    private final Consumer<List<AuditRecordRows>> writer;
+    private final int flushBatchSize;
+    private final long flushIntervalNanos;
+    private final Thread flushThread;
+
+    /** Read lock is held by {@link #add}, so producers don't block each other, write lock by shutdown. */
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    AuditWriteBuffer(int capacity, int flushBatchSize, long flushIntervalMillis,
+            Consumer<List<AuditRecordRows>> writer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer;
+        this.flushBatchSize = flushBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        flushThread = new Thread(this::flushLoop, "audit-write-buffer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Adds the record to the buffer, blocks while the buffer is full.
+     * Throws {@link IllegalStateException} if the shutdown started, even while waiting for space.
+     */
+    void add(AuditRecordRows record) {
+        while (true) {
+            runningLock.readLock().lock();
+            try {
+                if (!running) {
+                    throw new IllegalStateException("Audit write buffer is already shut down.");
+                }
+                if (queue.offer(record, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException("Interrupted while waiting for space in audit buffer", e);
+            } finally {
+                runningLock.readLock().unlock();
+            }
+        }
+    }
+
+    /** Returns the number of records waiting in the buffer. */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting new records, writes all the buffered records and stops the flush thread.
+     * Waits for the flush thread to finish, but not indefinitely.
+     * After the running flag is switched under the write lock, no {@link #add} can put anything
+     * into the buffer, so the flush thread writes everything that was accepted.
+     */
+    void shutdown() {
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        try {
+            flushThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushThread.isAlive() || !queue.isEmpty()) {
+            LOGGER.warn("Audit write buffer was not flushed completely on shutdown,"
+                    + " {} audit records are lost.", queue.size());
+        }
+    }
+
+    private void flushLoop() {
+        List<AuditRecordRows> batch = new ArrayList<>(flushBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditRecordRows first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue; // nothing to do, we just check the running flag
+                }
+                batch.add(first);
+                fillBatch(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                // we don't exit on interrupt, shutdown is signalled by the running flag
+                LOGGER.debug("Audit write buffer thread interrupted, ignoring.");
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for more records until the batch is full or the flush interval passes.
+     * If shutdown was requested, we take only the records that are already in the buffer.
+     */
+    private void fillBatch(List<AuditRecordRows> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < flushBatchSize) {
+            queue.drainTo(batch, flushBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+            AuditRecordRows next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes the batch, if this fails, records are written one by one,
+     * so a single problematic record does not cause loss of the whole batch.
+     */
+    private void write(List<AuditRecordRows> batch) {
+        try {
+            writer.accept(batch);
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                LOGGER.error("Failed to write buffered audit record, record is lost", e);
+                return;
+            }
+            LOGGER.warn("Failed to write batch of {} buffered audit records,"
+                    + " trying to write them one by one", batch.size(), e);
+        }
+
+        for (AuditRecordRows record : batch) {
+            try {
+                writer.accept(List.of(record));
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to write buffered audit record {}, record is lost",
+                        record.event, e);
+            }
+        }
+    }
+}
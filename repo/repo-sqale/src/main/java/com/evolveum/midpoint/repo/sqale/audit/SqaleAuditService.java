@@ -0,0 +1,913 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import static com.evolveum.midpoint.repo.sqlbase.SqlQueryContext.MAX_ID_IN_FOR_TO_MANY_FETCH;
+import static com.evolveum.midpoint.schema.util.SystemConfigurationAuditUtil.isEscapingInvalidCharacters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.datatype.Duration;
+import javax.xml.namespace.QName;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.dml.DefaultMapper;
+import com.querydsl.sql.dml.SQLInsertClause;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.audit.api.AuditEventStage;
+import com.evolveum.midpoint.audit.api.AuditEventType;
+import com.evolveum.midpoint.audit.api.AuditReferenceValue;
+import com.evolveum.midpoint.audit.api.AuditService;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.prism.delta.ChangeType;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.path.CanonicalItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.util.CloneUtil;
+import com.evolveum.midpoint.repo.sqale.SqaleQueryContext;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleUtils;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.*;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqlbase.RepositoryException;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryExecutor;
+import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.Jsonb;
+import com.evolveum.midpoint.schema.DeltaConversionOptions;
+import com.evolveum.midpoint.schema.DeltaConvertor;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CleanupPolicyType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectDeltaOperationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationAuditType;
+
+/**
+ * Audit service using the new SQL repository (PostgreSQL) as a store.
+ * Audit tables are partitioned by month (see `pgnew-audit.sql`), which allows to drop
+ * old data by whole partitions during {@link #cleanupAudit}.
+ *
+ * Records are stored either synchronously or through a bounded write-behind buffer,
+ * see {@link AuditDurability}.
+ * In both cases records are converted to rows in the calling thread, so the audit record
+ * can be safely modified by the caller after the {@link #audit} call.
+ *
+ * Custom column properties are stored in a single JSONB column, there is no need to alter
+ * the audit table when a custom column is added to the configuration.
+ *
+ * Records are searched by {@link #searchObjects} and {@link #countObjects} using the mapping
+ * registered in the repository context, see {@link QAuditEventRecordMapping}.
+ * Deprecated {@link #listRecords} takes native SQL query for the new audit tables.
+ *
+ * This is NOT a managed bean, it is completely created by {@link SqaleAuditServiceFactory}.
+ */
+public class SqaleAuditService implements AuditService {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SqaleAuditService.class);
+
+    private static final String OP_NAME_PREFIX = SqaleAuditService.class.getSimpleName() + '.';
+    private static final String OP_AUDIT = "audit";
+    private static final String OP_CLEANUP_AUDIT = "cleanupAudit";
+    private static final String OP_LIST_RECORDS = "listRecords";
+    private static final String OP_COUNT_OBJECTS = "countObjects";
+    private static final String OP_SEARCH_OBJECTS = "searchObjects";
+
+    // parameters of the native query for listRecords, the same like for the old repository
+    static final String QUERY_MAX_RESULT = "setMaxResults";
+    static final String QUERY_FIRST_RESULT = "setFirstResult";
+
+    private static final String DEFAULT_LIST_QUERY =
+            "select * from " + QAuditEventRecord.TABLE_NAME + " aer order by aer.timestamp desc";
+    private static final String DEFAULT_COUNT_QUERY =
+            "select count(*) from " + QAuditEventRecord.TABLE_NAME + " aer";
+
+    private final SqaleRepoContext repositoryContext;
+    private final SqlPerformanceMonitorImpl performanceMonitor;
+    private final SqlQueryExecutor sqlQueryExecutor;
+    private final boolean useZip;
+    private final int partitionsAhead;
+
+    // null for synchronous durability
+    private final AuditWriteBuffer writeBuffer;
+
+    private final QAuditEventRecord qAuditEvent = new QAuditEventRecord("aer");
+    private final QAuditDelta qAuditDelta = new QAuditDelta("ad");
+    private final QAuditRefValue qAuditRef = new QAuditRefValue("ar");
+
+    private volatile SystemConfigurationAuditType auditConfiguration;
+
+    public SqaleAuditService(
+            SqaleRepoContext repositoryContext,
+            SqlPerformanceMonitorImpl performanceMonitor,
+            SqaleAuditServiceConfiguration configuration) {
+        this.repositoryContext = repositoryContext;
+        this.performanceMonitor = performanceMonitor;
+        this.sqlQueryExecutor = new SqlQueryExecutor(repositoryContext);
+        this.useZip = repositoryContext.getJdbcRepositoryConfiguration().isUseZipAudit();
+        this.partitionsAhead = configuration.partitionsAhead;
+
+        writeBuffer = configuration.durability == AuditDurability.ASYNCHRONOUS
+                ? new AuditWriteBuffer(configuration.bufferCapacity,
+                configuration.flushBatchSize, configuration.flushIntervalMillis,
+                this::insertRecords)
+                : null;
+    }
+
+    @Override
+    public void audit(AuditEventRecord record, Task task, OperationResult result) {
+        Objects.requireNonNull(record, "Audit event record must not be null.");
+        Objects.requireNonNull(task, "Task must not be null.");
+
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_AUDIT, AuditEventRecord.class);
+        try {
+            AuditRecordRows rows = toRows(record);
+            if (writeBuffer != null) {
+                writeBuffer.add(rows);
+            } else {
+                insertRecords(List.of(rows));
+            }
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+        }
+    }
+
+    // region conversion to rows
+    private AuditRecordRows toRows(AuditEventRecord record) {
+        MAuditEventRecord event = new MAuditEventRecord();
+        event.timestamp = record.getTimestamp() != null
+                ? Instant.ofEpochMilli(record.getTimestamp())
+                : Instant.now();
+        event.eventIdentifier = record.getEventIdentifier();
+        event.eventType = AuditEventType.toSchemaValue(record.getEventType());
+        event.eventStage = AuditEventStage.toSchemaValue(record.getEventStage());
+        event.sessionIdentifier = record.getSessionIdentifier();
+        event.requestIdentifier = record.getRequestIdentifier();
+        event.taskIdentifier = record.getTaskIdentifier();
+        event.taskOid = toUuid(record.getTaskOid());
+        event.hostIdentifier = record.getHostIdentifier();
+        event.nodeIdentifier = record.getNodeIdentifier();
+        event.remoteHostAddress = record.getRemoteHostAddress();
+
+        PrismReferenceValue initiator = record.getInitiatorRef();
+        if (initiator != null) {
+            event.initiatorOid = toUuid(initiator.getOid());
+            event.initiatorType = toObjectType(initiator.getTargetType());
+            event.initiatorName = initiator.getDescription();
+        }
+        PrismReferenceValue attorney = record.getAttorneyRef();
+        if (attorney != null) {
+            event.attorneyOid = toUuid(attorney.getOid());
+            event.attorneyName = attorney.getDescription();
+        }
+        PrismReferenceValue target = record.getTargetRef();
+        if (target != null) {
+            event.targetOid = toUuid(target.getOid());
+            event.targetType = toObjectType(target.getTargetType());
+            event.targetName = target.getDescription();
+        }
+        PrismReferenceValue targetOwner = record.getTargetOwnerRef();
+        if (targetOwner != null) {
+            event.targetOwnerOid = toUuid(targetOwner.getOid());
+            event.targetOwnerType = toObjectType(targetOwner.getTargetType());
+            event.targetOwnerName = targetOwner.getDescription();
+        }
+
+        event.channel = record.getChannel();
+        event.outcome = OperationResultStatus.createStatusType(record.getOutcome());
+        event.parameter = record.getParameter();
+        event.result = record.getResult();
+        event.message = record.getMessage();
+        event.resourceOids = record.getResourceOids().isEmpty()
+                ? null : record.getResourceOids().toArray(String[]::new);
+        event.properties = toJsonb(record.getProperties());
+        event.customColumnProperties = toCustomColumnJsonb(record.getCustomColumnProperty());
+
+        Set<String> changedItemPaths = new TreeSet<>();
+        List<MAuditDelta> deltas = toDeltaRows(event, record.getDeltas(), changedItemPaths);
+        event.changedItemPaths = changedItemPaths.isEmpty()
+                ? null : changedItemPaths.toArray(String[]::new);
+
+        return new AuditRecordRows(event, deltas, toRefRows(event, record.getReferences()));
+    }
+
+    private List<MAuditDelta> toDeltaRows(MAuditEventRecord event,
+            Collection<? extends ObjectDeltaOperation<?>> deltas, Set<String> changedItemPaths) {
+        // we want to keep only unique deltas, checksum is also part of PK
+        Map<String, MAuditDelta> deltasByChecksum = new LinkedHashMap<>();
+        for (ObjectDeltaOperation<?> deltaOperation : deltas) {
+            if (deltaOperation == null) {
+                continue;
+            }
+
+            MAuditDelta deltaRow = toDeltaRow(event, deltaOperation);
+            deltasByChecksum.put(deltaRow.checksum, deltaRow);
+            collectChangedItemPaths(deltaOperation.getObjectDelta(), changedItemPaths);
+        }
+        return new ArrayList<>(deltasByChecksum.values());
+    }
+
+    /** Returns UTF-8 bytes of the serialized form, gzipped if zip audit is configured. */
+    private byte[] toBytes(String serializedForm) {
+        byte[] bytes = serializedForm.getBytes(StandardCharsets.UTF_8);
+        if (!useZip) {
+            return bytes;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new SystemException("Couldn't compress audit delta data", e);
+        }
+        return out.toByteArray();
+    }
+
+    private MAuditDelta toDeltaRow(
+            MAuditEventRecord event, ObjectDeltaOperation<?> deltaOperation) {
+        MAuditDelta deltaRow = new MAuditDelta();
+        deltaRow.timestamp = event.timestamp;
+        try {
+            ObjectDelta<?> delta = deltaOperation.getObjectDelta();
+            if (delta != null) {
+                DeltaConversionOptions options =
+                        DeltaConversionOptions.createSerializeReferenceNames();
+                options.setEscapeInvalidCharacters(isEscapingInvalidCharacters(auditConfiguration));
+                deltaRow.delta = toBytes(DeltaConvertor.toObjectDeltaTypeXml(delta, options));
+                deltaRow.deltaOid = toUuid(delta.getOid());
+                deltaRow.deltaType = ChangeType.toChangeTypeType(delta.getChangeType());
+            }
+
+            OperationResult executionResult = deltaOperation.getExecutionResult();
+            OperationResultType resultBean = executionResult != null
+                    ? executionResult.createOperationResultType() : null;
+            if (resultBean != null) {
+                deltaRow.status = resultBean.getStatus();
+                // Escaping invalid characters and using toString for unsupported types is safe
+                // in the context of operation result serialization.
+                String fullResult = repositoryContext.prismContext().xmlSerializer()
+                        .options(SerializationOptions.createEscapeInvalidCharacters()
+                                .serializeUnsupportedTypesAsString(true))
+                        .serializeRealValue(resultBean, SchemaConstantsGenerated.C_OPERATION_RESULT);
+                deltaRow.fullResult = toBytes(fullResult);
+            }
+        } catch (SchemaException e) {
+            throw new SystemException("Problem during audit delta conversion", e);
+        }
+
+        deltaRow.resourceOid = toUuid(deltaOperation.getResourceOid());
+        PolyString objectName = deltaOperation.getObjectName();
+        if (objectName != null) {
+            deltaRow.objectNameOrig = objectName.getOrig();
+            deltaRow.objectNameNorm = objectName.getNorm();
+        }
+        PolyString resourceName = deltaOperation.getResourceName();
+        if (resourceName != null) {
+            deltaRow.resourceNameOrig = resourceName.getOrig();
+            deltaRow.resourceNameNorm = resourceName.getNorm();
+        }
+        deltaRow.checksum = computeChecksum(deltaRow.delta, deltaRow.fullResult);
+        return deltaRow;
+    }
+
+    /**
+     * Changed item paths are taken from the modifications directly,
+     * there is no need to parse them from the serialized delta.
+     * All prefixes of the changed paths are stored too, so we can search by container paths.
+     */
+    private void collectChangedItemPaths(
+            @Nullable ObjectDelta<?> delta, Set<String> changedItemPaths) {
+        if (delta == null || !delta.isModify()) {
+            return;
+        }
+
+        QName objectType = repositoryContext.schemaClassToQName(delta.getObjectTypeClass());
+        for (ItemDelta<?, ?> itemDelta : delta.getModifications()) {
+            CanonicalItemPath canonical = repositoryContext.prismContext()
+                    .createCanonicalItemPath(itemDelta.getPath(), objectType);
+            for (int i = 0; i < canonical.size(); i++) {
+                changedItemPaths.add(canonical.allUpToIncluding(i).asString());
+            }
+        }
+    }
+
+    private List<MAuditRefValue> toRefRows(
+            MAuditEventRecord event, Map<String, Set<AuditReferenceValue>> references) {
+        if (references.isEmpty()) {
+            return List.of();
+        }
+
+        List<MAuditRefValue> refRows = new ArrayList<>();
+        for (Map.Entry<String, Set<AuditReferenceValue>> entry : references.entrySet()) {
+            for (AuditReferenceValue value : entry.getValue()) {
+                MAuditRefValue refRow = new MAuditRefValue();
+                refRow.timestamp = event.timestamp;
+                refRow.name = entry.getKey();
+                refRow.targetOid = toUuid(value.getOid());
+                refRow.targetType = toObjectType(value.getType());
+                if (value.getTargetName() != null) {
+                    refRow.targetNameOrig = value.getTargetName().getOrig();
+                    refRow.targetNameNorm = value.getTargetName().getNorm();
+                }
+                refRows.add(refRow);
+            }
+        }
+        return refRows;
+    }
+
+    private UUID toUuid(String oid) {
+        return oid != null ? UUID.fromString(oid) : null;
+    }
+
+    private MObjectType toObjectType(QName typeQName) {
+        return typeQName != null ? MObjectType.fromTypeQName(typeQName) : null;
+    }
+
+    private String computeChecksum(byte[]... values) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (byte[] value : values) {
+            if (value != null) {
+                hasher.putBytes(value);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /** Converts properties to JSON object with array of string values for each property. */
+    private Jsonb toJsonb(Map<String, Set<String>> properties) {
+        if (properties.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Set<String>> entry : properties.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            SqaleUtils.appendJsonString(json, entry.getKey()).append(":[");
+            boolean first = true;
+            for (String value : entry.getValue()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                if (value != null) {
+                    SqaleUtils.appendJsonString(json, value);
+                } else {
+                    json.append("null");
+                }
+            }
+            json.append(']');
+        }
+        return new Jsonb(json.append('}').toString());
+    }
+
+    /** Converts custom column properties to JSON object with single string value per name. */
+    private Jsonb toCustomColumnJsonb(Map<String, String> customColumnProperties) {
+        if (customColumnProperties.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : customColumnProperties.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            SqaleUtils.appendJsonString(json, entry.getKey()).append(':');
+            if (entry.getValue() != null) {
+                SqaleUtils.appendJsonString(json, entry.getValue());
+            } else {
+                json.append("null");
+            }
+        }
+        return new Jsonb(json.append('}').toString());
+    }
+    // endregion
+
+    // region insert
+    /**
+     * Inserts the records in a single transaction using multi-row inserts for each table.
+     * Record IDs are allocated from the sequence upfront, so we can set them to all
+     * the related rows before the insert.
+     */
+    private void insertRecords(List<AuditRecordRows> records) {
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            List<Long> ids = jdbcSession.newQuery()
+                    .select(SQLExpressions.nextval(Long.class, QAuditEventRecord.ID_SEQUENCE_NAME))
+                    .from(Expressions.template(Object.class,
+                            "generate_series(1, {0})", records.size()))
+                    .fetch();
+
+            SQLInsertClause eventInsert = jdbcSession.newInsert(qAuditEvent);
+            SQLInsertClause deltaInsert = jdbcSession.newInsert(qAuditDelta);
+            SQLInsertClause refInsert = jdbcSession.newInsert(qAuditRef);
+            for (int i = 0; i < records.size(); i++) {
+                AuditRecordRows record = records.get(i);
+                record.setRecordId(ids.get(i));
+                // NULLs are important to keep the value count consistent during the batch
+                eventInsert.populate(record.event, DefaultMapper.WITH_NULL_BINDINGS).addBatch();
+                for (MAuditDelta delta : record.deltas) {
+                    deltaInsert.populate(delta, DefaultMapper.WITH_NULL_BINDINGS).addBatch();
+                }
+                for (MAuditRefValue ref : record.refs) {
+                    // ID is generated, we must not use the mapper because of it
+                    refInsert.set(qAuditRef.recordId, ref.recordId)
+                            .set(qAuditRef.timestamp, ref.timestamp)
+                            .set(qAuditRef.name, ref.name)
+                            .set(qAuditRef.targetOid, ref.targetOid)
+                            .set(qAuditRef.targetType, ref.targetType)
+                            .set(qAuditRef.targetNameOrig, ref.targetNameOrig)
+                            .set(qAuditRef.targetNameNorm, ref.targetNameNorm)
+                            .addBatch();
+                }
+            }
+
+            executeBatch(eventInsert);
+            executeBatch(deltaInsert);
+            executeBatch(refInsert);
+            jdbcSession.commit();
+        }
+    }
+
+    private void executeBatch(SQLInsertClause insert) {
+        if (!insert.isEmpty()) {
+            insert.setBatchToBulk(true);
+            insert.execute();
+        }
+    }
+    // endregion
+
+    // region cleanup
+    /**
+     * Removes audit records according to the cleanup policy.
+     * Partitions older than the computed cutoff timestamp are dropped, the rest of the old
+     * records (from the partition containing the cutoff and from the default partition)
+     * are deleted.
+     * Both max age and max records policies are converted to the cutoff timestamp,
+     * for max records policy it means that slightly more records can be kept if more
+     * records share the same timestamp.
+     * Missing partitions for the following months are created as well, as the cleanup
+     * is executed regularly.
+     */
+    @Override
+    public void cleanupAudit(CleanupPolicyType policy, OperationResult parentResult) {
+        Objects.requireNonNull(policy, "Cleanup policy must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_CLEANUP_AUDIT)
+                .addParam("maxAge", String.valueOf(policy.getMaxAge()))
+                .addParam("maxRecords", policy.getMaxRecords())
+                .build();
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_CLEANUP_AUDIT, AuditEventRecord.class);
+        try {
+            createPartitions();
+
+            Instant cutoff = maxAgeCutoff(policy.getMaxAge());
+            Instant maxRecordsCutoff = maxRecordsCutoff(policy.getMaxRecords());
+            if (cutoff == null || maxRecordsCutoff != null && maxRecordsCutoff.isAfter(cutoff)) {
+                cutoff = maxRecordsCutoff;
+            }
+            if (cutoff != null) {
+                removeRecordsBefore(cutoff, operationResult);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Audit cleanup failed", e);
+            operationResult.recordFatalError(e);
+            throw e;
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    private Instant maxAgeCutoff(Duration maxAge) {
+        if (maxAge == null) {
+            return null;
+        }
+
+        if (maxAge.getSign() > 0) {
+            maxAge = maxAge.negate();
+        }
+        Date minValue = new Date();
+        maxAge.addTo(minValue);
+        return minValue.toInstant();
+    }
+
+    /** Returns timestamp of the oldest record to keep, all older records can be removed. */
+    private Instant maxRecordsCutoff(Integer maxRecords) {
+        if (maxRecords == null) {
+            return null;
+        }
+
+        try (JdbcSession jdbcSession =
+                repositoryContext.newJdbcSession().startReadOnlyTransaction()) {
+            return jdbcSession.newQuery()
+                    .select(qAuditEvent.timestamp)
+                    .from(qAuditEvent)
+                    .orderBy(qAuditEvent.timestamp.desc())
+                    .offset(Math.max(maxRecords - 1, 0))
+                    .limit(1)
+                    .fetchOne();
+        }
+    }
+
+    private void removeRecordsBefore(@NotNull Instant cutoff, OperationResult operationResult) {
+        LOGGER.info("Starting audit cleanup, removing records older than {}.", cutoff);
+        long start = System.currentTimeMillis();
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            Integer droppedPartitions = jdbcSession.newQuery()
+                    .select(Expressions.numberTemplate(Integer.class,
+                            "audit_drop_partitions_before({0})", cutoff))
+                    .fetchOne();
+            long deletedRecords = jdbcSession.newDelete(qAuditEvent)
+                    .where(qAuditEvent.timestamp.lt(cutoff))
+                    .execute();
+            jdbcSession.newDelete(qAuditDelta)
+                    .where(qAuditDelta.timestamp.lt(cutoff))
+                    .execute();
+            jdbcSession.newDelete(qAuditRef)
+                    .where(qAuditRef.timestamp.lt(cutoff))
+                    .execute();
+            jdbcSession.commit();
+
+            operationResult.addReturn("droppedPartitions", droppedPartitions);
+            operationResult.addReturn("deletedRecords", deletedRecords);
+            LOGGER.info("Audit cleanup finished in {} ms; dropped {} monthly partitions"
+                            + " and deleted {} other records.",
+                    System.currentTimeMillis() - start, droppedPartitions, deletedRecords);
+        }
+    }
+
+    /**
+     * Creates missing monthly partitions for the current month and configured number
+     * of the following months.
+     * Failure is only logged, records without partition are stored in the default partition.
+     */
+    void createPartitions() {
+        if (partitionsAhead <= 0) {
+            return;
+        }
+
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            jdbcSession.executeStatement(
+                    "CALL audit_create_monthly_partitions(" + partitionsAhead + ")");
+            jdbcSession.commit();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Creating audit partitions failed, audit records without partition"
+                    + " will be stored in the default partition: {}", e.toString());
+        }
+    }
+    // endregion
+
+    @Override
+    public void applyAuditConfiguration(SystemConfigurationAuditType configuration) {
+        this.auditConfiguration = CloneUtil.clone(configuration);
+    }
+
+    /** Writes the rest of the buffered records (if any) and stops the background writer. */
+    public void destroy() {
+        if (writeBuffer != null) {
+            writeBuffer.shutdown();
+        }
+    }
+
+    // region retrieval
+    @Override
+    public boolean supportsRetrieval() {
+        return true;
+    }
+
+    @Override
+    public int countObjects(
+            @Nullable ObjectQuery query,
+            @Nullable Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull OperationResult parentResult) {
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_COUNT_OBJECTS)
+                .addParam("query", query)
+                .build();
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_COUNT_OBJECTS, AuditEventRecordType.class);
+        try {
+            var queryContext = SqaleQueryContext.from(
+                    AuditEventRecordType.class, repositoryContext);
+            return sqlQueryExecutor.count(queryContext, query, options);
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    @Override
+    public @NotNull SearchResultList<AuditEventRecordType> searchObjects(
+            @Nullable ObjectQuery query,
+            @Nullable Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull OperationResult parentResult)
+            throws SchemaException {
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_SEARCH_OBJECTS)
+                .addParam("query", query)
+                .build();
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_SEARCH_OBJECTS, AuditEventRecordType.class);
+        try {
+            var queryContext = SqaleQueryContext.from(
+                    AuditEventRecordType.class, repositoryContext);
+            return sqlQueryExecutor.list(queryContext, query, options);
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            operationResult.recordFatalError(t);
+            throw t;
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    /**
+     * Returns records for the native SQL query with named parameters, see {@link AuditSqlQuery}.
+     * The query must return `id` column of {@link QAuditEventRecord#TABLE_NAME} table,
+     * the records with all details are loaded by these IDs afterwards, keeping the order.
+     */
+    @Override
+    public List<AuditEventRecord> listRecords(
+            String query, Map<String, Object> params, OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(OP_NAME_PREFIX + OP_LIST_RECORDS)
+                .addParam("query", query)
+                .build();
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_LIST_RECORDS, AuditEventRecord.class);
+        try {
+            AuditSqlQuery sqlQuery = AuditSqlQuery.create(
+                    query == null || query.isBlank() ? DEFAULT_LIST_QUERY : query, params);
+            LOGGER.trace("List records, processed query: {}", sqlQuery);
+
+            try (JdbcSession jdbcSession =
+                    repositoryContext.newJdbcSession().startReadOnlyTransaction()) {
+                List<Long> ids = new ArrayList<>();
+                try (PreparedStatement stmt =
+                        sqlQuery.createPreparedStatement(jdbcSession.connection());
+                        ResultSet resultSet = stmt.executeQuery()) {
+                    int idColumn = resultSet.findColumn(QAuditEventRecord.ID.getName());
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(idColumn));
+                    }
+                }
+                return loadRecords(jdbcSession, ids);
+            }
+        } catch (SQLException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+            operationResult.computeStatusIfUnknown();
+        }
+    }
+
+    private List<AuditEventRecord> loadRecords(JdbcSession jdbcSession, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, MAuditEventRecord> rowsById = new HashMap<>();
+        for (List<Long> idsPartition : Lists.partition(ids, MAX_ID_IN_FOR_TO_MANY_FETCH)) {
+            for (MAuditEventRecord row : jdbcSession.newQuery()
+                    .select(qAuditEvent)
+                    .from(qAuditEvent)
+                    .where(qAuditEvent.id.in(idsPartition))
+                    .fetch()) {
+                rowsById.put(row.id, row);
+            }
+            for (MAuditDelta delta : jdbcSession.newQuery()
+                    .select(qAuditDelta)
+                    .from(qAuditDelta)
+                    .where(qAuditDelta.recordId.in(idsPartition))
+                    .fetch()) {
+                rowsById.get(delta.recordId).addDelta(delta);
+            }
+            for (MAuditRefValue ref : jdbcSession.newQuery()
+                    .select(qAuditRef)
+                    .from(qAuditRef)
+                    .where(qAuditRef.recordId.in(idsPartition))
+                    .fetch()) {
+                rowsById.get(ref.recordId).addRefValue(ref);
+            }
+        }
+
+        List<AuditEventRecord> records = new ArrayList<>();
+        for (Long id : ids) {
+            MAuditEventRecord row = rowsById.get(id);
+            if (row != null) {
+                records.add(toAuditEventRecord(row));
+            }
+        }
+        return records;
+    }
+
+    private AuditEventRecord toAuditEventRecord(MAuditEventRecord row) {
+        AuditEventRecord record = new AuditEventRecord();
+        record.setRepoId(row.id);
+        record.setTimestamp(row.timestamp.toEpochMilli());
+        record.setEventIdentifier(row.eventIdentifier);
+        record.setEventType(AuditEventType.fromSchemaValue(row.eventType));
+        record.setEventStage(AuditEventStage.fromSchemaValue(row.eventStage));
+        record.setSessionIdentifier(row.sessionIdentifier);
+        record.setRequestIdentifier(row.requestIdentifier);
+        record.setTaskIdentifier(row.taskIdentifier);
+        record.setTaskOid(row.taskOid != null ? row.taskOid.toString() : null);
+        record.setHostIdentifier(row.hostIdentifier);
+        record.setNodeIdentifier(row.nodeIdentifier);
+        record.setRemoteHostAddress(row.remoteHostAddress);
+        record.setInitiatorRef(toReferenceValue(row.initiatorOid,
+                Objects.requireNonNullElse(row.initiatorType, MObjectType.FOCUS),
+                row.initiatorName));
+        record.setAttorneyRef(toReferenceValue(
+                row.attorneyOid, MObjectType.FOCUS, row.attorneyName));
+        record.setTargetRef(toReferenceValue(row.targetOid,
+                Objects.requireNonNullElse(row.targetType, MObjectType.OBJECT),
+                row.targetName));
+        record.setTargetOwnerRef(toReferenceValue(row.targetOwnerOid,
+                Objects.requireNonNullElse(row.targetOwnerType, MObjectType.OBJECT),
+                row.targetOwnerName));
+        record.setChannel(row.channel);
+        record.setOutcome(OperationResultStatus.parseStatusType(row.outcome));
+        record.setParameter(row.parameter);
+        record.setResult(row.result);
+        record.setMessage(row.message);
+
+        if (row.resourceOids != null) {
+            for (String resourceOid : row.resourceOids) {
+                record.addResourceOid(resourceOid);
+            }
+        }
+        QAuditEventRecordMapping.readProperties(row.properties).forEach(
+                (name, values) -> values.forEach(value -> record.addPropertyValue(name, value)));
+        record.getCustomColumnProperty().putAll(
+                QAuditEventRecordMapping.readCustomColumnProperties(row.customColumnProperties));
+
+        if (row.deltas != null) {
+            for (MAuditDelta deltaRow : row.deltas) {
+                ObjectDeltaOperation<?> delta = toObjectDeltaOperation(deltaRow);
+                if (delta != null) {
+                    //noinspection unchecked,rawtypes
+                    record.addDelta((ObjectDeltaOperation) delta);
+                }
+            }
+        }
+        if (row.refValues != null) {
+            for (Map.Entry<String, List<MAuditRefValue>> entry : row.refValues.entrySet()) {
+                for (MAuditRefValue refRow : entry.getValue()) {
+                    record.addReferenceValue(entry.getKey(), new AuditReferenceValue(
+                            refRow.targetOid != null ? refRow.targetOid.toString() : null,
+                            refRow.targetType != null
+                                    ? repositoryContext.schemaClassToQName(
+                                    refRow.targetType.getSchemaType())
+                                    : null,
+                            refRow.targetNameOrig != null || refRow.targetNameNorm != null
+                                    ? new PolyString(refRow.targetNameOrig, refRow.targetNameNorm)
+                                    : null));
+                }
+            }
+        }
+        return record;
+    }
+
+    private PrismReferenceValue toReferenceValue(UUID oid, MObjectType type, String name) {
+        if (oid == null) {
+            return null;
+        }
+
+        PrismReferenceValue value = repositoryContext.prismContext().itemFactory()
+                .createReferenceValue(oid.toString(),
+                        repositoryContext.schemaClassToQName(type.getSchemaType()));
+        value.setDescription(name);
+        if (name != null) {
+            value.setTargetName(new PolyString(name));
+        }
+        return value;
+    }
+
+    /**
+     * Returns delta operation converted from the row, unparseable delta is logged and skipped.
+     * Rather audit record without delta than failed listing.
+     */
+    private ObjectDeltaOperation<?> toObjectDeltaOperation(MAuditDelta deltaRow) {
+        ObjectDeltaOperationType odoBean = QAuditDeltaMapping.get().toSchemaObject(deltaRow);
+        try {
+            ObjectDeltaOperation<?> odo = new ObjectDeltaOperation<>(
+                    odoBean.getObjectDelta() != null
+                            ? DeltaConvertor.createObjectDelta(
+                            odoBean.getObjectDelta(), repositoryContext.prismContext())
+                            : null);
+            if (odoBean.getExecutionResult() != null) {
+                odo.setExecutionResult(
+                        OperationResult.createOperationResult(odoBean.getExecutionResult()));
+            }
+            if (odoBean.getObjectName() != null) {
+                odo.setObjectName(odoBean.getObjectName().toPolyString());
+            }
+            odo.setResourceOid(odoBean.getResourceOid());
+            if (odoBean.getResourceName() != null) {
+                odo.setResourceName(odoBean.getResourceName().toPolyString());
+            }
+            return odo;
+        } catch (SchemaException | RuntimeException e) {
+            LOGGER.error("Cannot convert stored audit delta for record {}: {}",
+                    deltaRow.recordId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public long countObjects(String query, Map<String, Object> params) {
+        AuditSqlQuery sqlQuery = AuditSqlQuery.create(
+                query == null || query.isBlank() ? DEFAULT_COUNT_QUERY : query, params);
+        LOGGER.trace("Count objects, processed query: {}", sqlQuery);
+
+        long opHandle = performanceMonitor.registerOperationStart(
+                OP_COUNT_OBJECTS, AuditEventRecord.class);
+        try (JdbcSession jdbcSession =
+                repositoryContext.newJdbcSession().startReadOnlyTransaction();
+                PreparedStatement stmt =
+                        sqlQuery.createPreparedStatement(jdbcSession.connection());
+                ResultSet resultSet = stmt.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalArgumentException(
+                        "Result set doesn't have value for select: " + query);
+            }
+            if (resultSet.getMetaData().getColumnCount() > 1) {
+                throw new IllegalArgumentException(
+                        "Result has more than one value for select: " + query);
+            }
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            // there is no operation result to record the error
+            throw new SystemException("Audit count failed for query: " + query, e);
+        } finally {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+        }
+    }
+
+    @Override
+    public void reindexEntry(AuditEventRecord record) {
+        LOGGER.warn("Audit reindex does nothing now and probably should not be used.");
+    }
+    // endregion
+
+    /**
+     * Handles exception outside of transaction - this does not handle transactional problems.
+     * Returns {@link SystemException}, call with `throw` keyword.
+     */
+    private SystemException handledGeneralException(
+            @NotNull Throwable ex, OperationResult result) {
+        LOGGER.error("General checked exception occurred.", ex);
+        if (repositoryContext.getJdbcRepositoryConfiguration().isFatalException(ex)) {
+            result.recordFatalError(ex);
+        }
+
+        return ex instanceof SystemException
+                ? (SystemException) ex
+                : new SystemException(ex.getMessage(), ex);
+    }
+}
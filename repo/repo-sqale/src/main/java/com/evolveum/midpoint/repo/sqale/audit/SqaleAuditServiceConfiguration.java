@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.util.Arrays;
+
+import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Configuration of {@link SqaleAuditService} read from the `auditService` element
+ * of the audit configuration in `config.xml`.
+ * Database connection is not configured here, audit uses the same datasource as the repository.
+ */
+public class SqaleAuditServiceConfiguration {
+
+    /** Durability mode, see {@link AuditDurability}, case-insensitive, e.g. `asynchronous`. */
+    public static final String PROPERTY_DURABILITY = "durability";
+
+    /** Capacity of the write-behind buffer (number of records) for asynchronous durability. */
+    public static final String PROPERTY_BUFFER_CAPACITY = "bufferCapacity";
+
+    /** Maximum number of records written in one transaction for asynchronous durability. */
+    public static final String PROPERTY_FLUSH_BATCH_SIZE = "flushBatchSize";
+
+    /** Maximum time for which the record can wait in the buffer before it's written. */
+    public static final String PROPERTY_FLUSH_INTERVAL_MILLIS = "flushIntervalMillis";
+
+    /**
+     * Number of monthly partitions (including the current month) that are created
+     * on the start and during each audit cleanup, zero disables partition creation.
+     */
+    public static final String PROPERTY_PARTITIONS_AHEAD = "partitionsAhead";
+
+    private static final int DEFAULT_BUFFER_CAPACITY = 10_000;
+    private static final int DEFAULT_FLUSH_BATCH_SIZE = 100;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_PARTITIONS_AHEAD = 3;
+
+    final AuditDurability durability;
+    final int bufferCapacity;
+    final int flushBatchSize;
+    final long flushIntervalMillis;
+    final int partitionsAhead;
+
+    public SqaleAuditServiceConfiguration(@NotNull Configuration configuration) {
+        durability = parseDurability(configuration.getString(PROPERTY_DURABILITY));
+        bufferCapacity = configuration.getInt(PROPERTY_BUFFER_CAPACITY, DEFAULT_BUFFER_CAPACITY);
+        flushBatchSize = configuration.getInt(PROPERTY_FLUSH_BATCH_SIZE, DEFAULT_FLUSH_BATCH_SIZE);
+        flushIntervalMillis = configuration.getLong(
+                PROPERTY_FLUSH_INTERVAL_MILLIS, DEFAULT_FLUSH_INTERVAL_MILLIS);
+        partitionsAhead = configuration.getInt(PROPERTY_PARTITIONS_AHEAD, DEFAULT_PARTITIONS_AHEAD);
+
+        if (bufferCapacity <= 0 || flushBatchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new SystemException("Audit buffer capacity, flush batch size and flush interval"
+                    + " must be positive, configured values: " + bufferCapacity + ", "
+                    + flushBatchSize + ", " + flushIntervalMillis);
+        }
+    }
+
+    private AuditDurability parseDurability(String value) {
+        if (value == null) {
+            return AuditDurability.SYNCHRONOUS;
+        }
+        try {
+            return AuditDurability.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new SystemException("Unknown audit durability '" + value + "', supported values: "
+                    + Arrays.toString(AuditDurability.values()), e);
+        }
+    }
+
+    public AuditDurability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public String toString() {
+        return "SqaleAuditServiceConfiguration{"
+                + "durability=" + durability
+                + ", bufferCapacity=" + bufferCapacity
+                + ", flushBatchSize=" + flushBatchSize
+                + ", flushIntervalMillis=" + flushIntervalMillis
+                + ", partitionsAhead=" + partitionsAhead
+                + '}';
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.audit.api.AuditServiceFactory;
+import com.evolveum.midpoint.audit.api.AuditServiceFactoryException;
+import com.evolveum.midpoint.repo.api.SqlPerformanceMonitorsCollection;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * {@link AuditServiceFactory} for {@link SqaleAuditService}, that is DB-based auditing
+ * using the new SQL repository.
+ * Audit uses the same datasource as the repository, the audit tables must be created
+ * with `pgnew-audit.sql` script.
+ *
+ * This works only if the new repository is used, because the factory bean is declared in the
+ * repository configuration.
+ */
+public class SqaleAuditServiceFactory implements AuditServiceFactory {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SqaleAuditServiceFactory.class);
+
+    private final SqaleRepoContext repositoryContext;
+    private final SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection;
+
+    private SqaleAuditService auditService;
+    private SqlPerformanceMonitorImpl performanceMonitor;
+
+    public SqaleAuditServiceFactory(
+            SqaleRepoContext repositoryContext,
+            SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
+        this.repositoryContext = repositoryContext;
+        this.sqlPerformanceMonitorsCollection = sqlPerformanceMonitorsCollection;
+    }
+
+    @Override
+    public synchronized void init(@NotNull Configuration configuration)
+            throws AuditServiceFactoryException {
+        LOGGER.info("Initializing Sqale audit service factory.");
+        SqaleAuditServiceConfiguration auditConfiguration;
+        try {
+            auditConfiguration = new SqaleAuditServiceConfiguration(configuration);
+        } catch (RuntimeException e) {
+            throw new AuditServiceFactoryException(e.getMessage(), e);
+        }
+        LOGGER.info("Audit service configuration: {}", auditConfiguration);
+
+        SqaleRepositoryConfiguration repoConfig = repositoryContext.getJdbcRepositoryConfiguration();
+        performanceMonitor = new SqlPerformanceMonitorImpl(
+                repoConfig.getPerformanceStatisticsLevel(), repoConfig.getPerformanceStatisticsFile());
+        sqlPerformanceMonitorsCollection.register(performanceMonitor);
+
+        auditService = new SqaleAuditService(
+                repositoryContext, performanceMonitor, auditConfiguration);
+        auditService.createPartitions();
+        LOGGER.info("Sqale audit service factory initialization complete.");
+    }
+
+    @Override
+    public SqaleAuditService createAuditService() {
+        // Just returns pre-created instance from init, it's not such a sin.
+        // Still the method is named "create*" because it's a factory method on a factory bean.
+        return auditService;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        LOGGER.info("Destroying Sqale audit service factory.");
+        if (auditService != null) {
+            auditService.destroy();
+            auditService = null;
+        }
+        if (performanceMonitor != null) {
+            performanceMonitor.shutdown();
+            sqlPerformanceMonitorsCollection.deregister(performanceMonitor);
+            performanceMonitor = null;
+        }
+        LOGGER.info("Sqale audit service factory destroy complete.");
+    }
+}
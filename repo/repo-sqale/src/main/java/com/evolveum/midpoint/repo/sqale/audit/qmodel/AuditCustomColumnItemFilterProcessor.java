@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import com.querydsl.core.types.*;
+import com.querydsl.core.types.dsl.Expressions;
+
+import com.evolveum.midpoint.prism.query.PropertyValueFilter;
+import com.evolveum.midpoint.repo.sqlbase.QueryException;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
+import com.evolveum.midpoint.repo.sqlbase.filtering.ValueFilterValues;
+import com.evolveum.midpoint.repo.sqlbase.filtering.item.ItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.JsonbPath;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordCustomColumnPropertyType;
+
+/**
+ * Filter processor for audit custom column property stored as JSONB in
+ * {@link QAuditEventRecord#customColumnProperties}.
+ * The name of the custom column is part of the filter value, so each value is translated to
+ * a condition on the JSON value under that name (`customColumnProperties->>'name'`).
+ * Ordering by custom column is not supported, the name is not available for the order path.
+ */
+public class AuditCustomColumnItemFilterProcessor extends ItemFilterProcessor<
+        PropertyValueFilter<AuditEventRecordCustomColumnPropertyType>> {
+
+    private final JsonbPath path;
+
+    public AuditCustomColumnItemFilterProcessor(
+            SqlQueryContext<?, QAuditEventRecord, MAuditEventRecord> context) {
+        super(context);
+        this.path = context.path().customColumnProperties;
+    }
+
+    @Override
+    public Predicate process(PropertyValueFilter<AuditEventRecordCustomColumnPropertyType> filter)
+            throws QueryException {
+        ValueFilterValues<AuditEventRecordCustomColumnPropertyType, ?> values =
+                ValueFilterValues.from(filter);
+        if (values.isEmpty()) {
+            throw new QueryException("Custom column null value is not supported,"
+                    + " column can't be determined from filter: " + filter);
+        }
+
+        Ops operator = operation(filter);
+        Predicate predicate = null;
+        for (AuditEventRecordCustomColumnPropertyType property : values.allValuesRaw()) {
+            predicate = ExpressionUtils.or(predicate, createPredicate(filter, operator, property));
+        }
+        return predicate;
+    }
+
+    private Predicate createPredicate(
+            PropertyValueFilter<AuditEventRecordCustomColumnPropertyType> filter,
+            Ops operator, AuditEventRecordCustomColumnPropertyType property)
+            throws QueryException {
+        Expression<String> valueExpression =
+                Expressions.stringTemplate("{0}->>{1}", path, property.getName());
+        if (property.getValue() == null) {
+            if (operator == Ops.EQ || operator == Ops.EQ_IGNORE_CASE) {
+                return ExpressionUtils.predicate(Ops.IS_NULL, valueExpression);
+            } else {
+                throw new QueryException("Null value for other than EQUAL filter: " + filter);
+            }
+        }
+
+        Predicate predicate = ExpressionUtils.predicate(
+                operator, valueExpression, ConstantImpl.create(property.getValue()));
+        return context.isNotFilterUsed()
+                ? ExpressionUtils.and(predicate,
+                ExpressionUtils.predicate(Ops.IS_NOT_NULL, valueExpression))
+                : predicate;
+    }
+}
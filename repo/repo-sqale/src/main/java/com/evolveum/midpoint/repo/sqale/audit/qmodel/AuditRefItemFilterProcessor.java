@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.EnumPath;
+import com.querydsl.core.types.dsl.StringPath;
+
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.query.RefFilter;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
+import com.evolveum.midpoint.repo.sqlbase.filtering.item.ItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.UuidPath;
+
+/**
+ * Filter processor for reference item paths of audit event record.
+ * In audit the references have OID, optional type and target name, but never relation.
+ * If the OID is not specified in the filter value, target name and type are used.
+ */
+public class AuditRefItemFilterProcessor extends ItemFilterProcessor<RefFilter> {
+
+    private final UuidPath oidPath;
+    private final StringPath namePath;
+    private final EnumPath<MObjectType> typePath;
+
+    public <Q extends FlexibleRelationalPathBase<R>, R> AuditRefItemFilterProcessor(
+            SqlQueryContext<?, Q, R> context,
+            Function<Q, UuidPath> rootToOidPath,
+            Function<Q, StringPath> rootToNamePath,
+            Function<Q, EnumPath<MObjectType>> rootToTypePath) {
+        super(context);
+        this.oidPath = rootToOidPath.apply(context.path());
+        this.namePath = rootToNamePath != null ? rootToNamePath.apply(context.path()) : null;
+        this.typePath = rootToTypePath != null ? rootToTypePath.apply(context.path()) : null;
+    }
+
+    @Override
+    public Predicate process(RefFilter filter) {
+        List<PrismReferenceValue> values = filter.getValues();
+        if (values == null || values.isEmpty()) {
+            return oidPath.isNull();
+        }
+
+        Predicate predicate = null;
+        for (PrismReferenceValue ref : values) {
+            predicate = ExpressionUtils.or(predicate, processSingleValue(ref));
+        }
+        return predicate;
+    }
+
+    private Predicate processSingleValue(PrismReferenceValue ref) {
+        if (ref.getOid() != null) {
+            return predicateWithNotTreated(oidPath, oidPath.eq(UUID.fromString(ref.getOid())));
+        }
+
+        Predicate predicate = null;
+        if (namePath != null && ref.getTargetName() != null) {
+            predicate = predicateWithNotTreated(namePath,
+                    namePath.eq(ref.getTargetName().getOrig()));
+        }
+        if (typePath != null && ref.getTargetType() != null) {
+            predicate = ExpressionUtils.and(predicate, predicateWithNotTreated(typePath,
+                    typePath.eq(MObjectType.fromTypeQName(ref.getTargetType()))));
+        }
+        return predicate != null ? predicate : oidPath.isNull();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultStatusType;
+import com.evolveum.prism.xml.ns._public.types_3.ChangeTypeType;
+
+/**
+ * Querydsl "row bean" type related to {@link QAuditDelta}.
+ */
+public class MAuditDelta {
+
+    public Long recordId;
+    public Instant timestamp;
+    public String checksum;
+    public byte[] delta;
+    public UUID deltaOid;
+    public ChangeTypeType deltaType;
+    public byte[] fullResult;
+    public String objectNameNorm;
+    public String objectNameOrig;
+    public UUID resourceOid;
+    public String resourceNameNorm;
+    public String resourceNameOrig;
+    public OperationResultStatusType status;
+}
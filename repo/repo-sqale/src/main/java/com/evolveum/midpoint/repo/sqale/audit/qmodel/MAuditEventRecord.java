@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import java.time.Instant;
+import java.util.*;
+
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.Jsonb;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventStageType;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventTypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultStatusType;
+
+/**
+ * Querydsl "row bean" type related to {@link QAuditEventRecord}.
+ */
+public class MAuditEventRecord {
+
+    public Long id;
+    public Instant timestamp;
+    public String eventIdentifier;
+    public AuditEventTypeType eventType;
+    public AuditEventStageType eventStage;
+    public String sessionIdentifier;
+    public String requestIdentifier;
+    public String taskIdentifier;
+    public UUID taskOid;
+    public String hostIdentifier;
+    public String nodeIdentifier;
+    public String remoteHostAddress;
+    public UUID initiatorOid;
+    public MObjectType initiatorType;
+    public String initiatorName;
+    public UUID attorneyOid;
+    public String attorneyName;
+    public UUID targetOid;
+    public MObjectType targetType;
+    public String targetName;
+    public UUID targetOwnerOid;
+    public MObjectType targetOwnerType;
+    public String targetOwnerName;
+    public String channel;
+    public OperationResultStatusType outcome;
+    public String parameter;
+    public String result;
+    public String message;
+    public String[] changedItemPaths;
+    public String[] resourceOids;
+    public Jsonb properties;
+    public Jsonb customColumnProperties;
+
+    // "transient" fields not used by Querydsl, filled by detail fetch mappers for search
+    public List<MAuditDelta> deltas;
+    public Map<String, List<MAuditRefValue>> refValues;
+
+    public void addDelta(MAuditDelta delta) {
+        if (deltas == null) {
+            deltas = new ArrayList<>();
+        }
+        deltas.add(delta);
+    }
+
+    public void addRefValue(MAuditRefValue refValue) {
+        if (refValues == null) {
+            refValues = new TreeMap<>();
+        }
+        refValues.computeIfAbsent(refValue.name, k -> new ArrayList<>()).add(refValue);
+    }
+
+    @Override
+    public String toString() {
+        return "MAuditEventRecord{"
+                + "id=" + id
+                + ", timestamp=" + timestamp
+                + ", eventIdentifier='" + eventIdentifier + '\''
+                + ", eventType=" + eventType
+                + ", eventStage=" + eventStage
+                + '}';
+    }
+}
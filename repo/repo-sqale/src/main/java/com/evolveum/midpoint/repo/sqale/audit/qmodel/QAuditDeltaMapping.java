@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectDeltaOperationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultType;
+import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Mapping between {@link QAuditDelta} and {@link ObjectDeltaOperationType}.
+ * Used only to read deltas of the audit event record, it is not bound to any schema type.
+ */
+public class QAuditDeltaMapping
+        extends SqaleTableMapping<ObjectDeltaOperationType, QAuditDelta, MAuditDelta> {
+
+    public static final String DEFAULT_ALIAS_NAME = "ad";
+
+    private static QAuditDeltaMapping instance;
+
+    public static QAuditDeltaMapping init(@NotNull SqaleRepoContext repositoryContext) {
+        instance = new QAuditDeltaMapping(repositoryContext);
+        return instance;
+    }
+
+    public static QAuditDeltaMapping get() {
+        return Objects.requireNonNull(instance);
+    }
+
+    private QAuditDeltaMapping(@NotNull SqaleRepoContext repositoryContext) {
+        super(QAuditDelta.TABLE_NAME, DEFAULT_ALIAS_NAME,
+                ObjectDeltaOperationType.class, QAuditDelta.class, repositoryContext);
+    }
+
+    @Override
+    protected QAuditDelta newAliasInstance(String alias) {
+        return new QAuditDelta(alias);
+    }
+
+    @Override
+    public ObjectDeltaOperationType toSchemaObject(MAuditDelta row) {
+        ObjectDeltaOperationType odo = new ObjectDeltaOperationType();
+        odo.setObjectDelta(parseBytes(row.delta, ObjectDeltaType.class));
+        odo.setExecutionResult(parseBytes(row.fullResult, OperationResultType.class));
+
+        if (row.objectNameOrig != null || row.objectNameNorm != null) {
+            odo.setObjectName(new PolyStringType(
+                    new PolyString(row.objectNameOrig, row.objectNameNorm)));
+        }
+        if (row.resourceOid != null) {
+            odo.setResourceOid(row.resourceOid.toString());
+        }
+        if (row.resourceNameOrig != null || row.resourceNameNorm != null) {
+            odo.setResourceName(new PolyStringType(
+                    new PolyString(row.resourceNameOrig, row.resourceNameNorm)));
+        }
+        return odo;
+    }
+
+    /**
+     * Parses the serialized value, logs the error and returns null if it can't be parsed.
+     * Rather audit record without delta than failed search.
+     */
+    private <T> T parseBytes(byte[] bytes, Class<T> clazz) {
+        if (bytes == null) {
+            return null;
+        }
+
+        try {
+            return repositoryContext().createStringParser(toSerializedForm(bytes))
+                    .compat()
+                    .parseRealValue(clazz);
+        } catch (SchemaException | IOException e) {
+            logger.error("Cannot parse {}: {}", clazz.getSimpleName(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /** Returns the serialized form, gzipped values (zip audit enabled) are detected. */
+    public static String toSerializedForm(byte[] bytes) throws IOException {
+        if (bytes.length < 2 || (bytes[0] & 0xff | (bytes[1] << 8) & 0xff00)
+                != GZIPInputStream.GZIP_MAGIC) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import static com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.EnumPath;
+import com.querydsl.core.types.dsl.StringPath;
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.PropertyValueFilter;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.filtering.ArrayPathItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.QueryException;
+import com.evolveum.midpoint.repo.sqlbase.filtering.ValueFilterValues;
+import com.evolveum.midpoint.repo.sqlbase.filtering.item.SinglePathItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqlbase.mapping.ItemSqlMapper;
+import com.evolveum.midpoint.repo.sqlbase.mapping.SqlDetailFetchMapper;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.Jsonb;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.UuidPath;
+import com.evolveum.midpoint.util.MiscUtil;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.*;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+
+/**
+ * Mapping between {@link QAuditEventRecord} and {@link AuditEventRecordType}.
+ * Deltas and references are stored in detail tables and are fetched for the whole result
+ * page by detail fetch mappers, see {@link #addDetailFetchMapper}.
+ */
+public class QAuditEventRecordMapping
+        extends SqaleTableMapping<AuditEventRecordType, QAuditEventRecord, MAuditEventRecord> {
+
+    public static final String DEFAULT_ALIAS_NAME = "aer";
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private static QAuditEventRecordMapping instance;
+
+    public static QAuditEventRecordMapping init(@NotNull SqaleRepoContext repositoryContext) {
+        instance = new QAuditEventRecordMapping(repositoryContext);
+        return instance;
+    }
+
+    public static QAuditEventRecordMapping get() {
+        return Objects.requireNonNull(instance);
+    }
+
+    private QAuditEventRecordMapping(@NotNull SqaleRepoContext repositoryContext) {
+        super(QAuditEventRecord.TABLE_NAME, DEFAULT_ALIAS_NAME,
+                AuditEventRecordType.class, QAuditEventRecord.class, repositoryContext);
+
+        addItemMapping(F_REPO_ID, longMapper(q -> q.id));
+        addItemMapping(F_TIMESTAMP, timestampMapper(q -> q.timestamp));
+        addItemMapping(F_EVENT_IDENTIFIER, stringMapper(q -> q.eventIdentifier));
+        addItemMapping(F_EVENT_TYPE, enumMapper(q -> q.eventType));
+        addItemMapping(F_EVENT_STAGE, enumMapper(q -> q.eventStage));
+        addItemMapping(F_SESSION_IDENTIFIER, stringMapper(q -> q.sessionIdentifier));
+        addItemMapping(F_REQUEST_IDENTIFIER, stringMapper(q -> q.requestIdentifier));
+        addItemMapping(F_TASK_IDENTIFIER, stringMapper(q -> q.taskIdentifier));
+        addItemMapping(F_TASK_OID, uuidStringMapper(q -> q.taskOid));
+        addItemMapping(F_HOST_IDENTIFIER, stringMapper(q -> q.hostIdentifier));
+        addItemMapping(F_NODE_IDENTIFIER, stringMapper(q -> q.nodeIdentifier));
+        addItemMapping(F_REMOTE_HOST_ADDRESS, stringMapper(q -> q.remoteHostAddress));
+        addItemMapping(F_CHANNEL, stringMapper(q -> q.channel));
+        addItemMapping(F_OUTCOME, enumMapper(q -> q.outcome));
+        addItemMapping(F_PARAMETER, stringMapper(q -> q.parameter));
+        addItemMapping(F_RESULT, stringMapper(q -> q.result));
+        addItemMapping(F_MESSAGE, stringMapper(q -> q.message));
+
+        addItemMapping(F_INITIATOR_REF, auditRefMapper(
+                q -> q.initiatorOid, q -> q.initiatorName, q -> q.initiatorType));
+        addItemMapping(F_ATTORNEY_REF, auditRefMapper(
+                q -> q.attorneyOid, q -> q.attorneyName, null));
+        addItemMapping(F_TARGET_REF, auditRefMapper(
+                q -> q.targetOid, q -> q.targetName, q -> q.targetType));
+        addItemMapping(F_TARGET_OWNER_REF, auditRefMapper(
+                q -> q.targetOwnerOid, q -> q.targetOwnerName, q -> q.targetOwnerType));
+
+        addItemMapping(F_CHANGED_ITEM, new ItemSqlMapper<>(
+                ctx -> new ArrayPathItemFilterProcessor<ItemPathType, String>(
+                        ctx, q -> q.changedItemPaths, "TEXT", String.class,
+                        value -> ctx.createCanonicalItemPath(value.getItemPath()).asString())));
+        addItemMapping(F_RESOURCE_OID, multiStringMapper(q -> q.resourceOids));
+        addItemMapping(F_CUSTOM_COLUMN_PROPERTY, new ItemSqlMapper<>(
+                ctx -> new AuditCustomColumnItemFilterProcessor(ctx)));
+
+        // lambdas use lowercase names matching the type parameters from SqlDetailFetchMapper
+        addDetailFetchMapper(F_DELTA, new SqlDetailFetchMapper<>(
+                r -> r.id,
+                QAuditDelta.class,
+                dq -> dq.recordId,
+                dr -> dr.recordId,
+                (r, dr) -> r.addDelta(dr)));
+        addDetailFetchMapper(F_REFERENCE, new SqlDetailFetchMapper<>(
+                r -> r.id,
+                QAuditRefValue.class,
+                dq -> dq.recordId,
+                dr -> dr.recordId,
+                (r, dr) -> r.addRefValue(dr)));
+    }
+
+    /** Returns mapper for UUID column used for item with OID string value in the schema. */
+    private ItemSqlMapper<AuditEventRecordType, QAuditEventRecord, MAuditEventRecord>
+    uuidStringMapper(Function<QAuditEventRecord, UuidPath> rootToQueryItem) {
+        return new ItemSqlMapper<>(
+                ctx -> new SinglePathItemFilterProcessor<String, UuidPath>(ctx, rootToQueryItem) {
+                    @Override
+                    public Predicate process(PropertyValueFilter<String> filter)
+                            throws QueryException {
+                        return createBinaryCondition(filter, path,
+                                ValueFilterValues.from(filter, UUID::fromString));
+                    }
+                },
+                rootToQueryItem);
+    }
+
+    private ItemSqlMapper<AuditEventRecordType, QAuditEventRecord, MAuditEventRecord>
+    auditRefMapper(
+            Function<QAuditEventRecord, UuidPath> rootToOidPath,
+            Function<QAuditEventRecord, StringPath> rootToNamePath,
+            Function<QAuditEventRecord, EnumPath<MObjectType>> rootToTypePath) {
+        return new ItemSqlMapper<>(ctx -> new AuditRefItemFilterProcessor(
+                ctx, rootToOidPath, rootToNamePath, rootToTypePath));
+    }
+
+    @Override
+    protected QAuditEventRecord newAliasInstance(String alias) {
+        return new QAuditEventRecord(alias);
+    }
+
+    @Override
+    public AuditEventRecordType toSchemaObject(MAuditEventRecord row) {
+        AuditEventRecordType record = new AuditEventRecordType(repositoryContext().prismContext())
+                .repoId(row.id)
+                .timestamp(MiscUtil.asXMLGregorianCalendar(row.timestamp))
+                .eventIdentifier(row.eventIdentifier)
+                .eventType(row.eventType)
+                .eventStage(row.eventStage)
+                .sessionIdentifier(row.sessionIdentifier)
+                .requestIdentifier(row.requestIdentifier)
+                .taskIdentifier(row.taskIdentifier)
+                .taskOID(row.taskOid != null ? row.taskOid.toString() : null)
+                .hostIdentifier(row.hostIdentifier)
+                .nodeIdentifier(row.nodeIdentifier)
+                .remoteHostAddress(row.remoteHostAddress)
+                .initiatorRef(auditReference(row.initiatorOid,
+                        Objects.requireNonNullElse(row.initiatorType, MObjectType.FOCUS),
+                        row.initiatorName))
+                .attorneyRef(auditReference(row.attorneyOid, MObjectType.FOCUS, row.attorneyName))
+                .targetRef(auditReference(row.targetOid,
+                        Objects.requireNonNullElse(row.targetType, MObjectType.OBJECT),
+                        row.targetName))
+                .targetOwnerRef(auditReference(row.targetOwnerOid,
+                        Objects.requireNonNullElse(row.targetOwnerType, MObjectType.OBJECT),
+                        row.targetOwnerName))
+                .channel(row.channel)
+                .outcome(row.outcome)
+                .parameter(row.parameter)
+                .result(row.result)
+                .message(row.message);
+
+        mapDeltas(record, row.deltas);
+        mapChangedItems(record, row.changedItemPaths);
+        mapRefValues(record, row.refValues);
+        mapProperties(record, row.properties);
+        mapCustomColumnProperties(record, row.customColumnProperties);
+        if (row.resourceOids != null) {
+            record.getResourceOid().addAll(Arrays.asList(row.resourceOids));
+        }
+        return record;
+    }
+
+    private ObjectReferenceType auditReference(UUID oid, MObjectType type, String targetName) {
+        return objectReferenceType(oid != null ? oid.toString() : null, type, targetName);
+    }
+
+    private void mapDeltas(AuditEventRecordType record, List<MAuditDelta> deltas) {
+        if (deltas == null) {
+            return;
+        }
+
+        for (MAuditDelta delta : deltas) {
+            record.delta(QAuditDeltaMapping.get().toSchemaObject(delta));
+        }
+    }
+
+    private void mapChangedItems(AuditEventRecordType record, String[] changedItemPaths) {
+        if (changedItemPaths == null) {
+            return;
+        }
+
+        for (String changedItemPath : changedItemPaths) {
+            record.getChangedItem().add(new ItemPathType(ItemPath.create(changedItemPath)));
+        }
+    }
+
+    private void mapRefValues(
+            AuditEventRecordType record, Map<String, List<MAuditRefValue>> refValues) {
+        if (refValues == null) {
+            return;
+        }
+
+        for (Map.Entry<String, List<MAuditRefValue>> entry : refValues.entrySet()) {
+            AuditEventRecordReferenceType reference =
+                    new AuditEventRecordReferenceType().name(entry.getKey());
+            for (MAuditRefValue refValue : entry.getValue()) {
+                reference.value(QAuditRefValueMapping.get().toSchemaObject(refValue));
+            }
+            record.reference(reference);
+        }
+    }
+
+    private void mapProperties(AuditEventRecordType record, Jsonb properties) {
+        for (Map.Entry<String, List<String>> entry : readProperties(properties).entrySet()) {
+            AuditEventRecordPropertyType property =
+                    new AuditEventRecordPropertyType().name(entry.getKey());
+            property.getValue().addAll(entry.getValue());
+            record.property(property);
+        }
+    }
+
+    private void mapCustomColumnProperties(
+            AuditEventRecordType record, Jsonb customColumnProperties) {
+        for (Map.Entry<String, String> entry
+                : readCustomColumnProperties(customColumnProperties).entrySet()) {
+            record.getCustomColumnProperty().add(new AuditEventRecordCustomColumnPropertyType()
+                    .name(entry.getKey())
+                    .value(entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns properties stored as JSON object with array of string values for each property.
+     * Returns empty map for null value.
+     */
+    public static Map<String, List<String>> readProperties(Jsonb properties) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        if (properties == null) {
+            return result;
+        }
+
+        parseJsonObject(properties).fields().forEachRemaining(entry -> {
+            List<String> values = new ArrayList<>();
+            for (JsonNode value : entry.getValue()) {
+                values.add(value.isNull() ? null : value.asText());
+            }
+            result.put(entry.getKey(), values);
+        });
+        return result;
+    }
+
+    /**
+     * Returns custom column properties stored as JSON object with single string value per name.
+     * Returns empty map for null value.
+     */
+    public static Map<String, String> readCustomColumnProperties(Jsonb customColumnProperties) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (customColumnProperties == null) {
+            return result;
+        }
+
+        parseJsonObject(customColumnProperties).fields().forEachRemaining(entry ->
+                result.put(entry.getKey(),
+                        entry.getValue().isNull() ? null : entry.getValue().asText()));
+        return result;
+    }
+
+    private static JsonNode parseJsonObject(Jsonb jsonb) {
+        try {
+            return JSON_MAPPER.readTree(jsonb.value);
+        } catch (IOException e) {
+            throw new SystemException("Cannot parse JSON value of audit record: " + jsonb, e);
+        }
+    }
+}
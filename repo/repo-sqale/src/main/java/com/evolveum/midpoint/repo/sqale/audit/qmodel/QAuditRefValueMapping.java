@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit.qmodel;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordReferenceValueType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Mapping between {@link QAuditRefValue} and {@link AuditEventRecordReferenceValueType}.
+ * Used only to read references of the audit event record, it is not bound to any schema type.
+ */
+public class QAuditRefValueMapping
+        extends SqaleTableMapping<
+        AuditEventRecordReferenceValueType, QAuditRefValue, MAuditRefValue> {
+
+    public static final String DEFAULT_ALIAS_NAME = "aref";
+
+    private static QAuditRefValueMapping instance;
+
+    public static QAuditRefValueMapping init(@NotNull SqaleRepoContext repositoryContext) {
+        instance = new QAuditRefValueMapping(repositoryContext);
+        return instance;
+    }
+
+    public static QAuditRefValueMapping get() {
+        return Objects.requireNonNull(instance);
+    }
+
+    private QAuditRefValueMapping(@NotNull SqaleRepoContext repositoryContext) {
+        super(QAuditRefValue.TABLE_NAME, DEFAULT_ALIAS_NAME,
+                AuditEventRecordReferenceValueType.class, QAuditRefValue.class,
+                repositoryContext);
+    }
+
+    @Override
+    protected QAuditRefValue newAliasInstance(String alias) {
+        return new QAuditRefValue(alias);
+    }
+
+    @Override
+    public AuditEventRecordReferenceValueType toSchemaObject(MAuditRefValue row) {
+        AuditEventRecordReferenceValueType value = new AuditEventRecordReferenceValueType();
+        if (row.targetOid != null) {
+            value.setOid(row.targetOid.toString());
+        }
+        if (row.targetType != null) {
+            value.setType(repositoryContext().schemaClassToQName(row.targetType.getSchemaType()));
+        }
+        if (row.targetNameOrig != null || row.targetNameNorm != null) {
+            value.setTargetName(new PolyStringType(
+                    new PolyString(row.targetNameOrig, row.targetNameNorm)));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.delta.item;
+
+import com.evolveum.midpoint.prism.Item;
+import com.evolveum.midpoint.prism.PrismContainer;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.repo.sqale.delta.ItemDeltaValueProcessor;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.update.SqaleUpdateContext;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.JsonbPath;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.Jsonb;
+
+/**
+ * Delta processor for extension items (or shadow attributes) stored in a JSONB column.
+ * Values are not patched in the JSONB, instead the whole column value is recomputed from
+ * the extension container, which is already modified when the processor is called.
+ * This is simple and the JSON is typically small, multiple modifications of the same extension
+ * container merely overwrite the same `SET` clause.
+ */
+public class ExtensionItemDeltaProcessor extends ItemDeltaValueProcessor<Object> {
+
+    private final ExtensionMapping<?, ?, ?> mapping;
+    private final JsonbPath path;
+    private final boolean wholeContainer;
+
+    /**
+     * Creates the processor for the extension item or for the whole extension container
+     * if `wholeContainer` is true.
+     */
+    public <Q extends FlexibleRelationalPathBase<R>, R> ExtensionItemDeltaProcessor(
+            SqaleUpdateContext<?, Q, R> context,
+            ExtensionMapping<?, Q, R> mapping,
+            boolean wholeContainer) {
+        super(context);
+        this.mapping = mapping;
+        this.path = mapping.extensionPath(context.path());
+        this.wholeContainer = wholeContainer;
+    }
+
+    @Override
+    public void process(ItemDelta<?, ?> modification) {
+        ItemPath containerPath = wholeContainer
+                ? modification.getPath()
+                : modification.getPath().allExceptLast();
+        Item<?, ?> container = context.findItem(containerPath);
+        if (!(container instanceof PrismContainer) || container.isEmpty()) {
+            delete();
+            return;
+        }
+
+        Jsonb value = new ExtensionProcessor(context.repositoryContext()).processExtensions(
+                ((PrismContainer<?>) container).getValue(), mapping.holderType());
+        context.set(path, value);
+    }
+
+    @Override
+    public void delete() {
+        context.set(path, null);
+    }
+}
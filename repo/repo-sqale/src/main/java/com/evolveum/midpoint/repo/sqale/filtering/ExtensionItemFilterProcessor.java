@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.filtering;
+
+import static com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionProcessor.*;
+
+import java.util.List;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.prism.PrismConstants;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ExistsFilter;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.RefFilter;
+import com.evolveum.midpoint.prism.query.ValueFilter;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleUtils;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemCardinality;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.QueryException;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
+import com.evolveum.midpoint.repo.sqlbase.filtering.item.ItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.JsonbPath;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Filter processor for extension items (and shadow attributes) stored in JSONB column.
+ * The item is identified by the definition from the filter, see {@link MExtItem}.
+ * Conditions are created so that they can use GIN index on the JSONB column where possible:
+ *
+ * * EQUAL (without ignore-case) and reference filters use containment operator `@>`;
+ * * EQUAL with no value (item does not exist) and EXISTS use key existence operator `?`;
+ * * comparison (GT/LT), substring and ignore-case EQUAL filters use JSON path condition.
+ * These can't use the GIN index, expression index for the specific key can be created if needed.
+ *
+ * Multi-value items are stored as JSON arrays, containment works for these naturally and JSON path
+ * unwraps the arrays in the default lax mode, so the conditions are true if any value matches.
+ */
+public class ExtensionItemFilterProcessor extends ItemFilterProcessor<ValueFilter<?, ?>> {
+
+    private static final String STRING_IGNORE_CASE = "stringIgnoreCase";
+    private static final String STRICT_IGNORE_CASE = "strictIgnoreCase";
+    private static final String ORIG = PrismConstants.POLY_STRING_ORIG_MATCHING_RULE_NAME.getLocalPart();
+    private static final String ORIG_IGNORE_CASE = "origIgnoreCase";
+    private static final String NORM = PrismConstants.POLY_STRING_NORM_MATCHING_RULE_NAME.getLocalPart();
+    private static final String NORM_IGNORE_CASE = "normIgnoreCase";
+
+    private final MExtItemHolderType holderType;
+    private final JsonbPath path;
+
+    public <Q extends FlexibleRelationalPathBase<R>, R> ExtensionItemFilterProcessor(
+            SqlQueryContext<?, Q, R> context, ExtensionMapping<?, Q, R> mapping) {
+        super(context);
+        this.holderType = mapping.holderType();
+        this.path = mapping.extensionPath(context.path());
+    }
+
+    @Override
+    public Predicate process(ValueFilter<?, ?> filter) throws QueryException {
+        ItemDefinition<?> definition = filter.getDefinition();
+        MExtItem extItem = findExtItem(definition, filter);
+        List<? extends PrismValue> values = filter.getValues();
+        boolean noValue = values == null || values.isEmpty();
+        if (noValue && !(filter instanceof RefFilter) && operation(filter) != Ops.EQ) {
+            throw new QueryException("Null value for other than EQUAL filter: " + filter);
+        }
+
+        if (extItem == null) {
+            // Item was never stored, no object has any value for it.
+            return Expressions.asBoolean(true).eq(noValue);
+        }
+
+        String key = String.valueOf(extItem.id);
+        if (noValue) {
+            return ExpressionUtils.or(path.isNull(),
+                    Expressions.booleanTemplate("{0} ?? {1}", path, key).not());
+        }
+
+        if (filter instanceof RefFilter) {
+            return processRefFilter((RefFilter) filter, extItem);
+        }
+
+        String matchingRule = filter.getMatchingRule() != null
+                ? filter.getMatchingRule().getLocalPart() : null;
+        boolean polyString = PolyStringType.COMPLEX_TYPE.equals(definition.getTypeName());
+        Ops operator = operation(filter);
+
+        Predicate predicate = null;
+        for (PrismValue value : values) {
+            Object realValue = value.getRealValue();
+            Predicate valuePredicate;
+            if (operator == Ops.EQ) {
+                valuePredicate = containsPredicate(extItem, polyString
+                        ? polyStringValue(realValue, matchingRule)
+                        : toJsonScalarValue(realValue));
+            } else if (polyString) {
+                valuePredicate = jsonPathPredicate(key, operator,
+                        polyStringPart(realValue, matchingRule), polyStringKey(matchingRule));
+            } else {
+                valuePredicate = jsonPathPredicate(key, operator, realValue, null);
+            }
+            predicate = ExpressionUtils.or(predicate, valuePredicate);
+        }
+        return predicateWithNotTreated(path, predicate);
+    }
+
+    /**
+     * Exists filter (without inner filter) uses key existence operator `?`, the same way as
+     * EQUAL with no value, just not negated.
+     */
+    @Override
+    public Predicate processExists(ExistsFilter filter) throws QueryException {
+        MExtItem extItem = findExtItem(filter.getDefinition(), filter);
+        if (extItem == null) {
+            // Item was never stored, no object has any value for it.
+            return Expressions.asBoolean(true).isFalse();
+        }
+
+        return predicateWithNotTreated(path,
+                Expressions.booleanTemplate("{0} ?? {1}", path, String.valueOf(extItem.id)));
+    }
+
+    /**
+     * Checks that the item can be used in the filter and returns its catalog entry,
+     * or null if the item was never stored.
+     */
+    private @Nullable MExtItem findExtItem(ItemDefinition<?> definition, ObjectFilter filter)
+            throws QueryException {
+        if (definition == null) {
+            throw new QueryException("Extension item definition is required for filter: " + filter);
+        }
+        if (!ExtensionProcessor.isIndexed(definition)) {
+            throw new QueryException("Extension item " + definition.getItemName()
+                    + " is not indexed, filter: " + filter);
+        }
+
+        return ((SqaleRepoContext) context.repositoryContext())
+                .getExtensionItem(MExtItem.keyFrom(definition, holderType));
+    }
+
+    /**
+     * Reference filter uses containment with available reference attributes, missing OID or
+     * target type mean "any" in this case.
+     */
+    private Predicate processRefFilter(RefFilter filter, MExtItem extItem) throws QueryException {
+        Predicate predicate = null;
+        for (PrismReferenceValue ref : filter.getValues()) {
+            StringBuilder json = new StringBuilder("{");
+            if (ref.getOid() != null) {
+                SqaleUtils.appendJsonString(json, REF_TARGET_OID_KEY).append(':');
+                SqaleUtils.appendJsonString(json, ref.getOid());
+            } else if (!filter.isOidNullAsAny()) {
+                throw new QueryException("Reference filter on extension item"
+                        + " without OID is not supported: " + filter);
+            }
+            if (ref.getRelation() == null || !ref.getRelation().equals(PrismConstants.Q_ANY)) {
+                Integer relationId = ((SqaleRepoContext) context.repositoryContext())
+                        .searchCachedRelationId(ref.getRelation());
+                appendSeparator(json);
+                SqaleUtils.appendJsonString(json, REF_RELATION_KEY).append(':').append(relationId);
+            }
+            if (ref.getTargetType() != null) {
+                appendSeparator(json);
+                SqaleUtils.appendJsonString(json, REF_TARGET_TYPE_KEY).append(':');
+                SqaleUtils.appendJsonString(json,
+                        MObjectType.fromTypeQName(ref.getTargetType()).name());
+            }
+            predicate = ExpressionUtils.or(predicate,
+                    containsPredicate(extItem, json.append('}').toString()));
+        }
+        return predicateWithNotTreated(path, predicate);
+    }
+
+    private void appendSeparator(StringBuilder json) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+    }
+
+    /** Returns `ext @> '{"id": value}'` (or `[value]` for multi-value item) predicate. */
+    private Predicate containsPredicate(MExtItem extItem, @Nullable String jsonValue)
+            throws QueryException {
+        if (jsonValue == null) {
+            throw new QueryException("Unsupported value type for extension item " + extItem);
+        }
+
+        String json = extItem.cardinality == MExtItemCardinality.ARRAY
+                ? "{\"" + extItem.id + "\":[" + jsonValue + "]}"
+                : "{\"" + extItem.id + "\":" + jsonValue + "}";
+        return Expressions.booleanTemplate("{0} @> {1}::jsonb", path, json);
+    }
+
+    /**
+     * Returns `jsonb_path_exists(ext, '$."id" ? (@ > $v)', '{"v": value}')` predicate
+     * or similar for other operators.
+     * Value is passed as a JSON path variable, except for the regular expression which must
+     * be a literal in the JSON path.
+     */
+    private Predicate jsonPathPredicate(
+            String key, Ops operator, Object value, @Nullable String subKey) throws QueryException {
+        StringBuilder jsonPath = new StringBuilder("$.\"").append(key).append('"');
+        if (subKey != null) {
+            jsonPath.append('.').append(subKey);
+        }
+
+        String stringValue = value instanceof String ? (String) value : null;
+        switch (operator) {
+            case GT:
+                return jsonPathExists(jsonPath.append(" ? (@ > $v)"), value);
+            case GOE:
+                return jsonPathExists(jsonPath.append(" ? (@ >= $v)"), value);
+            case LT:
+                return jsonPathExists(jsonPath.append(" ? (@ < $v)"), value);
+            case LOE:
+                return jsonPathExists(jsonPath.append(" ? (@ <= $v)"), value);
+            case EQ_IGNORE_CASE:
+                return likeRegex(jsonPath, "^" + regexEscape(stringValue) + "$", true);
+            case STARTS_WITH:
+            case STARTS_WITH_IC:
+                return likeRegex(jsonPath, "^" + regexEscape(stringValue),
+                        operator == Ops.STARTS_WITH_IC);
+            case ENDS_WITH:
+            case ENDS_WITH_IC:
+                return likeRegex(jsonPath, regexEscape(stringValue) + "$",
+                        operator == Ops.ENDS_WITH_IC);
+            case STRING_CONTAINS:
+            case STRING_CONTAINS_IC:
+                return likeRegex(jsonPath, regexEscape(stringValue),
+                        operator == Ops.STRING_CONTAINS_IC);
+            default:
+                throw new QueryException("Unsupported operator " + operator
+                        + " for extension item with key " + key);
+        }
+    }
+
+    private Predicate jsonPathExists(StringBuilder jsonPath, Object value) throws QueryException {
+        String jsonValue = toJsonScalarValue(value);
+        if (jsonValue == null) {
+            throw new QueryException("Unsupported value type for extension item: " + value);
+        }
+        return Expressions.booleanTemplate("jsonb_path_exists({0}, {1}::jsonpath, {2}::jsonb)",
+                path, jsonPath.toString(), "{\"v\":" + jsonValue + "}");
+    }
+
+    private Predicate likeRegex(StringBuilder jsonPath, String regex, boolean ignoreCase) {
+        jsonPath.append(" ? (@ like_regex ");
+        SqaleUtils.appendJsonString(jsonPath, regex);
+        if (ignoreCase) {
+            jsonPath.append(" flag \"i\"");
+        }
+        jsonPath.append(')');
+        return Expressions.booleanTemplate("jsonb_path_exists({0}, {1}::jsonpath)",
+                path, jsonPath.toString());
+    }
+
+    /** Escapes characters with special meaning in PostgreSQL regular expressions. */
+    private String regexEscape(@Nullable String value) throws QueryException {
+        if (value == null) {
+            throw new QueryException("String value is required for the extension item filter.");
+        }
+
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected boolean isIgnoreCaseFilter(ValueFilter<?, ?> filter) {
+        if (filter.getMatchingRule() == null) {
+            return false;
+        }
+        String matchingRule = filter.getMatchingRule().getLocalPart();
+        return STRING_IGNORE_CASE.equals(matchingRule)
+                || STRICT_IGNORE_CASE.equals(matchingRule)
+                || ORIG_IGNORE_CASE.equals(matchingRule)
+                || NORM_IGNORE_CASE.equals(matchingRule);
+    }
+
+    // region poly-string support
+    /** Returns partial poly-string JSON object for containment based on the matching rule. */
+    private String polyStringValue(Object realValue, @Nullable String matchingRule) {
+        PolyString poly = toPolyString(realValue);
+        if (ORIG.equals(matchingRule)) {
+            return polyStringToJson(poly.getOrig(), null);
+        } else if (NORM.equals(matchingRule)) {
+            return polyStringToJson(null, poly.getNorm());
+        } else {
+            return polyStringToJson(poly.getOrig(), poly.getNorm());
+        }
+    }
+
+    /** Returns the key of the poly-string part used for non-EQ operations. */
+    private String polyStringKey(@Nullable String matchingRule) {
+        return ORIG.equals(matchingRule) || ORIG_IGNORE_CASE.equals(matchingRule)
+                ? POLY_STRING_ORIG_KEY : POLY_STRING_NORM_KEY;
+    }
+
+    /** Returns the value of the poly-string part used for non-EQ operations. */
+    private String polyStringPart(Object realValue, @Nullable String matchingRule) {
+        PolyString poly = toPolyString(realValue);
+        return ORIG.equals(matchingRule) || ORIG_IGNORE_CASE.equals(matchingRule)
+                ? poly.getOrig() : poly.getNorm();
+    }
+
+    private @NotNull PolyString toPolyString(Object realValue) {
+        if (realValue instanceof PolyStringType) {
+            return ((PolyStringType) realValue).toPolyString();
+        } else if (realValue instanceof String) {
+            PolyString poly = new PolyString((String) realValue);
+            poly.recompute(context.prismContext().getDefaultPolyStringNormalizer());
+            return poly;
+        }
+        return (PolyString) realValue;
+    }
+    // endregion
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.filtering;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import org.apache.commons.lang3.StringUtils;
+
+import com.evolveum.midpoint.prism.polystring.PolyStringNormalizer;
+import com.evolveum.midpoint.prism.query.FullTextFilter;
+import com.evolveum.midpoint.repo.sqale.SqaleQueryContext;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.repo.sqlbase.QueryException;
+import com.evolveum.midpoint.repo.sqlbase.filtering.FilterProcessor;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.schema.util.FullTextSearchConfigurationUtil;
+
+/**
+ * Filter processor that resolves {@link FullTextFilter} using `fullTextInfo` column.
+ * Filter values are normalized and split to words the same way as the indexed values
+ * and each word must be contained in the indexed text.
+ * This uses `LIKE '%word%'` which is supported by trigram indexes on `fullTextInfo` columns.
+ */
+public class FullTextFilterProcessor implements FilterProcessor<FullTextFilter> {
+
+    private final SqaleQueryContext<?, ?, ?> context;
+
+    public FullTextFilterProcessor(SqaleQueryContext<?, ?, ?> context) {
+        this.context = context;
+    }
+
+    @Override
+    public Predicate process(FullTextFilter filter) throws QueryException {
+        FlexibleRelationalPathBase<?> path = context.root();
+        if (!(path instanceof QObject)) {
+            throw new QueryException("Full-text filter can only be used for objects,"
+                    + " not for path " + path + " of type " + path.getColumns());
+        }
+        if (!FullTextSearchConfigurationUtil.isEnabled(
+                context.repositoryContext().getFullTextSearchConfiguration())) {
+            throw new QueryException("Full-text filter cannot be used,"
+                    + " full-text search is not enabled in the system configuration.");
+        }
+        if (filter.getExpression() != null) {
+            throw new QueryException("Full-text filter with expression is not supported,"
+                    + " expression must be evaluated before the search: " + filter);
+        }
+
+        PolyStringNormalizer normalizer =
+                context.prismContext().getDefaultPolyStringNormalizer();
+        Set<String> words = new LinkedHashSet<>();
+        for (String value : filter.getValues()) {
+            String normalized = normalizer.normalize(value);
+            if (normalized != null) {
+                for (String word : StringUtils.split(normalized)) {
+                    words.add(word);
+                }
+            }
+        }
+
+        QObject<?> objectPath = (QObject<?>) path;
+        if (words.isEmpty()) {
+            // the same as the old repo, it matches any object with some full-text info
+            return objectPath.fullTextInfo.isNotNull();
+        }
+
+        BooleanExpression predicate = null;
+        for (String word : words) {
+            BooleanExpression wordPredicate = objectPath.fullTextInfo.contains(word);
+            predicate = predicate != null ? predicate.and(wordPredicate) : wordPredicate;
+        }
+        return predicate;
+    }
+}
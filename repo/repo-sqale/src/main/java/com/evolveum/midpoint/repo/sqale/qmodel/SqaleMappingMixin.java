@@ -2,6 +2,7 @@ package com.evolveum.midpoint.repo.sqale.qmodel;
 
 import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import javax.xml.namespace.QName;
 
 import com.querydsl.core.types.Predicate;
@@ -11,6 +12,7 @@ import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.repo.sqale.delta.item.ContainerTableDeltaProcessor;
 import com.evolveum.midpoint.repo.sqale.delta.item.EmbeddedContainerDeltaProcessor;
+import com.evolveum.midpoint.repo.sqale.delta.item.ExtensionItemDeltaProcessor;
 import com.evolveum.midpoint.repo.sqale.delta.item.RefTableItemDeltaProcessor;
 import com.evolveum.midpoint.repo.sqale.filtering.RefTableItemFilterProcessor;
 import com.evolveum.midpoint.repo.sqale.mapping.ContainerTableRelationResolver;
@@ -19,11 +21,14 @@ import com.evolveum.midpoint.repo.sqale.mapping.SqaleItemSqlMapper;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.MContainer;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.QContainer;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.QContainerMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionMapping;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
 import com.evolveum.midpoint.repo.sqale.qmodel.ref.QReferenceMapping;
 import com.evolveum.midpoint.repo.sqlbase.mapping.ItemRelationResolver;
 import com.evolveum.midpoint.repo.sqlbase.mapping.ItemSqlMapper;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryModelMapping;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.JsonbPath;
 
 /**
  * Mix of common mapping support methods that is needed on both {@link SqaleNestedMapping}
@@ -63,6 +68,26 @@ public interface SqaleMappingMixin<S, Q extends FlexibleRelationalPathBase<R>, R
         return nestedMapping;
     }
 
+    /**
+     * Defines mapping for extension container (or shadow attributes) stored in JSONB column.
+     * This includes path resolver for queries and delta processor for modifications of both
+     * the whole container and its items.
+     *
+     * @param <C> schema type of the extension container
+     */
+    default <C extends Containerable> ExtensionMapping<C, Q, R> addExtensionMapping(
+            @NotNull ItemName itemName,
+            @NotNull MExtItemHolderType holderType,
+            @NotNull Class<C> extensionSchemaType,
+            @NotNull Function<Q, JsonbPath> rootToExtensionPath) {
+        ExtensionMapping<C, Q, R> extensionMapping = new ExtensionMapping<>(
+                holderType, extensionSchemaType, queryType(), rootToExtensionPath);
+        addRelationResolver(itemName, new NestedMappingResolver<>(extensionMapping));
+        addItemMapping(itemName, new SqaleItemSqlMapper<>(
+                ctx -> new ExtensionItemDeltaProcessor(ctx, extensionMapping, true)));
+        return extensionMapping;
+    }
+
     /** Defines reference mapping for both query and modifications. */
     default SqaleMappingMixin<S, Q, R> addRefMapping(
             @NotNull QName itemName, @NotNull QReferenceMapping<?, ?, Q, R> referenceMapping) {
@@ -376,10 +376,11 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
         return strings.toArray(String[]::new);
     }
 
-    /** Convenient insert shortcut when the row is fully populated. */
+    /**
+     * Convenient insert shortcut when the row is fully populated.
+     * The row is only added to the batch if the JDBC session is batching inserts.
+     */
     protected void insert(R row, JdbcSession jdbcSession) {
-        jdbcSession.newInsert(defaultAlias())
-                .populate(row)
-                .execute();
+        jdbcSession.insert(defaultAlias(), row);
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.ext;
+
+import java.util.function.Function;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.Containerable;
+import com.evolveum.midpoint.repo.sqale.delta.item.ExtensionItemDeltaProcessor;
+import com.evolveum.midpoint.repo.sqale.filtering.ExtensionItemFilterProcessor;
+import com.evolveum.midpoint.repo.sqale.mapping.SqaleItemSqlMapper;
+import com.evolveum.midpoint.repo.sqale.qmodel.SqaleNestedMapping;
+import com.evolveum.midpoint.repo.sqlbase.mapping.ItemSqlMapper;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.JsonbPath;
+
+/**
+ * Nested mapping for extension container (or shadow attributes) stored in a JSONB column.
+ * Extension items are not known statically, so the same item mapper is returned for any item
+ * name and the actual item is determined from the filter (or delta) definition later.
+ *
+ * @param <C> schema type of the extension container
+ * @param <Q> type of entity path with the JSONB column
+ * @param <R> row type related to the {@link Q}
+ */
+public class ExtensionMapping<C extends Containerable, Q extends FlexibleRelationalPathBase<R>, R>
+        extends SqaleNestedMapping<C, Q, R> {
+
+    private final MExtItemHolderType holderType;
+    private final Function<Q, JsonbPath> rootToExtensionPath;
+    private final SqaleItemSqlMapper<C, Q, R> itemMapper;
+
+    public ExtensionMapping(
+            @NotNull MExtItemHolderType holderType,
+            @NotNull Class<C> schemaType,
+            @NotNull Class<Q> queryType,
+            @NotNull Function<Q, JsonbPath> rootToExtensionPath) {
+        super(schemaType, queryType);
+        this.holderType = holderType;
+        this.rootToExtensionPath = rootToExtensionPath;
+
+        itemMapper = new SqaleItemSqlMapper<>(
+                ctx -> new ExtensionItemFilterProcessor(ctx, this),
+                ctx -> new ExtensionItemDeltaProcessor(ctx, this, false));
+    }
+
+    public MExtItemHolderType holderType() {
+        return holderType;
+    }
+
+    public JsonbPath extensionPath(Q root) {
+        return rootToExtensionPath.apply(root);
+    }
+
+    /** Returns the same mapper for any item name, extension items are dynamic. */
+    @Override
+    public ItemSqlMapper<C, Q, R> getItemMapper(QName itemName) {
+        return itemMapper;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.ext;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleUtils;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqlbase.querydsl.Jsonb;
+import com.evolveum.midpoint.util.MiscUtil;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Converts extension container (or shadow attributes) to JSONB value stored in the `ext`
+ * (or `attributes`) column.
+ * Only indexed properties and references with definition are stored, see {@link #isIndexed}.
+ * The keys in the JSON object are IDs from {@link MExtItem} catalog, values are stored
+ * according to the cardinality of the catalog item - as a scalar or as an array.
+ *
+ * Value representation in JSON:
+ *
+ * * strings, URIs (including QNames) and enums are stored as JSON strings;
+ * * numbers and booleans are stored as JSON numbers and booleans;
+ * * date-time values are stored as strings in UTC with fixed length (see {@link #DATE_TIME_FORMAT}),
+ * so they can be compared as strings;
+ * * poly-strings are stored as objects `{"o": "orig", "n": "norm"}`;
+ * * references are stored as objects `{"o": "target-oid", "t": "TARGET_TYPE", "r": relationId}`.
+ */
+public class ExtensionProcessor {
+
+    /**
+     * Date-time format with fixed length (milliseconds are always present) in UTC,
+     * lexicographical ordering of the formatted strings is the same as chronological ordering.
+     */
+    public static final DateTimeFormatter DATE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    public static final String POLY_STRING_ORIG_KEY = "o";
+    public static final String POLY_STRING_NORM_KEY = "n";
+    public static final String REF_TARGET_OID_KEY = "o";
+    public static final String REF_TARGET_TYPE_KEY = "t";
+    public static final String REF_RELATION_KEY = "r";
+
+    private final SqaleRepoContext repositoryContext;
+
+    public ExtensionProcessor(SqaleRepoContext repositoryContext) {
+        this.repositoryContext = repositoryContext;
+    }
+
+    /**
+     * Returns JSONB value for the extension container or null if there is nothing to store.
+     * New {@link MExtItem} catalog rows are created as needed.
+     */
+    public @Nullable Jsonb processExtensions(
+            @Nullable Containerable container, @NotNull MExtItemHolderType holderType) {
+        return processExtensions(Containerable.asPrismContainerValue(container), holderType);
+    }
+
+    /** Version of {@link #processExtensions(Containerable, MExtItemHolderType)} for PCV. */
+    public @Nullable Jsonb processExtensions(
+            @Nullable PrismContainerValue<?> containerValue,
+            @NotNull MExtItemHolderType holderType) {
+        if (containerValue == null) {
+            return null;
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        for (Item<?, ?> item : containerValue.getItems()) {
+            ItemDefinition<?> definition = item.getDefinition();
+            if (definition == null || !isIndexed(definition)) {
+                continue;
+            }
+
+            List<String> values = new ArrayList<>();
+            for (Object realValue : item.getRealValues()) {
+                String value = toJsonValue(realValue);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
+
+            MExtItem extItem = repositoryContext.resolveExtensionItem(
+                    MExtItem.keyFrom(definition, holderType));
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(extItem.id).append("\":");
+            if (extItem.cardinality == MExtItemCardinality.ARRAY) {
+                json.append('[').append(String.join(",", values)).append(']');
+            } else {
+                json.append(values.get(0));
+            }
+        }
+
+        return json.length() > 1 ? new Jsonb(json.append('}').toString()) : null;
+    }
+
+    /**
+     * Properties and references are indexed unless explicitly marked as not indexed.
+     * Containers in the extension are not indexed.
+     */
+    public static boolean isIndexed(ItemDefinition<?> definition) {
+        if (definition instanceof PrismPropertyDefinition) {
+            return !Boolean.FALSE.equals(((PrismPropertyDefinition<?>) definition).isIndexed());
+        }
+        return definition instanceof PrismReferenceDefinition;
+    }
+
+    /**
+     * Returns JSON representation of the real value or null if the value type is not supported.
+     * References are converted with relation ID obtained from URI cache (creating it if needed).
+     */
+    public @Nullable String toJsonValue(Object realValue) {
+        if (realValue instanceof Referencable) {
+            Referencable ref = (Referencable) realValue;
+            if (ref.getOid() == null) {
+                return null; // dynamic references (with filter only) are not indexed
+            }
+
+            StringBuilder json = new StringBuilder("{");
+            SqaleUtils.appendJsonString(json, REF_TARGET_OID_KEY).append(':');
+            SqaleUtils.appendJsonString(json, ref.getOid());
+            if (ref.getType() != null) {
+                json.append(',');
+                SqaleUtils.appendJsonString(json, REF_TARGET_TYPE_KEY).append(':');
+                SqaleUtils.appendJsonString(json, MObjectType.fromTypeQName(ref.getType()).name());
+            }
+            json.append(',');
+            SqaleUtils.appendJsonString(json, REF_RELATION_KEY).append(':')
+                    .append(repositoryContext.processCacheableRelation(ref.getRelation()));
+            return json.append('}').toString();
+        }
+        return toJsonScalarValue(realValue);
+    }
+
+    /**
+     * Returns JSON representation of a non-reference real value or null if it is not supported.
+     * This does not need any repository access and can be used for query values as well.
+     */
+    public static @Nullable String toJsonScalarValue(Object realValue) {
+        if (realValue instanceof String) {
+            return SqaleUtils.appendJsonString(new StringBuilder(), (String) realValue).toString();
+        } else if (realValue instanceof Integer || realValue instanceof Long
+                || realValue instanceof Short || realValue instanceof Byte
+                || realValue instanceof BigInteger || realValue instanceof BigDecimal) {
+            return realValue.toString();
+        } else if (realValue instanceof Double || realValue instanceof Float) {
+            double value = ((Number) realValue).doubleValue();
+            // NaN and infinities are not valid JSON numbers
+            return Double.isFinite(value) ? realValue.toString() : null;
+        } else if (realValue instanceof Boolean) {
+            return realValue.toString();
+        } else if (realValue instanceof XMLGregorianCalendar) {
+            return SqaleUtils.appendJsonString(new StringBuilder(),
+                    formatDateTime((XMLGregorianCalendar) realValue)).toString();
+        } else if (realValue instanceof QName) {
+            return SqaleUtils.appendJsonString(new StringBuilder(),
+                    QNameUtil.qNameToUri((QName) realValue)).toString();
+        } else if (realValue instanceof Enum) {
+            return SqaleUtils.appendJsonString(new StringBuilder(),
+                    ((Enum<?>) realValue).name()).toString();
+        } else if (realValue instanceof PolyString) {
+            PolyString poly = (PolyString) realValue;
+            return polyStringToJson(poly.getOrig(), poly.getNorm());
+        } else if (realValue instanceof PolyStringType) {
+            PolyStringType poly = (PolyStringType) realValue;
+            return polyStringToJson(poly.getOrig(), poly.getNorm());
+        }
+        return null;
+    }
+
+    public static String formatDateTime(XMLGregorianCalendar dateTime) {
+        return DATE_TIME_FORMAT.format(MiscUtil.asInstant(dateTime));
+    }
+
+    /** Returns JSON object for poly-string, any of the parts can be null and is then skipped. */
+    public static String polyStringToJson(@Nullable String orig, @Nullable String norm) {
+        StringBuilder json = new StringBuilder("{");
+        if (orig != null) {
+            SqaleUtils.appendJsonString(json, POLY_STRING_ORIG_KEY).append(':');
+            SqaleUtils.appendJsonString(json, orig);
+        }
+        if (norm != null) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            SqaleUtils.appendJsonString(json, POLY_STRING_NORM_KEY).append(':');
+            SqaleUtils.appendJsonString(json, norm);
+        }
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.ext;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.util.QNameUtil;
+
+/**
+ * Querydsl "row bean" type related to {@link QExtItem}.
+ * ID of the row is used as a key in JSONB columns storing the extension item values.
+ */
+public class MExtItem {
+
+    public Integer id;
+    public String itemName;
+    public String valueType;
+    public MExtItemHolderType holderType;
+    public MExtItemCardinality cardinality;
+
+    public static MExtItem of(Integer id, Key key) {
+        MExtItem row = new MExtItem();
+        row.id = id;
+        row.itemName = key.itemName;
+        row.valueType = key.valueType;
+        row.holderType = key.holderType;
+        row.cardinality = key.cardinality;
+        return row;
+    }
+
+    public Key key() {
+        return new Key(itemName, valueType, holderType, cardinality);
+    }
+
+    /** Creates key for the item definition, cardinality is based on the definition too. */
+    public static Key keyFrom(
+            @NotNull ItemDefinition<?> definition, @NotNull MExtItemHolderType holderType) {
+        return new Key(
+                QNameUtil.qNameToUri(definition.getItemName()),
+                QNameUtil.qNameToUri(definition.getTypeName()),
+                holderType,
+                definition.isMultiValue() ? MExtItemCardinality.ARRAY : MExtItemCardinality.SCALAR);
+    }
+
+    @Override
+    public String toString() {
+        return "MExtItem{" +
+                "id=" + id +
+                ", itemName='" + itemName + '\'' +
+                ", valueType='" + valueType + '\'' +
+                ", holderType=" + holderType +
+                ", cardinality=" + cardinality +
+                '}';
+    }
+
+    /** Unique key of the extension item, all the attributes except for the ID. */
+    public static class Key {
+        public final String itemName;
+        public final String valueType;
+        public final MExtItemHolderType holderType;
+        public final MExtItemCardinality cardinality;
+
+        public Key(String itemName, String valueType,
+                MExtItemHolderType holderType, MExtItemCardinality cardinality) {
+            this.itemName = itemName;
+            this.valueType = valueType;
+            this.holderType = holderType;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return Objects.equals(itemName, key.itemName)
+                    && Objects.equals(valueType, key.valueType)
+                    && holderType == key.holderType
+                    && cardinality == key.cardinality;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemName, valueType, holderType, cardinality);
+        }
+
+        @Override
+        public String toString() {
+            return itemName + "(" + valueType + ", " + holderType + ", " + cardinality + ")";
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.ext;
+
+/**
+ * Cardinality of the extension item, used for {@link MExtItem#cardinality}.
+ * This determines whether the value is stored as a scalar JSON value or as a JSON array.
+ */
+public enum MExtItemCardinality {
+    SCALAR,
+    ARRAY
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.ext;
+
+/**
+ * Type of the container holding the extension item, used for {@link MExtItem#holderType}.
+ * Each holder type is stored in a separate JSONB column.
+ */
+public enum MExtItemHolderType {
+    EXTENSION, // ext column
+    ATTRIBUTES // attributes column in m_shadow
+}
@@ -97,7 +97,7 @@ public class QFocusMapping<S extends FocusType, Q extends QFocus<R>, R extends M
     public @NotNull Path<?>[] selectExpressions(
             Q entity, Collection<SelectorOptions<GetOperationOptions>> options) {
         // TODO process photo option
-        return new Path[] { entity.oid, entity.fullObject };
+        return new Path[] { entity.oid, entity.objectType, entity.fullObject };
     }
 
     @Override
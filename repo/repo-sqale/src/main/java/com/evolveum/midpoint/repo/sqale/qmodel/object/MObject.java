@@ -34,7 +34,7 @@ public class MObject {
     // complex DB fields
     public Integer[] policySituations;
     public String[] subtypes;
-    public String[] textInfo; // TODO see todo on SQL column
+    public String fullTextInfo;
     public Jsonb ext;
     // metadata
     public UUID creatorRefTargetOid;
@@ -9,35 +9,49 @@ package com.evolveum.midpoint.repo.sqale.qmodel.object;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentHolderType.*;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import javax.xml.namespace.QName;
 
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Path;
+import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import com.evolveum.midpoint.prism.PrismConstants;
-import com.evolveum.midpoint.prism.PrismObject;
-import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.polystring.PolyStringNormalizer;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
 import com.evolveum.midpoint.repo.sqale.SqaleUtils;
 import com.evolveum.midpoint.repo.sqale.qmodel.SqaleTableMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.QUri;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
 import com.evolveum.midpoint.repo.sqale.qmodel.ref.QObjectReferenceMapping;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.repo.sqlbase.RepositoryObjectParseResult;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.FullTextSearchConfigurationUtil;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ExtensionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FullTextSearchConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.MetadataType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationExecutionType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.TriggerType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 
 /**
  * Mapping between {@link QObject} and {@link ObjectType}.
@@ -51,6 +65,10 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
 
     public static final String DEFAULT_ALIAS_NAME = "o";
 
+    /** Operation name of the fetch result of placeholder objects, see {@link #createPlaceholder}. */
+    public static final String OP_CREATE_PLACEHOLDER =
+            QObjectMapping.class.getName() + ".createPlaceholder";
+
     public static QObjectMapping<?, ?, ?> init(@NotNull SqaleRepoContext repositoryContext) {
         return new QObjectMapping<>(
                 QObject.TABLE_NAME, DEFAULT_ALIAS_NAME,
@@ -79,7 +97,8 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         addItemMapping(F_POLICY_SITUATION, multiUriMapper(q -> q.policySituations));
         addItemMapping(F_SUBTYPE, multiStringMapper(q -> q.subtypes));
         // full-text is not item mapping, but filter on the whole object
-        // TODO ext mapping can't be done statically
+        addExtensionMapping(F_EXTENSION, MExtItemHolderType.EXTENSION,
+                ExtensionType.class, q -> q.ext);
 
         addNestedMapping(F_METADATA, MetadataType.class)
                 .addItemMapping(MetadataType.F_CREATOR_REF, refMapper(
@@ -117,7 +136,7 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
     @Override
     public @NotNull Path<?>[] selectExpressions(
             Q entity, Collection<SelectorOptions<GetOperationOptions>> options) {
-        return new Path[] { entity.oid, entity.fullObject };
+        return new Path[] { entity.oid, entity.objectType, entity.fullObject };
     }
 
     @Override
@@ -163,6 +182,37 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         return prismObject.asObjectable();
     }
 
+    /**
+     * Creates "Unreadable object" placeholder with the OID and the actual type of the object
+     * and with the fetch result containing the error, so it can be presented to the user.
+     */
+    @Override
+    public S createPlaceholder(Tuple row, Q entityPath, Throwable error) {
+        MObjectType objectType = row.get(entityPath.objectType);
+        UUID oid = row.get(entityPath.oid);
+        if (objectType == null || oid == null) {
+            return null;
+        }
+
+        try {
+            //noinspection unchecked
+            S placeholder = (S) repositoryContext().prismContext()
+                    .createObjectable(objectType.getSchemaType());
+            placeholder.setOid(oid.toString());
+            placeholder.setName(PolyStringType.fromOrig("Unreadable object"));
+
+            OperationResult result = new OperationResult(OP_CREATE_PLACEHOLDER);
+            result.recordFatalError("Couldn't retrieve " + objectType.getSchemaType().getSimpleName()
+                    + " " + oid + ": " + error.getMessage(), error);
+            placeholder.setFetchResult(result.createOperationResultType());
+            return placeholder;
+        } catch (SchemaException | RuntimeException e) {
+            logger.warn("Couldn't create placeholder for unreadable object {} {}: {}",
+                    objectType, oid, e.toString());
+            return null;
+        }
+    }
+
     /**
      * Override this to fill additional row attributes after calling this super version.
      *
@@ -194,9 +244,9 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         // complex DB fields
         row.policySituations = processCacheableUris(schemaObject.getPolicySituation());
         row.subtypes = listToArray(schemaObject.getSubtype());
-        // TODO textInfo (fulltext support)
-        //  repo.getTextInfoItems().addAll(RObjectTextInfo.createItemsSet(jaxb, repo, repositoryContext));
-        // TODO extensions stored inline (JSON) - that is ext column
+        row.fullTextInfo = createFullTextInfo(schemaObject);
+        row.ext = new ExtensionProcessor(repositoryContext())
+                .processExtensions(schemaObject.getExtension(), MExtItemHolderType.EXTENSION);
 
         // This is duplicate code with QAssignmentMapping.insert, but making interface
         // and needed setters (fields are not "interface-able") would create much more code.
@@ -258,12 +308,6 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
 
         storeRefs(row, schemaObject.getParentOrgRef(),
                 QObjectReferenceMapping.getForParentOrg(), jdbcSession);
-
-        /* TODO EAV extensions - the relevant code from old repo RObject#copyObjectInformationFromJAXB
-        if (jaxb.getExtension() != null) {
-            copyExtensionOrAttributesFromJAXB(jaxb.getExtension().asPrismContainerValue(), repo, repositoryContext, RObjectExtensionType.EXTENSION, generatorResult);
-        }
-        */
     }
 
     /**
@@ -293,5 +337,47 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         // TODO extend later, things like FocusType.F_JPEG_PHOTO, see ObjectUpdater#updateFullObject
         return Collections.emptyList();
     }
+
+    /**
+     * Returns value for `fullTextInfo` column - normalized words from the items configured
+     * for full-text search separated (and also prefixed and suffixed) by spaces.
+     * Returns null if full-text search is not enabled for the object type.
+     * Each word is stored only once, the order of the first occurrence is preserved.
+     */
+    public @Nullable String createFullTextInfo(S schemaObject) {
+        FullTextSearchConfigurationType config =
+                repositoryContext().getFullTextSearchConfiguration();
+        if (!FullTextSearchConfigurationUtil.isEnabledFor(config, schemaObject.getClass())) {
+            return null;
+        }
+
+        PrismObject<?> prismObject = schemaObject.asPrismObject();
+        PolyStringNormalizer normalizer = repositoryContext().prismContext().getDefaultPolyStringNormalizer();
+        Set<String> words = new LinkedHashSet<>();
+        for (ItemPath path : FullTextSearchConfigurationUtil.getFullTextSearchItemPaths(
+                config, schemaObject.getClass())) {
+            Item<PrismValue, ?> item = prismObject.findItem(path);
+            if (item == null) {
+                continue;
+            }
+
+            for (PrismValue value : item.getValues()) {
+                if (!(value instanceof PrismPropertyValue)) {
+                    continue;
+                }
+                Object realValue = value.getRealValue();
+                if (realValue instanceof PolyString) {
+                    realValue = ((PolyString) realValue).getOrig();
+                }
+                if (realValue != null) {
+                    String normalized = normalizer.normalize(realValue.toString());
+                    if (normalized != null) {
+                        words.addAll(Arrays.asList(StringUtils.split(normalized)));
+                    }
+                }
+            }
+        }
+        return words.isEmpty() ? null : ' ' + String.join(" ", words) + ' ';
+    }
     // endregion
 }
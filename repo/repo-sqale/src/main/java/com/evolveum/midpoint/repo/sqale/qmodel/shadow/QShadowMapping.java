@@ -11,9 +11,12 @@ import static com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType.*;
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.QObjectMapping;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.util.MiscUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowAttributesType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 /**
@@ -50,6 +53,8 @@ public class QShadowMapping
         addItemMapping(F_SYNCHRONIZATION_SITUATION, enumMapper(q -> q.synchronizationSituation));
         addItemMapping(F_SYNCHRONIZATION_TIMESTAMP,
                 timestampMapper(q -> q.synchronizationTimestamp));
+        addExtensionMapping(F_ATTRIBUTES, MExtItemHolderType.ATTRIBUTES,
+                ShadowAttributesType.class, q -> q.attributes);
     }
 
     @Override
@@ -84,8 +89,8 @@ public class QShadowMapping
         row.synchronizationSituation = shadow.getSynchronizationSituation();
         row.synchronizationTimestamp = MiscUtil.asInstant(shadow.getSynchronizationTimestamp());
 
-        // TODO extension attributes
-        //  copyExtensionOrAttributesFromJAXB(jaxb.getAttributes().asPrismContainerValue(), repo, repositoryContext, RObjectExtensionType.ATTRIBUTES, generatorResult);
+        row.attributes = new ExtensionProcessor(repositoryContext())
+                .processExtensions(shadow.getAttributes(), MExtItemHolderType.ATTRIBUTES);
         return row;
     }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.task;
+
+import java.util.UUID;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType;
+
+/**
+ * Querydsl "row bean" type related to {@link QTaskWorkBucket}.
+ * Serialized bucket does not contain the state and the worker, these are stored in the columns.
+ */
+public class MTaskWorkBucket {
+
+    public UUID coordinatorOid;
+    public Integer sequentialNumber;
+    public WorkBucketStateType state;
+    public UUID workerOid;
+    public String bucket;
+
+    @Override
+    public String toString() {
+        return "MTaskWorkBucket{" +
+                "coordinatorOid=" + coordinatorOid +
+                ", sequentialNumber=" + sequentialNumber +
+                ", state=" + state +
+                ", workerOid=" + workerOid +
+                '}';
+    }
+}
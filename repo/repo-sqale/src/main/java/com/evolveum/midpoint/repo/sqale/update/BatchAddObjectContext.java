@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.sqale.ContainerValueIdGenerator;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObjectMapping;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Add operation context for multiple objects added in a single transaction.
+ * This is used only for true add, not overwrite, see {@link AddObjectContext}.
+ *
+ * OIDs of objects without OID are assigned upfront, so each object needs just a single insert
+ * of its root row (with the serialized full object).
+ * All the rows - root rows and then sub-entities (containers, references, ...) - are grouped
+ * by the table and inserted as JDBC batches, see {@link JdbcSession#startInsertBatching()}.
+ * Root rows are added first, so their batches are executed before the sub-entities referencing them.
+ *
+ * If anything fails, the whole transaction is rolled back and the exception is thrown,
+ * the caller is responsible for the fallback to adding the objects one by one.
+ *
+ * Just like {@link AddObjectContext}, this works directly on the provided objects, not on their copies:
+ * version, OID (if missing) and container IDs are set to them.
+ * This happens even if the transaction fails later, so the fallback reuses the assigned OIDs.
+ */
+public class BatchAddObjectContext {
+
+    private final SqaleRepoContext repositoryContext;
+    private final List<? extends PrismObject<? extends ObjectType>> objects;
+
+    public BatchAddObjectContext(
+            @NotNull SqaleRepoContext repositoryContext,
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects) {
+        this.repositoryContext = repositoryContext;
+        this.objects = objects;
+    }
+
+    /**
+     * Inserts all the objects and returns their OIDs in the same order.
+     * The objects are updated as described in the class comment, even if the operation fails later.
+     */
+    public List<String> execute() throws SchemaException {
+        List<String> oids = new ArrayList<>(objects.size());
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession()
+                .startTransaction()
+                .startInsertBatching()) {
+            List<RowToStore<?, ?, ?>> rowsToStore = new ArrayList<>(objects.size());
+            for (PrismObject<? extends ObjectType> object : objects) {
+                rowsToStore.add(addRootRowToBatch(object, jdbcSession));
+                oids.add(object.getOid());
+            }
+
+            for (RowToStore<?, ?, ?> rowToStore : rowsToStore) {
+                rowToStore.storeRelatedEntities(jdbcSession);
+            }
+            jdbcSession.executeInsertBatches();
+            jdbcSession.commit();
+        }
+        return oids;
+    }
+
+    private <S extends ObjectType, Q extends QObject<R>, R extends MObject>
+    RowToStore<S, Q, R> addRootRowToBatch(PrismObject<S> object, JdbcSession jdbcSession)
+            throws SchemaException {
+        object.setVersion("1"); // initial add always uses 1 as version number
+        if (object.getOid() == null) {
+            object.setOid(UUID.randomUUID().toString());
+        }
+
+        Class<S> schemaObjectClass = object.getCompileTimeClass();
+        QObjectMapping<S, Q, R> rootMapping =
+                repositoryContext.getMappingBySchemaType(schemaObjectClass);
+        Q root = rootMapping.defaultAlias();
+
+        long lastCid = new ContainerValueIdGenerator().generateForNewObject(object);
+        S schemaObject = object.asObjectable();
+        R row = rootMapping.toRowObjectWithoutFullObject(schemaObject, jdbcSession);
+        row.containerIdSeq = lastCid + 1;
+        rootMapping.setFullObject(row, schemaObject);
+
+        // default populate mapper ignores null, that's good, especially for objectType;
+        // batches with different columns are executed as separate statements by Querydsl
+        jdbcSession.insert(root, row);
+
+        // sub-entities can use it, but it must not be set before the insert of the root row
+        return new RowToStore<>(rootMapping, row, schemaObject,
+                MObjectType.fromSchemaType(schemaObjectClass));
+    }
+
+    private static class RowToStore<S extends ObjectType, Q extends QObject<R>, R extends MObject> {
+
+        private final QObjectMapping<S, Q, R> rootMapping;
+        private final R row;
+        private final S schemaObject;
+        private final MObjectType objectType;
+
+        RowToStore(QObjectMapping<S, Q, R> rootMapping,
+                R row, S schemaObject, MObjectType objectType) {
+            this.rootMapping = rootMapping;
+            this.row = row;
+            this.schemaObject = schemaObject;
+            this.objectType = objectType;
+        }
+
+        void storeRelatedEntities(JdbcSession jdbcSession) {
+            row.objectType = objectType;
+            rootMapping.storeRelatedEntities(row, schemaObject, jdbcSession);
+        }
+    }
+}
@@ -50,6 +50,7 @@ public class RootUpdateContext<S extends ObjectType, Q extends QObject<R>, R ext
     private final int objectVersion;
 
     private ContainerValueIdGenerator cidGenerator;
+    private boolean incrementVersion = true;
 
     public RootUpdateContext(SqaleRepoContext repositoryContext,
             JdbcSession jdbcSession, S object, R rootRow) {
@@ -78,6 +79,18 @@ public class RootUpdateContext<S extends ObjectType, Q extends QObject<R>, R ext
     public Collection<? extends ItemDelta<?, ?>> execute(
             Collection<? extends ItemDelta<?, ?>> modifications)
             throws SchemaException, RepositoryException {
+        return execute(modifications, false);
+    }
+
+    /**
+     * Applies modifications, executes necessary updates and returns narrowed modifications.
+     * If `forceRewrite` is true, the root row is updated even if there are no effective
+     * modifications - this reserializes `fullObject` and refreshes the derived columns.
+     * Such a storage-only rewrite does not change the object, so the version is not incremented.
+     */
+    public Collection<? extends ItemDelta<?, ?>> execute(
+            Collection<? extends ItemDelta<?, ?>> modifications, boolean forceRewrite)
+            throws SchemaException, RepositoryException {
 
         PrismObject<S> prismObject = getPrismObject();
 
@@ -88,7 +101,10 @@ public class RootUpdateContext<S extends ObjectType, Q extends QObject<R>, R ext
         logger.trace("Narrowed modifications:\n{}", DebugUtil.debugDumpLazily(modifications));
 
         if (modifications.isEmpty()) {
-            return modifications; // no need to execute any update
+            if (!forceRewrite) {
+                return modifications; // no need to execute any update
+            }
+            incrementVersion = false;
         }
 
         cidGenerator = new ContainerValueIdGenerator()
@@ -141,15 +157,20 @@ public class RootUpdateContext<S extends ObjectType, Q extends QObject<R>, R ext
     /**
      * Executes all necessary SQL updates (including sub-entity inserts/deletes)
      * for the enclosed {@link #object}.
-     * This also increments the version information and serializes `fullObject`.
+     * This also increments the version information (unless this is a storage-only rewrite),
+     * serializes `fullObject` and refreshes `fullTextInfo`.
      */
     protected void finishExecutionOwn() throws SchemaException, RepositoryException {
-        int newVersion = objectVersionAsInt(object) + 1;
-        object.setVersion(String.valueOf(newVersion));
-        update.set(rootPath.version, newVersion);
+        if (incrementVersion) {
+            int newVersion = objectVersionAsInt(object) + 1;
+            object.setVersion(String.valueOf(newVersion));
+            update.set(rootPath.version, newVersion);
+        }
 
         update.set(rootPath.containerIdSeq, cidGenerator.lastUsedId() + 1);
         update.set(rootPath.fullObject, mapping.createFullObject(object));
+        // full-text info is cheap to compute from the modified object, we always refresh it
+        update.set(rootPath.fullTextInfo, mapping.createFullTextInfo(object));
 
         long rows = update.execute();
         if (rows != 1) {
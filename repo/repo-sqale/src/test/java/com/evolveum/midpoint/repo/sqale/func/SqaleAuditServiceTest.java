@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.datatype.Duration;
+
+import org.apache.commons.configuration2.BaseHierarchicalConfiguration;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.audit.api.AuditEventStage;
+import com.evolveum.midpoint.audit.api.AuditEventType;
+import com.evolveum.midpoint.audit.api.AuditReferenceValue;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditServiceConfiguration;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.MAuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditDelta;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditRefValue;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.task.api.test.NullTaskImpl;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordCustomColumnPropertyType;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventTypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CleanupPolicyType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultStatusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests of {@link SqaleAuditService}, requires audit tables created by `pgnew-audit.sql`.
+ */
+public class SqaleAuditServiceTest extends SqaleRepoBaseTest {
+
+    private final QAuditEventRecord qAuditEvent = new QAuditEventRecord("aer");
+    private final QAuditDelta qAuditDelta = new QAuditDelta("ad");
+    private final QAuditRefValue qAuditRef = new QAuditRefValue("ar");
+
+    @BeforeClass
+    public void clearAudit() {
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.executeStatement("TRUNCATE ma_audit_event;");
+            jdbcSession.executeStatement("TRUNCATE ma_audit_delta;");
+            jdbcSession.executeStatement("TRUNCATE ma_audit_ref;");
+            jdbcSession.commit();
+        }
+    }
+
+    @Test
+    public void test100SynchronousAuditStoresRecordWithDeltasAndRefs() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("audit record with delta, properties and references");
+        String eventIdentifier = "event-" + getTestNameShort();
+        AuditEventRecord record = createRecord(eventIdentifier, Instant.now());
+
+        when("the record is audited");
+        auditService.audit(record, NullTaskImpl.INSTANCE, result);
+
+        then("event row is stored immediately with its deltas and references");
+        MAuditEventRecord row = selectOne(qAuditEvent,
+                qAuditEvent.eventIdentifier.eq(eventIdentifier));
+        assertThat(row.eventType).isEqualTo(AuditEventTypeType.MODIFY_OBJECT);
+        assertThat(row.outcome).isEqualTo(OperationResultStatusType.SUCCESS);
+        assertThat(row.changedItemPaths).isNotEmpty();
+        assertThat(row.properties).isNotNull();
+        assertThat(row.properties.value).contains("prop-value");
+        assertThat(count(qAuditDelta, qAuditDelta.recordId.eq(row.id))).isEqualTo(1);
+        assertThat(count(qAuditRef, qAuditRef.recordId.eq(row.id))).isEqualTo(2);
+    }
+
+    @Test
+    public void test200AsynchronousAuditStoresAllRecordsOnDestroy() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("asynchronous");
+
+        given("many audit records");
+        String eventIdentifierPrefix = "event-" + getTestNameShort();
+        int recordCount = 1000;
+
+        when("records are audited asynchronously and the service is destroyed");
+        for (int i = 0; i < recordCount; i++) {
+            auditService.audit(createRecord(eventIdentifierPrefix + "-" + i, Instant.now()),
+                    NullTaskImpl.INSTANCE, result);
+        }
+        auditService.destroy();
+
+        then("all the records are stored");
+        assertThat(count(qAuditEvent,
+                qAuditEvent.eventIdentifier.startsWith(eventIdentifierPrefix)))
+                .isEqualTo(recordCount);
+    }
+
+    @Test
+    public void test210AsynchronousAuditRejectsRecordsAfterDestroy() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("asynchronous");
+
+        given("destroyed asynchronous audit service");
+        String eventIdentifier = "event-" + getTestNameShort();
+        auditService.destroy();
+
+        expect("record audited after destroy is rejected and not stored");
+        assertThatThrownBy(() -> auditService.audit(createRecord(eventIdentifier, Instant.now()),
+                NullTaskImpl.INSTANCE, result))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(count(qAuditEvent, qAuditEvent.eventIdentifier.eq(eventIdentifier))).isZero();
+    }
+
+    @Test
+    public void test220AsynchronousAuditStoresAllAcceptedRecordsWhenDestroyedConcurrently()
+            throws Exception {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("asynchronous");
+
+        given("threads auditing records until the service rejects them");
+        String eventIdentifierPrefix = "event-" + getTestNameShort();
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String threadPrefix = eventIdentifierPrefix + "-" + t + "-";
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; ; i++) {
+                        auditService.audit(createRecord(threadPrefix + i, Instant.now()),
+                                NullTaskImpl.INSTANCE, result);
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // expected, service is destroyed
+                } catch (SchemaException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        when("the service is destroyed while the threads are still auditing");
+        Thread.sleep(500);
+        auditService.destroy();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+
+        then("all the accepted records are stored");
+        assertThat(threads).noneMatch(Thread::isAlive);
+        assertThat(accepted.get()).isPositive();
+        assertThat(count(qAuditEvent,
+                qAuditEvent.eventIdentifier.startsWith(eventIdentifierPrefix)))
+                .isEqualTo(accepted.get());
+    }
+
+    @Test
+    public void test300CleanupByMaxAgeRemovesOldRecords() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("old and new audit records");
+        String oldEventIdentifier = "old-event-" + getTestNameShort();
+        String newEventIdentifier = "new-event-" + getTestNameShort();
+        auditService.audit(createRecord(oldEventIdentifier,
+                Instant.now().minus(100, ChronoUnit.DAYS)), NullTaskImpl.INSTANCE, result);
+        auditService.audit(createRecord(newEventIdentifier, Instant.now()),
+                NullTaskImpl.INSTANCE, result);
+
+        when("cleanup with max age is executed");
+        Duration maxAge = XmlTypeConverter.createDuration("P30D");
+        auditService.cleanupAudit(new CleanupPolicyType().maxAge(maxAge), result);
+
+        then("old records are removed including related rows, new records are kept");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(count(qAuditEvent, qAuditEvent.eventIdentifier.eq(oldEventIdentifier)))
+                .isZero();
+        assertThat(count(qAuditDelta,
+                qAuditDelta.timestamp.lt(Instant.now().minus(30, ChronoUnit.DAYS)))).isZero();
+        assertThat(count(qAuditEvent, qAuditEvent.eventIdentifier.eq(newEventIdentifier)))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void test310CleanupByMaxRecordsKeepsNewestRecords() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("a few records with different timestamps");
+        String eventIdentifierPrefix = "event-" + getTestNameShort();
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            auditService.audit(createRecord(eventIdentifierPrefix + "-" + i,
+                    now.plus(i, ChronoUnit.SECONDS)), NullTaskImpl.INSTANCE, result);
+        }
+
+        when("cleanup with max records is executed");
+        auditService.cleanupAudit(new CleanupPolicyType().maxRecords(2), result);
+
+        then("only the newest records are kept");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(count(qAuditEvent)).isEqualTo(2);
+        assertThat(count(qAuditEvent,
+                qAuditEvent.eventIdentifier.in(
+                        eventIdentifierPrefix + "-3", eventIdentifierPrefix + "-4")))
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void test400SearchObjectsReturnsRecordWithDetails() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("audited record with custom column property");
+        String eventIdentifier = "event-" + getTestNameShort();
+        AuditEventRecord record = createRecord(eventIdentifier, Instant.now());
+        record.getCustomColumnProperty().put("foo", "foo-value");
+        auditService.audit(record, NullTaskImpl.INSTANCE, result);
+
+        when("the record is searched by event identifier");
+        SearchResultList<AuditEventRecordType> records = auditService.searchObjects(
+                prismContext.queryFor(AuditEventRecordType.class)
+                        .item(AuditEventRecordType.F_EVENT_IDENTIFIER).eq(eventIdentifier)
+                        .build(),
+                null, result);
+
+        then("the record is found with its deltas, references and properties");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(records).hasSize(1);
+        AuditEventRecordType found = records.get(0);
+        assertThat(found.getEventType()).isEqualTo(AuditEventTypeType.MODIFY_OBJECT);
+        assertThat(found.getOutcome()).isEqualTo(OperationResultStatusType.SUCCESS);
+        assertThat(found.getDelta()).hasSize(1);
+        assertThat(found.getDelta().get(0).getObjectDelta()).isNotNull();
+        assertThat(found.getReference()).hasSize(1);
+        assertThat(found.getReference().get(0).getValue()).hasSize(2);
+        assertThat(found.getProperty()).hasSize(1);
+        assertThat(found.getProperty().get(0).getValue()).containsExactly("prop-value");
+        assertThat(found.getCustomColumnProperty()).hasSize(1);
+        assertThat(found.getCustomColumnProperty().get(0).getName()).isEqualTo("foo");
+        assertThat(found.getCustomColumnProperty().get(0).getValue()).isEqualTo("foo-value");
+    }
+
+    @Test
+    public void test410CountObjectsByCustomColumnProperty() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("records with different custom column property values");
+        String eventIdentifierPrefix = "event-" + getTestNameShort();
+        for (int i = 0; i < 3; i++) {
+            AuditEventRecord record =
+                    createRecord(eventIdentifierPrefix + "-" + i, Instant.now());
+            record.getCustomColumnProperty().put("foo", i == 0 ? "other" : eventIdentifierPrefix);
+            auditService.audit(record, NullTaskImpl.INSTANCE, result);
+        }
+
+        expect("count by custom column property returns only matching records");
+        assertThat(auditService.countObjects(
+                prismContext.queryFor(AuditEventRecordType.class)
+                        .item(AuditEventRecordType.F_CUSTOM_COLUMN_PROPERTY)
+                        .eq(new AuditEventRecordCustomColumnPropertyType()
+                                .name("foo").value(eventIdentifierPrefix))
+                        .build(),
+                null, result))
+                .isEqualTo(2);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test420ListRecordsWithNativeQuery() throws SchemaException {
+        OperationResult result = createOperationResult();
+        SqaleAuditService auditService = createAuditService("synchronous");
+
+        given("a few audited records");
+        String eventIdentifierPrefix = "event-" + getTestNameShort();
+        Instant now = Instant.now();
+        for (int i = 0; i < 3; i++) {
+            AuditEventRecord record = createRecord(eventIdentifierPrefix + "-" + i,
+                    now.plus(i, ChronoUnit.SECONDS));
+            record.getCustomColumnProperty().put("foo", "foo-" + i);
+            auditService.audit(record, NullTaskImpl.INSTANCE, result);
+        }
+
+        when("records are listed using native query with parameters and paging");
+        Map<String, Object> params = new HashMap<>();
+        params.put("prefix", eventIdentifierPrefix + "%");
+        params.put("setFirstResult", 1);
+        params.put("setMaxResults", 5);
+        List<AuditEventRecord> records = auditService.listRecords(
+                "select aer.id from ma_audit_event aer where aer.eventIdentifier like :prefix"
+                        + " order by aer.timestamp desc",
+                params, result);
+
+        then("records are returned in the query order with all the details");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(records).extracting(AuditEventRecord::getEventIdentifier)
+                .containsExactly(eventIdentifierPrefix + "-1", eventIdentifierPrefix + "-0");
+        AuditEventRecord record = records.get(0);
+        assertThat(record.getDeltas()).hasSize(1);
+        assertThat(record.getReferenceValues("ref")).hasSize(2);
+        assertThat(record.getPropertyValues("prop")).containsExactly("prop-value");
+        assertThat(record.getCustomColumnProperty()).containsEntry("foo", "foo-1");
+
+        and("native count query returns the number of the records");
+        assertThat(auditService.countObjects(
+                "select count(*) from ma_audit_event aer where aer.eventIdentifier like :prefix",
+                Map.of("prefix", eventIdentifierPrefix + "%")))
+                .isEqualTo(3);
+    }
+
+    private SqaleAuditService createAuditService(String durability) {
+        BaseHierarchicalConfiguration configuration = new BaseHierarchicalConfiguration();
+        configuration.setProperty(SqaleAuditServiceConfiguration.PROPERTY_DURABILITY, durability);
+        configuration.setProperty(SqaleAuditServiceConfiguration.PROPERTY_FLUSH_BATCH_SIZE, 50);
+        return new SqaleAuditService(sqlRepoContext, repositoryService.getPerformanceMonitor(),
+                new SqaleAuditServiceConfiguration(configuration));
+    }
+
+    private AuditEventRecord createRecord(String eventIdentifier, Instant timestamp)
+            throws SchemaException {
+        AuditEventRecord record = new AuditEventRecord(
+                AuditEventType.MODIFY_OBJECT, AuditEventStage.EXECUTION);
+        record.setEventIdentifier(eventIdentifier);
+        record.setTimestamp(timestamp.toEpochMilli());
+        record.setOutcome(OperationResultStatus.SUCCESS);
+
+        String userOid = UUID.randomUUID().toString();
+        ObjectDelta<UserType> delta = prismContext.deltaFor(UserType.class)
+                .item(UserType.F_NAME).replace(PolyString.fromOrig("new-name"))
+                .asObjectDelta(userOid);
+        record.addDelta(new ObjectDeltaOperation<>(delta));
+
+        record.addPropertyValue("prop", "prop-value");
+        record.addReferenceValue("ref", new AuditReferenceValue(
+                userOid, UserType.COMPLEX_TYPE, PolyString.fromOrig("user")));
+        record.addReferenceValue("ref", new AuditReferenceValue(
+                UUID.randomUUID().toString(), UserType.COMPLEX_TYPE, PolyString.fromOrig("user2")));
+        return record;
+    }
+}
@@ -20,6 +20,8 @@ import javax.xml.namespace.QName;
 
 import org.testng.annotations.Test;
 
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.BatchItemResult;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
@@ -1433,6 +1435,68 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
 
     // endregion
 
+    // region batch add tests
+    @Test
+    public void test870AddObjectsStoresAllObjects() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("users and a role without OIDs");
+        String prefix = "batch" + getTestNumber() + "-";
+        List<PrismObject<? extends ObjectType>> objects = List.of(
+                new UserType(prismContext).name(prefix + "user1")
+                        .assignment(new AssignmentType(prismContext)
+                                .targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE))
+                        .asPrismObject(),
+                new RoleType(prismContext).name(prefix + "role").asPrismObject(),
+                new UserType(prismContext).name(prefix + "user2").asPrismObject());
+
+        when("objects are added using the batch operation");
+        List<BatchItemResult> batchResults = repositoryService.addObjects(objects, null, result);
+
+        then("all objects are added in the provided order");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(batchResults).hasSize(3).allMatch(r -> r.isSuccess());
+        for (int i = 0; i < objects.size(); i++) {
+            assertThat(batchResults.get(i).getOid()).isEqualTo(objects.get(i).getOid());
+        }
+
+        and("rows including sub-entities are stored");
+        MUser user1Row = selectObjectByOid(QUser.class, batchResults.get(0).getOid());
+        assertThat(user1Row.nameOrig).isEqualTo(prefix + "user1");
+        assertThat(user1Row.version).isEqualTo(1);
+        QAssignment<?> a = QAssignmentMapping.getAssignment().defaultAlias();
+        assertThat(select(a, a.ownerOid.eq(user1Row.oid))).hasSize(1);
+        assertThat(selectObjectByOid(QObject.CLASS, batchResults.get(1).getOid()).objectType)
+                .isEqualTo(MObjectType.ROLE);
+    }
+
+    @Test
+    public void test871AddObjectsWithConflictingNameFailsOnlyForThatObject() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("batch with a user name that already exists");
+        String prefix = "batch" + getTestNumber() + "-";
+        repositoryService.addObject(
+                new UserType(prismContext).name(prefix + "existing").asPrismObject(), null, result);
+        List<PrismObject<? extends ObjectType>> objects = List.of(
+                new UserType(prismContext).name(prefix + "user1").asPrismObject(),
+                new UserType(prismContext).name(prefix + "existing").asPrismObject(),
+                new UserType(prismContext).name(prefix + "user2").asPrismObject());
+
+        when("objects are added using the batch operation");
+        List<BatchItemResult> batchResults = repositoryService.addObjects(objects, null, result);
+
+        then("only the conflicting object fails, others are added");
+        assertThat(batchResults).hasSize(3);
+        assertThat(batchResults.get(0).isSuccess()).isTrue();
+        assertThat(batchResults.get(1).getException())
+                .isInstanceOf(ObjectAlreadyExistsException.class);
+        assertThat(batchResults.get(2).isSuccess()).isTrue();
+        QUser u = aliasFor(QUser.class);
+        assertThat(select(u, u.nameOrig.startsWith(prefix))).hasSize(3);
+    }
+    // endregion
+
     // region delete tests
     // when we get here we have couple of users and some other types stored in the repository
     @Test
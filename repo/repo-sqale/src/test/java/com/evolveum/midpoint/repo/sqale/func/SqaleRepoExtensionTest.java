@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.ItemName;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemCardinality;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.MExtItemHolderType;
+import com.evolveum.midpoint.repo.sqale.qmodel.ext.QExtItem;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ExtensionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.GenericObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Tests of extension items stored in `ext` JSONB column, both storing and searching.
+ * Uses generic object extension from the test `extension.xsd` schema.
+ */
+public class SqaleRepoExtensionTest extends SqaleRepoBaseTest {
+
+    private static final String EXTENSION_NAMESPACE = "http://example.com/p";
+
+    private String generic1Oid;
+    private String generic2Oid;
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        OperationResult result = createOperationResult();
+
+        GenericObjectType generic1 = new GenericObjectType(prismContext).name("generic-1");
+        ExtensionType extension1 = new ExtensionType(prismContext);
+        generic1.extension(extension1);
+        addExtensionValue(extension1, "stringType", "string-value");
+        addExtensionValue(extension1, "intType", 1);
+        addExtensionValue(extension1, "multivalued", "multi-1", "multi-2");
+        generic1Oid = repositoryService.addObject(generic1.asPrismObject(), null, result);
+
+        GenericObjectType generic2 = new GenericObjectType(prismContext).name("generic-2");
+        ExtensionType extension2 = new ExtensionType(prismContext);
+        generic2.extension(extension2);
+        addExtensionValue(extension2, "stringType", "other-value");
+        addExtensionValue(extension2, "intType", 10);
+        generic2Oid = repositoryService.addObject(generic2.asPrismObject(), null, result);
+
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test100ExtensionItemsAreStoredInCatalogAndExtColumn() {
+        expect("catalog contains the stored items with proper cardinality");
+        QExtItem ei = QExtItem.DEFAULT;
+        MExtItem stringItem = selectOne(ei, ei.itemName.eq(EXTENSION_NAMESPACE + "#stringType"));
+        assertThat(stringItem.holderType).isEqualTo(MExtItemHolderType.EXTENSION);
+        assertThat(stringItem.cardinality).isEqualTo(MExtItemCardinality.SCALAR);
+        MExtItem multiItem = selectOne(ei, ei.itemName.eq(EXTENSION_NAMESPACE + "#multivalued"));
+        assertThat(multiItem.cardinality).isEqualTo(MExtItemCardinality.ARRAY);
+
+        and("ext column contains the values keyed by catalog ID");
+        MObject row = selectObjectByOid(QObject.CLASS, generic1Oid);
+        assertThat(row.ext).isNotNull();
+        assertThat(row.ext.value)
+                .contains("\"" + stringItem.id + "\":\"string-value\"")
+                .contains("\"" + multiItem.id + "\":[\"multi-1\",\"multi-2\"]");
+    }
+
+    @Test
+    public void test200SearchByStringExtensionItemEquality() throws SchemaException {
+        expect("equality filter on string extension item finds the matching object");
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("stringType")).eq("string-value")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic1Oid);
+    }
+
+    @Test
+    public void test210SearchByMultiValuedExtensionItem() throws SchemaException {
+        expect("equality filter on multi-value item matches any of its values");
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("multivalued")).eq("multi-2")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic1Oid);
+    }
+
+    @Test
+    public void test220SearchByNumericExtensionItemComparison() throws SchemaException {
+        expect("comparison filter on numeric item compares numbers, not strings");
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("intType")).gt(2)
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic2Oid);
+    }
+
+    @Test
+    public void test230SearchByMissingExtensionItemValue() throws SchemaException {
+        expect("equality filter with no value finds objects without the item");
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("multivalued")).isNull()
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic2Oid);
+    }
+
+    @Test
+    public void test240SearchByExtensionItemExistence() throws SchemaException {
+        expect("exists filter finds objects with any value of the item");
+        assertThat(searchGenerics(prismContext.queryFactory().createQuery(
+                parseFilter("extension/p:multivalued exists"))))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic1Oid);
+
+        and("negated exists filter finds objects without the item");
+        assertThat(searchGenerics(prismContext.queryFactory().createQuery(
+                prismContext.queryFactory().createNot(
+                        parseFilter("extension/p:multivalued exists")))))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic2Oid);
+
+        and("exists filter for item that was never stored finds nothing");
+        assertThat(searchGenerics(prismContext.queryFactory().createQuery(
+                parseFilter("extension/p:longType exists"))))
+                .isEmpty();
+    }
+
+    @Test
+    public void test300ModifyExtensionItemUpdatesExtColumn() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("delta replacing extension string value");
+        ItemDelta<?, ?> delta = prismContext.deltaFor(GenericObjectType.class)
+                .item(extensionPath("stringType")).replace("modified-value")
+                .asItemDelta();
+
+        when("object is modified");
+        repositoryService.modifyObject(GenericObjectType.class, generic2Oid,
+                List.of(delta), result);
+
+        then("search by the new value finds the object");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("stringType")).eq("modified-value")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(generic2Oid);
+        assertThat(searchGenerics(prismContext.queryFor(GenericObjectType.class)
+                .item(extensionPath("stringType")).eq("other-value")
+                .build()))
+                .isEmpty();
+    }
+
+    private ItemPath extensionPath(String itemName) {
+        return ItemPath.create(ObjectType.F_EXTENSION, new QName(EXTENSION_NAMESPACE, itemName));
+    }
+
+    private ObjectFilter parseFilter(String query) throws SchemaException {
+        return prismContext.createQueryParser(Map.of("p", EXTENSION_NAMESPACE))
+                .parseQuery(GenericObjectType.class, query);
+    }
+
+    private SearchResultList<GenericObjectType> searchGenerics(ObjectQuery query)
+            throws SchemaException {
+        OperationResult operationResult = createOperationResult();
+        SearchResultList<GenericObjectType> result =
+                repositoryService.searchObjects(GenericObjectType.class, query, null, operationResult)
+                        .map(p -> p.asObjectable());
+        assertThatOperationResult(operationResult).isSuccess();
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addExtensionValue(
+            Containerable extension, String itemName, Object... values) throws SchemaException {
+        PrismContainerValue<?> pcv = extension.asPrismContainerValue();
+        ItemDefinition<?> itemDefinition = pcv.getDefinition()
+                .findItemDefinition(new ItemName(EXTENSION_NAMESPACE, itemName));
+        PrismProperty<Object> property =
+                (PrismProperty<Object>) itemDefinition.instantiate();
+        for (Object value : values) {
+            property.addRealValue(value);
+        }
+        pcv.add(property);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.MUser;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUser;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FullTextSearchConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FullTextSearchIndexedItemsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+
+/**
+ * Tests of full-text search using `fullTextInfo` column.
+ * Full-text configuration is applied directly to the repository service for this class only.
+ */
+public class SqaleRepoFullTextSearchTest extends SqaleRepoBaseTest {
+
+    private String user1Oid;
+    private String user2Oid;
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        repositoryService.applyFullTextSearchConfiguration(new FullTextSearchConfigurationType()
+                .indexed(new FullTextSearchIndexedItemsConfigurationType()
+                        .objectType(UserType.COMPLEX_TYPE)
+                        .item(new ItemPathType(UserType.F_NAME))
+                        .item(new ItemPathType(UserType.F_DESCRIPTION))));
+
+        OperationResult result = createOperationResult();
+        user1Oid = repositoryService.addObject(
+                new UserType(prismContext).name("jack")
+                        .description("Captain Jack Sparrow")
+                        .asPrismObject(),
+                null, result);
+        user2Oid = repositoryService.addObject(
+                new UserType(prismContext).name("will")
+                        .description("Will Turner, blacksmith")
+                        .asPrismObject(),
+                null, result);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @AfterClass
+    public void resetFullTextConfiguration() {
+        repositoryService.applyFullTextSearchConfiguration(null);
+    }
+
+    @Test
+    public void test100FullTextInfoIsStoredWithNormalizedWords() {
+        expect("full-text info contains normalized words from configured items");
+        MUser row = selectObjectByOid(QUser.class, user1Oid);
+        assertThat(row.fullTextInfo)
+                .startsWith(" ")
+                .endsWith(" ")
+                .contains(" jack ", " captain ", " sparrow ");
+    }
+
+    @Test
+    public void test200SearchByWordPart() throws SchemaException {
+        expect("full-text filter matches part of the indexed word");
+        assertThat(searchUsers(prismContext.queryFor(UserType.class)
+                .fullText("smith")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(user2Oid);
+    }
+
+    @Test
+    public void test210SearchByMultipleWordsRequiresAllOfThem() throws SchemaException {
+        expect("all the words from full-text filter must be matched");
+        assertThat(searchUsers(prismContext.queryFor(UserType.class)
+                .fullText("Jack SPARROW")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(user1Oid);
+        assertThat(searchUsers(prismContext.queryFor(UserType.class)
+                .fullText("jack turner")
+                .build()))
+                .isEmpty();
+    }
+
+    @Test
+    public void test300ModifyObjectUpdatesFullTextInfo() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("delta changing indexed description");
+        List<ItemDelta<?, ?>> modifications = prismContext.deltaFor(UserType.class)
+                .item(UserType.F_DESCRIPTION).replace("Pirate of the Caribbean")
+                .asItemDeltas();
+
+        when("object is modified");
+        repositoryService.modifyObject(UserType.class, user1Oid, modifications, result);
+
+        then("full-text search reflects the new value");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(searchUsers(prismContext.queryFor(UserType.class)
+                .fullText("caribbean")
+                .build()))
+                .extracting(o -> o.getOid())
+                .containsExactly(user1Oid);
+        assertThat(searchUsers(prismContext.queryFor(UserType.class)
+                .fullText("sparrow")
+                .build()))
+                .isEmpty();
+    }
+
+    private SearchResultList<UserType> searchUsers(ObjectQuery query) throws SchemaException {
+        OperationResult operationResult = createOperationResult();
+        SearchResultList<UserType> result =
+                repositoryService.searchObjects(UserType.class, query, null, operationResult)
+                        .map(p -> p.asObjectable());
+        assertThatOperationResult(operationResult).isSuccess();
+        return result;
+    }
+}
@@ -23,6 +23,7 @@ import com.evolveum.midpoint.prism.Item;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
 import com.evolveum.midpoint.repo.sqale.qmodel.assignment.*;
@@ -39,6 +40,7 @@ import com.evolveum.midpoint.repo.sqale.qmodel.shadow.MShadow;
 import com.evolveum.midpoint.repo.sqale.qmodel.shadow.QShadow;
 import com.evolveum.midpoint.repo.sqale.qmodel.task.MTask;
 import com.evolveum.midpoint.repo.sqale.qmodel.task.QTask;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.MiscUtil;
@@ -2390,6 +2392,42 @@ public class SqaleRepoModifyObjectTest extends SqaleRepoBaseTest {
         assertSingleOperationRecorded(pm, RepositoryService.OP_MODIFY_OBJECT);
     }
 
+    @Test
+    public void test930ForcedReindexRefreshesColumnsWithoutModifications()
+            throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
+        OperationResult result = createOperationResult();
+
+        given("user with stale derived column");
+        MUser originalRow = selectObjectByOid(QUser.class, user1Oid);
+        QUser u = aliasFor(QUser.class);
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.newUpdate(u)
+                    .set(u.emailAddress, "stale@example.com")
+                    .where(u.oid.eq(originalRow.oid))
+                    .execute();
+            jdbcSession.commit();
+        }
+        UserType userBefore = repositoryService.getObject(UserType.class, user1Oid, null, result)
+                .asObjectable();
+
+        when("modifyObject is called with no modifications and forced reindex");
+        repositoryService.modifyObject(UserType.class, user1Oid, List.of(),
+                RepoModifyOptions.createForceReindex(), result);
+
+        then("operation is successful");
+        assertThatOperationResult(result).isSuccess();
+
+        and("derived column is refreshed from fullObject and version is not changed");
+        MUser row = selectObjectByOid(QUser.class, user1Oid);
+        assertThat(row.version).isEqualTo(originalRow.version);
+        assertThat(row.emailAddress).isEqualTo(originalRow.emailAddress);
+        UserType userAfter = repositoryService.getObject(UserType.class, user1Oid, null, result)
+                .asObjectable();
+        assertThat(userAfter.getName()).isEqualTo(userBefore.getName());
+        assertThat(userAfter.getEmailAddress()).isEqualTo(userBefore.getEmailAddress());
+        assertThat(userAfter.getVersion()).isEqualTo(String.valueOf(originalRow.version));
+    }
+
     @Test
     public void test990ChangeOfNonPersistedAttributeWorksOk()
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
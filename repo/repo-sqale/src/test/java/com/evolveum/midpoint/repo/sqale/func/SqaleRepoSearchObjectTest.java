@@ -9,8 +9,17 @@ package com.evolveum.midpoint.repo.sqale.func;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.xml.namespace.QName;
 
 import org.jetbrains.annotations.NotNull;
@@ -21,12 +30,16 @@ import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.sqale.SqaleQueryContext;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
 import com.evolveum.midpoint.repo.sqale.qmodel.focus.QFocus;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.QAssignmentHolder;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.role.QService;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryExecutor;
 import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SearchResultList;
@@ -826,6 +839,124 @@ AND(
 */
     // endregion
 
+    // region iterative search
+    @Test
+    public void test400SearchObjectsIterativeHandlesAllObjectsOrderedByOid() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("query for all focus objects");
+        ObjectQuery query = prismContext.queryFor(FocusType.class).build();
+
+        when("iterative search is called");
+        List<String> handledOids = new ArrayList<>();
+        repositoryService.searchObjectsIterative(FocusType.class, query,
+                (object, result) -> handledOids.add(object.getOid()),
+                null, true, operationResult);
+
+        then("all objects are handled in OID order");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(handledOids).hasSize((int) count(QFocus.CLASS));
+        assertThat(handledOids)
+                .isSortedAccordingTo(Comparator.comparing(UUID::fromString));
+    }
+
+    @Test
+    public void test401SearchObjectsIterativeWithFilterAndMaxSize() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("query for users with costCenter and max size");
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .item(UserType.F_COST_CENTER).startsWith("5")
+                .maxSize(1)
+                .build();
+
+        when("iterative search is called");
+        List<String> handledOids = new ArrayList<>();
+        repositoryService.searchObjectsIterative(UserType.class, query,
+                (object, result) -> handledOids.add(object.getOid()),
+                null, true, operationResult);
+
+        then("only one of the matching users is handled");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(handledOids).hasSize(1)
+                .containsAnyOf(user3Oid, user4Oid);
+    }
+
+    @Test
+    public void test402SearchObjectsIterativeStopsWhenHandlerReturnsFalse() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        when("iterative search is called with handler stopping after the second object");
+        List<String> handledOids = new ArrayList<>();
+        repositoryService.searchObjectsIterative(ObjectType.class, null,
+                (object, result) -> {
+                    handledOids.add(object.getOid());
+                    return handledOids.size() < 2;
+                },
+                null, false, operationResult);
+
+        then("iteration stops after the second object");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(handledOids).hasSize(2);
+    }
+
+    @Test
+    public void test403SearchObjectsIterativeWithCustomOrdering() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("query for users ordered by name descending");
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .desc(UserType.F_NAME)
+                .build();
+
+        when("non-sequential iterative search is called");
+        List<String> handledNames = new ArrayList<>();
+        repositoryService.searchObjectsIterative(UserType.class, query,
+                (object, result) -> handledNames.add(object.getName().getOrig()),
+                null, false, operationResult);
+
+        then("users are handled in the specified order");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(handledNames).containsExactly("user-4", "user-3", "user-2", "user-1");
+    }
+
+    @Test
+    public void test404StrictlySequentialIterativeSearchWithCustomOrderingIsNotSupported() {
+        OperationResult operationResult = createOperationResult();
+
+        given("query with custom ordering");
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .asc(UserType.F_NAME)
+                .build();
+
+        expect("strictly sequential iterative search fails");
+        assertThatThrownBy(() -> repositoryService.searchObjectsIterative(
+                UserType.class, query, (object, result) -> true,
+                null, true, operationResult))
+                .isInstanceOf(SystemException.class)
+                .hasMessageContaining("not supported on strictly sequential");
+    }
+
+    @Test
+    public void test405SearchObjectsIterativeUpdatesPerformanceMonitor() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("cleared performance information");
+        SqlPerformanceMonitorImpl pm = repositoryService.getPerformanceMonitor();
+        pm.clearGlobalPerformanceInformation();
+
+        when("iterative search is called on the repository");
+        repositoryService.searchObjectsIterative(FocusType.class, null,
+                (object, result) -> true, null, true, operationResult);
+
+        then("performance monitor is updated for the operation and its pages");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(pm.getGlobalPerformanceInformation().getAllData())
+                .containsKeys(RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE,
+                        SqlQueryExecutor.OP_ITERATION_PAGE);
+    }
+    // endregion
+
     // region special cases
     @Test
     public void test900SearchByWholeContainerIsNotPossible() {
@@ -921,10 +1052,168 @@ AND(
         System.out.println("focusTypes = " + focusTypes);
         // even if query was possible this would fail in the actual repo search, which is expected
     }
+
+    @Test
+    public void test970SearchReturnsPlaceholderForUnreadableObject() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("service with corrupted full object");
+        String oid = repositoryService.addObject(
+                new ServiceType(prismContext).name("unreadable-service").asPrismObject(),
+                null, operationResult);
+        QService s = aliasFor(QService.class);
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.newUpdate(s)
+                    .set(s.fullObject, "<corrupted".getBytes(StandardCharsets.UTF_8))
+                    .where(s.oid.eq(UUID.fromString(oid)))
+                    .execute();
+            jdbcSession.commit();
+        }
+
+        try {
+            when("search returning the object and other services is executed");
+            SearchResultList<ServiceType> result = searchObjects(ServiceType.class,
+                    prismContext.queryFor(ServiceType.class).build(), operationResult);
+
+            then("unreadable object is returned as placeholder with fetch result");
+            assertThat(result).hasSize(2);
+            ServiceType placeholder = result.stream()
+                    .filter(o -> o.getOid().equals(oid))
+                    .findFirst()
+                    .orElseThrow();
+            assertThat(placeholder.getName().getOrig()).isEqualTo("Unreadable object");
+            assertThat(placeholder.getFetchResult().getStatus())
+                    .isEqualTo(OperationResultStatusType.FATAL_ERROR);
+
+            and("the other object is returned normally and the search reports partial error");
+            assertThat(result).anyMatch(o -> o.getOid().equals(service1Oid)
+                    && o.getName().getOrig().equals("service-1"));
+            operationResult.computeStatus();
+            assertThat(operationResult.getStatus()).isEqualTo(OperationResultStatus.PARTIAL_ERROR);
+        } finally {
+            repositoryService.deleteObject(ServiceType.class, oid, createOperationResult());
+        }
+    }
+
+    @Test
+    public void test971SearchWithParsingPoolKeepsOrderAndReturnsPlaceholder() throws Exception {
+        given("services with one corrupted full object, enough of them to be parsed in the pool");
+        List<String> oids = addServicesForParsing();
+        String corruptedOid = oids.get(oids.size() / 2);
+        corruptFullObject(corruptedOid);
+        ExecutorService pool = createParsingPool(4, 100);
+
+        try {
+            when("search ordered by name is executed with the parsing pool");
+            SearchResultList<ServiceType> result = new SqlQueryExecutor(sqlRepoContext, null, pool)
+                    .list(SqaleQueryContext.from(ServiceType.class, sqlRepoContext),
+                            parsingTestQuery(), null);
+
+            then("objects are returned in the order of the query");
+            assertThat(result).extracting(o -> o.getOid()).containsExactlyElementsOf(oids);
+
+            and("unreadable object is returned as placeholder at its position");
+            ServiceType placeholder = result.get(oids.indexOf(corruptedOid));
+            assertThat(placeholder.getName().getOrig()).isEqualTo("Unreadable object");
+            assertThat(placeholder.getFetchResult().getStatus())
+                    .isEqualTo(OperationResultStatusType.FATAL_ERROR);
+            assertThat(result).filteredOn(o -> !o.getOid().equals(corruptedOid))
+                    .allMatch(o -> o.getName().getOrig().startsWith("parsing-service-"));
+        } finally {
+            pool.shutdownNow();
+            deleteServices(oids);
+        }
+    }
+
+    @Test
+    public void test972SearchWithFullParsingQueueParsesOnCallerThread() throws Exception {
+        given("services for parsing and a parsing pool with busy thread and full queue");
+        List<String> oids = addServicesForParsing();
+        ThreadPoolExecutor pool = createParsingPool(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        pool.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+        pool.execute(() -> {}); // fills the queue
+
+        try {
+            when("search is executed with the parsing pool");
+            SearchResultList<ServiceType> result = new SqlQueryExecutor(sqlRepoContext, null, pool)
+                    .list(SqaleQueryContext.from(ServiceType.class, sqlRepoContext),
+                            parsingTestQuery(), null);
+
+            then("all objects are parsed (on the caller thread) and returned in order");
+            assertThat(result).extracting(o -> o.getOid()).containsExactlyElementsOf(oids);
+            assertThat(result).allMatch(o -> o.getName().getOrig().startsWith("parsing-service-"));
+
+            and("the pool did not run anything except the two blocking tasks");
+            release.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(pool.getCompletedTaskCount()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+            deleteServices(oids);
+        }
+    }
     // endregion
 
     // support methods
 
+    /** Adds enough services to be parsed in parallel, returns OIDs in the order of their names. */
+    private List<String> addServicesForParsing() throws Exception {
+        OperationResult result = createOperationResult();
+        List<String> oids = new ArrayList<>();
+        for (int i = 0; i < SqlQueryExecutor.PARALLEL_TRANSFORMATION_THRESHOLD + 5; i++) {
+            oids.add(repositoryService.addObject(
+                    new ServiceType(prismContext)
+                            .name(String.format("parsing-service-%03d", i))
+                            .asPrismObject(),
+                    null, result));
+        }
+        return oids;
+    }
+
+    private ObjectQuery parsingTestQuery() {
+        return prismContext.queryFor(ServiceType.class)
+                .item(ServiceType.F_NAME).startsWith("parsing-service-")
+                .asc(ServiceType.F_NAME)
+                .build();
+    }
+
+    private void corruptFullObject(String oid) {
+        QService s = aliasFor(QService.class);
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.newUpdate(s)
+                    .set(s.fullObject, "<corrupted".getBytes(StandardCharsets.UTF_8))
+                    .where(s.oid.eq(UUID.fromString(oid)))
+                    .execute();
+            jdbcSession.commit();
+        }
+    }
+
+    private void deleteServices(List<String> oids) throws Exception {
+        for (String oid : oids) {
+            repositoryService.deleteObject(ServiceType.class, oid, createOperationResult());
+        }
+    }
+
+    /** Creates the pool just like the repository does, see SqaleRepositoryService. */
+    private ThreadPoolExecutor createParsingPool(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+
     /** Search objects using Axiom query language. */
     @SafeVarargs
     @NotNull
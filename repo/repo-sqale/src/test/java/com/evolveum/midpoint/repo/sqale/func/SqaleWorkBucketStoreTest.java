@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.SqaleWorkBucketStore;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.QTaskWorkBucket;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+public class SqaleWorkBucketStoreTest extends SqaleRepoBaseTest {
+
+    private static final String WORKER1_OID = "8a2e9d4c-1b7f-4e3a-9c5d-6f0e1a2b3c41";
+    private static final String WORKER2_OID = "8a2e9d4c-1b7f-4e3a-9c5d-6f0e1a2b3c42";
+
+    @Autowired private SqaleWorkBucketStore workBucketStore;
+
+    private String coordinatorOid;
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        OperationResult result = createOperationResult();
+        coordinatorOid = repositoryService.addObject(
+                new TaskType(prismContext).name("coordinator").asPrismObject(),
+                null, result);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test100AddBuckets() {
+        OperationResult result = createOperationResult();
+
+        when("three buckets are added");
+        boolean added = workBucketStore.addBuckets(coordinatorOid, newBuckets(1, 3), result);
+
+        then("buckets are stored as READY");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(added).isTrue();
+        List<WorkBucketType> buckets = workBucketStore.getBuckets(coordinatorOid, result);
+        assertThat(buckets)
+                .extracting(b -> b.getSequentialNumber())
+                .containsExactly(1, 2, 3);
+        assertThat(buckets)
+                .allMatch(b -> b.getState() == WorkBucketStateType.READY && b.getWorkerRef() == null);
+        assertThat(buckets.get(1).getContent()).isInstanceOf(NumericIntervalWorkBucketContentType.class);
+        assertThat(((NumericIntervalWorkBucketContentType) buckets.get(1).getContent()).getFrom())
+                .isEqualTo(BigInteger.valueOf(100));
+    }
+
+    @Test
+    public void test110AddConflictingBucketsAddsNothing() {
+        OperationResult result = createOperationResult();
+
+        when("buckets overlapping with the existing ones are added");
+        boolean added = workBucketStore.addBuckets(coordinatorOid, newBuckets(3, 4), result);
+
+        then("nothing is added");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(added).isFalse();
+        assertCount(QTaskWorkBucket.DEFAULT, 3);
+    }
+
+    @Test
+    public void test200ClaimBuckets() {
+        OperationResult result = createOperationResult();
+
+        when("up to two buckets are claimed by each of two workers");
+        List<WorkBucketType> claimed1 = workBucketStore.claimReadyBuckets(coordinatorOid, WORKER1_OID, 2, result);
+        List<WorkBucketType> claimed2 = workBucketStore.claimReadyBuckets(coordinatorOid, WORKER2_OID, 2, result);
+
+        then("buckets are delegated in the order of their numbers, each to one worker only");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(claimed1)
+                .extracting(b -> b.getSequentialNumber())
+                .containsExactly(1, 2);
+        assertThat(claimed1).allMatch(b -> b.getState() == WorkBucketStateType.DELEGATED
+                && b.getWorkerRef().getOid().equals(WORKER1_OID));
+        assertThat(claimed2)
+                .extracting(b -> b.getSequentialNumber())
+                .containsExactly(3);
+        assertThat(workBucketStore.claimReadyBuckets(coordinatorOid, WORKER1_OID, 2, result)).isEmpty();
+    }
+
+    @Test
+    public void test300CompleteBucketsCompactsOlderCompleteBuckets() {
+        OperationResult result = createOperationResult();
+
+        expect("bucket of other worker can't be completed");
+        assertThat(workBucketStore.completeBucket(coordinatorOid, WORKER2_OID, 1, result)).isFalse();
+
+        when("first two buckets are completed");
+        assertThat(workBucketStore.completeBucket(coordinatorOid, WORKER1_OID, 1, result)).isTrue();
+        assertThat(workBucketStore.completeBucket(coordinatorOid, WORKER1_OID, 2, result)).isTrue();
+
+        then("only the last complete bucket is kept");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(workBucketStore.getBuckets(coordinatorOid, result))
+                .extracting(b -> b.getSequentialNumber() + ":" + b.getState())
+                .containsExactly("2:COMPLETE", "3:DELEGATED");
+    }
+
+    @Test
+    public void test400ReleaseBucket() {
+        OperationResult result = createOperationResult();
+
+        when("delegated bucket is released");
+        boolean released = workBucketStore.releaseBucket(coordinatorOid, WORKER2_OID, 3, result);
+
+        then("it is READY again and can be claimed by other worker");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(released).isTrue();
+        assertThat(workBucketStore.releaseBucket(coordinatorOid, null, 3, result)).isFalse();
+        assertThat(workBucketStore.claimReadyBuckets(coordinatorOid, WORKER1_OID, 5, result))
+                .extracting(b -> b.getSequentialNumber())
+                .containsExactly(3);
+    }
+
+    @Test
+    public void test500DeleteBuckets() {
+        OperationResult result = createOperationResult();
+
+        when("buckets of the coordinator are deleted");
+        workBucketStore.deleteBuckets(coordinatorOid, result);
+
+        then("there are no buckets left");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(workBucketStore.getBuckets(coordinatorOid, result)).isEmpty();
+    }
+
+    private List<WorkBucketType> newBuckets(int from, int to) {
+        List<WorkBucketType> buckets = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            buckets.add(new WorkBucketType(prismContext)
+                    .sequentialNumber(i)
+                    .state(WorkBucketStateType.READY)
+                    .content(new NumericIntervalWorkBucketContentType(prismContext)
+                            .from(BigInteger.valueOf((i - 1) * 100L))
+                            .to(BigInteger.valueOf(i * 100L))));
+        }
+        return buckets;
+    }
+}
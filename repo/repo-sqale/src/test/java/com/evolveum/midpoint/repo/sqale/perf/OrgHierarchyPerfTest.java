@@ -9,8 +9,13 @@ package com.evolveum.midpoint.repo.sqale.perf;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -19,40 +24,54 @@ import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
 import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUser;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
 import com.evolveum.midpoint.repo.sqale.qmodel.org.QOrg;
 import com.evolveum.midpoint.repo.sqale.qmodel.org.QOrgClosure;
+import com.evolveum.midpoint.repo.sqale.qmodel.ref.QObjectReference;
+import com.evolveum.midpoint.repo.sqale.qmodel.ref.QObjectReferenceMapping;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.MetadataType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.query_3.QueryType;
 
-// TODO experimental, maybe temporary
-public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
+/**
+ * Creates org hierarchy with users and checks org closure maintenance and org queries.
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ */
+public class OrgHierarchyPerfTest extends SqaleRepoBaseTest
+        implements PerformanceTestClassMixin {
 
     public static final SecureRandom RANDOM = new SecureRandom();
 
+    public static final int MOVE_COUNT = 100;
+
+    private final List<OrgType> innerOrgs = new ArrayList<>();
+    private final List<OrgType> leafOrgs = new ArrayList<>();
+
     @BeforeClass
     public void initObjects() throws Exception {
         OperationResult result = createOperationResult();
 
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-            jdbcSession.executeStatement("CALL m_refresh_org_closure(true)");
-            jdbcSession.commit();
-        }
         assertThat(count(QOrg.CLASS)).isZero();
         assertThat(count(new QOrgClosure())).isZero();
 
-        createOrgsFor(null, 5, 6, result);
+        Stopwatch stopwatch = stopwatch("org.add", "Repository addObject(org/user) with closure");
+        try (Split ignored = stopwatch.start()) {
+            createOrgsFor(null, 5, 6, result);
+        }
 
         assertThatOperationResult(result).isSuccess();
     }
@@ -79,6 +98,7 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
             }
 
             repositoryService.addObject(org.asPrismObject(), null, result);
+            (levels > 1 ? innerOrgs : leafOrgs).add(org);
             createOrgsFor(org, levels - 1, typicalCountPerLevel, result);
         }
     }
@@ -99,12 +119,13 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
     }
 
     @Test
-    public void test100Xxx() throws Exception {
-        given("there are orgs and users, closure is not yet updated");
+    public void test100SearchUsersUnderOrg() throws Exception {
+        given("there are orgs and users, closure is maintained with them");
         OperationResult operationResult = createOperationResult();
         display("Orgs: " + count(QOrg.CLASS));
         display("Users: " + count(QUser.class));
-        assertThat(count(new QOrgClosure())).isZero();
+        display("Org closure: " + count(new QOrgClosure()));
+        assertThat(count(new QOrgClosure())).isGreaterThanOrEqualTo(count(QOrg.CLASS));
         OrgType org1x1x1 = searchObjects(OrgType.class,
                 prismContext.queryFor(OrgType.class)
                         .item(ObjectType.F_NAME).eq(PolyString.fromOrig("org1x1x1"))
@@ -118,12 +139,114 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
                         .build(),
                 operationResult);
 
-        then("non-empty result is returned and org closure has been initialized");
+        then("non-empty result is returned");
         assertThat(result).isNotEmpty();
-        assertThat(count(new QOrgClosure())).isPositive();
-        display("Orgs: " + count(QOrg.CLASS));
-        display("Org closure: " + count(new QOrgClosure()));
-        display("Users: " + count(QUser.class));
+    }
+
+    @Test
+    public void test200MoveOrgs() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("closure is consistent");
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        assertThatOperationResult(operationResult).isSuccess();
+
+        when("leaf orgs are moved under random inner orgs");
+        Stopwatch stopwatch = stopwatch("org.move", "Repository modifyObject(org) parentOrgRef");
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            OrgType org = leafOrgs.get(RANDOM.nextInt(leafOrgs.size()));
+            OrgType newParent = innerOrgs.get(RANDOM.nextInt(innerOrgs.size()));
+            try (Split ignored = stopwatch.start()) {
+                repositoryService.modifyObject(OrgType.class, org.getOid(),
+                        prismContext.deltaFor(OrgType.class)
+                                .item(ObjectType.F_PARENT_ORG_REF)
+                                .replace(new ObjectReferenceType()
+                                        .oid(newParent.getOid()).type(OrgType.COMPLEX_TYPE))
+                                .asItemDeltas(),
+                        operationResult);
+            }
+        }
+
+        then("closure is still consistent");
+        Stopwatch checkStopwatch = stopwatch("org.check", "Repository testOrgClosureConsistency");
+        try (Split ignored = checkStopwatch.start()) {
+            repositoryService.testOrgClosureConsistency(false, operationResult);
+        }
+        assertThatOperationResult(operationResult).isSuccess();
+    }
+
+    @Test
+    public void test210DeleteOrgWithChildren() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("inner org with children");
+        OrgType org = innerOrgs.remove(innerOrgs.size() - 1);
+
+        when("the org is deleted");
+        repositoryService.deleteObject(OrgType.class, org.getOid(), operationResult);
+
+        then("closure does not contain the org and is consistent");
+        QOrgClosure oc = new QOrgClosure();
+        assertThat(count(oc, oc.ancestorOid.eq(UUID.fromString(org.getOid()))
+                .or(oc.descendantOid.eq(UUID.fromString(org.getOid()))))).isZero();
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        assertThatOperationResult(operationResult).isSuccess();
+    }
+
+    @Test
+    public void test220UpdateParentRefInPlace() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("leaf org and inner org that is not its parent");
+        OrgType org = leafOrgs.get(0);
+        OrgType newParent = innerOrgs.get(0);
+
+        when("target of the parent ref row is updated directly (not delete and insert)");
+        QObjectReferenceMapping<QObject<MObject>, MObject> refMapping =
+                QObjectReferenceMapping.getForParentOrg();
+        QObjectReference<MObject> ref = refMapping.defaultAlias();
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.newUpdate(ref)
+                    .set(ref.targetOid, UUID.fromString(newParent.getOid()))
+                    .where(ref.ownerOid.eq(UUID.fromString(org.getOid())))
+                    .execute();
+            jdbcSession.commit();
+        }
+
+        then("closure contains the new parent and is consistent");
+        QOrgClosure oc = new QOrgClosure();
+        assertThat(count(oc, oc.ancestorOid.eq(UUID.fromString(newParent.getOid()))
+                .and(oc.descendantOid.eq(UUID.fromString(org.getOid()))))).isEqualTo(1);
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        assertThatOperationResult(operationResult).isSuccess();
+    }
+
+    @Test
+    public void test300InconsistentClosureIsRepaired() throws Exception {
+        given("closure with a missing row");
+        QOrgClosure oc = new QOrgClosure();
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            jdbcSession.newDelete(oc)
+                    .where(oc.ancestorOid.ne(oc.descendantOid)
+                            .and(oc.ancestorOid.eq(UUID.fromString(innerOrgs.get(0).getOid()))))
+                    .execute();
+            jdbcSession.commit();
+        }
+
+        expect("check without repair reports error");
+        OperationResult operationResult = createOperationResult();
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        assertThatOperationResult(operationResult).isFatalError();
+
+        when("check with repair is executed");
+        operationResult = createOperationResult();
+        repositoryService.testOrgClosureConsistency(true, operationResult);
+
+        then("the closure is repaired");
+        assertThat(operationResult.getLastSubresult().isHandledError()).isTrue();
+        operationResult = createOperationResult();
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        assertThatOperationResult(operationResult).isSuccess();
     }
 
     // support methods
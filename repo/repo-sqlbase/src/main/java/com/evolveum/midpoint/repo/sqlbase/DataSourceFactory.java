@@ -8,6 +8,8 @@ package com.evolveum.midpoint.repo.sqlbase;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.annotation.PreDestroy;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -31,10 +33,19 @@ public class DataSourceFactory {
 
     private DataSource dataSource;
 
+    /** Additional driver properties specific to the repository implementation; not used for JNDI data source. */
+    private final Map<String, String> dataSourceProperties = new LinkedHashMap<>();
+
     public DataSourceFactory(JdbcRepositoryConfiguration configuration) {
         this.configuration = configuration;
     }
 
+    /** Adds a driver property to the data source created by this factory. Must be called before it is created. */
+    public DataSourceFactory addDataSourceProperty(String name, String value) {
+        dataSourceProperties.put(name, value);
+        return this;
+    }
+
     public JdbcRepositoryConfiguration configuration() {
         return configuration;
     }
@@ -109,6 +120,7 @@ public class DataSourceFactory {
             config.addDataSourceProperty("prepStmtCacheSize", "250");
             config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
         }
+        dataSourceProperties.forEach(config::addDataSourceProperty);
 
         config.setInitializationFailTimeout(configuration.getInitializationFailTimeout());
         config.setAutoCommit(false);
@@ -10,11 +10,14 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import com.querydsl.sql.ColumnMetadata;
 import com.querydsl.sql.RelationalPath;
 import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SchemaAndTable;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLInsertClause;
 import com.querydsl.sql.dml.SQLUpdateClause;
@@ -64,6 +67,9 @@ public class JdbcSession implements AutoCloseable {
 
     private boolean rollbackForReadOnly;
 
+    /** Insert batches per table, in the order of the first use of the table; null if not batching. */
+    private Map<SchemaAndTable, SQLInsertClause> insertBatches;
+
     public JdbcSession(
             @NotNull Connection connection,
             @NotNull JdbcRepositoryConfiguration jdbcRepositoryConfiguration,
@@ -231,6 +237,47 @@ public class JdbcSession implements AutoCloseable {
         return sqlRepoContext.newInsert(connection, entity);
     }
 
+    /**
+     * Inserts the row (bean populating the columns, nulls are skipped) into the entity table.
+     * If {@link #startInsertBatching()} was called before, the row is added to the batch
+     * for the table instead and inserted by {@link #executeInsertBatches()}.
+     */
+    public void insert(RelationalPath<?> entity, Object row) {
+        if (insertBatches == null) {
+            newInsert(entity).populate(row).execute();
+        } else {
+            insertBatches.computeIfAbsent(entity.getSchemaAndTable(), t -> newInsert(entity))
+                    .populate(row)
+                    .addBatch();
+        }
+    }
+
+    /**
+     * Starts collecting rows inserted by {@link #insert(RelationalPath, Object)} into JDBC batches
+     * and returns {@code this}.
+     * Rows are not in the database until {@link #executeInsertBatches()} is called,
+     * so this can be used only if nothing reads the inserted rows in the meantime.
+     */
+    public JdbcSession startInsertBatching() {
+        insertBatches = new LinkedHashMap<>();
+        return this;
+    }
+
+    /**
+     * Executes the insert batches and stops the batching.
+     * Batches are executed in the order in which their tables were used first,
+     * so rows referenced by foreign keys must be inserted first.
+     */
+    public void executeInsertBatches() {
+        if (insertBatches == null) {
+            return;
+        }
+        for (SQLInsertClause insert : insertBatches.values()) {
+            insert.execute();
+        }
+        insertBatches = null;
+    }
+
     public SQLUpdateClause newUpdate(RelationalPath<?> entity) {
         return sqlRepoContext.newUpdate(connection, entity);
     }
@@ -20,6 +20,7 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.sql.SQLQuery;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.path.CanonicalItemPath;
@@ -28,7 +29,6 @@ import com.evolveum.midpoint.prism.query.*;
 import com.evolveum.midpoint.repo.sqlbase.filtering.FilterProcessor;
 import com.evolveum.midpoint.repo.sqlbase.filtering.ObjectFilterProcessor;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryTableMapping;
-import com.evolveum.midpoint.repo.sqlbase.mapping.RepositoryMappingException;
 import com.evolveum.midpoint.repo.sqlbase.mapping.SqlDetailFetchMapper;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
 import com.evolveum.midpoint.schema.GetOperationOptions;
@@ -146,7 +146,7 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
         }
     }
 
-    private void processOrdering(List<? extends ObjectOrdering> orderings)
+    public void processOrdering(List<? extends ObjectOrdering> orderings)
             throws RepositoryException {
         for (ObjectOrdering ordering : orderings) {
             ItemPath orderByItemPath = ordering.getOrderBy();
@@ -179,6 +179,45 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
             query.limit(NO_PAGINATION_LIMIT);
         }
 
+        return new PageOf<>(fetchRows(query, conn), PageOf.PAGE_NO_PAGINATION, 0);
+    }
+
+    /**
+     * Returns one page of results for iterative search using keyset pagination.
+     * Rows are ordered by {@link #iterationKeyOrder()} and only rows after the provided
+     * last row are returned, which is efficient even deep in the result set.
+     * This must not be combined with custom ordering, see {@link #executeOffsetPage}.
+     *
+     * @param lastRow last row of the previous page or null for the first page
+     */
+    public PageOf<Tuple> executeKeysetPage(
+            Connection conn, @Nullable Tuple lastRow, long pageSize) throws QueryException {
+        SQLQuery<?> query = this.sqlQuery.clone(conn);
+        if (lastRow != null) {
+            query.where(iterationKeyAfter(lastRow));
+        }
+        query.orderBy(iterationKeyOrder())
+                .limit(pageSize);
+
+        return new PageOf<>(fetchRows(query, conn), PageOf.PAGE_NO_PAGINATION, (int) pageSize);
+    }
+
+    /**
+     * Returns one page of results for iterative search using OFFSET, used when custom ordering
+     * is required and keyset pagination is not possible.
+     * Iteration key is added as the last ordering to make the order deterministic.
+     */
+    public PageOf<Tuple> executeOffsetPage(
+            Connection conn, long offset, long pageSize) throws QueryException {
+        SQLQuery<?> query = this.sqlQuery.clone(conn);
+        query.orderBy(iterationKeyOrder())
+                .offset(offset)
+                .limit(pageSize);
+
+        return new PageOf<>(fetchRows(query, conn), PageOf.PAGE_NO_PAGINATION, (int) pageSize);
+    }
+
+    private List<Tuple> fetchRows(SQLQuery<?> query, Connection conn) throws QueryException {
         // see com.evolveum.midpoint.repo.sqlbase.querydsl.SqlLogger for logging details
         Q entity = root();
         List<Tuple> data = query
@@ -197,8 +236,7 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
                 fetcher.execute(sqlRepoContext, () -> sqlRepoContext.newQuery(conn), dataEntities);
             }
         }
-
-        return new PageOf<>(data, PageOf.PAGE_NO_PAGINATION, 0);
+        return data;
     }
 
     private @NotNull Expression<?>[] buildSelectExpressions(Q entity, SQLQuery<?> query) {
@@ -305,23 +343,59 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
 
     /**
      * Transforms result page with (bean + extension columns) tuple to schema type.
+     * Rows that can't be transformed are replaced by placeholders if the mapping supports it,
+     * see {@link #transformToSchemaTypeOrPlaceholder(Tuple)}.
      */
-    public PageOf<S> transformToSchemaType(PageOf<Tuple> result)
-            throws SchemaException, QueryException {
+    public PageOf<S> transformToSchemaType(PageOf<Tuple> result) throws SchemaException {
+        List<S> objects = new ArrayList<>(result.content().size());
+        for (Tuple row : result) {
+            objects.add(transformToSchemaTypeOrPlaceholder(row));
+        }
+        return new PageOf<>(objects, result.pageNumber(), result.pageSize(), result.totalCount());
+    }
+
+    /**
+     * Transforms single result row (bean + extension columns) to schema type.
+     */
+    public S transformToSchemaType(Tuple row) throws SchemaException {
+        return entityPathMapping.toSchemaObject(row, root(), options);
+    }
+
+    /**
+     * Transforms single result row to schema type, but if the transformation fails,
+     * placeholder object from {@link QueryTableMapping#createPlaceholder} is returned instead.
+     * This way one corrupted row does not break the whole search.
+     * If the mapping does not support placeholders the original exception is thrown.
+     * This method is safe to call from multiple threads for different rows.
+     */
+    public S transformToSchemaTypeOrPlaceholder(Tuple row) throws SchemaException {
         try {
-            return result.map(row -> entityPathMapping.toSchemaObjectSafe(row, root(), options));
-        } catch (RepositoryMappingException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof SchemaException) {
-                throw (SchemaException) cause;
-            } else if (cause instanceof QueryException) {
-                throw (QueryException) cause;
-            } else {
+            return transformToSchemaType(row);
+        } catch (SchemaException | RuntimeException e) {
+            S placeholder = entityPathMapping.createPlaceholder(row, root(), e);
+            if (placeholder == null) {
                 throw e;
             }
+            return placeholder;
         }
     }
 
+    /**
+     * Returns ordering by unique iteration key used for iterative search.
+     * Not supported by default (e.g. for audit), overridden in repo-sqale.
+     */
+    public OrderSpecifier<?> iterationKeyOrder() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns predicate matching rows following the provided row in {@link #iterationKeyOrder()}.
+     * Not supported by default (e.g. for audit), overridden in repo-sqale.
+     */
+    public Predicate iterationKeyAfter(@NotNull Tuple lastRow) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Returns wrapped query if usage of Querydsl API is more convenient.
      */
@@ -387,6 +461,11 @@ public abstract class SqlQueryContext<S, Q extends FlexibleRelationalPathBase<R>
         throw new UnsupportedOperationException();
     }
 
+    public FilterProcessor<FullTextFilter> createFullTextFilter() {
+        // not supported for audit, overridden in repo-sqale
+        throw new UnsupportedOperationException();
+    }
+
     // before-query hook, empty by default
     public void beforeQuery() {
     }
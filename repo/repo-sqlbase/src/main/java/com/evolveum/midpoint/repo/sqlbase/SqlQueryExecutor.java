@@ -6,18 +6,27 @@
  */
 package com.evolveum.midpoint.repo.sqlbase;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.querydsl.core.Tuple;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.SearchResultMetadata;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
 
 /**
  * Component just under the service that orchestrates query transformation and execution.
@@ -28,10 +37,42 @@ import com.evolveum.midpoint.util.exception.SchemaException;
  */
 public class SqlQueryExecutor {
 
+    /** Operation kind reported to the performance monitor for each page of iterative search. */
+    public static final String OP_ITERATION_PAGE = "searchObjectsIterativePage";
+
+    /**
+     * Operation kind reported to the performance monitor for transformation of the result rows
+     * (typically parsing of the full object) to the schema type.
+     */
+    public static final String OP_TRANSFORM_RESULT = "transformResult";
+
+    /**
+     * Results smaller than this are transformed on the calling thread even if the pool is set,
+     * for small results the overhead of handing over the rows is not worth it.
+     */
+    public static final int PARALLEL_TRANSFORMATION_THRESHOLD = 20;
+
     private final SqlRepoContext sqlRepoContext;
+    private final SqlPerformanceMonitorImpl performanceMonitor;
+    private final ExecutorService transformationPool;
 
     public SqlQueryExecutor(SqlRepoContext sqlRepoContext) {
+        this(sqlRepoContext, null, null);
+    }
+
+    /**
+     * Creates query executor with optional performance monitor and thread pool used
+     * to transform results of {@link #list} in parallel.
+     * If the pool is null, results are transformed on the calling thread.
+     * The pool is shared and managed (shut down) by the caller.
+     */
+    public SqlQueryExecutor(
+            SqlRepoContext sqlRepoContext,
+            @Nullable SqlPerformanceMonitorImpl performanceMonitor,
+            @Nullable ExecutorService transformationPool) {
         this.sqlRepoContext = sqlRepoContext;
+        this.performanceMonitor = performanceMonitor;
+        this.transformationPool = transformationPool;
     }
 
     public <S, Q extends FlexibleRelationalPathBase<R>, R> int count(
@@ -70,7 +111,151 @@ public class SqlQueryExecutor {
             result = context.executeQuery(jdbcSession.connection());
         }
 
-        return createSearchResultList(context.transformToSchemaType(result));
+        return createSearchResultList(transform(context, result));
+    }
+
+    /**
+     * Transforms the result rows to the schema type keeping their order.
+     * If the transformation pool is available and the result is big enough, rows are transformed
+     * in parallel, otherwise on the calling thread.
+     * Rows that can't be transformed are replaced by placeholders if the mapping supports it,
+     * see {@link SqlQueryContext#transformToSchemaTypeOrPlaceholder(Tuple)}.
+     */
+    private <S, Q extends FlexibleRelationalPathBase<R>, R> PageOf<S> transform(
+            SqlQueryContext<S, Q, R> context, PageOf<Tuple> result)
+            throws SchemaException {
+        long opHandle = registerOperationStart(OP_TRANSFORM_RESULT, context);
+        try {
+            if (transformationPool == null
+                    || result.content().size() < PARALLEL_TRANSFORMATION_THRESHOLD) {
+                return context.transformToSchemaType(result);
+            }
+
+            List<Future<S>> futures = new ArrayList<>(result.content().size());
+            for (Tuple row : result) {
+                futures.add(transformationPool.submit(
+                        () -> context.transformToSchemaTypeOrPlaceholder(row)));
+            }
+            List<S> objects = new ArrayList<>(futures.size());
+            for (Future<S> future : futures) {
+                objects.add(getTransformed(future));
+            }
+            return new PageOf<>(objects, result.pageNumber(), result.pageSize(), result.totalCount());
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    private <S> S getTransformed(Future<S> future) throws SchemaException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for result transformation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SchemaException) {
+                throw (SchemaException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SystemException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Executes the query page by page and passes each result to the handler as soon as
+     * it is transformed to the schema type, so the memory consumption is bounded by the page size.
+     * Each page is read in a separate short read-only transaction, no connection is held
+     * while the handler runs, so the handler can use the repository freely.
+     *
+     * Keyset pagination by the iteration key (see {@link SqlQueryContext#iterationKeyOrder()})
+     * is used if the query does not specify any ordering or offset.
+     * Otherwise OFFSET-based paging is used which respects the custom ordering,
+     * but is slower for large offsets and is not stable if the data changes during the iteration.
+     *
+     * Each page is reported to the performance monitor (if provided) as {@link #OP_ITERATION_PAGE}
+     * and its transformation as {@link #OP_TRANSFORM_RESULT}.
+     * Rows are transformed on the calling thread, each one just before it is passed to the handler.
+     *
+     * @param pageSize maximum number of rows fetched in one page
+     * @return number of results passed to the handler
+     */
+    public <S, Q extends FlexibleRelationalPathBase<R>, R> int iterate(
+            @NotNull SqlQueryContext<S, Q, R> context,
+            ObjectQuery query,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            int pageSize,
+            @NotNull IterativeResultHandler<S> handler)
+            throws RepositoryException, SchemaException {
+
+        ObjectPaging paging = query != null ? query.getPaging() : null;
+        Integer maxSize = null;
+        long offset = 0;
+        boolean keyset = true;
+        if (query != null) {
+            context.process(query.getFilter());
+        }
+        if (paging != null) {
+            context.processOrdering(paging.getOrderingInstructions());
+            maxSize = paging.getMaxSize();
+            if (paging.getOffset() != null) {
+                offset = paging.getOffset();
+            }
+            keyset = !paging.hasOrdering() && paging.getOffset() == null;
+        }
+        context.processOptions(options);
+
+        context.beforeQuery();
+        int handledCount = 0;
+        Tuple lastRow = null;
+        while (maxSize == null || handledCount < maxSize) {
+            long limit = maxSize != null ? Math.min(pageSize, maxSize - handledCount) : pageSize;
+            PageOf<Tuple> page;
+            long opHandle = registerOperationStart(OP_ITERATION_PAGE, context);
+            try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
+                page = keyset
+                        ? context.executeKeysetPage(jdbcSession.connection(), lastRow, limit)
+                        : context.executeOffsetPage(jdbcSession.connection(), offset + handledCount, limit);
+            } finally {
+                registerOperationFinish(opHandle);
+            }
+
+            int pageCount = 0;
+            for (Tuple row : page) {
+                lastRow = row;
+                pageCount++;
+                handledCount++;
+                S object;
+                long transformOpHandle = registerOperationStart(OP_TRANSFORM_RESULT, context);
+                try {
+                    object = context.transformToSchemaTypeOrPlaceholder(row);
+                } finally {
+                    registerOperationFinish(transformOpHandle);
+                }
+                if (!handler.handle(object)) {
+                    return handledCount;
+                }
+            }
+            if (pageCount < limit) {
+                break;
+            }
+        }
+        return handledCount;
+    }
+
+    private long registerOperationStart(String kind, SqlQueryContext<?, ?, ?> context) {
+        return performanceMonitor != null
+                ? performanceMonitor.registerOperationStart(kind, context.mapping().schemaType())
+                : -1;
+    }
+
+    private void registerOperationFinish(long opHandle) {
+        if (performanceMonitor != null) {
+            performanceMonitor.registerOperationFinish(opHandle, 1);
+        }
     }
 
     @NotNull
@@ -81,4 +266,18 @@ public class SqlQueryExecutor {
         }
         return new SearchResultList<>(result.content(), metadata);
     }
+
+    /**
+     * Handler for results of {@link #iterate}.
+     *
+     * @param <S> schema type of the result
+     */
+    @FunctionalInterface
+    public interface IterativeResultHandler<S> {
+
+        /**
+         * Handles the result, returns false if the iteration should stop.
+         */
+        boolean handle(S object);
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqlbase.filtering;
+
+import com.querydsl.core.types.Predicate;
+
+import com.evolveum.midpoint.prism.query.ExistsFilter;
+import com.evolveum.midpoint.repo.sqlbase.QueryException;
+import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
+import com.evolveum.midpoint.repo.sqlbase.filtering.item.ItemFilterProcessor;
+
+/**
+ * Filter processor for {@link ExistsFilter} without inner filter, i.e. "item has a value".
+ * The path is resolved the same way as for value filters (see {@link ValueFilterProcessor})
+ * and the condition is created by {@link ItemFilterProcessor#processExists(ExistsFilter)}.
+ * Only some item processors support it (e.g. extension items), others throw {@link QueryException}.
+ *
+ * Exists filter with inner filter (typically for multi-value containers) is not supported yet.
+ */
+public class ExistsFilterProcessor implements FilterProcessor<ExistsFilter> {
+
+    private final SqlQueryContext<?, ?, ?> context;
+
+    public ExistsFilterProcessor(SqlQueryContext<?, ?, ?> context) {
+        this.context = context;
+    }
+
+    @Override
+    public Predicate process(ExistsFilter filter) throws QueryException {
+        if (filter.getFilter() != null) {
+            throw new QueryException(
+                    "Exists filter with inner filter is not supported YET: " + filter);
+        }
+
+        return new ValueFilterProcessor(context)
+                .itemFilterProcessor(filter.getFullPath())
+                .processExists(filter);
+    }
+}
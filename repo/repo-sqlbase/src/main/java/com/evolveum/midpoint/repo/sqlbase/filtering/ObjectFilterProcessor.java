@@ -46,6 +46,9 @@ public class ObjectFilterProcessor implements FilterProcessor<ObjectFilter> {
             // here are the values applied (ref/property value filters)
             return new ValueFilterProcessor(context)
                     .process((ValueFilter<?, ?>) filter);
+        } else if (filter instanceof ExistsFilter) {
+            return new ExistsFilterProcessor(context)
+                    .process((ExistsFilter) filter);
         } else if (filter instanceof InOidFilter) {
             return context.createInOidFilter()
                     .process((InOidFilter) filter);
@@ -53,8 +56,8 @@ public class ObjectFilterProcessor implements FilterProcessor<ObjectFilter> {
             return context.createOrgFilter()
                     .process((OrgFilter) filter);
         } else if (filter instanceof FullTextFilter) {
-            // TODO
-            throw new QueryException("TODO filter " + filter);
+            return context.createFullTextFilter()
+                    .process((FullTextFilter) filter);
         } else if (filter instanceof TypeFilter) {
             // TODO
             throw new QueryException("TODO filter " + filter);
@@ -55,15 +55,23 @@ public class ValueFilterProcessor implements FilterProcessor<ValueFilter<?, ?>>
         // TODO: needed only for Any filter?
 //        ItemDefinition definition = filter.getDefinition();
 
-        QName itemName = resolvePath(filter.getPath());
+        return itemFilterProcessor(filter.getPath()).process(filter);
+    }
+
+    /**
+     * Resolves the path and returns the filter processor for its last item.
+     * Also used by {@link ExistsFilterProcessor} which needs the same path resolution.
+     */
+    ItemFilterProcessor<ObjectFilter> itemFilterProcessor(ItemPath path) throws QueryException {
+        QName itemName = resolvePath(path);
         ItemFilterProcessor<ObjectFilter> filterProcessor =
                 mapping.itemMapper(itemName)
                         .createFilterProcessor(context);
         if (filterProcessor == null) {
-            throw new QueryException("Filtering on " + filter.getPath() + " is not supported.");
+            throw new QueryException("Filtering on " + path + " is not supported.");
             // this should not even happen, we can't even create a Query that would cause this
         }
-        return filterProcessor.process(filter);
+        return filterProcessor;
     }
 
     /**
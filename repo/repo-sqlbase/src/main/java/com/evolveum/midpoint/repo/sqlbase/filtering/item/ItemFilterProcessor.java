@@ -105,6 +105,15 @@ public abstract class ItemFilterProcessor<O extends ObjectFilter>
         return predicateWithNotTreated(path, predicate);
     }
 
+    /**
+     * Returns the condition for {@link ExistsFilter} without inner filter, i.e. "item has a value".
+     * Not supported by default, processors of items where it makes sense override this.
+     */
+    public Predicate processExists(ExistsFilter filter) throws QueryException {
+        throw new QueryException("Exists filter is not supported for item "
+                + filter.getFullPath() + ", filter: " + filter);
+    }
+
     /**
      * Returns the predicate or (predicate AND path IS NOT NULL) if NOT is used somewhere above.
      * This makes NOT truly complementary to non-NOT result.
@@ -128,8 +128,10 @@ public class QueryModelMapping<S, Q extends FlexibleRelationalPathBase<R>, R> {
 
     /**
      * Returns {@link ItemSqlMapper} for provided {@link ItemName} or `null`.
+     * This can be overridden by mappings that are not known statically, e.g. extension items
+     * where the item mapper is provided dynamically for any item name.
      */
-    public final @Nullable ItemSqlMapper<S, Q, R> getItemMapper(QName itemName) {
+    public @Nullable ItemSqlMapper<S, Q, R> getItemMapper(QName itemName) {
         return QNameUtil.getByQName(this.itemMappings, itemName);
     }
 
@@ -344,6 +344,17 @@ public abstract class QueryTableMapping<S, Q extends FlexibleRelationalPathBase<
             Collection<SelectorOptions<GetOperationOptions>> options)
             throws SchemaException;
 
+    /**
+     * Creates placeholder for the row that could not be transformed to schema object,
+     * e.g. because the serialized form is corrupted.
+     * Returns null by default, which means that the error is propagated to the caller.
+     *
+     * @param error exception thrown by {@link #toSchemaObject(Tuple, FlexibleRelationalPathBase, Collection)}
+     */
+    public @Nullable S createPlaceholder(Tuple row, Q entityPath, Throwable error) {
+        return null;
+    }
+
     public S toSchemaObjectSafe(Tuple tuple, Q entityPath,
             Collection<SelectorOptions<GetOperationOptions>> options) {
         try {
@@ -31,6 +31,7 @@ public class ConfigurablePrismContextFactory extends MidPointPrismContextFactory
 
     private static final Trace LOGGER = TraceManager.getTrace(ConfigurablePrismContextFactory.class);
     private static final String EXTENSION_DIR = "extensionDir";
+    private static final String SCHEMA_SNAPSHOT_FILE = "schemaSnapshotFile";
     private MidpointConfiguration configuration;
 
     /**
@@ -107,4 +108,25 @@ public class ConfigurablePrismContextFactory extends MidPointPrismContextFactory
             throw new SchemaException(ex.getMessage(), ex);
         }
     }
+
+    /**
+     * The snapshot file is resolved against midpoint.home. It is written on the first start
+     * and then re-used as long as the schemas (including the extension ones) do not change.
+     */
+    @Override
+    protected void configureSchemaSnapshot(SchemaRegistryImpl schemaRegistry) {
+        Configuration config = configuration.getConfiguration(MidpointConfiguration.GLOBAL_CONFIGURATION);
+        String snapshotFile = config != null ? config.getString(SCHEMA_SNAPSHOT_FILE) : null;
+        if (StringUtils.isEmpty(snapshotFile)) {
+            return;
+        }
+        File file;
+        if (StringUtils.isNotEmpty(configuration.getMidpointHome())) {
+            file = Paths.get(configuration.getMidpointHome()).resolve(snapshotFile).toFile();
+        } else {
+            file = new File(snapshotFile);
+        }
+        LOGGER.info("Using schema snapshot file '{}'.", file);
+        schemaRegistry.setSchemaSnapshotFile(file);
+    }
 }
@@ -160,6 +160,20 @@ public class StateReporter {
         lastOperation = null;
     }
 
+    /**
+     * Records time spent waiting within an operation, e.g. one of the pipeline stages in pipelined search.
+     * Unlike the other methods, it does not interact with the state of the current operation.
+     */
+    public void recordIcfOperationWait(ProvisioningOperation waitOperation, ObjectClassComplexTypeDefinition objectClassDef,
+            int count, long duration) {
+        if (task != null) {
+            task.recordProvisioningOperation(resourceOid, getResourceName(), getObjectClassQName(objectClassDef),
+                    waitOperation, true, count, duration);
+        } else {
+            reportNoTask(resourceOid, waitOperation);
+        }
+    }
+
     private void reportNoTask(String resourceOid, ProvisioningOperation operation) {
         LOGGER.warn("Couldn't report execution of ICF operation {} on resource {} because there is no task assigned.",
                 operation, resourceOid);
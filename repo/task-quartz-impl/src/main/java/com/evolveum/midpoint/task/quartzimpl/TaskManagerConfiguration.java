@@ -91,6 +91,8 @@ public class TaskManagerConfiguration {
     private static final String WORK_ALLOCATION_RETRY_EXPONENTIAL_THRESHOLD_ENTRY = "workAllocationRetryExponentialThreshold";
     private static final String WORK_ALLOCATION_INITIAL_DELAY_ENTRY = "workAllocationInitialDelay";
     private static final String WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY = "workAllocationDefaultFreeBucketWaitInterval";
+    private static final String WORK_ALLOCATION_USE_BUCKET_STORE_ENTRY = "workAllocationUseBucketStore";
+    private static final String WORK_ALLOCATION_BUCKET_PREFETCH_ENTRY = "workAllocationBucketPrefetch";
 
     private static final String TASK_EXECUTION_LIMITATIONS_CONFIG_ENTRY = "taskExecutionLimitations";
 
@@ -127,6 +129,8 @@ public class TaskManagerConfiguration {
     private static final int WORK_ALLOCATION_RETRY_EXPONENTIAL_THRESHOLD_DEFAULT = 7;
     private static final long WORK_ALLOCATION_INITIAL_DELAY_DEFAULT = 5000L;
     private static final long WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_DEFAULT = 20000L;
+    private static final boolean WORK_ALLOCATION_USE_BUCKET_STORE_DEFAULT = false;
+    private static final int WORK_ALLOCATION_BUCKET_PREFETCH_DEFAULT = 1;
 
     private boolean stopOnInitializationFailure;
     private int threads;
@@ -164,6 +168,8 @@ public class TaskManagerConfiguration {
     private int workAllocationRetryExponentialThreshold;
     private long workAllocationInitialDelay;
     private long workAllocationDefaultFreeBucketWaitInterval;
+    private boolean workAllocationUseBucketStore;
+    private int workAllocationBucketPrefetch;
 
     private TaskExecutionLimitationsType taskExecutionLimitations;
 
@@ -241,6 +247,8 @@ public class TaskManagerConfiguration {
             WORK_ALLOCATION_INITIAL_DELAY_ENTRY,
             WORK_ALLOCATION_RETRY_EXPONENTIAL_THRESHOLD_ENTRY,
             WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY,
+            WORK_ALLOCATION_USE_BUCKET_STORE_ENTRY,
+            WORK_ALLOCATION_BUCKET_PREFETCH_ENTRY,
             TASK_EXECUTION_LIMITATIONS_CONFIG_ENTRY,
             CHECK_FOR_TASK_CONCURRENT_EXECUTION_CONFIG_ENTRY,
             NODE_ALIVENESS_TIMEOUT_CONFIG_ENTRY,
@@ -361,6 +369,10 @@ public class TaskManagerConfiguration {
         workAllocationInitialDelay = c.getLong(WORK_ALLOCATION_INITIAL_DELAY_ENTRY, WORK_ALLOCATION_INITIAL_DELAY_DEFAULT);
         workAllocationDefaultFreeBucketWaitInterval = c.getLong(WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY,
                 WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_DEFAULT);
+        workAllocationUseBucketStore = c.getBoolean(WORK_ALLOCATION_USE_BUCKET_STORE_ENTRY,
+                WORK_ALLOCATION_USE_BUCKET_STORE_DEFAULT);
+        workAllocationBucketPrefetch = c.getInt(WORK_ALLOCATION_BUCKET_PREFETCH_ENTRY,
+                WORK_ALLOCATION_BUCKET_PREFETCH_DEFAULT);
 
         if (c.containsKey(TASK_EXECUTION_LIMITATIONS_CONFIG_ENTRY)) {
             taskExecutionLimitations = parseExecutionLimitations(c.getString(TASK_EXECUTION_LIMITATIONS_CONFIG_ENTRY));
@@ -744,6 +756,14 @@ public class TaskManagerConfiguration {
         return workAllocationDefaultFreeBucketWaitInterval;
     }
 
+    public boolean isWorkAllocationUseBucketStore() {
+        return workAllocationUseBucketStore;
+    }
+
+    public int getWorkAllocationBucketPrefetch() {
+        return workAllocationBucketPrefetch;
+    }
+
     public TaskExecutionLimitationsType getTaskExecutionLimitations() {
         return taskExecutionLimitations;
     }
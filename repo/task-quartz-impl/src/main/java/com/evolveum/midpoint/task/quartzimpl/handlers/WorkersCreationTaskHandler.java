@@ -13,6 +13,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.*;
 import com.evolveum.midpoint.task.api.TaskRunResult.TaskRunResultStatus;
 import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImpl;
+import com.evolveum.midpoint.task.quartzimpl.work.WorkStateManager;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
@@ -39,6 +40,7 @@ public class WorkersCreationTaskHandler implements TaskHandler {
     @Autowired private TaskManager taskManager;
     @Autowired private PrismContext prismContext;
     @Autowired private RepositoryService repositoryService;
+    @Autowired private WorkStateManager workStateManager;
 
     @PostConstruct
     private void initialize() {
@@ -144,6 +146,7 @@ public class WorkersCreationTaskHandler implements TaskHandler {
                 .item(TaskType.F_WORK_STATE).replace()
                 .asItemDeltas();
         repositoryService.modifyObject(TaskType.class, task.getOid(), itemDeltas, opResult);
+        workStateManager.deleteBucketsFromStore(task.getOid(), opResult);
     }
 
     @Override
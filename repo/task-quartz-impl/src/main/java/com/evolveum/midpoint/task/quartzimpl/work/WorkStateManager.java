@@ -81,6 +81,9 @@ public class WorkStateManager {
     @Autowired private WorkBucketContentHandlerRegistry handlerFactory;
     @Autowired private TaskManagerConfiguration configuration;
 
+    /** Available only for some repository implementations, used only if enabled in the configuration. */
+    @Autowired(required = false) private WorkBucketStore workBucketStore;
+
     private static final long DYNAMIC_SLEEP_INTERVAL = 100L;
 
     private Long freeBucketWaitIntervalOverride = null;
@@ -191,7 +194,11 @@ public class WorkStateManager {
                 if (executeInitialWait) {
                     executeInitialDelayForMultiNode(ctx);
                 }
-                return getWorkBucketMultiNode(ctx, freeBucketWaitTime, result);
+                if (isBucketStoreUsed(ctx)) {
+                    return getWorkBucketMultiNodeFromStore(ctx, freeBucketWaitTime, result);
+                } else {
+                    return getWorkBucketMultiNode(ctx, freeBucketWaitTime, result);
+                }
             }
         } catch (Throwable t) {
             ctx.register("getWorkBucket." + t.getClass().getSimpleName());
@@ -263,6 +270,93 @@ public class WorkStateManager {
         }
     }
 
+    /**
+     * Buckets of multi-node tasks are kept in the {@link WorkBucketStore} instead of the coordinator task
+     * if the repository provides the store and it is enabled in the task manager configuration.
+     * The store must not be switched on or off while there are multi-node tasks with work in progress.
+     *
+     * Note that the coordinator task work state contains no buckets in this mode, so the progress
+     * based on the completed buckets is not available there.
+     */
+    private boolean isBucketStoreUsed(Context ctx) {
+        return workBucketStore != null && configuration.isWorkAllocationUseBucketStore() && !ctx.isStandalone();
+    }
+
+    /**
+     * Version of {@link #getWorkBucketMultiNode(Context, long, OperationResult)} using the {@link WorkBucketStore}.
+     * READY buckets are claimed without touching the coordinator task; if there are none, the segmentation
+     * strategy is asked for new buckets, based on the buckets in the store. Concurrently created buckets
+     * are detected by the store, in which case we simply try to claim the buckets again.
+     *
+     * More buckets can be claimed at once (see {@link TaskManagerConfiguration#getWorkAllocationBucketPrefetch()}),
+     * these are recorded in the worker task and returned as self-allocated ones by subsequent calls.
+     */
+    private WorkBucketType getWorkBucketMultiNodeFromStore(Context ctx, long freeBucketWaitTime, OperationResult result)
+            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException, InterruptedException {
+        TaskWorkManagementType workManagement = ctx.coordinatorTask.getWorkManagement();
+        WorkSegmentationStrategy segmentationStrategy = strategyFactory.createStrategy(workManagement);
+        setOrUpdateEstimatedNumberOfBuckets(ctx.coordinatorTask, segmentationStrategy, result);
+        String coordinatorOid = ctx.coordinatorTask.getOid();
+        int prefetch = Math.max(1, configuration.getWorkAllocationBucketPrefetch());
+
+        for (;;) {
+            List<WorkBucketType> claimed =
+                    workBucketStore.claimReadyBuckets(coordinatorOid, ctx.workerTask.getOid(), prefetch, result);
+            if (!claimed.isEmpty()) {
+                return recordClaimedBucketsInWorkerTask(ctx, claimed, result);
+            }
+
+            TaskWorkStateType storedWorkState = new TaskWorkStateType(prismContext);
+            storedWorkState.getBucket().addAll(workBucketStore.getBuckets(coordinatorOid, result));
+            GetBucketResult getBucketResult = segmentationStrategy.getBucket(storedWorkState);
+            LOGGER.trace("getWorkBucketMultiNodeFromStore: segmentationStrategy returned {} for worker task {}, coordinator {}",
+                    getBucketResult, ctx.workerTask, ctx.coordinatorTask);
+
+            if (getBucketResult instanceof NewBuckets) {
+                if (!workBucketStore.addBuckets(coordinatorOid, ((NewBuckets) getBucketResult).newBuckets, result)) {
+                    ctx.conflictCount++;
+                }
+                // Claiming in the next iteration, even if the buckets were created by someone else.
+            } else if (getBucketResult instanceof FoundExisting) {
+                // Some bucket became READY after our claim (e.g. it was released), let's try again.
+                ctx.conflictCount++;
+            } else if (getBucketResult instanceof NothingFound) {
+                if (!ctx.workerTask.isScavenger()) {
+                    processNothingFoundForNonScavenger(ctx);
+                    return null;
+                } else if (((NothingFound) getBucketResult).definite || freeBucketWaitTime == 0L) {
+                    processNothingFoundDefinite(ctx, result);
+                    return null;
+                } else {
+                    long toWait = getRemainingTimeToWait(ctx, freeBucketWaitTime);
+                    if (toWait <= 0) {
+                        processNothingFoundButWaitTimeElapsed(ctx, result);
+                        return null;
+                    } else {
+                        wait(toWait, ctx, workManagement);
+                        reclaimWronglyAllocatedBucketsInStore(ctx, result);
+                    }
+                }
+            } else {
+                throw new AssertionError(getBucketResult);
+            }
+        }
+    }
+
+    private WorkBucketType recordClaimedBucketsInWorkerTask(Context ctx, List<WorkBucketType> claimed,
+            OperationResult result) throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        // In the worker task the buckets are READY until they are processed, see findSelfAllocatedBucket.
+        List<WorkBucketType> workerBuckets = claimed.stream()
+                .map(b -> b.clone().state(WorkBucketStateType.READY).workerRef(null))
+                .collect(Collectors.toList());
+        repositoryService.modifyObject(TaskType.class, ctx.workerTask.getOid(),
+                bucketsAddDeltas(workerBuckets), null, result);
+        CONTENTION_LOGGER.trace("{} bucket(s) claimed from the store after {} ms (conflicts: {}) in {}",
+                workerBuckets.size(), System.currentTimeMillis() - ctx.start, ctx.conflictCount, ctx.workerTask);
+        ctx.register(GET_WORK_BUCKET_DELEGATED);
+        return workerBuckets.get(0);
+    }
+
     private void wait(long toWait, Context ctx, TaskWorkManagementType workManagement) throws InterruptedException {
         long waitStart = System.currentTimeMillis();
         long sleepFor = Math.min(toWait, getFreeBucketWaitInterval(workManagement));
@@ -452,6 +546,30 @@ public class WorkStateManager {
         }
     }
 
+    /**
+     * Version of {@link #reclaimWronglyAllocatedBuckets(Context, OperationResult)} for the {@link WorkBucketStore}.
+     * Each bucket is released only if it is still delegated to the dead worker, so no other precondition is needed.
+     */
+    private void reclaimWronglyAllocatedBucketsInStore(Context ctx, OperationResult result) {
+        String coordinatorOid = ctx.coordinatorTask.getOid();
+        int reclaimed = 0;
+        Set<String> deadWorkers = new HashSet<>();
+        Set<String> liveWorkers = new HashSet<>();
+        for (WorkBucketType bucket : workBucketStore.getBuckets(coordinatorOid, result)) {
+            if (bucket.getState() == WorkBucketStateType.DELEGATED) {
+                String workerOid = bucket.getWorkerRef() != null ? bucket.getWorkerRef().getOid() : null;
+                if (isDead(workerOid, deadWorkers, liveWorkers, result)) {
+                    LOGGER.info("Will reclaim wrongly allocated work bucket {} from worker task {}", bucket, workerOid);
+                    if (workBucketStore.releaseBucket(coordinatorOid, workerOid, bucket.getSequentialNumber(), result)) {
+                        reclaimed++;
+                    }
+                }
+            }
+        }
+        LOGGER.trace("Reclaiming wrongly allocated buckets reclaimed {} buckets in {}", reclaimed, ctx.coordinatorTask);
+        ctx.registerReclaim(reclaimed);
+    }
+
     private boolean isDead(String workerOid, Set<String> deadWorkers, Set<String> liveWorkers, OperationResult result) {
         if (workerOid == null || deadWorkers.contains(workerOid)) {
             return true;
@@ -547,11 +665,25 @@ public class WorkStateManager {
         LOGGER.trace("Completing work bucket #{} in {} (coordinator {})", sequentialNumber, ctx.workerTask, ctx.coordinatorTask);
         if (ctx.isStandalone()) {
             completeWorkBucketStandalone(ctx, sequentialNumber, result);
+        } else if (isBucketStoreUsed(ctx)) {
+            completeWorkBucketInStore(ctx, sequentialNumber, result);
         } else {
             completeWorkBucketMultiNode(ctx, sequentialNumber, result);
         }
     }
 
+    private void completeWorkBucketInStore(Context ctx, int sequentialNumber, OperationResult result)
+            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+        // Compression of the completed buckets is done by the store as well.
+        if (!workBucketStore.completeBucket(
+                ctx.coordinatorTask.getOid(), ctx.workerTask.getOid(), sequentialNumber, result)) {
+            throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+                    + " cannot be marked as complete, as it is not delegated to " + ctx.workerTask);
+        }
+        deleteBucketFromWorker(ctx, sequentialNumber, result);
+        ctx.register(COMPLETE_WORK_BUCKET);
+    }
+
     private void completeWorkBucketMultiNode(Context ctx, int sequentialNumber, OperationResult result)
             throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
         TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
@@ -620,11 +752,24 @@ public class WorkStateManager {
         LOGGER.trace("Releasing bucket {} in {} (coordinator {})", sequentialNumber, ctx.workerTask, ctx.coordinatorTask);
         if (ctx.isStandalone()) {
             throw new UnsupportedOperationException("Cannot release work bucket from standalone task " + ctx.workerTask);
+        } else if (isBucketStoreUsed(ctx)) {
+            releaseWorkBucketInStore(ctx, sequentialNumber, result);
         } else {
             releaseWorkBucketMultiNode(ctx, sequentialNumber, result);
         }
     }
 
+    private void releaseWorkBucketInStore(Context ctx, int sequentialNumber, OperationResult result)
+            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+        if (!workBucketStore.releaseBucket(
+                ctx.coordinatorTask.getOid(), ctx.workerTask.getOid(), sequentialNumber, result)) {
+            throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+                    + " cannot be released, as it is not delegated to " + ctx.workerTask);
+        }
+        deleteBucketFromWorker(ctx, sequentialNumber, result);
+        ctx.register(RELEASE_WORK_BUCKET);
+    }
+
     private void releaseWorkBucketMultiNode(Context ctx, int sequentialNumber, OperationResult result)
             throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
         TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
@@ -759,6 +904,16 @@ public class WorkStateManager {
         }
     }
 
+    /**
+     * Deletes buckets of the coordinator task from the {@link WorkBucketStore}, if the store is used.
+     * Should be called whenever the work state of the coordinator task is deleted.
+     */
+    public void deleteBucketsFromStore(String coordinatorOid, OperationResult result) {
+        if (workBucketStore != null && configuration.isWorkAllocationUseBucketStore()) {
+            workBucketStore.deleteBuckets(coordinatorOid, result);
+        }
+    }
+
     public void setFreeBucketWaitIntervalOverride(Long value) {
         this.freeBucketWaitIntervalOverride = value;
     }
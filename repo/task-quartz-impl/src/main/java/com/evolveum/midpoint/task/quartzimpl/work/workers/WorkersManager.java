@@ -16,6 +16,7 @@ import java.util.stream.Collectors;
 import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImpl;
 import com.evolveum.midpoint.task.quartzimpl.tasks.TaskRetriever;
 import com.evolveum.midpoint.task.quartzimpl.tasks.TaskStateManager;
+import com.evolveum.midpoint.task.quartzimpl.work.WorkStateManager;
 import com.evolveum.midpoint.util.logging.LoggingUtils;
 
 import org.apache.commons.collections4.MultiValuedMap;
@@ -60,6 +61,7 @@ public class WorkersManager {
     @Autowired private TaskRetriever taskRetriever;
     @Autowired private TaskStateManager taskStateManager;
     @Autowired private RepositoryService repositoryService;
+    @Autowired private WorkStateManager workStateManager;
 
     public void reconcileWorkers(String coordinatorTaskOid, WorkersReconciliationOptions options, OperationResult result)
             throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
@@ -476,5 +478,6 @@ public class WorkersManager {
         } catch (ObjectAlreadyExistsException e) {
             throw new IllegalStateException("Unexpected exception: " + e.getMessage(), e);
         }
+        workStateManager.deleteBucketsFromStore(taskOid, result);
     }
 }
@@ -8,9 +8,8 @@ package com.evolveum.midpoint.ninja.action;
 
 import com.evolveum.midpoint.ninja.action.worker.SearchProducerWorker;
 import com.evolveum.midpoint.ninja.action.worker.ProgressReporterWorker;
-import com.evolveum.midpoint.ninja.impl.LogTarget;
 import com.evolveum.midpoint.ninja.impl.NinjaContext;
-import com.evolveum.midpoint.ninja.opts.ExportOptions;
+import com.evolveum.midpoint.ninja.opts.RepositorySearchOptions;
 import com.evolveum.midpoint.ninja.util.NinjaUtils;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.prism.*;
@@ -31,11 +30,11 @@ import java.util.*;
 import java.util.concurrent.*;
 
 /**
- * Abstract action for all search-based operations, such as export and verify.
+ * Abstract action for all search-based operations, such as export, verify and reindex.
  *
  * @author Viliam Repan (lazyman)
  */
-public abstract class AbstractRepositorySearchAction<OP extends ExportOptions> extends RepositoryAction<OP> {
+public abstract class AbstractRepositorySearchAction<OP extends RepositorySearchOptions> extends RepositoryAction<OP> {
 
     private static final String DOT_CLASS = AbstractRepositorySearchAction.class.getName() + ".";
 
@@ -90,15 +89,6 @@ public abstract class AbstractRepositorySearchAction<OP extends ExportOptions> e
         handleResultOnFinish(operation, "Finished " + getOperationShortName());
     }
 
-    @Override
-    public LogTarget getInfoLogTarget() {
-        if (options.getOutput() != null) {
-            return LogTarget.SYSTEM_OUT;
-        }
-
-        return LogTarget.SYSTEM_ERR;
-    }
-
     private List<SearchProducerWorker> createProducers(BlockingQueue<PrismObject> queue, OperationStatus operation)
             throws SchemaException, IOException {
 
@@ -9,6 +9,7 @@ package com.evolveum.midpoint.ninja.action;
 import java.util.concurrent.BlockingQueue;
 
 import com.evolveum.midpoint.ninja.action.worker.ExportConsumerWorker;
+import com.evolveum.midpoint.ninja.impl.LogTarget;
 import com.evolveum.midpoint.ninja.impl.NinjaContext;
 import com.evolveum.midpoint.ninja.opts.ExportOptions;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
@@ -19,6 +20,15 @@ import com.evolveum.midpoint.prism.PrismObject;
  */
 public class ExportRepositoryAction extends AbstractRepositorySearchAction<ExportOptions> {
 
+    @Override
+    public LogTarget getInfoLogTarget() {
+        if (options.getOutput() != null) {
+            return LogTarget.SYSTEM_OUT;
+        }
+
+        return LogTarget.SYSTEM_ERR;
+    }
+
     @Override
     protected String getOperationShortName() {
         return "export";
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action;
+
+import java.util.concurrent.BlockingQueue;
+
+import com.evolveum.midpoint.ninja.action.worker.ReindexConsumerWorker;
+import com.evolveum.midpoint.ninja.opts.ReindexOptions;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.prism.PrismObject;
+
+/**
+ * Forces reindex of the selected objects, which also rewrites their stored form
+ * using the current repository configuration (e.g. format of the full object).
+ */
+public class ReindexRepositoryAction extends AbstractRepositorySearchAction<ReindexOptions> {
+
+    @Override
+    protected String getOperationShortName() {
+        return "reindex";
+    }
+
+    @Override
+    protected Runnable createConsumer(BlockingQueue<PrismObject> queue, OperationStatus operation) {
+        return new ReindexConsumerWorker(context, options, queue, operation);
+    }
+}
@@ -9,6 +9,7 @@ package com.evolveum.midpoint.ninja.action;
 import java.util.concurrent.BlockingQueue;
 
 import com.evolveum.midpoint.ninja.action.worker.VerifyConsumerWorker;
+import com.evolveum.midpoint.ninja.impl.LogTarget;
 import com.evolveum.midpoint.ninja.opts.VerifyOptions;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.prism.PrismObject;
@@ -18,6 +19,15 @@ import com.evolveum.midpoint.prism.PrismObject;
  */
 public class VerifyRepositoryAction extends AbstractRepositorySearchAction<VerifyOptions> {
 
+    @Override
+    public LogTarget getInfoLogTarget() {
+        if (options.getOutput() != null) {
+            return LogTarget.SYSTEM_OUT;
+        }
+
+        return LogTarget.SYSTEM_ERR;
+    }
+
     @Override
     protected String getOperationShortName() {
         return "verify";
@@ -13,11 +13,13 @@ import com.evolveum.midpoint.ninja.opts.ImportOptions;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.crypto.Protector;
+import com.evolveum.midpoint.repo.api.BatchItemResult;
 import com.evolveum.midpoint.repo.api.RepoAddOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +29,11 @@ import java.util.concurrent.TimeUnit;
  */
 public class ImportConsumerWorker extends BaseWorker<ImportOptions, PrismObject> {
 
+    /**
+     * Maximum number of objects taken from the queue and added using one batch operation.
+     */
+    private static final int BATCH_SIZE = 100;
+
     public ImportConsumerWorker(NinjaContext context, ImportOptions options, BlockingQueue<PrismObject> queue,
                                 OperationStatus operation, List<ImportConsumerWorker> consumers) {
         super(context, options, queue, operation, consumers);
@@ -39,25 +46,48 @@ public class ImportConsumerWorker extends BaseWorker<ImportOptions, PrismObject>
 
         try {
             while (!shouldConsumerStop()) {
-                PrismObject object = null;
+                List<PrismObject> batch = new ArrayList<>(BATCH_SIZE);
                 try {
-                    object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
+                    PrismObject object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
                     if (object == null) {
                         continue;
                     }
+                    batch.add(object);
+                    // whatever is already waiting is added in the same repository batch
+                    queue.drainTo(batch, BATCH_SIZE - 1);
 
                     RepoAddOptions opts = createRepoAddOptions(options);
 
-                    if (!opts.isAllowUnencryptedValues()) {
-                        CryptoUtil.encryptValues(protector, object);
+                    List<PrismObject> encrypted = new ArrayList<>(batch.size());
+                    for (PrismObject o : batch) {
+                        try {
+                            if (!opts.isAllowUnencryptedValues()) {
+                                CryptoUtil.encryptValues(protector, o);
+                            }
+                            encrypted.add(o);
+                        } catch (Exception ex) {
+                            context.getLog().error("Couldn't add object {}, reason: {}", ex, o, ex.getMessage());
+                            operation.incrementError();
+                        }
                     }
 
                     RepositoryService repository = context.getRepository();
-                    repository.addObject(object, opts, new OperationResult("Import object"));
+                    //noinspection unchecked
+                    List<BatchItemResult> results =
+                            repository.addObjects((List) encrypted, opts, new OperationResult("Import objects"));
 
-                    operation.incrementTotal();
+                    for (int i = 0; i < results.size(); i++) {
+                        BatchItemResult result = results.get(i);
+                        if (result.isSuccess()) {
+                            operation.incrementTotal();
+                        } else {
+                            Exception ex = result.getException();
+                            context.getLog().error("Couldn't add object {}, reason: {}", ex, encrypted.get(i), ex.getMessage());
+                            operation.incrementError();
+                        }
+                    }
                 } catch (Exception ex) {
-                    context.getLog().error("Couldn't add object {}, reason: {}", ex, object, ex.getMessage());
+                    context.getLog().error("Couldn't add objects {}, reason: {}", ex, batch, ex.getMessage());
                     operation.incrementError();
                 }
             }
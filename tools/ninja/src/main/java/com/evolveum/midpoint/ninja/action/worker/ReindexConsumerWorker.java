@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action.worker;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.ninja.impl.NinjaContext;
+import com.evolveum.midpoint.ninja.opts.ReindexOptions;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+
+/**
+ * Calls modify object with no modifications and forced reindex for each object from the queue.
+ */
+public class ReindexConsumerWorker extends BaseWorker<ReindexOptions, PrismObject> {
+
+    public ReindexConsumerWorker(NinjaContext context, ReindexOptions options,
+            BlockingQueue<PrismObject> queue, OperationStatus operation) {
+        super(context, options, queue, operation);
+    }
+
+    @Override
+    public void run() {
+        RepositoryService repository = context.getRepository();
+        RepoModifyOptions modifyOptions = RepoModifyOptions.createForceReindex();
+
+        try {
+            while (!shouldConsumerStop()) {
+                PrismObject object = null;
+                try {
+                    object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
+                    if (object == null) {
+                        continue;
+                    }
+
+                    //noinspection unchecked
+                    repository.modifyObject(object.getCompileTimeClass(), object.getOid(),
+                            Collections.emptyList(), modifyOptions, new OperationResult("Reindex object"));
+
+                    operation.incrementTotal();
+                } catch (Exception ex) {
+                    context.getLog().error("Couldn't reindex object {}, reason: {}", ex, object, ex.getMessage());
+                    operation.incrementError();
+                }
+            }
+        } finally {
+            markDone();
+
+            if (isWorkersDone()) {
+                operation.finish();
+            }
+        }
+    }
+}
@@ -9,7 +9,7 @@ package com.evolveum.midpoint.ninja.action.worker;
 
 import com.evolveum.midpoint.ninja.impl.NinjaContext;
 import com.evolveum.midpoint.ninja.impl.NinjaException;
-import com.evolveum.midpoint.ninja.opts.ExportOptions;
+import com.evolveum.midpoint.ninja.opts.RepositorySearchOptions;
 import com.evolveum.midpoint.ninja.util.Log;
 import com.evolveum.midpoint.ninja.util.NinjaUtils;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
@@ -25,16 +25,16 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
 /**
- * Producer worker for all search-based operations, such as export and verify.
+ * Producer worker for all search-based operations, such as export, verify and reindex.
  *
  * Created by Viliam Repan (lazyman).
  */
-public class SearchProducerWorker extends BaseWorker<ExportOptions, PrismObject> {
+public class SearchProducerWorker extends BaseWorker<RepositorySearchOptions, PrismObject> {
 
     private ObjectTypes type;
     private ObjectQuery query;
 
-    public SearchProducerWorker(NinjaContext context, ExportOptions options, BlockingQueue<PrismObject> queue,
+    public SearchProducerWorker(NinjaContext context, RepositorySearchOptions options, BlockingQueue<PrismObject> queue,
                                 OperationStatus operation, List<SearchProducerWorker> producers,
                                 ObjectTypes type, ObjectQuery query) {
         super(context, options, queue, operation, producers);
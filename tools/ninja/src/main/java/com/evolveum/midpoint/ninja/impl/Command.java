@@ -25,6 +25,8 @@ public enum Command {
 
     VERIFY("verify", VerifyOptions.class, VerifyRepositoryAction.class, null),
 
+    REINDEX("reindex", ReindexOptions.class, ReindexRepositoryAction.class, null),
+
 //    PASSWORD_RESET("password", PasswordResetOptions.class, PasswordResetRepositoryAction.class, null),
 //
 //    UNLOCK("unlock", UnlockOptions.class, UnlockRepositoryAction.class, null),
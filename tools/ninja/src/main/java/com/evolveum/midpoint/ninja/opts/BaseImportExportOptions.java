@@ -18,7 +18,7 @@ import java.util.Set;
 /**
  * Created by Viliam Repan (lazyman).
  */
-public class BaseImportExportOptions {
+public class BaseImportExportOptions implements RepositorySearchOptions {
 
     public static final String P_RAW = "-r";
     public static final String P_RAW_LONG = "--raw";
@@ -58,14 +58,17 @@ public class BaseImportExportOptions {
     @Parameter(names = {P_MULTI_THREAD, P_MULTI_THREAD_LONG}, descriptionKey = "baseImportExport.multiThread")
     private int multiThread = 1;
 
+    @Override
     public boolean isRaw() {
         return raw;
     }
 
+    @Override
     public Set<ObjectTypes> getType() {
         return type;
     }
 
+    @Override
     public FileReference getFilter() {
         return filter;
     }
@@ -74,10 +77,12 @@ public class BaseImportExportOptions {
         return zip;
     }
 
+    @Override
     public String getOid() {
         return oid;
     }
 
+    @Override
     public int getMultiThread() {
         return multiThread;
     }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.opts;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import com.evolveum.midpoint.ninja.util.FileReference;
+import com.evolveum.midpoint.ninja.util.FileReferenceConverter;
+import com.evolveum.midpoint.ninja.util.ObjectTypesConverter;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+
+/**
+ * Options for forced reindex of objects.
+ */
+@Parameters(resourceBundle = "messages", commandDescriptionKey = "reindex")
+public class ReindexOptions implements RepositorySearchOptions {
+
+    public static final String P_OID = "-o";
+    public static final String P_OID_LONG = "--oid";
+
+    public static final String P_TYPE = "-t";
+    public static final String P_TYPE_LONG = "--type";
+
+    public static final String P_FILTER = "-f";
+    public static final String P_FILTER_LONG = "--filter";
+
+    public static final String P_MULTI_THREAD = "-l";
+    public static final String P_MULTI_THREAD_LONG = "--multi-thread";
+
+    @Parameter(names = {P_OID, P_OID_LONG}, descriptionKey = "reindex.oid")
+    private String oid;
+
+    @Parameter(names = {P_TYPE, P_TYPE_LONG}, descriptionKey = "reindex.type",
+            validateWith = ObjectTypesConverter.class, converter = ObjectTypesConverter.class)
+    private Set<ObjectTypes> type = new HashSet<>();
+
+    @Parameter(names = {P_FILTER, P_FILTER_LONG}, descriptionKey = "reindex.filter",
+            converter = FileReferenceConverter.class, validateWith = FileReferenceConverter.class)
+    private FileReference filter;
+
+    @Parameter(names = {P_MULTI_THREAD, P_MULTI_THREAD_LONG}, descriptionKey = "reindex.multiThread")
+    private int multiThread = 1;
+
+    /**
+     * Objects are always searched in raw mode, they are only used to identify the objects to reindex.
+     */
+    @Override
+    public boolean isRaw() {
+        return true;
+    }
+
+    @Override
+    public String getOid() {
+        return oid;
+    }
+
+    @Override
+    public Set<ObjectTypes> getType() {
+        return type;
+    }
+
+    @Override
+    public FileReference getFilter() {
+        return filter;
+    }
+
+    @Override
+    public int getMultiThread() {
+        return multiThread;
+    }
+}
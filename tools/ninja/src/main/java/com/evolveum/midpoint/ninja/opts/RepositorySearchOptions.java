@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2010-2021 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.opts;
+
+import java.util.Set;
+
+import com.evolveum.midpoint.ninja.util.FileReference;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+
+/**
+ * Object selection used by search-based operations, such as export, verify and reindex.
+ */
+public interface RepositorySearchOptions {
+
+    boolean isRaw();
+
+    String getOid();
+
+    Set<ObjectTypes> getType();
+
+    FileReference getFilter();
+
+    int getMultiThread();
+}